@@ -0,0 +1,230 @@
+package com.flipsmart;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.config.ConfigManager;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a separate {@link AccountState} for every account that has logged in, so
+ * several accounts can flip side by side. Every account's state stays in memory,
+ * so switching on login is a single map lookup and nothing has to be fetched again.
+ *
+ * Until an account has logged in, the plugin uses a default state, which also
+ * holds any buy limit history saved before accounts were tracked separately. That
+ * history moves to the first account to log in.
+ */
+@Slf4j
+@Singleton
+public class AccountManager
+{
+	private static final String CONFIG_GROUP = "flipsmart";
+	private static final String CONFIG_KEY = "accountStates";
+	private static final String DEFAULT_ACCOUNT = "";
+
+	private final ConfigManager configManager;
+	private final Gson gson;
+
+	private final Map<String, AccountState> accounts = new ConcurrentHashMap<>();
+	private volatile AccountState current;
+
+	/**
+	 * Totals across every tracked account
+	 */
+	public static class Totals
+	{
+		public int accounts;
+		public long invested;
+		public long pendingBuyValue;
+		public int freeSlots;
+		public long realisedProfit;
+	}
+
+	@Inject
+	public AccountManager(ConfigManager configManager, Gson gson, BuyLimitTracker defaultBuyLimits)
+	{
+		this.configManager = configManager;
+		this.gson = gson;
+
+		current = new AccountState(DEFAULT_ACCOUNT, defaultBuyLimits);
+		accounts.put(DEFAULT_ACCOUNT, current);
+	}
+
+	/**
+	 * The state of the account that's logged in
+	 */
+	public AccountState getCurrent()
+	{
+		return current;
+	}
+
+	/**
+	 * Switch to an account's state, creating it the first time the account is seen
+	 *
+	 * @return True if the account changed
+	 */
+	public boolean switchTo(String rsn)
+	{
+		String key = toKey(rsn);
+		AccountState state = current;
+		if (key.equals(toKey(state.getRsn())))
+		{
+			return false;
+		}
+
+		AccountState next = getOrCreate(rsn);
+		if (DEFAULT_ACCOUNT.equals(state.getRsn()))
+		{
+			migrateBuyLimits(state.getBuyLimits(), next.getBuyLimits());
+		}
+		current = next;
+		log.debug("Switched to account {}", rsn);
+		return true;
+	}
+
+	/**
+	 * Get an account's state without switching to it, creating it if it's new
+	 */
+	AccountState getOrCreate(String rsn)
+	{
+		String key = toKey(rsn);
+		AccountState state = accounts.get(key);
+		if (state != null)
+		{
+			return state;
+		}
+
+		// Created and loaded outside the map, so a config read doesn't block other lookups
+		AccountState created = createAccount(rsn);
+		state = accounts.putIfAbsent(key, created);
+		return state != null ? state : created;
+	}
+
+	/**
+	 * Every tracked account with something to show, in no particular order
+	 */
+	public List<AccountState> getAccounts()
+	{
+		List<AccountState> states = new ArrayList<>();
+		for (AccountState state : accounts.values())
+		{
+			if (!DEFAULT_ACCOUNT.equals(state.getRsn()) || state == current)
+			{
+				states.add(state);
+			}
+		}
+		return states;
+	}
+
+	/**
+	 * Add up invested coins, open slots and profit across all accounts
+	 */
+	public Totals getTotals()
+	{
+		Totals totals = new Totals();
+		for (AccountState state : getAccounts())
+		{
+			totals.accounts++;
+			totals.invested += state.getInvested();
+			totals.pendingBuyValue += state.getPendingBuyValue();
+			totals.freeSlots += state.getFreeSlots();
+			totals.realisedProfit += state.getRealisedProfit();
+		}
+		return totals;
+	}
+
+	/**
+	 * Load every account saved by a previous session
+	 */
+	public void load()
+	{
+		current.getBuyLimits().load();
+
+		String json = configManager.getConfiguration(CONFIG_GROUP, CONFIG_KEY);
+		if (json == null || json.isEmpty())
+		{
+			return;
+		}
+
+		List<AccountState.Saved> saved;
+		try
+		{
+			Type type = new TypeToken<List<AccountState.Saved>>(){}.getType();
+			saved = gson.fromJson(json, type);
+		}
+		catch (Exception e)
+		{
+			log.warn("Could not load account states: {}", e.getMessage());
+			return;
+		}
+
+		if (saved == null)
+		{
+			return;
+		}
+
+		for (AccountState.Saved account : saved)
+		{
+			if (account == null || account.rsn == null)
+			{
+				continue;
+			}
+
+			getOrCreate(account.rsn).restore(account);
+		}
+		log.debug("Loaded {} accounts", saved.size());
+	}
+
+	/**
+	 * Persist every account
+	 */
+	public void save()
+	{
+		List<AccountState.Saved> saved = new ArrayList<>();
+		for (AccountState state : accounts.values())
+		{
+			saved.add(state.save());
+			state.getBuyLimits().save();
+		}
+		configManager.setConfiguration(CONFIG_GROUP, CONFIG_KEY, gson.toJson(saved));
+	}
+
+	/**
+	 * Move buy limit usage recorded before any account logged in, including history
+	 * saved under the old shared key, to the account that logged in. The old key is
+	 * removed once the usage has been saved under the account's own key.
+	 */
+	private void migrateBuyLimits(BuyLimitTracker from, BuyLimitTracker to)
+	{
+		if (from.moveTo(to) > 0)
+		{
+			to.save();
+		}
+		from.save();
+	}
+
+	private AccountState createAccount(String rsn)
+	{
+		BuyLimitTracker buyLimits = new BuyLimitTracker(configManager, gson, BuyLimitTracker.CONFIG_KEY + "_" + toKey(rsn));
+		buyLimits.load();
+		return new AccountState(rsn, buyLimits);
+	}
+
+	/**
+	 * Turn a name into a config-safe key. As in game, case doesn't matter and a
+	 * space is the same as an underscore.
+	 */
+	private static String toKey(String rsn)
+	{
+		return rsn.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9-]", "_");
+	}
+}
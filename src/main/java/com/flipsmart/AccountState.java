@@ -0,0 +1,250 @@
+package com.flipsmart;
+
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Everything the plugin tracks for one RuneScape account: the offers in its GE
+ * slots, its buy limit usage, and the cost of items it has bought but not sold
+ * yet, which gives its realised profit as the sells come in.
+ */
+public class AccountState
+{
+	@Getter
+	private final String rsn;
+
+	@Getter
+	private final BuyLimitTracker buyLimits;
+
+	// Not saved, the bank is recounted the next time it's opened
+	@Getter
+	private final WealthTracker wealth = new WealthTracker();
+
+	// Not saved either, fill rates are learned again from the next fills
+	@Getter
+	private final FillRateEstimator fillRates = new FillRateEstimator();
+
+	// GE slot -> offer in that slot
+	final Map<Integer, TrackedOffer> offers = new ConcurrentHashMap<>();
+
+	// Item id -> items bought from a recommendation and not sold yet
+	final Map<Integer, RecommendationAnalytics.Position> attributed = new ConcurrentHashMap<>();
+
+	// Item id -> {quantity held, total cost}
+	private final Map<Integer, long[]> holdings = new HashMap<>();
+	private long invested;
+	private long realisedProfit;
+
+	@Getter
+	private volatile int freeSlots = SlotAllocationOptimizer.GE_SLOTS;
+
+	/**
+	 * An offer in a GE slot, and how much of it had filled when last seen
+	 */
+	static class TrackedOffer
+	{
+		int itemId;
+		String itemName;
+		boolean isBuy;
+		int totalQuantity;
+		int price;
+		int previousQuantitySold;
+
+		TrackedOffer(int itemId, String itemName, boolean isBuy, int totalQuantity, int price, int quantitySold)
+		{
+			this.itemId = itemId;
+			this.itemName = itemName;
+			this.isBuy = isBuy;
+			this.totalQuantity = totalQuantity;
+			this.price = price;
+			this.previousQuantitySold = quantitySold;
+		}
+	}
+
+	/**
+	 * What gets saved between sessions. Buy limits are saved by their tracker.
+	 */
+	static class Saved
+	{
+		String rsn;
+		Map<Integer, TrackedOffer> offers;
+		Map<Integer, long[]> holdings;
+		Map<Integer, RecommendationAnalytics.Position> attributed;
+		long realisedProfit;
+		int freeSlots;
+	}
+
+	AccountState(String rsn, BuyLimitTracker buyLimits)
+	{
+		this.rsn = rsn;
+		this.buyLimits = buyLimits;
+	}
+
+	/**
+	 * Count a fill. Buys add to the holding at their cost, sells take from it at
+	 * its average cost and add the after-tax difference to the realised profit.
+	 */
+	synchronized void recordFill(int itemId, boolean isBuy, int quantity, int pricePerItem)
+	{
+		if (quantity <= 0)
+		{
+			return;
+		}
+
+		long[] holding = holdings.get(itemId);
+		if (isBuy)
+		{
+			if (holding == null)
+			{
+				holding = new long[2];
+				holdings.put(itemId, holding);
+			}
+			long cost = (long) quantity * pricePerItem;
+			holding[0] += quantity;
+			holding[1] += cost;
+			invested += cost;
+			return;
+		}
+
+		if (holding == null)
+		{
+			// Sold something bought before tracking started, so its cost is unknown
+			return;
+		}
+
+		long matched = Math.min(quantity, holding[0]);
+		long cost = holding[1] * matched / holding[0];
+		realisedProfit += GePricing.netSellPrice(itemId, pricePerItem) * matched - cost;
+		invested -= cost;
+		holding[0] -= matched;
+		holding[1] -= cost;
+		if (holding[0] == 0)
+		{
+			holdings.remove(itemId);
+		}
+	}
+
+	/**
+	 * Copy of the items held, item id -> {quantity held, total cost}
+	 */
+	synchronized Map<Integer, long[]> getHoldings()
+	{
+		Map<Integer, long[]> copy = new HashMap<>();
+		for (Map.Entry<Integer, long[]> entry : holdings.entrySet())
+		{
+			copy.put(entry.getKey(), entry.getValue().clone());
+		}
+		return copy;
+	}
+
+	/**
+	 * Add a holding from an import. Items already held are left alone, so importing
+	 * the same history twice doesn't count them twice.
+	 *
+	 * @return True if the holding was added
+	 */
+	synchronized boolean importHolding(int itemId, long quantity, long cost)
+	{
+		if (quantity <= 0 || cost < 0 || holdings.containsKey(itemId))
+		{
+			return false;
+		}
+
+		holdings.put(itemId, new long[]{quantity, cost});
+		invested += cost;
+		return true;
+	}
+
+	/**
+	 * Cost of items bought and not sold yet
+	 */
+	public synchronized long getInvested()
+	{
+		return invested;
+	}
+
+	public synchronized long getRealisedProfit()
+	{
+		return realisedProfit;
+	}
+
+	/**
+	 * Coins tied up in buy offers that haven't filled yet
+	 */
+	public long getPendingBuyValue()
+	{
+		long value = 0;
+		for (TrackedOffer offer : offers.values())
+		{
+			if (offer.isBuy)
+			{
+				value += (long) (offer.totalQuantity - offer.previousQuantitySold) * offer.price;
+			}
+		}
+		return value;
+	}
+
+	void setFreeSlots(int freeSlots)
+	{
+		this.freeSlots = freeSlots;
+	}
+
+	synchronized Saved save()
+	{
+		Saved saved = new Saved();
+		saved.rsn = rsn;
+		saved.offers = new HashMap<>(offers);
+		saved.holdings = new HashMap<>();
+		for (Map.Entry<Integer, long[]> entry : holdings.entrySet())
+		{
+			saved.holdings.put(entry.getKey(), entry.getValue().clone());
+		}
+		saved.attributed = new HashMap<>(attributed);
+		saved.realisedProfit = realisedProfit;
+		saved.freeSlots = freeSlots;
+		return saved;
+	}
+
+	synchronized void restore(Saved saved)
+	{
+		offers.clear();
+		if (saved.offers != null)
+		{
+			offers.putAll(saved.offers);
+		}
+
+		holdings.clear();
+		invested = 0;
+		if (saved.holdings != null)
+		{
+			for (Map.Entry<Integer, long[]> entry : saved.holdings.entrySet())
+			{
+				long[] holding = entry.getValue();
+				if (holding != null && holding.length == 2 && holding[0] > 0)
+				{
+					holdings.put(entry.getKey(), holding);
+					invested += holding[1];
+				}
+			}
+		}
+
+		attributed.clear();
+		if (saved.attributed != null)
+		{
+			for (Map.Entry<Integer, RecommendationAnalytics.Position> entry : saved.attributed.entrySet())
+			{
+				RecommendationAnalytics.Position position = entry.getValue();
+				if (position != null && position.style != null && position.quantity > 0)
+				{
+					attributed.put(entry.getKey(), position);
+				}
+			}
+		}
+
+		realisedProfit = saved.realisedProfit;
+		freeSlots = saved.freeSlots;
+	}
+}
@@ -0,0 +1,377 @@
+package com.flipsmart;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Replays recorded price history and the player's own fills to estimate how each
+ * flip style would have performed.
+ *
+ * Each item is simulated on its own: when a snapshot passes the style's filters a
+ * buy offer is placed at the recommended buy price, it fills as the market trades
+ * through that price (limited by the item's volume and buy limit), and the items
+ * are then offered at the recommended sell price. Items are split across a
+ * fork-join pool, one task tree per style.
+ */
+@Slf4j
+public class Backtester
+{
+	private static final long HOUR_MS = 60 * 60 * 1000L;
+	private static final long BUY_LIMIT_WINDOW_MS = 4 * HOUR_MS;
+
+	// Give up on an unfilled buy after this long, and dump unsold items after this long
+	private static final long MAX_BUY_MS = 2 * HOUR_MS;
+	private static final long MAX_SELL_MS = 8 * HOUR_MS;
+
+	// Share of an item's hourly volume we can expect to trade ourselves
+	private static final double VOLUME_SHARE = 0.1;
+
+	// Items per leaf task
+	private static final int SPLIT_THRESHOLD = 32;
+
+	/**
+	 * Outcome of replaying one flip style
+	 */
+	public static class Result
+	{
+		public final FlipSmartConfig.FlipStyle style;
+		public long profit;
+		public int flips;
+		public int profitableFlips;
+		public long slotMillis;
+
+		Result(FlipSmartConfig.FlipStyle style)
+		{
+			this.style = style;
+		}
+
+		/**
+		 * Profit per hour that a GE slot was in use
+		 */
+		public double getProfitPerSlotHour()
+		{
+			return slotMillis > 0 ? profit / ((double) slotMillis / HOUR_MS) : 0;
+		}
+
+		void add(Result other)
+		{
+			profit += other.profit;
+			flips += other.flips;
+			profitableFlips += other.profitableFlips;
+			slotMillis += other.slotMillis;
+		}
+	}
+
+	/**
+	 * Replay every flip style over the recorded history
+	 *
+	 * @param prices Price history per item
+	 * @param fills The player's own fills
+	 * @param slotBudget Cash available for a single offer
+	 * @return One result per flip style
+	 */
+	public List<Result> run(Map<Integer, PriceHistoryStore.ItemHistory> prices, FillHistoryStore.Fills fills,
+							long slotBudget)
+	{
+		long start = System.nanoTime();
+
+		PriceHistoryStore.ItemHistory[] items = prices.values().toArray(new PriceHistoryStore.ItemHistory[0]);
+		Map<Integer, int[]> fillsByItem = indexFills(fills);
+
+		List<SimulationTask> tasks = new ArrayList<>();
+		for (FlipSmartConfig.FlipStyle style : FlipSmartConfig.FlipStyle.values())
+		{
+			tasks.add(new SimulationTask(style, items, 0, items.length, fills, fillsByItem, slotBudget));
+		}
+
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		for (SimulationTask task : tasks)
+		{
+			pool.execute(task);
+		}
+
+		List<Result> results = new ArrayList<>();
+		for (SimulationTask task : tasks)
+		{
+			results.add(task.join());
+		}
+
+		long snapshots = 0;
+		for (PriceHistoryStore.ItemHistory item : items)
+		{
+			snapshots += item.size;
+		}
+		log.debug("Backtested {} styles over {} items ({} snapshots, {} fills) in {} ms",
+			tasks.size(), items.length, snapshots, fills.size, (System.nanoTime() - start) / 1_000_000);
+
+		return results;
+	}
+
+	/**
+	 * Group fill indexes by item so each simulation only walks its own fills
+	 */
+	private static Map<Integer, int[]> indexFills(FillHistoryStore.Fills fills)
+	{
+		Map<Integer, int[]> counts = new HashMap<>();
+		for (int i = 0; i < fills.size; i++)
+		{
+			counts.computeIfAbsent(fills.itemIds[i], id -> new int[1])[0]++;
+		}
+
+		// Fill each item's array from the back so indexes stay in time order
+		Map<Integer, int[]> index = new HashMap<>(counts.size() * 2);
+		for (int i = fills.size - 1; i >= 0; i--)
+		{
+			int[] count = counts.get(fills.itemIds[i]);
+			int[] itemFills = index.computeIfAbsent(fills.itemIds[i], id -> new int[count[0]]);
+			itemFills[--count[0]] = i;
+		}
+		return index;
+	}
+
+	/**
+	 * Whether a snapshot would have been recommended by a flip style. This mirrors the
+	 * server's style filters using only what is stored locally.
+	 */
+	private static boolean qualifies(FlipSmartConfig.FlipStyle style, int itemId, int buyPrice, int sellPrice, int risk)
+	{
+		if (buyPrice <= 0 || sellPrice <= buyPrice)
+		{
+			return false;
+		}
+
+		double roi = GePricing.roiPercent(itemId, buyPrice, sellPrice);
+		switch (style)
+		{
+			case CONSERVATIVE:
+				return risk <= 30 && roi >= 1.0;
+			case AGGRESSIVE:
+				return roi >= 3.0;
+			default:
+				return risk <= 60 && roi >= 2.0;
+		}
+	}
+
+	/**
+	 * Simulates one style over a range of items, splitting the range while it is large
+	 */
+	private static class SimulationTask extends RecursiveTask<Result>
+	{
+		private final FlipSmartConfig.FlipStyle style;
+		private final PriceHistoryStore.ItemHistory[] items;
+		private final int from;
+		private final int to;
+		private final FillHistoryStore.Fills fills;
+		private final Map<Integer, int[]> fillsByItem;
+		private final long slotBudget;
+
+		SimulationTask(FlipSmartConfig.FlipStyle style, PriceHistoryStore.ItemHistory[] items, int from, int to,
+					   FillHistoryStore.Fills fills, Map<Integer, int[]> fillsByItem, long slotBudget)
+		{
+			this.style = style;
+			this.items = items;
+			this.from = from;
+			this.to = to;
+			this.fills = fills;
+			this.fillsByItem = fillsByItem;
+			this.slotBudget = slotBudget;
+		}
+
+		@Override
+		protected Result compute()
+		{
+			if (to - from > SPLIT_THRESHOLD)
+			{
+				int mid = (from + to) >>> 1;
+				SimulationTask left = new SimulationTask(style, items, from, mid, fills, fillsByItem, slotBudget);
+				SimulationTask right = new SimulationTask(style, items, mid, to, fills, fillsByItem, slotBudget);
+				left.fork();
+				Result result = right.compute();
+				result.add(left.join());
+				return result;
+			}
+
+			Result result = new Result(style);
+			for (int i = from; i < to; i++)
+			{
+				simulateItem(items[i], result);
+			}
+			return result;
+		}
+
+		private void simulateItem(PriceHistoryStore.ItemHistory history, Result result)
+		{
+			int[] itemFills = fillsByItem.getOrDefault(history.itemId, new int[0]);
+
+			// Offer state
+			boolean buying = false;
+			boolean selling = false;
+			int buyPrice = 0;
+			int sellPrice = 0;
+			int target = 0;
+			int held = 0;
+			int sold = 0;
+			long offerStart = 0;
+			long phaseStart = 0;
+			long lastTime = 0;
+			int volumePerHour = 0;
+
+			// Buy limit window
+			long limitWindowStart = Long.MIN_VALUE;
+			int limitUsed = 0;
+
+			// Merge price snapshots with the player's fills in time order
+			int s = 0;
+			int f = 0;
+			while (s < history.size || f < itemFills.length)
+			{
+				boolean isSnapshot = f >= itemFills.length
+					|| (s < history.size && history.times[s] <= fills.times[itemFills[f]]);
+
+				long time;
+				int high;
+				int low;
+				if (isSnapshot)
+				{
+					time = history.times[s];
+					high = history.high[s];
+					low = history.low[s];
+					volumePerHour = history.volumePerHour[s];
+				}
+				else
+				{
+					// A fill of ours shows someone traded at that price
+					int fill = itemFills[f];
+					time = fills.times[fill];
+					high = fills.buys[fill] ? -1 : fills.prices[fill];
+					low = fills.buys[fill] ? fills.prices[fill] : -1;
+				}
+
+				long elapsed = lastTime > 0 ? time - lastTime : 0;
+				lastTime = time;
+				int tradable = (int) Math.max(1, volumePerHour * VOLUME_SHARE * elapsed / HOUR_MS);
+
+				if (buying)
+				{
+					if (low >= 0 && low <= buyPrice)
+					{
+						held += Math.min(target - held, tradable);
+					}
+
+					if (held >= target || time - phaseStart > MAX_BUY_MS)
+					{
+						buying = false;
+						limitUsed += held;
+						if (held > 0)
+						{
+							selling = true;
+							phaseStart = time;
+						}
+						else
+						{
+							result.slotMillis += time - offerStart;
+						}
+					}
+				}
+				else if (selling)
+				{
+					boolean completed = false;
+					int exitPrice = sellPrice;
+
+					if (high >= sellPrice)
+					{
+						sold += Math.min(held - sold, tradable);
+						completed = sold >= held;
+					}
+
+					if (!completed && time - phaseStart > MAX_SELL_MS && low > 0)
+					{
+						// Dump whatever is left at the instant sell price
+						exitPrice = low;
+						completed = true;
+					}
+
+					if (completed)
+					{
+						long profit = GePricing.profit(history.itemId, buyPrice, sellPrice, sold)
+							+ GePricing.profit(history.itemId, buyPrice, exitPrice, held - sold);
+
+						result.profit += profit;
+						result.flips++;
+						if (profit > 0)
+						{
+							result.profitableFlips++;
+						}
+						result.slotMillis += time - offerStart;
+
+						selling = false;
+						held = 0;
+						sold = 0;
+					}
+				}
+				else if (isSnapshot
+					&& qualifies(style, history.itemId, history.recommendedBuy[s], history.recommendedSell[s], history.risk[s]))
+				{
+					if (time - limitWindowStart >= BUY_LIMIT_WINDOW_MS)
+					{
+						limitWindowStart = time;
+						limitUsed = 0;
+					}
+
+					int buyLimit = history.getBuyLimit(s);
+					int limitLeft = buyLimit > 0 ? buyLimit - limitUsed : Integer.MAX_VALUE;
+					int affordable = (int) Math.min(Integer.MAX_VALUE, slotBudget / history.recommendedBuy[s]);
+					target = Math.min(limitLeft, affordable);
+
+					if (target > 0)
+					{
+						buying = true;
+						buyPrice = history.recommendedBuy[s];
+						sellPrice = history.recommendedSell[s];
+						held = 0;
+						sold = 0;
+						offerStart = time;
+						phaseStart = time;
+					}
+				}
+
+				if (isSnapshot)
+				{
+					s++;
+				}
+				else
+				{
+					f++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Format results as text for display
+	 */
+	public static String format(List<Result> results)
+	{
+		StringBuilder sb = new StringBuilder();
+		Result[] sorted = results.toArray(new Result[0]);
+		Arrays.sort(sorted, (a, b) -> Double.compare(b.getProfitPerSlotHour(), a.getProfitPerSlotHour()));
+
+		for (Result result : sorted)
+		{
+			sb.append(String.format("%s: %,d gp over %d flips (%d profitable), %,.0f gp per slot-hour%n",
+				result.style,
+				result.profit,
+				result.flips,
+				result.profitableFlips,
+				result.getProfitPerSlotHour()));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,310 @@
+package com.flipsmart;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.config.ConfigManager;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks how much of each item's GE buy limit has been used in the last 4 hours.
+ *
+ * Purchases are dropped into a timer wheel of one-minute buckets. Recording a fill
+ * and looking up usage are O(1), and each bucket is expired exactly once as the
+ * wheel turns, so the cost does not depend on how many items are being tracked.
+ */
+@Slf4j
+@Singleton
+public class BuyLimitTracker
+{
+	private static final String CONFIG_GROUP = "flipsmart";
+	static final String CONFIG_KEY = "buyLimitHistory";
+
+	private static final long WINDOW_MS = 4 * 60 * 60 * 1000L;
+	private static final long BUCKET_MS = 60 * 1000L;
+	private static final int WHEEL_SIZE = (int) (WINDOW_MS / BUCKET_MS);
+
+	private final ConfigManager configManager;
+	private final Gson gson;
+	private final String configKey;
+
+	private final Bucket[] wheel = new Bucket[WHEEL_SIZE];
+	private final Map<Integer, Integer> usedByItem = new HashMap<>();
+
+	// Newest minute the wheel has been turned to (epoch minutes)
+	private long currentTick = -1;
+
+	@Inject
+	public BuyLimitTracker(ConfigManager configManager, Gson gson)
+	{
+		this(configManager, gson, CONFIG_KEY);
+	}
+
+	/**
+	 * @param configKey Where to save the history, so each account can have its own
+	 */
+	BuyLimitTracker(ConfigManager configManager, Gson gson, String configKey)
+	{
+		this.configManager = configManager;
+		this.gson = gson;
+		this.configKey = configKey;
+
+		for (int i = 0; i < WHEEL_SIZE; i++)
+		{
+			wheel[i] = new Bucket();
+		}
+	}
+
+	/**
+	 * Record items bought from the GE against the item's buy limit. Only kept in
+	 * memory, callers save it when convenient.
+	 */
+	public synchronized void recordPurchase(int itemId, int quantity)
+	{
+		if (quantity <= 0)
+		{
+			return;
+		}
+
+		addPurchase(itemId, quantity, System.currentTimeMillis());
+	}
+
+	/**
+	 * Get how many of an item have been bought in the current 4 hour window
+	 */
+	public synchronized int getUsed(int itemId)
+	{
+		advance(System.currentTimeMillis());
+		return usedByItem.getOrDefault(itemId, 0);
+	}
+
+	/**
+	 * Get how many more of an item can be bought before hitting the buy limit.
+	 * Returns null if the item's limit is unknown.
+	 */
+	public Integer getRemaining(int itemId, Integer buyLimit)
+	{
+		if (buyLimit == null || buyLimit <= 0)
+		{
+			return null;
+		}
+
+		return Math.max(0, buyLimit - getUsed(itemId));
+	}
+
+	/**
+	 * Load purchases from the previous session, dropping any that have already expired
+	 */
+	public void load()
+	{
+		String json = configManager.getConfiguration(CONFIG_GROUP, configKey);
+		if (json == null || json.isEmpty())
+		{
+			return;
+		}
+
+		List<long[]> purchases;
+		try
+		{
+			Type type = new TypeToken<List<long[]>>(){}.getType();
+			purchases = gson.fromJson(json, type);
+		}
+		catch (Exception e)
+		{
+			log.warn("Could not load buy limit history: {}", e.getMessage());
+			return;
+		}
+
+		if (purchases == null)
+		{
+			return;
+		}
+
+		synchronized (this)
+		{
+			clear();
+
+			long now = System.currentTimeMillis();
+			for (long[] purchase : purchases)
+			{
+				if (purchase.length < 3 || now - purchase[2] >= WINDOW_MS)
+				{
+					continue;
+				}
+				addPurchase((int) purchase[0], (int) purchase[1], purchase[2]);
+			}
+
+			advance(now);
+			log.debug("Loaded buy limit history for {} items", usedByItem.size());
+		}
+	}
+
+	/**
+	 * Move every purchase still inside the 4 hour window to another tracker, leaving
+	 * this one empty. Neither tracker is saved.
+	 *
+	 * @return Number of purchases moved
+	 */
+	int moveTo(BuyLimitTracker target)
+	{
+		List<long[]> purchases = new ArrayList<>();
+		synchronized (this)
+		{
+			advance(System.currentTimeMillis());
+			collect(purchases);
+			clear();
+		}
+
+		synchronized (target)
+		{
+			for (long[] purchase : purchases)
+			{
+				target.addPurchase((int) purchase[0], (int) purchase[1], purchase[2]);
+			}
+		}
+		return purchases.size();
+	}
+
+	/**
+	 * Persist purchases still inside the 4 hour window, or remove the saved history if there are none
+	 */
+	public void save()
+	{
+		List<long[]> purchases = new ArrayList<>();
+
+		synchronized (this)
+		{
+			advance(System.currentTimeMillis());
+			collect(purchases);
+		}
+
+		if (purchases.isEmpty())
+		{
+			configManager.unsetConfiguration(CONFIG_GROUP, configKey);
+			return;
+		}
+		configManager.setConfiguration(CONFIG_GROUP, configKey, gson.toJson(purchases));
+	}
+
+	/**
+	 * Add every purchase in the wheel as item id, quantity and time
+	 */
+	private void collect(List<long[]> purchases)
+	{
+		for (Bucket bucket : wheel)
+		{
+			for (int i = 0; i < bucket.size; i++)
+			{
+				purchases.add(new long[]{bucket.itemIds[i], bucket.quantities[i], bucket.tick * BUCKET_MS});
+			}
+		}
+	}
+
+	private void addPurchase(int itemId, int quantity, long timestamp)
+	{
+		long tick = timestamp / BUCKET_MS;
+		advance(timestamp);
+
+		Bucket bucket = wheel[(int) (tick % WHEEL_SIZE)];
+		if (bucket.tick != tick)
+		{
+			// Slot has not been claimed for this minute yet
+			expire(bucket);
+			bucket.tick = tick;
+		}
+		bucket.add(itemId, quantity);
+
+		usedByItem.merge(itemId, quantity, Integer::sum);
+	}
+
+	/**
+	 * Turn the wheel forward, expiring every bucket that has left the window
+	 */
+	private void advance(long now)
+	{
+		long tick = now / BUCKET_MS;
+		if (currentTick < 0)
+		{
+			currentTick = tick;
+			return;
+		}
+
+		if (tick <= currentTick)
+		{
+			return;
+		}
+
+		// After a full turn every bucket has been visited, so stop there
+		long steps = Math.min(tick - currentTick, WHEEL_SIZE);
+		for (long t = tick - steps + 1; t <= tick; t++)
+		{
+			Bucket bucket = wheel[(int) (t % WHEEL_SIZE)];
+			if (bucket.tick != t)
+			{
+				expire(bucket);
+				bucket.tick = t;
+			}
+		}
+		currentTick = tick;
+	}
+
+	private void expire(Bucket bucket)
+	{
+		for (int i = 0; i < bucket.size; i++)
+		{
+			int itemId = bucket.itemIds[i];
+			int remaining = usedByItem.getOrDefault(itemId, 0) - bucket.quantities[i];
+			if (remaining > 0)
+			{
+				usedByItem.put(itemId, remaining);
+			}
+			else
+			{
+				usedByItem.remove(itemId);
+			}
+		}
+		bucket.size = 0;
+	}
+
+	private void clear()
+	{
+		for (Bucket bucket : wheel)
+		{
+			bucket.size = 0;
+			bucket.tick = -1;
+		}
+		usedByItem.clear();
+		currentTick = -1;
+	}
+
+	/**
+	 * One minute of purchases, stored as parallel arrays
+	 */
+	private static class Bucket
+	{
+		long tick = -1;
+		int size;
+		int[] itemIds = new int[4];
+		int[] quantities = new int[4];
+
+		void add(int itemId, int quantity)
+		{
+			if (size == itemIds.length)
+			{
+				itemIds = Arrays.copyOf(itemIds, size * 2);
+				quantities = Arrays.copyOf(quantities, size * 2);
+			}
+			itemIds[size] = itemId;
+			quantities[size] = quantity;
+			size++;
+		}
+	}
+}
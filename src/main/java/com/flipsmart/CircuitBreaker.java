@@ -0,0 +1,100 @@
+package com.flipsmart;
+
+/**
+ * Stops sending requests to an endpoint that keeps failing, so a degraded API
+ * isn't hit again on every refresh.
+ *
+ * After {@link #FAILURE_THRESHOLD} failures in a row the breaker opens and calls
+ * fail fast. Once the open period has passed, a single trial call is let through:
+ * if it succeeds the breaker closes, otherwise it opens again for twice as long.
+ */
+class CircuitBreaker
+{
+	enum State
+	{
+		CLOSED,
+		OPEN,
+		HALF_OPEN
+	}
+
+	private static final int FAILURE_THRESHOLD = 3;
+	private static final long MIN_OPEN_MS = 15_000;
+	private static final long MAX_OPEN_MS = 5 * 60_000;
+
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	private long openedAt;
+	private long openMs = MIN_OPEN_MS;
+	private boolean trialInFlight;
+
+	/**
+	 * Check if a call may be sent. In the half-open state only one trial call is allowed.
+	 */
+	synchronized boolean allowRequest()
+	{
+		if (state == State.OPEN)
+		{
+			if (System.currentTimeMillis() - openedAt < openMs)
+			{
+				return false;
+			}
+			state = State.HALF_OPEN;
+			trialInFlight = false;
+		}
+
+		if (state == State.HALF_OPEN)
+		{
+			if (trialInFlight)
+			{
+				return false;
+			}
+			trialInFlight = true;
+		}
+		return true;
+	}
+
+	synchronized void recordSuccess()
+	{
+		state = State.CLOSED;
+		consecutiveFailures = 0;
+		openMs = MIN_OPEN_MS;
+		trialInFlight = false;
+	}
+
+	synchronized void recordFailure()
+	{
+		if (state == State.HALF_OPEN)
+		{
+			open(Math.min(openMs * 2, MAX_OPEN_MS));
+		}
+		else if (++consecutiveFailures >= FAILURE_THRESHOLD && state == State.CLOSED)
+		{
+			open(MIN_OPEN_MS);
+		}
+	}
+
+	/**
+	 * A call was cancelled before finishing, so it tells us nothing about the endpoint
+	 */
+	synchronized void recordCancelled()
+	{
+		trialInFlight = false;
+	}
+
+	synchronized State getState()
+	{
+		if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMs)
+		{
+			return State.HALF_OPEN;
+		}
+		return state;
+	}
+
+	private void open(long duration)
+	{
+		state = State.OPEN;
+		openedAt = System.currentTimeMillis();
+		openMs = duration;
+		trialInFlight = false;
+	}
+}
@@ -25,7 +25,7 @@ public class CompletedFlip
 	private int buyPricePerItem;
 
 	@SerializedName("buy_total")
-	private int buyTotal;
+	private long buyTotal;
 
 	@SerializedName("buy_time")
 	private String buyTime;
@@ -34,13 +34,13 @@ public class CompletedFlip
 	private int sellPricePerItem;
 
 	@SerializedName("sell_total")
-	private int sellTotal;
+	private long sellTotal;
 
 	@SerializedName("sell_time")
 	private String sellTime;
 
 	@SerializedName("gross_profit")
-	private int grossProfit;
+	private long grossProfit;
 
 	@SerializedName("ge_tax")
 	private int geTax;
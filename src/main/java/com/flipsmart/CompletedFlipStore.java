@@ -0,0 +1,973 @@
+package com.flipsmart;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Singleton;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps every completed flip the API has returned, appended to a file in the
+ * RuneLite directory and held in memory as column arrays, so the whole history can
+ * be searched rather than just the latest page from the server.
+ *
+ * Searches use an index kept alongside the columns: a trie over the words of item
+ * names pointing at each item's rows, and a sorted index per numeric field. A search
+ * walks the most selective of these and checks the other conditions on the columns,
+ * so it takes milliseconds even over a very long history.
+ */
+@Slf4j
+@Singleton
+public class CompletedFlipStore
+{
+	private static final String FILE_NAME = "completed-flips.dat";
+	private static final int FILE_MAGIC = 0x46534346; // "FSCF"
+	private static final int FORMAT_VERSION = 1;
+
+	// Numeric fields that can be searched
+	static final int PROFIT = 0;
+	static final int ROI = 1;
+	static final int DURATION = 2;
+	static final int TIME = 3;
+	private static final int FIELDS = 4;
+
+	private int size;
+	private int[] ids = new int[64];
+	private int[] itemIds = new int[64];
+	private int[] quantities = new int[64];
+	private int[] buyPrices = new int[64];
+	private int[] sellPrices = new int[64];
+	private int[] taxes = new int[64];
+	private int[] profits = new int[64];
+	private float[] rois = new float[64];
+	private int[] durations = new int[64];
+	private long[] buyTimes = new long[64];
+	private long[] sellTimes = new long[64];
+
+	private final Set<Integer> knownIds = new HashSet<>();
+	private final Map<Integer, String> itemNames = new HashMap<>();
+
+	// Item id -> its rows, in the order they were added
+	private final Map<Integer, int[]> postings = new HashMap<>();
+	private final Map<Integer, Integer> postingSizes = new HashMap<>();
+	private final NameTrie names = new NameTrie();
+	private final ProfitTimeline timeline = new ProfitTimeline();
+
+	// Per field, the rows sorted by that field and the sorted values, rebuilt after adds
+	private final int[][] sortedRows = new int[FIELDS][];
+	private final int[][] sortedKeys = new int[FIELDS][];
+	private boolean indexStale = true;
+
+	private DataOutputStream out;
+
+	/**
+	 * One condition on a numeric field, e.g. profit of at least 100k
+	 */
+	static class Range
+	{
+		final int field;
+		final int min;
+		final int max;
+
+		Range(int field, int min, int max)
+		{
+			this.field = field;
+			this.min = min;
+			this.max = max;
+		}
+	}
+
+	/**
+	 * A page of search results, most recent first
+	 */
+	public static class SearchResult
+	{
+		public final int total;
+		public final List<CompletedFlip> flips;
+
+		SearchResult(int total, List<CompletedFlip> flips)
+		{
+			this.total = total;
+			this.flips = flips;
+		}
+	}
+
+	/**
+	 * A block of rows copied in or out of the store, reused from block to block so
+	 * exports and imports don't hold more than one block at a time
+	 */
+	public static class Chunk
+	{
+		public static final int CAPACITY = 4096;
+
+		public int size;
+		public final int[] ids = new int[CAPACITY];
+		public final int[] itemIds = new int[CAPACITY];
+		public final String[] names = new String[CAPACITY];
+		public final int[] quantities = new int[CAPACITY];
+		public final int[] buyPrices = new int[CAPACITY];
+		public final int[] sellPrices = new int[CAPACITY];
+		public final int[] taxes = new int[CAPACITY];
+		public final int[] profits = new int[CAPACITY];
+		public final float[] rois = new float[CAPACITY];
+		public final int[] durations = new int[CAPACITY];
+		public final long[] buyTimes = new long[CAPACITY];
+		public final long[] sellTimes = new long[CAPACITY];
+	}
+
+	/**
+	 * Load the history from disk and open the file for appending
+	 */
+	public synchronized void load()
+	{
+		clear();
+		File file = new File(PriceHistoryStore.HISTORY_DIR, FILE_NAME);
+		boolean rewrite = !file.exists();
+
+		if (file.exists())
+		{
+			boolean inRecord = false;
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+			{
+				if (in.readInt() != FILE_MAGIC || in.readInt() != FORMAT_VERSION)
+				{
+					log.warn("Ignoring completed flip history with unknown format");
+					rewrite = true;
+				}
+				else
+				{
+					while (true)
+					{
+						int id = in.readInt();
+						inRecord = true;
+						int itemId = in.readInt();
+						String name = in.readUTF();
+						int quantity = in.readInt();
+						int buyPrice = in.readInt();
+						int sellPrice = in.readInt();
+						int tax = in.readInt();
+						int profit = in.readInt();
+						float roi = in.readFloat();
+						int duration = in.readInt();
+						long buyTime = in.readLong();
+						long sellTime = in.readLong();
+						inRecord = false;
+						add(id, itemId, name, quantity, buyPrice, sellPrice, tax, profit, roi, duration, buyTime, sellTime);
+					}
+				}
+			}
+			catch (EOFException e)
+			{
+				// End of file. A partly written last record is dropped, and the file rewritten without it.
+				rewrite |= inRecord;
+			}
+			catch (IOException e)
+			{
+				log.warn("Could not read completed flip history: {}", e.getMessage());
+			}
+		}
+
+		log.debug("Loaded {} completed flips", size);
+		openForAppend(rewrite);
+	}
+
+	/**
+	 * Flush and close the history file
+	 */
+	public synchronized void close()
+	{
+		if (out == null)
+		{
+			return;
+		}
+
+		try
+		{
+			out.close();
+		}
+		catch (IOException e)
+		{
+			log.warn("Could not close completed flip history: {}", e.getMessage());
+		}
+		out = null;
+	}
+
+	/**
+	 * Add flips from the API, skipping any already stored
+	 *
+	 * @return How many were new
+	 */
+	public synchronized int addAll(List<CompletedFlip> flips)
+	{
+		int added = 0;
+		for (CompletedFlip flip : flips)
+		{
+			if (knownIds.contains(flip.getId()))
+			{
+				continue;
+			}
+
+			int row = add(flip.getId(), flip.getItemId(), flip.getItemName(), flip.getQuantity(),
+				flip.getBuyPricePerItem(), flip.getSellPricePerItem(), flip.getGeTax(), flip.getNetProfit(),
+				(float) flip.getRoiPercent(), flip.getFlipDurationSeconds(),
+				parseTime(flip.getBuyTime()), parseTime(flip.getSellTime()));
+			added++;
+			writeSafely(row);
+		}
+		flushSafely(added);
+		return added;
+	}
+
+	private void writeSafely(int row)
+	{
+		if (out != null)
+		{
+			try
+			{
+				write(out, row);
+			}
+			catch (IOException e)
+			{
+				log.warn("Could not write completed flip history: {}", e.getMessage());
+				close();
+			}
+		}
+	}
+
+	private void flushSafely(int added)
+	{
+		if (added > 0 && out != null)
+		{
+			try
+			{
+				out.flush();
+			}
+			catch (IOException e)
+			{
+				log.warn("Could not write completed flip history: {}", e.getMessage());
+			}
+		}
+	}
+
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Copy rows into a chunk, in the order they were added
+	 *
+	 * @param from First row to copy
+	 * @return Number of rows copied, 0 once past the end
+	 */
+	public synchronized int read(int from, Chunk chunk)
+	{
+		int count = Math.max(0, Math.min(Chunk.CAPACITY, size - from));
+		for (int i = 0; i < count; i++)
+		{
+			int row = from + i;
+			chunk.ids[i] = ids[row];
+			chunk.itemIds[i] = itemIds[row];
+			chunk.names[i] = itemNames.get(itemIds[row]);
+			chunk.quantities[i] = quantities[row];
+			chunk.buyPrices[i] = buyPrices[row];
+			chunk.sellPrices[i] = sellPrices[row];
+			chunk.taxes[i] = taxes[row];
+			chunk.profits[i] = profits[row];
+			chunk.rois[i] = rois[row];
+			chunk.durations[i] = durations[row];
+			chunk.buyTimes[i] = buyTimes[row];
+			chunk.sellTimes[i] = sellTimes[row];
+		}
+		chunk.size = count;
+		return count;
+	}
+
+	/**
+	 * Add the rows of a chunk, skipping flips already stored
+	 *
+	 * @return How many were new
+	 */
+	public synchronized int addRows(Chunk chunk)
+	{
+		int added = 0;
+		for (int i = 0; i < chunk.size; i++)
+		{
+			if (knownIds.contains(chunk.ids[i]))
+			{
+				continue;
+			}
+
+			int row = add(chunk.ids[i], chunk.itemIds[i], chunk.names[i], chunk.quantities[i],
+				chunk.buyPrices[i], chunk.sellPrices[i], chunk.taxes[i], chunk.profits[i],
+				chunk.rois[i], chunk.durations[i], chunk.buyTimes[i], chunk.sellTimes[i]);
+			added++;
+			writeSafely(row);
+		}
+		flushSafely(added);
+		return added;
+	}
+
+	/**
+	 * Profit per hour, day or week from the first stored flip up to now
+	 */
+	public synchronized ProfitTimeline.Series getProfitSeries(ProfitTimeline.Resolution resolution)
+	{
+		return timeline.getSeries(resolution, System.currentTimeMillis());
+	}
+
+	/**
+	 * Items that made the most, then items that lost the most, over the whole history
+	 */
+	public synchronized List<ProfitTimeline.ItemProfit> getItemBreakdown(int limit)
+	{
+		return timeline.getItemBreakdown(limit);
+	}
+
+	public synchronized String getItemName(int itemId)
+	{
+		return itemNames.get(itemId);
+	}
+
+	/**
+	 * Search the history with a query of item name words and numeric conditions, e.g.
+	 * {@code whip profit>100k roi>=2 duration<2h days<=7}. Every word must start a word
+	 * of the item's name.
+	 *
+	 * @param limit Most results to return
+	 */
+	public synchronized SearchResult search(String query, int limit)
+	{
+		List<String> terms = new ArrayList<>();
+		List<Range> ranges = new ArrayList<>();
+		parseQuery(query, System.currentTimeMillis(), terms, ranges);
+		return search(terms, ranges, limit);
+	}
+
+	synchronized SearchResult search(List<String> terms, List<Range> ranges, int limit)
+	{
+		if (indexStale)
+		{
+			rebuildIndex();
+		}
+
+		// Nothing to filter on, so the time index already has the answer
+		if (terms.isEmpty() && ranges.isEmpty())
+		{
+			List<CompletedFlip> flips = new ArrayList<>(Math.min(limit, size));
+			for (int i = size - 1; i >= 0 && flips.size() < limit; i--)
+			{
+				flips.add(toFlip(sortedRows[TIME][i]));
+			}
+			return new SearchResult(size, flips);
+		}
+
+		// Items whose names match every term, or null if there are no terms
+		int[] items = null;
+		for (String term : terms)
+		{
+			int[] matches = names.find(term);
+			items = items == null ? matches : intersect(items, matches);
+		}
+
+		// Walk whichever condition narrows things down most
+		int bestCount = size;
+		int bestRange = -1;
+		int bestFrom = 0;
+		for (int i = 0; i < ranges.size(); i++)
+		{
+			Range range = ranges.get(i);
+			int from = lowerBound(sortedKeys[range.field], range.min);
+			int to = upperBound(sortedKeys[range.field], range.max);
+			if (to - from < bestCount)
+			{
+				bestCount = Math.max(0, to - from);
+				bestRange = i;
+				bestFrom = from;
+			}
+		}
+
+		int[] candidates = null;
+		int from = 0;
+		int count = size;
+		if (bestRange >= 0)
+		{
+			candidates = sortedRows[ranges.get(bestRange).field];
+			from = bestFrom;
+			count = bestCount;
+		}
+		if (items != null && itemRowCount(items) <= count)
+		{
+			candidates = rowsOf(items);
+			from = 0;
+			count = candidates.length;
+		}
+
+		// When most rows are candidates anyway, walking them newest first is cheaper
+		// than sorting every match by time
+		if (count > size / 8)
+		{
+			List<CompletedFlip> flips = new ArrayList<>(Math.min(limit, count));
+			int matched = 0;
+			for (int i = size - 1; i >= 0; i--)
+			{
+				int row = sortedRows[TIME][i];
+				if (matches(row, items, ranges))
+				{
+					if (flips.size() < limit)
+					{
+						flips.add(toFlip(row));
+					}
+					matched++;
+				}
+			}
+			return new SearchResult(matched, flips);
+		}
+
+		// Pack each match's time with its row, so sorting the longs sorts by time
+		long[] matches = new long[count];
+		int matched = 0;
+		for (int i = from; i < from + count; i++)
+		{
+			int row = candidates != null ? candidates[i] : i;
+			if (matches(row, items, ranges))
+			{
+				matches[matched++] = (long) key(TIME, row) << 32 | row;
+			}
+		}
+
+		Arrays.sort(matches, 0, matched);
+		List<CompletedFlip> flips = new ArrayList<>(Math.min(limit, matched));
+		for (int i = matched - 1; i >= 0 && flips.size() < limit; i--)
+		{
+			flips.add(toFlip((int) matches[i]));
+		}
+		return new SearchResult(matched, flips);
+	}
+
+	/**
+	 * Turn a query into name terms and numeric conditions
+	 */
+	static void parseQuery(String query, long now, List<String> terms, List<Range> ranges)
+	{
+		if (query == null)
+		{
+			return;
+		}
+
+		for (String token : query.trim().toLowerCase(Locale.ROOT).split("\\s+"))
+		{
+			if (token.isEmpty())
+			{
+				continue;
+			}
+
+			int opStart = indexOfOperator(token);
+			if (opStart <= 0)
+			{
+				terms.add(token);
+				continue;
+			}
+
+			String field = token.substring(0, opStart);
+			boolean orEqual = opStart + 1 < token.length() && token.charAt(opStart + 1) == '=';
+			char op = token.charAt(opStart);
+			String valueText = token.substring(opStart + (orEqual ? 2 : 1));
+			double value;
+			int fieldIndex;
+			switch (field)
+			{
+				case "profit":
+					fieldIndex = PROFIT;
+					value = PriceAlertEngine.parseAmount(valueText);
+					break;
+				case "roi":
+					fieldIndex = ROI;
+					value = PriceAlertEngine.parseAmount(valueText) * 100;
+					break;
+				case "duration":
+					fieldIndex = DURATION;
+					value = parseDurationSeconds(valueText);
+					break;
+				case "days":
+					// Sold within the last n days, so it's a lower bound on the time
+					fieldIndex = TIME;
+					value = (now / 1000 - PriceAlertEngine.parseAmount(valueText) * 86400) / 60;
+					op = op == '<' ? '>' : op == '>' ? '<' : op;
+					break;
+				default:
+					terms.add(token);
+					continue;
+			}
+
+			if (Double.isNaN(value))
+			{
+				continue;
+			}
+
+			// Keys are whole numbers, so strict bounds move to the next one in
+			long bound = (long) Math.floor(value);
+			int min = Integer.MIN_VALUE;
+			int max = Integer.MAX_VALUE;
+			if (op == '>' || op == '=')
+			{
+				min = clamp(orEqual || op == '=' ? (long) Math.ceil(value) : bound + 1);
+			}
+			if (op == '<' || op == '=')
+			{
+				max = clamp(orEqual || op == '=' ? bound : (long) Math.ceil(value) - 1);
+			}
+			ranges.add(new Range(fieldIndex, min, max));
+		}
+	}
+
+	private static int indexOfOperator(String token)
+	{
+		for (int i = 0; i < token.length(); i++)
+		{
+			char c = token.charAt(i);
+			if (c == '<' || c == '>' || c == '=')
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Parse a duration like 90, 30m, 2h or 1d into seconds. Plain numbers are minutes.
+	 */
+	private static double parseDurationSeconds(String text)
+	{
+		if (text.isEmpty())
+		{
+			return Double.NaN;
+		}
+
+		char unit = text.charAt(text.length() - 1);
+		int seconds = unit == 'd' ? 86400 : unit == 'h' ? 3600 : 60;
+		String number = Character.isDigit(unit) ? text : text.substring(0, text.length() - 1);
+		return PriceAlertEngine.parseAmount(number) * seconds;
+	}
+
+	private static int clamp(long value)
+	{
+		return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+	}
+
+	private boolean matches(int row, int[] items, List<Range> ranges)
+	{
+		if (items != null && Arrays.binarySearch(items, itemIds[row]) < 0)
+		{
+			return false;
+		}
+
+		for (Range range : ranges)
+		{
+			int key = key(range.field, row);
+			if (key < range.min || key > range.max)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int key(int field, int row)
+	{
+		switch (field)
+		{
+			case PROFIT:
+				return profits[row];
+			case ROI:
+				return Math.round(rois[row] * 100);
+			case DURATION:
+				return durations[row];
+			default:
+				return (int) (sellTimes[row] / 60_000);
+		}
+	}
+
+	/**
+	 * Sort the rows by each numeric field. Each key is packed with its row into a long,
+	 * so sorting is a primitive sort with no boxing.
+	 */
+	private void rebuildIndex()
+	{
+		long[] packed = new long[size];
+		for (int field = 0; field < FIELDS; field++)
+		{
+			for (int row = 0; row < size; row++)
+			{
+				packed[row] = (long) key(field, row) << 32 | row;
+			}
+			Arrays.sort(packed);
+
+			int[] rows = new int[size];
+			int[] keys = new int[size];
+			for (int i = 0; i < size; i++)
+			{
+				rows[i] = (int) packed[i];
+				keys[i] = (int) (packed[i] >> 32);
+			}
+			sortedRows[field] = rows;
+			sortedKeys[field] = keys;
+		}
+		indexStale = false;
+	}
+
+	private int itemRowCount(int[] items)
+	{
+		int count = 0;
+		for (int itemId : items)
+		{
+			count += postingSizes.getOrDefault(itemId, 0);
+		}
+		return count;
+	}
+
+	private int[] rowsOf(int[] items)
+	{
+		int[] rows = new int[itemRowCount(items)];
+		int count = 0;
+		for (int itemId : items)
+		{
+			int n = postingSizes.getOrDefault(itemId, 0);
+			if (n > 0)
+			{
+				System.arraycopy(postings.get(itemId), 0, rows, count, n);
+				count += n;
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Rebuild a flip from its row, with the totals worked out from the stored prices
+	 */
+	CompletedFlip toFlip(int row)
+	{
+		CompletedFlip flip = new CompletedFlip();
+		flip.setId(ids[row]);
+		flip.setItemId(itemIds[row]);
+		flip.setItemName(itemNames.get(itemIds[row]));
+		flip.setQuantity(quantities[row]);
+		flip.setBuyPricePerItem(buyPrices[row]);
+		flip.setBuyTotal((long) quantities[row] * buyPrices[row]);
+		flip.setBuyTime(formatTime(buyTimes[row]));
+		flip.setSellPricePerItem(sellPrices[row]);
+		flip.setSellTotal((long) quantities[row] * sellPrices[row]);
+		flip.setSellTime(formatTime(sellTimes[row]));
+		flip.setGrossProfit((long) quantities[row] * ((long) sellPrices[row] - buyPrices[row]));
+		flip.setGeTax(taxes[row]);
+		flip.setNetProfit(profits[row]);
+		flip.setRoiPercent(rois[row]);
+		flip.setFlipDurationSeconds(durations[row]);
+		flip.setSuccessful(profits[row] > 0);
+		return flip;
+	}
+
+	private void clear()
+	{
+		size = 0;
+		knownIds.clear();
+		itemNames.clear();
+		postings.clear();
+		postingSizes.clear();
+		names.clear();
+		timeline.clear();
+		indexStale = true;
+	}
+
+	private int add(int id, int itemId, String name, int quantity, int buyPrice, int sellPrice, int tax, int profit,
+					float roi, int duration, long buyTime, long sellTime)
+	{
+		if (size == ids.length)
+		{
+			int capacity = size * 2;
+			ids = Arrays.copyOf(ids, capacity);
+			itemIds = Arrays.copyOf(itemIds, capacity);
+			quantities = Arrays.copyOf(quantities, capacity);
+			buyPrices = Arrays.copyOf(buyPrices, capacity);
+			sellPrices = Arrays.copyOf(sellPrices, capacity);
+			taxes = Arrays.copyOf(taxes, capacity);
+			profits = Arrays.copyOf(profits, capacity);
+			rois = Arrays.copyOf(rois, capacity);
+			durations = Arrays.copyOf(durations, capacity);
+			buyTimes = Arrays.copyOf(buyTimes, capacity);
+			sellTimes = Arrays.copyOf(sellTimes, capacity);
+		}
+
+		int row = size++;
+		ids[row] = id;
+		itemIds[row] = itemId;
+		quantities[row] = quantity;
+		buyPrices[row] = buyPrice;
+		sellPrices[row] = sellPrice;
+		taxes[row] = tax;
+		profits[row] = profit;
+		rois[row] = roi;
+		durations[row] = duration;
+		buyTimes[row] = buyTime;
+		sellTimes[row] = sellTime;
+		knownIds.add(id);
+
+		if (name != null && !name.equals(itemNames.put(itemId, name)))
+		{
+			names.add(name, itemId);
+		}
+
+		int count = postingSizes.getOrDefault(itemId, 0);
+		int[] rows = postings.get(itemId);
+		if (rows == null || count == rows.length)
+		{
+			rows = rows == null ? new int[4] : Arrays.copyOf(rows, count * 2);
+			postings.put(itemId, rows);
+		}
+		rows[count] = row;
+		postingSizes.put(itemId, count + 1);
+		timeline.add(itemId, sellTime, profit);
+
+		indexStale = true;
+		return row;
+	}
+
+	private void openForAppend(boolean rewrite)
+	{
+		close();
+		out = PriceHistoryStore.openHistoryFile(new File(PriceHistoryStore.HISTORY_DIR, FILE_NAME), FILE_MAGIC,
+			FORMAT_VERSION, rewrite ? this::writeAll : null);
+	}
+
+	private void writeAll(DataOutputStream out) throws IOException
+	{
+		for (int row = 0; row < size; row++)
+		{
+			write(out, row);
+		}
+	}
+
+	private void write(DataOutputStream out, int row) throws IOException
+	{
+		String name = itemNames.get(itemIds[row]);
+		out.writeInt(ids[row]);
+		out.writeInt(itemIds[row]);
+		out.writeUTF(name != null ? name : "");
+		out.writeInt(quantities[row]);
+		out.writeInt(buyPrices[row]);
+		out.writeInt(sellPrices[row]);
+		out.writeInt(taxes[row]);
+		out.writeInt(profits[row]);
+		out.writeFloat(rois[row]);
+		out.writeInt(durations[row]);
+		out.writeLong(buyTimes[row]);
+		out.writeLong(sellTimes[row]);
+	}
+
+	/**
+	 * Parse an API timestamp, with or without a zone (UTC is assumed without one)
+	 *
+	 * @return Epoch milliseconds, or 0 if it can't be parsed
+	 */
+	static long parseTime(String time)
+	{
+		if (time == null || time.isEmpty())
+		{
+			return 0;
+		}
+
+		try
+		{
+			return OffsetDateTime.parse(time).toInstant().toEpochMilli();
+		}
+		catch (DateTimeParseException e)
+		{
+			try
+			{
+				return LocalDateTime.parse(time).toInstant(ZoneOffset.UTC).toEpochMilli();
+			}
+			catch (DateTimeParseException e2)
+			{
+				return 0;
+			}
+		}
+	}
+
+	private static String formatTime(long time)
+	{
+		return time > 0 ? Instant.ofEpochMilli(time).toString() : null;
+	}
+
+	private static int[] intersect(int[] a, int[] b)
+	{
+		int[] result = new int[Math.min(a.length, b.length)];
+		int n = 0;
+		for (int i = 0, j = 0; i < a.length && j < b.length; )
+		{
+			if (a[i] < b[j])
+			{
+				i++;
+			}
+			else if (a[i] > b[j])
+			{
+				j++;
+			}
+			else
+			{
+				result[n++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	private static int lowerBound(int[] keys, int value)
+	{
+		int lo = 0;
+		int hi = keys.length;
+		while (lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if (keys[mid] < value)
+			{
+				lo = mid + 1;
+			}
+			else
+			{
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	private static int upperBound(int[] keys, int value)
+	{
+		int lo = 0;
+		int hi = keys.length;
+		while (lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if (keys[mid] <= value)
+			{
+				lo = mid + 1;
+			}
+			else
+			{
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Trie over the lowercase words of item names. Each node lists the items with a
+	 * word passing through it, so a prefix lookup is a walk down the trie.
+	 */
+	static class NameTrie
+	{
+		private final Node root = new Node();
+
+		private static class Node
+		{
+			char[] keys = new char[0];
+			Node[] children = new Node[0];
+			// Sorted item ids with a word through this node
+			int[] items = new int[0];
+		}
+
+		void add(String name, int itemId)
+		{
+			for (String word : name.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+			{
+				Node node = root;
+				for (int i = 0; i < word.length(); i++)
+				{
+					node = child(node, word.charAt(i));
+					addItem(node, itemId);
+				}
+			}
+		}
+
+		/**
+		 * Items with a name word starting with the prefix, sorted
+		 */
+		int[] find(String prefix)
+		{
+			Node node = root;
+			for (int i = 0; i < prefix.length() && node != null; i++)
+			{
+				node = next(node, prefix.charAt(i));
+			}
+			return node != null ? node.items : new int[0];
+		}
+
+		void clear()
+		{
+			root.keys = new char[0];
+			root.children = new Node[0];
+			root.items = new int[0];
+		}
+
+		private static Node next(Node node, char c)
+		{
+			for (int i = 0; i < node.keys.length; i++)
+			{
+				if (node.keys[i] == c)
+				{
+					return node.children[i];
+				}
+			}
+			return null;
+		}
+
+		private static Node child(Node node, char c)
+		{
+			Node child = next(node, c);
+			if (child == null)
+			{
+				child = new Node();
+				int n = node.keys.length;
+				node.keys = Arrays.copyOf(node.keys, n + 1);
+				node.children = Arrays.copyOf(node.children, n + 1);
+				node.keys[n] = c;
+				node.children[n] = child;
+			}
+			return child;
+		}
+
+		private static void addItem(Node node, int itemId)
+		{
+			int index = Arrays.binarySearch(node.items, itemId);
+			if (index >= 0)
+			{
+				return;
+			}
+
+			int insert = -index - 1;
+			int[] items = new int[node.items.length + 1];
+			System.arraycopy(node.items, 0, items, 0, insert);
+			items[insert] = itemId;
+			System.arraycopy(node.items, insert, items, insert + 1, node.items.length - insert);
+			node.items = items;
+		}
+	}
+}
@@ -0,0 +1,416 @@
+package com.flipsmart;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Singleton;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Keeps a local log of the player's own GE fills, appended to a file in the
+ * RuneLite directory as they happen and held in memory as column arrays.
+ */
+@Slf4j
+@Singleton
+public class FillHistoryStore
+{
+	private static final String FILE_NAME = "fills.dat";
+	private static final int FILE_MAGIC = 0x46534648; // "FSFH"
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_BYTES = 8;
+	private static final int RECORD_BYTES = 21;
+
+	private int size;
+	private long[] times = new long[64];
+	private int[] itemIds = new int[64];
+	private boolean[] buys = new boolean[64];
+	private int[] quantities = new int[64];
+	private int[] prices = new int[64];
+
+	private DataOutputStream out;
+	// Rows before this are in time order. Imports can append older fills past it.
+	private int sortedSize;
+
+	/**
+	 * An immutable copy of the fill log, in time order
+	 */
+	public static class Fills
+	{
+		public final int size;
+		public final long[] times;
+		public final int[] itemIds;
+		public final boolean[] buys;
+		public final int[] quantities;
+		public final int[] prices;
+
+		Fills(int size, long[] times, int[] itemIds, boolean[] buys, int[] quantities, int[] prices)
+		{
+			this.size = size;
+			this.times = times;
+			this.itemIds = itemIds;
+			this.buys = buys;
+			this.quantities = quantities;
+			this.prices = prices;
+		}
+	}
+
+	/**
+	 * A block of fills copied in or out of the store, reused from block to block so
+	 * exports and imports don't hold more than one block at a time
+	 */
+	public static class Chunk
+	{
+		public static final int CAPACITY = 4096;
+
+		public int size;
+		public final long[] times = new long[CAPACITY];
+		public final int[] itemIds = new int[CAPACITY];
+		public final boolean[] buys = new boolean[CAPACITY];
+		public final int[] quantities = new int[CAPACITY];
+		public final int[] prices = new int[CAPACITY];
+	}
+
+	/**
+	 * Load fills from disk and open the file for appending
+	 */
+	public synchronized void load()
+	{
+		size = 0;
+		sortedSize = 0;
+		File file = new File(PriceHistoryStore.HISTORY_DIR, FILE_NAME);
+		boolean rewrite = !file.exists() || (file.length() - HEADER_BYTES) % RECORD_BYTES != 0;
+
+		if (file.exists())
+		{
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+			{
+				if (in.readInt() != FILE_MAGIC || in.readInt() != FORMAT_VERSION)
+				{
+					log.warn("Ignoring fill history with unknown format");
+					rewrite = true;
+				}
+				else
+				{
+					while (true)
+					{
+						int itemId = in.readInt();
+						long time = in.readLong();
+						boolean isBuy = in.readBoolean();
+						int quantity = in.readInt();
+						int price = in.readInt();
+						add(time, itemId, isBuy, quantity, price);
+					}
+				}
+			}
+			catch (EOFException e)
+			{
+				// End of file (a partly written last record is dropped)
+			}
+			catch (IOException e)
+			{
+				log.warn("Could not read fill history: {}", e.getMessage());
+			}
+		}
+
+		// An import that didn't finish can leave older fills at the end
+		if (sortedSize != size)
+		{
+			sortColumns();
+			rewrite = true;
+		}
+
+		log.debug("Loaded {} fills", size);
+		openForAppend(rewrite);
+	}
+
+	/**
+	 * Flush and close the fill log
+	 */
+	public synchronized void close()
+	{
+		if (out == null)
+		{
+			return;
+		}
+
+		try
+		{
+			out.close();
+		}
+		catch (IOException e)
+		{
+			log.warn("Could not close fill history: {}", e.getMessage());
+		}
+		out = null;
+	}
+
+	/**
+	 * Record a fill from the GE
+	 */
+	public synchronized void record(int itemId, boolean isBuy, int quantity, int price)
+	{
+		long now = System.currentTimeMillis();
+		add(now, itemId, isBuy, quantity, price);
+
+		if (out == null)
+		{
+			return;
+		}
+
+		try
+		{
+			write(out, itemId, now, isBuy, quantity, price);
+			out.flush();
+		}
+		catch (IOException e)
+		{
+			log.warn("Could not write fill history: {}", e.getMessage());
+		}
+	}
+
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Copy fills into a chunk, in time order
+	 *
+	 * @param from First fill to copy
+	 * @return Number of fills copied, 0 once past the end
+	 */
+	public synchronized int read(int from, Chunk chunk)
+	{
+		int count = Math.max(0, Math.min(Chunk.CAPACITY, size - from));
+		System.arraycopy(times, from, chunk.times, 0, count);
+		System.arraycopy(itemIds, from, chunk.itemIds, 0, count);
+		System.arraycopy(buys, from, chunk.buys, 0, count);
+		System.arraycopy(quantities, from, chunk.quantities, 0, count);
+		System.arraycopy(prices, from, chunk.prices, 0, count);
+		chunk.size = count;
+		return count;
+	}
+
+	/**
+	 * Add imported fills, skipping any already in the log. Call {@link #finishImport()}
+	 * once every chunk is in, to put the log back in time order.
+	 *
+	 * @return How many were new
+	 */
+	public synchronized int addRows(Chunk chunk)
+	{
+		int added = 0;
+		for (int i = 0; i < chunk.size; i++)
+		{
+			long time = chunk.times[i];
+			if (contains(time, chunk.itemIds[i], chunk.buys[i], chunk.quantities[i], chunk.prices[i]))
+			{
+				continue;
+			}
+
+			add(time, chunk.itemIds[i], chunk.buys[i], chunk.quantities[i], chunk.prices[i]);
+			added++;
+			if (out != null)
+			{
+				try
+				{
+					write(out, chunk.itemIds[i], time, chunk.buys[i], chunk.quantities[i], chunk.prices[i]);
+				}
+				catch (IOException e)
+				{
+					log.warn("Could not write fill history: {}", e.getMessage());
+					close();
+				}
+			}
+		}
+
+		if (added > 0 && out != null)
+		{
+			try
+			{
+				out.flush();
+			}
+			catch (IOException e)
+			{
+				log.warn("Could not write fill history: {}", e.getMessage());
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Sort the log by time after an import added older fills, and rewrite the file
+	 */
+	public synchronized void finishImport()
+	{
+		if (sortedSize == size)
+		{
+			return;
+		}
+
+		sortColumns();
+		if (out != null)
+		{
+			openForAppend(true);
+		}
+	}
+
+	private void sortColumns()
+	{
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++)
+		{
+			order[i] = i;
+		}
+		sortByTime(order, new int[size], 0, size);
+
+		long[] sortedTimes = new long[times.length];
+		int[] sortedItemIds = new int[times.length];
+		boolean[] sortedBuys = new boolean[times.length];
+		int[] sortedQuantities = new int[times.length];
+		int[] sortedPrices = new int[times.length];
+		for (int i = 0; i < size; i++)
+		{
+			int row = order[i];
+			sortedTimes[i] = times[row];
+			sortedItemIds[i] = itemIds[row];
+			sortedBuys[i] = buys[row];
+			sortedQuantities[i] = quantities[row];
+			sortedPrices[i] = prices[row];
+		}
+		times = sortedTimes;
+		itemIds = sortedItemIds;
+		buys = sortedBuys;
+		quantities = sortedQuantities;
+		prices = sortedPrices;
+		sortedSize = size;
+	}
+
+	/**
+	 * Whether the time ordered part of the log has this exact fill
+	 */
+	private boolean contains(long time, int itemId, boolean isBuy, int quantity, int price)
+	{
+		int i = Arrays.binarySearch(times, 0, sortedSize, time);
+		if (i < 0)
+		{
+			return false;
+		}
+
+		// Several fills can share a time, so look either side of the one found
+		while (i > 0 && times[i - 1] == time)
+		{
+			i--;
+		}
+		for (; i < sortedSize && times[i] == time; i++)
+		{
+			if (itemIds[i] == itemId && buys[i] == isBuy && quantities[i] == quantity && prices[i] == price)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Stable merge sort of row indexes by time
+	 */
+	private void sortByTime(int[] order, int[] scratch, int from, int to)
+	{
+		if (to - from < 2)
+		{
+			return;
+		}
+
+		int mid = (from + to) >>> 1;
+		sortByTime(order, scratch, from, mid);
+		sortByTime(order, scratch, mid, to);
+		if (times[order[mid - 1]] <= times[order[mid]])
+		{
+			return;
+		}
+
+		System.arraycopy(order, from, scratch, from, to - from);
+		int left = from;
+		int right = mid;
+		for (int i = from; i < to; i++)
+		{
+			if (right >= to || (left < mid && times[scratch[left]] <= times[scratch[right]]))
+			{
+				order[i] = scratch[left++];
+			}
+			else
+			{
+				order[i] = scratch[right++];
+			}
+		}
+	}
+
+	/**
+	 * Get a copy of the fill log that is safe to read from other threads
+	 */
+	public synchronized Fills snapshot()
+	{
+		return new Fills(size,
+			Arrays.copyOf(times, size),
+			Arrays.copyOf(itemIds, size),
+			Arrays.copyOf(buys, size),
+			Arrays.copyOf(quantities, size),
+			Arrays.copyOf(prices, size));
+	}
+
+	private void add(long time, int itemId, boolean isBuy, int quantity, int price)
+	{
+		if (size == times.length)
+		{
+			int capacity = size * 2;
+			times = Arrays.copyOf(times, capacity);
+			itemIds = Arrays.copyOf(itemIds, capacity);
+			buys = Arrays.copyOf(buys, capacity);
+			quantities = Arrays.copyOf(quantities, capacity);
+			prices = Arrays.copyOf(prices, capacity);
+		}
+		// Fills stay in time order unless an import adds older ones
+		if (sortedSize == size && (size == 0 || time >= times[size - 1]))
+		{
+			sortedSize++;
+		}
+		times[size] = time;
+		itemIds[size] = itemId;
+		buys[size] = isBuy;
+		quantities[size] = quantity;
+		prices[size] = price;
+		size++;
+	}
+
+	private void openForAppend(boolean rewrite)
+	{
+		close();
+		out = PriceHistoryStore.openHistoryFile(new File(PriceHistoryStore.HISTORY_DIR, FILE_NAME), FILE_MAGIC,
+			FORMAT_VERSION, rewrite ? this::writeAll : null);
+	}
+
+	private void writeAll(DataOutputStream out) throws IOException
+	{
+		for (int i = 0; i < size; i++)
+		{
+			write(out, itemIds[i], times[i], buys[i], quantities[i], prices[i]);
+		}
+	}
+
+	private static void write(DataOutputStream out, int itemId, long time, boolean isBuy, int quantity, int price)
+		throws IOException
+	{
+		out.writeInt(itemId);
+		out.writeLong(time);
+		out.writeBoolean(isBuy);
+		out.writeInt(quantity);
+		out.writeInt(price);
+	}
+}
@@ -0,0 +1,173 @@
+package com.flipsmart;
+
+import java.util.Arrays;
+
+/**
+ * Estimates how fast each GE slot is filling and when it will complete.
+ *
+ * Each slot keeps an exponentially weighted fill rate, updated from the offer's
+ * quantity every time it changes. Older fills count for less the longer ago they
+ * were, so the rate follows the market as it speeds up or slows down. Until the
+ * first fill, the rate starts from the share of the item's hourly volume an offer
+ * can expect to get.
+ *
+ * State lives in primitive arrays indexed by slot, so updates take constant time
+ * and don't allocate.
+ */
+public class FillRateEstimator
+{
+	// Matches the share of volume the slot optimizer and backtester assume
+	private static final double VOLUME_SHARE = 0.1;
+	private static final double HOUR_MS = 60 * 60 * 1000.0;
+	// How long it takes for a fill's weight in the rate to fall to about a third
+	private static final double DECAY_MS = 10 * 60 * 1000.0;
+	// Fills reported together are spread over at least this long
+	private static final long MIN_INTERVAL_MS = 1000;
+
+	private final int[] itemIds = new int[SlotAllocationOptimizer.GE_SLOTS];
+	private final int[] totals = new int[SlotAllocationOptimizer.GE_SLOTS];
+	private final int[] filled = new int[SlotAllocationOptimizer.GE_SLOTS];
+	private final boolean[] buys = new boolean[SlotAllocationOptimizer.GE_SLOTS];
+	private final long[] lastFillAt = new long[SlotAllocationOptimizer.GE_SLOTS];
+	// Items per millisecond
+	private final double[] rates = new double[SlotAllocationOptimizer.GE_SLOTS];
+
+	public FillRateEstimator()
+	{
+		Arrays.fill(itemIds, -1);
+	}
+
+	/**
+	 * Update a slot from its offer. A different item, side or quantity than before
+	 * means a new offer, which starts over with no rate until
+	 * {@link #setVolumePerHour} gives it one.
+	 *
+	 * @param active False once the offer has completed, been cancelled or collected
+	 * @return True if this started a new offer
+	 */
+	public synchronized boolean update(int slot, int itemId, boolean isBuy, int quantity, int totalQuantity,
+									   boolean active, long now)
+	{
+		if (slot < 0 || slot >= itemIds.length)
+		{
+			return false;
+		}
+
+		if (!active)
+		{
+			itemIds[slot] = -1;
+			return false;
+		}
+
+		if (itemIds[slot] != itemId || buys[slot] != isBuy || totals[slot] != totalQuantity || quantity < filled[slot])
+		{
+			itemIds[slot] = itemId;
+			buys[slot] = isBuy;
+			totals[slot] = totalQuantity;
+			filled[slot] = quantity;
+			lastFillAt[slot] = now;
+			rates[slot] = 0;
+			return true;
+		}
+
+		int added = quantity - filled[slot];
+		if (added <= 0)
+		{
+			return false;
+		}
+
+		long elapsed = Math.max(MIN_INTERVAL_MS, now - lastFillAt[slot]);
+		double observed = added / (double) elapsed;
+		if (rates[slot] <= 0)
+		{
+			rates[slot] = observed;
+		}
+		else
+		{
+			double weight = 1 - Math.exp(-elapsed / DECAY_MS);
+			rates[slot] += weight * (observed - rates[slot]);
+		}
+
+		filled[slot] = quantity;
+		lastFillAt[slot] = now;
+		return false;
+	}
+
+	/**
+	 * Start a new offer's rate from the share of the item's hourly volume it can expect
+	 */
+	public synchronized void setVolumePerHour(int slot, int volumePerHour)
+	{
+		if (slot >= 0 && slot < itemIds.length && rates[slot] <= 0 && volumePerHour > 0)
+		{
+			rates[slot] = volumePerHour * VOLUME_SHARE / HOUR_MS;
+		}
+	}
+
+	/**
+	 * Estimated time until a slot's offer completes
+	 *
+	 * @return Milliseconds left, or -1 if the slot isn't active or there's nothing to go on
+	 */
+	public synchronized long getEtaMillis(int slot, long now)
+	{
+		if (slot < 0 || slot >= itemIds.length || itemIds[slot] < 0)
+		{
+			return -1;
+		}
+
+		int remaining = totals[slot] - filled[slot];
+		if (remaining <= 0)
+		{
+			return 0;
+		}
+
+		double rate = rates[slot];
+		// A slot that has gone quiet is filling slower than it was, at most one item per wait so far
+		long waited = now - lastFillAt[slot];
+		if (waited > 0)
+		{
+			rate = Math.min(rate, 1.0 / waited);
+		}
+		return rate > 0 ? (long) (remaining / rate) : -1;
+	}
+
+	/**
+	 * Estimated time until the soonest active offer for an item completes
+	 *
+	 * @return Milliseconds left, or -1 if there's no estimate
+	 */
+	public synchronized long getEtaMillisForItem(int itemId, boolean isBuy, long now)
+	{
+		long best = -1;
+		for (int slot = 0; slot < itemIds.length; slot++)
+		{
+			if (itemIds[slot] == itemId && buys[slot] == isBuy)
+			{
+				long eta = getEtaMillis(slot, now);
+				if (eta >= 0 && (best < 0 || eta < best))
+				{
+					best = eta;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Short form of an estimate for display, e.g. "~5m" or "~2h 10m"
+	 */
+	public static String formatEta(long etaMillis)
+	{
+		long minutes = (etaMillis + 59_999) / 60_000;
+		if (minutes < 60)
+		{
+			return "~" + minutes + "m";
+		}
+		if (minutes < 48 * 60)
+		{
+			return "~" + minutes / 60 + "h " + minutes % 60 + "m";
+		}
+		return ">2d";
+	}
+}
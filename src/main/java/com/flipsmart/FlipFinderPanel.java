@@ -20,6 +20,23 @@ import java.util.List;
 @Slf4j
 public class FlipFinderPanel extends PluginPanel
 {
+	// How many candidates to fetch so minimum profit and list length changes can be re-ranked locally
+	private static final int CANDIDATE_POOL_SIZE = 100;
+
+	// How long the login success message shows before switching to the main panel
+	private static final long LOGIN_SUCCESS_DELAY_MS = 500;
+
+	// Slot budget for backtests when neither the API nor the cash stack gives one
+	private static final long DEFAULT_BACKTEST_SLOT_BUDGET = 1_000_000L;
+
+	// Best and worst items shown under the profit chart
+	private static final int ITEM_BREAKDOWN_SIZE = 5;
+
+	// Completed flip search results are shown a page at a time
+	private static final int SEARCH_PAGE_SIZE = 50;
+	// Wait for typing to pause before searching or filtering
+	private static final int SEARCH_DELAY_MS = 250;
+
 	private final FlipSmartConfig config;
 	private final FlipSmartApiClient apiClient;
 	private final ItemManager itemManager;
@@ -35,6 +52,60 @@ public class FlipFinderPanel extends PluginPanel
 	private final List<CompletedFlip> currentCompletedFlips = new ArrayList<>();
 	private final JTabbedPane tabbedPane = new JTabbedPane();
 	private final FlipSmartPlugin plugin;  // Reference to plugin to store recommended prices
+	private final RecommendationRanker ranker = new RecommendationRanker();
+	// Style the ranker's candidates were fetched for. The API filters candidates by
+	// style, so another style needs its own pool.
+	private FlipSmartConfig.FlipStyle candidateStyle;
+	private final PriceSparklines sparklines;
+	private final FlipSmartMetrics metrics;
+	private final FlipSmartMetrics.Histogram recommendationsRenderLatency;
+	private final FlipSmartMetrics.Histogram activeFlipsRenderLatency;
+	private final FlipSmartMetrics.Histogram completedFlipsRenderLatency;
+	private final FlipSmartMetrics.Histogram completedFlipsSearchLatency;
+	private Integer lastCashStack;
+	private Double lastPerSlotBudget;
+	private JButton backtestButton;
+	private JButton exportButton;
+	private JButton importButton;
+	private JTextField completedSearchField;
+	private int completedSearchLimit = SEARCH_PAGE_SIZE;
+
+	// Client side sorting and filtering, which reorders the rows already built
+	private final FlipListView<FlipRecommendation> recommendationView = new FlipListView<>();
+	private final List<JPanel> recommendationRows = new ArrayList<>();
+	private JPanel slotPlanPanel;
+	private JTextField recommendationFilterField;
+	private final FlipListView<CompletedFlip> completedView = new FlipListView<>();
+	private final List<JPanel> completedRows = new ArrayList<>();
+	private JPanel performancePanel;
+	private JPanel profitPanel;
+	private ProfitChart profitChart;
+	private JPanel itemBreakdownPanel;
+	private ProfitTimeline.Resolution profitResolution = ProfitTimeline.Resolution.DAY;
+	private JButton completedMoreButton;
+
+	/**
+	 * A way of ordering one of the lists, by a column of its view
+	 */
+	private static class SortOption
+	{
+		private final String label;
+		private final int column;
+		private final boolean descending;
+
+		SortOption(String label, int column, boolean descending)
+		{
+			this.label = label;
+			this.column = column;
+			this.descending = descending;
+		}
+
+		@Override
+		public String toString()
+		{
+			return label;
+		}
+	}
 
 	// Login panel components
 	private JPanel loginPanel;
@@ -54,6 +125,12 @@ public class FlipFinderPanel extends PluginPanel
 		this.itemManager = itemManager;
 		this.plugin = plugin;
 		this.configManager = configManager;
+		this.metrics = plugin.getMetrics();
+		this.sparklines = new PriceSparklines(plugin.getPriceHistoryStore());
+		this.recommendationsRenderLatency = metrics.histogram("panel.recommendations");
+		this.activeFlipsRenderLatency = metrics.histogram("panel.activeFlips");
+		this.completedFlipsRenderLatency = metrics.histogram("panel.completedFlips");
+		this.completedFlipsSearchLatency = metrics.histogram("panel.completedFlipsSearch");
 
 		setLayout(new BorderLayout());
 		setBackground(ColorScheme.DARK_GRAY_COLOR);
@@ -351,9 +428,17 @@ public class FlipFinderPanel extends PluginPanel
 			}
 		});
 		
-		tabbedPane.addTab("Recommended", recommendedScrollPane);
+		JPanel recommendedTab = new JPanel(new BorderLayout());
+		recommendedTab.setBackground(ColorScheme.DARK_GRAY_COLOR);
+		recommendedTab.add(buildRecommendedToolbar(), BorderLayout.NORTH);
+		recommendedTab.add(recommendedScrollPane, BorderLayout.CENTER);
+		tabbedPane.addTab("Recommended", recommendedTab);
 		tabbedPane.addTab("Active Flips", activeFlipsScrollPane);
-		tabbedPane.addTab("Completed", completedFlipsScrollPane);
+		JPanel completedTab = new JPanel(new BorderLayout());
+		completedTab.setBackground(ColorScheme.DARK_GRAY_COLOR);
+		completedTab.add(buildCompletedToolbar(), BorderLayout.NORTH);
+		completedTab.add(completedFlipsScrollPane, BorderLayout.CENTER);
+		tabbedPane.addTab("Completed", completedTab);
 		
 		// Add listener to update status when switching tabs
 		tabbedPane.addChangeListener(e ->
@@ -363,10 +448,10 @@ public class FlipFinderPanel extends PluginPanel
 			{
 				// Switched to Active Flips tab, update status
 				int itemCount = currentActiveFlips.size();
-				int invested = currentActiveFlips.stream()
-					.mapToInt(ActiveFlip::getTotalInvested)
+				long invested = currentActiveFlips.stream()
+					.mapToLong(ActiveFlip::getTotalInvested)
 					.sum();
-				statusLabel.setText(String.format("%d active %s | %s invested",
+				setStatus(String.format("%d active %s | %s invested",
 					itemCount,
 					itemCount == 1 ? "flip" : "flips",
 					formatGP(invested)));
@@ -375,10 +460,10 @@ public class FlipFinderPanel extends PluginPanel
 			{
 				// Switched to Completed Flips tab, update status
 				int flipCount = currentCompletedFlips.size();
-				int totalProfit = currentCompletedFlips.stream()
-					.mapToInt(CompletedFlip::getNetProfit)
+				long totalProfit = currentCompletedFlips.stream()
+					.mapToLong(CompletedFlip::getNetProfit)
 					.sum();
-				statusLabel.setText(String.format("%d completed | %s profit",
+				setStatus(String.format("%d completed | %s profit",
 					flipCount,
 					formatGP(totalProfit)));
 			}
@@ -386,6 +471,7 @@ public class FlipFinderPanel extends PluginPanel
 			{
 				// Switched back to Recommended tab, restore original status
 				FlipFinderResponse response = new FlipFinderResponse();
+				response.setCashStack(lastCashStack);
 				response.setRecommendations(currentRecommendations);
 				updateStatusLabel(response);
 			}
@@ -410,9 +496,7 @@ public class FlipFinderPanel extends PluginPanel
 			emailField.setText(email);
 			
 			// Try to authenticate in background
-			java.util.concurrent.CompletableFuture.runAsync(() -> {
-				FlipSmartApiClient.AuthResult result = apiClient.login(email, password);
-				
+			apiClient.loginAsync(email, password).thenAccept(result -> {
 				SwingUtilities.invokeLater(() -> {
 					if (result.success)
 					{
@@ -446,9 +530,7 @@ public class FlipFinderPanel extends PluginPanel
 		setLoginButtonsEnabled(false);
 		showLoginStatus("Logging in...", true);
 		
-		java.util.concurrent.CompletableFuture.runAsync(() -> {
-			FlipSmartApiClient.AuthResult result = apiClient.login(email, password);
-			
+		apiClient.loginAsync(email, password).thenAccept(result -> {
 			SwingUtilities.invokeLater(() -> {
 				setLoginButtonsEnabled(true);
 				
@@ -459,9 +541,7 @@ public class FlipFinderPanel extends PluginPanel
 					
 					showLoginStatus(result.message, true);
 					// Small delay to show success message
-					Timer timer = new Timer(500, e -> showMainPanel());
-					timer.setRepeats(false);
-					timer.start();
+					showMainPanelAfterDelay();
 				}
 				else
 				{
@@ -488,9 +568,7 @@ public class FlipFinderPanel extends PluginPanel
 		setLoginButtonsEnabled(false);
 		showLoginStatus("Creating account...", true);
 		
-		java.util.concurrent.CompletableFuture.runAsync(() -> {
-			FlipSmartApiClient.AuthResult result = apiClient.signup(email, password);
-			
+		apiClient.signupAsync(email, password).thenAccept(result -> {
 			SwingUtilities.invokeLater(() -> {
 				setLoginButtonsEnabled(true);
 				
@@ -501,9 +579,7 @@ public class FlipFinderPanel extends PluginPanel
 					
 					showLoginStatus(result.message, true);
 					// Small delay to show success message
-					Timer timer = new Timer(500, e -> showMainPanel());
-					timer.setRepeats(false);
-					timer.start();
+					showMainPanelAfterDelay();
 				}
 				else
 				{
@@ -513,6 +589,16 @@ public class FlipFinderPanel extends PluginPanel
 		});
 	}
 
+	/**
+	 * Switch to the main panel once the login success message has been seen
+	 */
+	private void showMainPanelAfterDelay()
+	{
+		plugin.getScheduler().schedule("show-main-panel",
+			() -> SwingUtilities.invokeLater(this::showMainPanel),
+			LOGIN_SUCCESS_DELAY_MS, java.util.concurrent.TimeUnit.MILLISECONDS);
+	}
+
 	/**
 	 * Save credentials for next session
 	 */
@@ -595,14 +681,33 @@ public class FlipFinderPanel extends PluginPanel
 		flipStyleDropdown.setBackground(ColorScheme.DARKER_GRAY_COLOR);
 		flipStyleDropdown.setForeground(Color.WHITE);
 		flipStyleDropdown.addActionListener(e -> {
-			// Refresh recommendations when flip style changes
+			// Candidates fetched for another style were filtered by that style, so fetch a pool for this one
 			if (isAuthenticated)
 			{
-				refresh();
+				if (!ranker.hasCandidates())
+				{
+					refresh();
+				}
+				else if (flipStyleDropdown.getSelectedItem() != candidateStyle)
+				{
+					refreshRecommendations();
+				}
+				else
+				{
+					rerankRecommendations();
+				}
 			}
 		});
 	}
 
+	/**
+	 * Budget per GE slot from the last recommendations, or null before any have loaded
+	 */
+	Double getLastPerSlotBudget()
+	{
+		return lastPerSlotBudget;
+	}
+
 	/**
 	 * Refresh flip recommendations, active flips, and completed flips
 	 */
@@ -616,9 +721,9 @@ public class FlipFinderPanel extends PluginPanel
 	/**
 	 * Refresh recommended flips
 	 */
-	private void refreshRecommendations()
+	void refreshRecommendations()
 	{
-		statusLabel.setText("Loading recommendations...");
+		setStatus("Loading recommendations...");
 		refreshButton.setEnabled(false);
 		recommendedListContainer.removeAll();
 		recommendedListContainer.revalidate();
@@ -628,11 +733,18 @@ public class FlipFinderPanel extends PluginPanel
 		Integer cashStack = getCashStack();
 		// Use the selected flip style from dropdown instead of config
 		FlipSmartConfig.FlipStyle selectedStyle = (FlipSmartConfig.FlipStyle) flipStyleDropdown.getSelectedItem();
-		String flipStyle = selectedStyle != null ? selectedStyle.getApiValue() : config.flipStyle().getApiValue();
-		int limit = Math.max(1, Math.min(50, config.flipFinderLimit()));
+		FlipSmartConfig.FlipStyle requestStyle = selectedStyle != null ? selectedStyle : config.flipStyle();
+		String flipStyle = requestStyle.getApiValue();
 
-		apiClient.getFlipRecommendationsAsync(cashStack, flipStyle, limit).thenAccept(response ->
+		apiClient.getFlipRecommendationsAsync(cashStack, flipStyle, CANDIDATE_POOL_SIZE).thenAccept(response ->
 		{
+			// Keep the prices for backtesting, and check them against the price alerts
+			if (response != null && response.getRecommendations() != null)
+			{
+				plugin.getPriceHistoryStore().recordAll(response.getRecommendations());
+				plugin.getPriceAlertEngine().onRecommendations(response.getRecommendations());
+			}
+
 			SwingUtilities.invokeLater(() ->
 			{
 				refreshButton.setEnabled(true);
@@ -649,20 +761,30 @@ public class FlipFinderPanel extends PluginPanel
 					return;
 				}
 
-				currentRecommendations.clear();
-				currentRecommendations.addAll(response.getRecommendations());
-
-				// Store recommended sell prices in the plugin for transaction tracking
-				for (FlipRecommendation rec : response.getRecommendations())
+				// Don't recommend more than what is left of each item's buy limit, or items with none left
+				response.getRecommendations().removeIf(rec -> !capToBuyLimit(rec));
+				if (response.getRecommendations().isEmpty())
 				{
-					plugin.setRecommendedSellPrice(rec.getItemId(), rec.getRecommendedSellPrice());
+					showErrorInRecommended("Every recommended item has hit its buy limit. Try again later.");
+					return;
 				}
 
-				updateStatusLabel(response);
-				populateRecommendations(response.getRecommendations());
+				lastCashStack = response.getCashStack();
+				lastPerSlotBudget = response.getPerSlotBudget();
+				long start = metrics.startTimer();
+				ranker.setCandidates(response.getRecommendations());
+				candidateStyle = requestStyle;
+				rerankRecommendations();
+				recommendationsRenderLatency.recordSince(start);
 			});
 		}).exceptionally(throwable ->
 		{
+			if (isSuperseded(throwable))
+			{
+				// A newer refresh replaced this one and will update the list
+				return null;
+			}
+
 			SwingUtilities.invokeLater(() ->
 			{
 				refreshButton.setEnabled(true);
@@ -672,10 +794,106 @@ public class FlipFinderPanel extends PluginPanel
 		});
 	}
 
+	/**
+	 * Show a status message, noting any API endpoints that are failing and being
+	 * answered from cached data
+	 */
+	private void setStatus(String text)
+	{
+		List<String> degraded = apiClient.getDegradedEndpoints();
+		if (degraded.isEmpty())
+		{
+			statusLabel.setText(text);
+			statusLabel.setForeground(Color.LIGHT_GRAY);
+			statusLabel.setToolTipText(null);
+			return;
+		}
+
+		statusLabel.setText(text + " | API degraded");
+		statusLabel.setForeground(new Color(255, 200, 100));
+		statusLabel.setToolTipText("Not reachable, showing cached data: " + String.join(", ", degraded));
+	}
+
+	/**
+	 * Check if a request failed only because a newer request of the same kind replaced it
+	 */
+	private static boolean isSuperseded(Throwable throwable)
+	{
+		return throwable instanceof java.util.concurrent.CancellationException
+			|| throwable.getCause() instanceof java.util.concurrent.CancellationException;
+	}
+
+	/**
+	 * Rank the fetched candidates for the selected flip style and minimum profit,
+	 * without fetching from the API again
+	 */
+	public void rerankRecommendations()
+	{
+		if (!ranker.hasCandidates())
+		{
+			return;
+		}
+
+		FlipSmartConfig.FlipStyle selectedStyle = (FlipSmartConfig.FlipStyle) flipStyleDropdown.getSelectedItem();
+		int limit = Math.max(1, Math.min(50, config.flipFinderLimit()));
+		List<FlipRecommendation> ranked = ranker.rank(
+			RecommendationRanker.forStyle(selectedStyle), config.minimumProfit(), limit);
+
+		currentRecommendations.clear();
+		currentRecommendations.addAll(ranked);
+
+		if (ranked.isEmpty())
+		{
+			showErrorInRecommended("No flip recommendations found matching your criteria.");
+			return;
+		}
+
+		// Store recommendations in the plugin for transaction tracking
+		for (FlipRecommendation rec : ranked)
+		{
+			plugin.recordRecommendation(rec, selectedStyle);
+		}
+
+		FlipFinderResponse response = new FlipFinderResponse();
+		response.setCashStack(lastCashStack);
+		response.setRecommendations(ranked);
+		updateStatusLabel(response);
+		populateRecommendations(ranked);
+	}
+
+	/**
+	 * Reduce a recommendation's quantity to what can still be bought under the
+	 * item's buy limit, scaling the cost and profit to match
+	 *
+	 * @return False if none of the item's buy limit is left
+	 */
+	private boolean capToBuyLimit(FlipRecommendation rec)
+	{
+		Integer remaining = plugin.getBuyLimitTracker().getRemaining(rec.getItemId(), rec.getBuyLimit());
+		if (remaining == null)
+		{
+			return true;
+		}
+		if (remaining <= 0)
+		{
+			return false;
+		}
+		if (rec.getRecommendedQuantity() <= remaining)
+		{
+			return true;
+		}
+
+		rec.setRecommendedQuantity(remaining);
+		rec.setTotalCost((long) rec.getRecommendedBuyPrice() * remaining);
+		rec.setPotentialProfit(GePricing.profit(rec.getItemId(), rec.getRecommendedBuyPrice(),
+			rec.getRecommendedSellPrice(), remaining));
+		return true;
+	}
+
 	/**
 	 * Refresh active flips
 	 */
-	private void refreshActiveFlips()
+	void refreshActiveFlips()
 	{
 		activeFlipsListContainer.removeAll();
 		activeFlipsListContainer.revalidate();
@@ -713,16 +931,23 @@ public class FlipFinderPanel extends PluginPanel
 				}
 				else if (!pendingOrders.isEmpty())
 				{
-					statusLabel.setText(String.format("%d pending %s",
+					setStatus(String.format("%d pending %s",
 						pendingOrders.size(),
 						pendingOrders.size() == 1 ? "order" : "orders"));
 				}
 
 				// Display both active flips and pending orders
+				long start = metrics.startTimer();
 				displayActiveFlipsAndPending(currentActiveFlips, pendingOrders);
+				activeFlipsRenderLatency.recordSince(start);
 			});
 		}).exceptionally(throwable ->
 		{
+			if (isSuperseded(throwable))
+			{
+				return null;
+			}
+
 			SwingUtilities.invokeLater(() ->
 			{
 				showErrorInActiveFlips("Error: " + throwable.getMessage());
@@ -746,7 +971,7 @@ public class FlipFinderPanel extends PluginPanel
 	/**
 	 * Refresh completed flips
 	 */
-	private void refreshCompletedFlips()
+	void refreshCompletedFlips()
 	{
 		completedFlipsListContainer.removeAll();
 		completedFlipsListContainer.revalidate();
@@ -755,6 +980,12 @@ public class FlipFinderPanel extends PluginPanel
 		// Fetch last 50 completed flips
 		apiClient.getCompletedFlipsAsync(50).thenAccept(response ->
 		{
+			// Keep every flip locally so the whole history can be searched
+			if (response != null && response.getFlips() != null)
+			{
+				plugin.getCompletedFlipStore().addAll(response.getFlips());
+			}
+
 			SwingUtilities.invokeLater(() ->
 			{
 				if (response == null)
@@ -769,6 +1000,12 @@ public class FlipFinderPanel extends PluginPanel
 					currentCompletedFlips.addAll(response.getFlips());
 				}
 
+				if (isSearchingCompletedFlips())
+				{
+					searchCompletedFlips();
+					return;
+				}
+
 				if (currentCompletedFlips.isEmpty())
 				{
 					showNoCompletedFlips();
@@ -778,18 +1015,25 @@ public class FlipFinderPanel extends PluginPanel
 				// Update status if on completed flips tab
 				if (tabbedPane.getSelectedIndex() == 2)
 				{
-					int totalProfit = currentCompletedFlips.stream()
-						.mapToInt(CompletedFlip::getNetProfit)
+					long totalProfit = currentCompletedFlips.stream()
+						.mapToLong(CompletedFlip::getNetProfit)
 						.sum();
-					statusLabel.setText(String.format("%d completed | %s profit",
+					setStatus(String.format("%d completed | %s profit",
 						currentCompletedFlips.size(),
 						formatGP(totalProfit)));
 				}
 
-				populateCompletedFlips(currentCompletedFlips);
+				long start = metrics.startTimer();
+				populateCompletedFlips(currentCompletedFlips, null);
+				completedFlipsRenderLatency.recordSince(start);
 			});
 		}).exceptionally(throwable ->
 		{
+			if (isSuperseded(throwable))
+			{
+				return null;
+			}
+
 			SwingUtilities.invokeLater(() ->
 			{
 				showErrorInCompletedFlips("Error: " + throwable.getMessage());
@@ -843,7 +1087,7 @@ public class FlipFinderPanel extends PluginPanel
 
 		completedFlipsListContainer.add(emptyPanel);
 
-		statusLabel.setText("0 completed flips");
+		setStatus("0 completed flips");
 
 		completedFlipsListContainer.revalidate();
 		completedFlipsListContainer.repaint();
@@ -851,17 +1095,55 @@ public class FlipFinderPanel extends PluginPanel
 
 	/**
 	 * Populate the completed flips list
+	 *
+	 * @param moreButton Button to show below the flips for loading more, or null
 	 */
-	private void populateCompletedFlips(java.util.List<CompletedFlip> flips)
+	private void populateCompletedFlips(java.util.List<CompletedFlip> flips, JButton moreButton)
 	{
-		completedFlipsListContainer.removeAll();
+		// How recommended flips have turned out, per style
+		performancePanel = createRecommendationPerformancePanel();
+		completedMoreButton = moreButton;
+		updateProfitPanel();
 
+		completedRows.clear();
 		for (CompletedFlip flip : flips)
 		{
-			completedFlipsListContainer.add(createCompletedFlipPanel(flip));
+			completedRows.add(createCompletedFlipPanel(flip));
+		}
+		completedView.setItems(flips);
+		showCompletedRows();
+	}
+
+	/**
+	 * Lay out the built completed flip rows in the view's order
+	 */
+	private void showCompletedRows()
+	{
+		completedFlipsListContainer.removeAll();
+
+		if (plugin.getCompletedFlipStore().size() > 0)
+		{
+			completedFlipsListContainer.add(profitPanel);
+			completedFlipsListContainer.add(Box.createRigidArea(new Dimension(0, 5)));
+		}
+
+		if (performancePanel != null)
+		{
+			completedFlipsListContainer.add(performancePanel);
+			completedFlipsListContainer.add(Box.createRigidArea(new Dimension(0, 5)));
+		}
+
+		for (int i = 0; i < completedView.size(); i++)
+		{
+			completedFlipsListContainer.add(completedRows.get(completedView.get(i)));
 			completedFlipsListContainer.add(Box.createRigidArea(new Dimension(0, 5)));
 		}
 
+		if (completedMoreButton != null)
+		{
+			completedFlipsListContainer.add(completedMoreButton);
+		}
+
 		completedFlipsListContainer.revalidate();
 		completedFlipsListContainer.repaint();
 	}
@@ -872,6 +1154,14 @@ public class FlipFinderPanel extends PluginPanel
 	private void displayActiveFlipsAndPending(java.util.List<ActiveFlip> activeFlips, java.util.List<FlipSmartPlugin.PendingOrder> pendingOrders)
 	{
 		activeFlipsListContainer.removeAll();
+
+		// When flipping on several accounts, show how they're doing together
+		JPanel accountsPanel = createAccountsSummaryPanel();
+		if (accountsPanel != null)
+		{
+			activeFlipsListContainer.add(accountsPanel);
+			activeFlipsListContainer.add(Box.createRigidArea(new Dimension(0, 5)));
+		}
 		
 		// First show pending orders (orders not yet filled)
 		if (!pendingOrders.isEmpty())
@@ -900,11 +1190,11 @@ public class FlipFinderPanel extends PluginPanel
 	private void updateActiveFlipsStatus(ActiveFlipsResponse response)
 	{
 		int itemCount = response.getTotalItems();
-		int invested = response.getTotalInvested();
+		long invested = response.getTotalInvested();
 		
 		if (tabbedPane.getSelectedIndex() == 1) // Active Flips tab
 		{
-			statusLabel.setText(String.format("%d active %s | %s invested",
+			setStatus(String.format("%d active %s | %s invested",
 				itemCount,
 				itemCount == 1 ? "flip" : "flips",
 				formatGP(invested)));
@@ -928,19 +1218,20 @@ public class FlipFinderPanel extends PluginPanel
 	 */
 	private void updateStatusLabel(FlipFinderResponse response)
 	{
-		String flipStyleText = config.flipStyle().toString();
+		FlipSmartConfig.FlipStyle selectedStyle = (FlipSmartConfig.FlipStyle) flipStyleDropdown.getSelectedItem();
+		String flipStyleText = (selectedStyle != null ? selectedStyle : config.flipStyle()).toString();
 		int count = response.getRecommendations().size();
 		
 		if (response.getCashStack() != null)
 		{
-			statusLabel.setText(String.format("%s | %d flips | Cash: %s",
+			setStatus(String.format("%s | %d flips | Cash: %s",
 				flipStyleText,
 				count,
 				formatGP(response.getCashStack())));
 		}
 		else
 		{
-			statusLabel.setText(String.format("%s | %d flips", flipStyleText, count));
+			setStatus(String.format("%s | %d flips", flipStyleText, count));
 		}
 	}
 
@@ -949,7 +1240,7 @@ public class FlipFinderPanel extends PluginPanel
 	 */
 	private void showErrorInRecommended(String message)
 	{
-		statusLabel.setText("Error");
+		setStatus("Error");
 		recommendedListContainer.removeAll();
 
 		PluginErrorPanel errorPanel = new PluginErrorPanel();
@@ -1008,7 +1299,7 @@ public class FlipFinderPanel extends PluginPanel
 		activeFlipsListContainer.add(emptyPanel);
 
 		// Update status label
-		statusLabel.setText("0 active flips");
+		setStatus("0 active flips");
 
 		activeFlipsListContainer.revalidate();
 		activeFlipsListContainer.repaint();
@@ -1019,18 +1310,296 @@ public class FlipFinderPanel extends PluginPanel
 	 */
 	private void populateRecommendations(List<FlipRecommendation> recommendations)
 	{
-		recommendedListContainer.removeAll();
+		// Suggest how to fill the free GE slots before listing every item
+		slotPlanPanel = createSlotPlanPanel(recommendations);
 
+		recommendationRows.clear();
 		for (FlipRecommendation rec : recommendations)
 		{
-			recommendedListContainer.add(createRecommendationPanel(rec));
+			recommendationRows.add(createRecommendationPanel(rec));
+		}
+		recommendationView.setItems(recommendations);
+		showRecommendationRows();
+	}
+
+	/**
+	 * Lay out the built recommendation rows in the view's order
+	 */
+	private void showRecommendationRows()
+	{
+		recommendedListContainer.removeAll();
+
+		if (slotPlanPanel != null)
+		{
+			recommendedListContainer.add(slotPlanPanel);
+			recommendedListContainer.add(Box.createRigidArea(new Dimension(0, 5)));
+		}
+
+		for (int i = 0; i < recommendationView.size(); i++)
+		{
+			recommendedListContainer.add(recommendationRows.get(recommendationView.get(i)));
 			recommendedListContainer.add(Box.createRigidArea(new Dimension(0, 5)));
 		}
 
+		if (recommendationView.size() == 0 && !recommendationRows.isEmpty())
+		{
+			JLabel noMatchLabel = new JLabel("No recommendations match the filter");
+			noMatchLabel.setForeground(Color.GRAY);
+			noMatchLabel.setFont(new Font("Arial", Font.PLAIN, 11));
+			noMatchLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+			recommendedListContainer.add(noMatchLabel);
+		}
+
 		recommendedListContainer.revalidate();
 		recommendedListContainer.repaint();
 	}
 
+	/**
+	 * Create a panel showing which recommendations to put in the free GE slots.
+	 * Returns null if there is nothing to suggest.
+	 */
+	private JPanel createSlotPlanPanel(List<FlipRecommendation> recommendations)
+	{
+		Integer cashStack = getCashStack();
+		int freeSlots = plugin.getFreeGeSlots();
+		if (cashStack == null || freeSlots == 0)
+		{
+			return null;
+		}
+
+		List<SlotAllocationOptimizer.Allocation> allocations = SlotAllocationOptimizer.optimize(
+			recommendations, cashStack, freeSlots, plugin.getBuyLimitTracker());
+		if (allocations.isEmpty())
+		{
+			return null;
+		}
+
+		JPanel panel = new JPanel();
+		panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
+		panel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+		panel.setBorder(new EmptyBorder(8, 10, 8, 10));
+
+		JLabel titleLabel = new JLabel(String.format("Suggested slots (%d free)", freeSlots));
+		titleLabel.setForeground(Color.WHITE);
+		titleLabel.setFont(new Font("Arial", Font.BOLD, 12));
+		panel.add(titleLabel);
+
+		for (SlotAllocationOptimizer.Allocation allocation : allocations)
+		{
+			JLabel allocationLabel = new JLabel(String.format("%s x%d | ~%s/hr",
+				allocation.recommendation.getItemName(),
+				allocation.quantity,
+				formatGP(Math.round(allocation.profitPerHour))));
+			allocationLabel.setForeground(new Color(255, 215, 0));
+			allocationLabel.setFont(new Font("Arial", Font.PLAIN, 11));
+			allocationLabel.setToolTipText(String.format("Buy %,d @ %s (cost %s)",
+				allocation.quantity,
+				formatGPExact(allocation.recommendation.getRecommendedBuyPrice()),
+				formatGP(allocation.cost)));
+
+			panel.add(Box.createRigidArea(new Dimension(0, 2)));
+			panel.add(allocationLabel);
+		}
+
+		return panel;
+	}
+
+	/**
+	 * Create a panel totalling invested coins, open slots and profit across every
+	 * account flipped on. Returns null if only one account has been seen.
+	 */
+	private JPanel createAccountsSummaryPanel()
+	{
+		AccountManager accountManager = plugin.getAccountManager();
+		java.util.List<AccountState> accounts = accountManager.getAccounts();
+		if (accounts.size() < 2)
+		{
+			return null;
+		}
+
+		AccountManager.Totals totals = accountManager.getTotals();
+
+		JPanel panel = new JPanel();
+		panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
+		panel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+		panel.setBorder(new EmptyBorder(8, 10, 8, 10));
+
+		JLabel titleLabel = new JLabel(String.format("All accounts (%d)", totals.accounts));
+		titleLabel.setForeground(Color.WHITE);
+		titleLabel.setFont(new Font("Arial", Font.BOLD, 12));
+		panel.add(titleLabel);
+
+		JLabel investedLabel = new JLabel(String.format("Invested: %s | In offers: %s",
+			formatGP(totals.invested), formatGP(totals.pendingBuyValue)));
+		investedLabel.setForeground(Color.LIGHT_GRAY);
+		investedLabel.setFont(new Font("Arial", Font.PLAIN, 11));
+		panel.add(Box.createRigidArea(new Dimension(0, 2)));
+		panel.add(investedLabel);
+
+		JLabel slotsLabel = new JLabel(String.format("Open slots: %d | Profit: %s",
+			totals.freeSlots, formatGP(totals.realisedProfit)));
+		slotsLabel.setForeground(totals.realisedProfit >= 0 ? new Color(100, 255, 100) : new Color(255, 100, 100));
+		slotsLabel.setFont(new Font("Arial", Font.PLAIN, 11));
+		panel.add(Box.createRigidArea(new Dimension(0, 2)));
+		panel.add(slotsLabel);
+
+		// Per-account breakdown on hover
+		StringBuilder tooltip = new StringBuilder("<html>");
+		for (AccountState account : accounts)
+		{
+			tooltip.append(String.format("%s: %s invested, %d open, %s profit<br>",
+				account.getRsn().isEmpty() ? "Not logged in" : account.getRsn(),
+				formatGP(account.getInvested()),
+				account.getFreeSlots(),
+				formatGP(account.getRealisedProfit())));
+		}
+		panel.setToolTipText(tooltip.append("</html>").toString());
+
+		return panel;
+	}
+
+	/**
+	 * Create the profit over time chart with its resolution dropdown and item breakdown
+	 */
+	private JPanel createProfitPanel()
+	{
+		JPanel panel = new JPanel();
+		panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
+		panel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+		panel.setBorder(new EmptyBorder(8, 10, 8, 10));
+
+		JLabel titleLabel = new JLabel("Profit over time");
+		titleLabel.setForeground(Color.WHITE);
+		titleLabel.setFont(new Font("Arial", Font.BOLD, 12));
+
+		JComboBox<ProfitTimeline.Resolution> resolutionDropdown = new JComboBox<>(ProfitTimeline.Resolution.values());
+		resolutionDropdown.setSelectedItem(profitResolution);
+		resolutionDropdown.setFocusable(false);
+		resolutionDropdown.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+		resolutionDropdown.setForeground(Color.WHITE);
+		resolutionDropdown.setFont(new Font("Arial", Font.PLAIN, 11));
+		resolutionDropdown.addActionListener(e ->
+		{
+			profitResolution = (ProfitTimeline.Resolution) resolutionDropdown.getSelectedItem();
+			profitChart.setSeries(plugin.getCompletedFlipStore().getProfitSeries(profitResolution));
+		});
+
+		JPanel headerRow = new JPanel(new BorderLayout());
+		headerRow.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+		headerRow.setAlignmentX(Component.LEFT_ALIGNMENT);
+		headerRow.add(titleLabel, BorderLayout.WEST);
+		headerRow.add(resolutionDropdown, BorderLayout.EAST);
+		panel.add(headerRow);
+		panel.add(Box.createRigidArea(new Dimension(0, 5)));
+
+		profitChart = new ProfitChart(metrics);
+		profitChart.setAlignmentX(Component.LEFT_ALIGNMENT);
+		panel.add(profitChart);
+		panel.add(Box.createRigidArea(new Dimension(0, 5)));
+
+		itemBreakdownPanel = new JPanel();
+		itemBreakdownPanel.setLayout(new BoxLayout(itemBreakdownPanel, BoxLayout.Y_AXIS));
+		itemBreakdownPanel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+		itemBreakdownPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+		panel.add(itemBreakdownPanel);
+
+		return panel;
+	}
+
+	/**
+	 * Refresh the profit chart and item breakdown from the stored history
+	 */
+	private void updateProfitPanel()
+	{
+		if (profitPanel == null)
+		{
+			profitPanel = createProfitPanel();
+		}
+
+		CompletedFlipStore store = plugin.getCompletedFlipStore();
+		profitChart.setSeries(store.getProfitSeries(profitResolution));
+
+		itemBreakdownPanel.removeAll();
+		for (ProfitTimeline.ItemProfit item : store.getItemBreakdown(ITEM_BREAKDOWN_SIZE))
+		{
+			String name = store.getItemName(item.itemId);
+			JLabel nameLabel = new JLabel(name != null ? name : "Item " + item.itemId);
+			nameLabel.setForeground(Color.LIGHT_GRAY);
+			nameLabel.setFont(new Font("Arial", Font.PLAIN, 11));
+
+			JLabel profitLabel = new JLabel((item.profit < 0 ? "-" : "") + formatGP(Math.abs(item.profit)));
+			profitLabel.setForeground(item.profit >= 0 ? new Color(100, 255, 100) : new Color(255, 100, 100));
+			profitLabel.setFont(new Font("Arial", Font.PLAIN, 11));
+
+			JPanel row = new JPanel(new BorderLayout());
+			row.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+			row.setToolTipText(String.format("%d flips", item.flips));
+			row.add(nameLabel, BorderLayout.CENTER);
+			row.add(profitLabel, BorderLayout.EAST);
+			itemBreakdownPanel.add(row);
+		}
+	}
+
+	/**
+	 * Create a panel comparing realised to predicted margins of recommended flips,
+	 * one line per flip style. Returns null until a recommendation has been bought.
+	 */
+	private JPanel createRecommendationPerformancePanel()
+	{
+		RecommendationAnalytics analytics = plugin.getRecommendationAnalytics();
+
+		JPanel panel = new JPanel();
+		panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
+		panel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+		panel.setBorder(new EmptyBorder(8, 10, 8, 10));
+
+		JLabel titleLabel = new JLabel("Recommendation performance");
+		titleLabel.setForeground(Color.WHITE);
+		titleLabel.setFont(new Font("Arial", Font.BOLD, 12));
+		panel.add(titleLabel);
+
+		boolean any = false;
+		for (FlipSmartConfig.FlipStyle style : FlipSmartConfig.FlipStyle.values())
+		{
+			RecommendationAnalytics.StyleStats stats = analytics.getStats(style);
+			if (stats.getBuys() == 0)
+			{
+				continue;
+			}
+			any = true;
+
+			double hitRate = stats.getHitRate();
+			JLabel styleLabel = new JLabel(String.format("%s: %d bought, %d sold, %s hit",
+				style, stats.getBuys(), stats.getFlips(),
+				hitRate >= 0 ? String.format("%.0f%%", hitRate * 100) : "-"));
+			styleLabel.setForeground(Color.LIGHT_GRAY);
+			styleLabel.setFont(new Font("Arial", Font.PLAIN, 11));
+			styleLabel.setToolTipText(String.format("<html>Average wait for the buy to fill: %s<br>"
+					+ "Average time from buy to sold: %s<br>Profit: %s (predicted %s)</html>",
+				formatMinutes(stats.getAverageFillTimeMs()),
+				formatMinutes(stats.getAverageHoldTimeMs()),
+				formatGP(stats.getRealisedProfit()),
+				formatGP(stats.getPredictedProfit())));
+			panel.add(Box.createRigidArea(new Dimension(0, 2)));
+			panel.add(styleLabel);
+
+			JLabel marginLabel = new JLabel(String.format("  Margin: %s actual vs %s predicted",
+				formatGPExact(stats.getRealisedMargin()), formatGPExact(stats.getPredictedMargin())));
+			marginLabel.setForeground(stats.getRealisedMargin() >= stats.getPredictedMargin()
+				? new Color(100, 255, 100) : new Color(255, 180, 100));
+			marginLabel.setFont(new Font("Arial", Font.PLAIN, 11));
+			panel.add(marginLabel);
+		}
+
+		return any ? panel : null;
+	}
+
+	private static String formatMinutes(long millis)
+	{
+		long minutes = millis / 60_000;
+		return minutes >= 60 ? String.format("%dh %dm", minutes / 60, minutes % 60) : String.format("%dm", minutes);
+	}
+
 	/**
 	 * Populate the active flips list
 	 */
@@ -1113,10 +1682,17 @@ public class FlipFinderPanel extends PluginPanel
 		priceLabel.setForeground(Color.LIGHT_GRAY);
 		priceLabel.setFont(new Font("Arial", Font.PLAIN, 12));
 
-		// Quantity
-		JLabel quantityLabel = new JLabel(String.format("Qty: %d (Limit: %d)",
-			rec.getRecommendedQuantity(),
-			rec.getBuyLimit()));
+		// Quantity, with how much of the buy limit is left if some has been used
+		int limitUsed = plugin.getBuyLimitTracker().getUsed(rec.getItemId());
+		String quantityText = limitUsed > 0 && rec.getBuyLimit() != null
+			? String.format("Qty: %d (Limit: %d, %d left)",
+				rec.getRecommendedQuantity(),
+				rec.getBuyLimit(),
+				Math.max(0, rec.getBuyLimit() - limitUsed))
+			: String.format("Qty: %d (Limit: %d)",
+				rec.getRecommendedQuantity(),
+				rec.getBuyLimit());
+		JLabel quantityLabel = new JLabel(quantityText);
 		quantityLabel.setForeground(new Color(200, 200, 255));
 		quantityLabel.setFont(new Font("Arial", Font.PLAIN, 12));
 
@@ -1178,6 +1754,16 @@ public class FlipFinderPanel extends PluginPanel
 					extraDetails.add(Box.createRigidArea(new Dimension(0, 2)));
 					extraDetails.add(riskLabel);
 
+					// Recent prices, drawn once per new snapshot rather than on every paint
+					BufferedImage sparkline = sparklines.get(rec.getItemId());
+					if (sparkline != null)
+					{
+						JLabel sparklineLabel = new JLabel(new ImageIcon(sparkline));
+						sparklineLabel.setToolTipText("Instant buy (green) and sell (orange) prices over the last 6 hours");
+						extraDetails.add(Box.createRigidArea(new Dimension(0, 4)));
+						extraDetails.add(sparklineLabel);
+					}
+
 					panel.add(extraDetails, BorderLayout.SOUTH);
 					expanded = true;
 				}
@@ -1260,7 +1846,7 @@ public class FlipFinderPanel extends PluginPanel
 	/**
 	 * Format GP amount for display
 	 */
-	private String formatGP(int amount)
+	private String formatGP(long amount)
 	{
 		if (amount >= 1_000_000)
 		{
@@ -1276,7 +1862,7 @@ public class FlipFinderPanel extends PluginPanel
 	/**
 	 * Format GP amount with commas for exact input (e.g., "1,234,567")
 	 */
-	private String formatGPExact(int amount)
+	private String formatGPExact(long amount)
 	{
 		return String.format("%,d", amount);
 	}
@@ -1343,6 +1929,18 @@ public class FlipFinderPanel extends PluginPanel
 		namePanel.add(nameLabel);
 		topPanel.add(namePanel, BorderLayout.WEST);
 
+		// When a sell offer for the item is filling, estimate when it will be done
+		long sellEta = plugin.getAccountManager().getCurrent().getFillRates()
+			.getEtaMillisForItem(flip.getItemId(), false, System.currentTimeMillis());
+		if (sellEta > 0)
+		{
+			JLabel etaLabel = new JLabel("Sold " + FillRateEstimator.formatEta(sellEta));
+			etaLabel.setForeground(new Color(180, 180, 180));
+			etaLabel.setFont(new Font("Arial", Font.PLAIN, 11));
+			etaLabel.setToolTipText("Estimated from how fast the sell offer has been filling");
+			topPanel.add(etaLabel, BorderLayout.EAST);
+		}
+
 		// Details section with market data
 		JPanel detailsPanel = new JPanel(new GridLayout(3, 2, 5, 2));
 		detailsPanel.setBackground(ColorScheme.DARKER_GRAY_COLOR);
@@ -1395,15 +1993,12 @@ public class FlipFinderPanel extends PluginPanel
 			// Update sell price
 			sellPriceLabel.setText(String.format("Sell: %s", formatGPExact(recommendedSellPrice)));
 
-			// Calculate GE tax (2% capped at 5M)
-			int geTax = Math.min((int)(recommendedSellPrice * 0.02), 5_000_000);
-			
-			// Calculate potential profit (per item)
-			int profitPerItem = recommendedSellPrice - flip.getAverageBuyPrice() - geTax;
-			int totalProfit = profitPerItem * flip.getTotalQuantity();
+			// Calculate potential profit after GE tax
+			long totalProfit = GePricing.profit(flip.getItemId(), flip.getAverageBuyPrice(),
+				recommendedSellPrice, flip.getTotalQuantity());
 
 			// Calculate ROI
-			double roi = (profitPerItem * 100.0) / flip.getAverageBuyPrice();
+			double roi = GePricing.roiPercent(flip.getItemId(), flip.getAverageBuyPrice(), recommendedSellPrice);
 
 			// Update profit label with color
 			String profitText = Math.abs(totalProfit) >= 100_000 
@@ -1429,19 +2024,18 @@ public class FlipFinderPanel extends PluginPanel
 					{
 						FlipAnalysis.CurrentPrices prices = analysis.getCurrentPrices();
 						Integer currentSellPrice = prices.getHigh();
-						Integer geTax = prices.getGeTax();
 
-						if (currentSellPrice != null && geTax != null)
+						if (currentSellPrice != null)
 						{
 							// Update sell price with exact number for easy GE input
 							sellPriceLabel.setText(String.format("Sell: %s*", formatGPExact(currentSellPrice)));
 
-							// Calculate potential profit (per item)
-							int profitPerItem = currentSellPrice - flip.getAverageBuyPrice() - geTax;
-							int totalProfit = profitPerItem * flip.getTotalQuantity();
+							// Calculate potential profit after GE tax
+							long totalProfit = GePricing.profit(flip.getItemId(), flip.getAverageBuyPrice(),
+								currentSellPrice, flip.getTotalQuantity());
 
 							// Calculate ROI
-							double roi = (profitPerItem * 100.0) / flip.getAverageBuyPrice();
+							double roi = GePricing.roiPercent(flip.getItemId(), flip.getAverageBuyPrice(), currentSellPrice);
 
 							// Update profit label with color
 							String profitText = Math.abs(totalProfit) >= 100_000 
@@ -1583,7 +2177,7 @@ public class FlipFinderPanel extends PluginPanel
 		offerLabel.setFont(new Font("Arial", Font.PLAIN, 11));
 
 		// Row 2: Invested (potential) and Target Sell
-		int potentialInvestment = pending.quantity * pending.pricePerItem;
+		long potentialInvestment = (long) pending.quantity * pending.pricePerItem;
 		JLabel investedLabel = new JLabel(String.format("If filled: %s", formatGP(potentialInvestment)));
 		investedLabel.setForeground(new Color(200, 200, 200));
 		investedLabel.setFont(new Font("Arial", Font.PLAIN, 11));
@@ -1602,16 +2196,21 @@ public class FlipFinderPanel extends PluginPanel
 		sellLabel.setFont(new Font("Arial", Font.PLAIN, 11));
 
 		// Row 3: Status and Expected ROI
-		JLabel statusLabel = new JLabel(String.format("GE Slot %d: Waiting", pending.slot + 1));
+		long eta = plugin.getAccountManager().getCurrent().getFillRates()
+			.getEtaMillis(pending.slot, System.currentTimeMillis());
+		JLabel statusLabel = new JLabel(String.format("GE Slot %d: %s", pending.slot + 1,
+			eta > 0 ? FillRateEstimator.formatEta(eta) : "Waiting"));
+		if (eta > 0)
+		{
+			statusLabel.setToolTipText("Estimated time to fill, from the item's trade volume");
+		}
 		statusLabel.setForeground(new Color(180, 180, 180));
 		statusLabel.setFont(new Font("Arial", Font.PLAIN, 11));
 
 		JLabel roiLabel = new JLabel();
 		if (pending.recommendedSellPrice != null && pending.recommendedSellPrice > 0)
 		{
-			int geTax = Math.min((int)(pending.recommendedSellPrice * 0.02), 5_000_000);
-			int profitPerItem = pending.recommendedSellPrice - pending.pricePerItem - geTax;
-			double roi = (profitPerItem * 100.0) / pending.pricePerItem;
+			double roi = GePricing.roiPercent(pending.itemId, pending.pricePerItem, pending.recommendedSellPrice);
 			roiLabel.setText(String.format("ROI: %.1f%%", roi));
 			roiLabel.setForeground(roi > 0 ? new Color(100, 255, 100) : new Color(255, 100, 100));
 		}
@@ -1786,6 +2385,414 @@ public class FlipFinderPanel extends PluginPanel
 		return panel;
 	}
 	
+	/**
+	 * Build the filter and sort toolbar shown above the recommendations list
+	 */
+	private JPanel buildRecommendedToolbar()
+	{
+		JPanel toolbar = new JPanel(new BorderLayout());
+		toolbar.setBackground(ColorScheme.DARK_GRAY_COLOR);
+		toolbar.setBorder(new EmptyBorder(5, 5, 0, 5));
+
+		int profit = recommendationView.addColumn("profit", FlipRecommendation::getPotentialProfit);
+		recommendationView.addColumn("margin", FlipRecommendation::getMargin);
+		int roi = recommendationView.addColumn("roi", FlipRecommendation::getRoiPercent);
+		int liquidity = recommendationView.addColumn("liquidity", FlipRecommendation::getLiquidityScore);
+		int risk = recommendationView.addColumn("risk", FlipRecommendation::getRiskScore);
+		int volume = recommendationView.addColumn("volume", FlipRecommendation::getVolumePerHour);
+		recommendationView.addColumn("price", FlipRecommendation::getRecommendedBuyPrice);
+		recommendationView.addColumn("limit", rec -> rec.getBuyLimit() != null ? rec.getBuyLimit() : 0);
+		recommendationView.addFlag("members", "f2p", FlipRecommendation::isMembers);
+
+		recommendationFilterField = createListTextField("<html>Filter the recommendations, e.g. members, f2p,<br>"
+			+ "price&lt;=1m, limit&gt;=100, roi&gt;2 or volume&gt;=500</html>");
+		onTextChanged(recommendationFilterField, "recommendation-filter", () ->
+		{
+			boolean valid = recommendationView.setFilter(recommendationFilterField.getText());
+			recommendationFilterField.setForeground(valid ? Color.WHITE : ColorScheme.PROGRESS_ERROR_COLOR);
+			showRecommendationRows();
+		});
+		toolbar.add(recommendationFilterField, BorderLayout.NORTH);
+
+		JComboBox<SortOption> sortDropdown = createSortDropdown(new SortOption[]{
+			new SortOption("Rank", -1, false),
+			new SortOption("Profit", profit, true),
+			new SortOption("ROI", roi, true),
+			new SortOption("Liquidity", liquidity, true),
+			new SortOption("Risk", risk, false),
+			new SortOption("Volume", volume, true)
+		}, recommendationView, this::showRecommendationRows);
+		toolbar.add(createSortRow(sortDropdown), BorderLayout.CENTER);
+
+		return toolbar;
+	}
+
+	/**
+	 * Build the toolbar shown above the completed flips list
+	 */
+	private JPanel buildCompletedToolbar()
+	{
+		JPanel toolbar = new JPanel(new BorderLayout());
+		toolbar.setBackground(ColorScheme.DARK_GRAY_COLOR);
+		toolbar.setBorder(new EmptyBorder(5, 5, 0, 5));
+
+		int profit = completedView.addColumn("profit", CompletedFlip::getNetProfit);
+		int roi = completedView.addColumn("roi", CompletedFlip::getRoiPercent);
+		int duration = completedView.addColumn("duration", CompletedFlip::getFlipDurationSeconds);
+
+		completedSearchField = createListTextField("<html>Search all your flips by item name, and narrow down with<br>"
+			+ "profit&gt;100k, roi&gt;=2, duration&lt;2h or days&lt;=7</html>");
+		onTextChanged(completedSearchField, "completed-search", () ->
+		{
+			completedSearchLimit = SEARCH_PAGE_SIZE;
+			searchCompletedFlips();
+		});
+		toolbar.add(completedSearchField, BorderLayout.NORTH);
+
+		JComboBox<SortOption> sortDropdown = createSortDropdown(new SortOption[]{
+			new SortOption("Recent", -1, false),
+			new SortOption("Profit", profit, true),
+			new SortOption("ROI", roi, true),
+			new SortOption("Duration", duration, false)
+		}, completedView, this::showCompletedRows);
+		toolbar.add(createSortRow(sortDropdown), BorderLayout.CENTER);
+
+		JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 5));
+		buttons.setBackground(ColorScheme.DARK_GRAY_COLOR);
+		toolbar.add(buttons, BorderLayout.SOUTH);
+
+		backtestButton = new JButton("Backtest styles");
+		backtestButton.setFocusable(false);
+		backtestButton.setFont(new Font("Arial", Font.PLAIN, 11));
+		backtestButton.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+		backtestButton.setForeground(Color.LIGHT_GRAY);
+		backtestButton.setBorder(BorderFactory.createEmptyBorder(3, 8, 3, 8));
+		backtestButton.setCursor(new Cursor(Cursor.HAND_CURSOR));
+		backtestButton.setToolTipText("Replay recorded prices and your fills to compare flip styles");
+		backtestButton.addActionListener(e -> runBacktest());
+		buttons.add(backtestButton);
+
+		exportButton = createToolbarButton("Export", "Save your flip history, held items and fills to a file (.csv for spreadsheets)");
+		exportButton.addActionListener(e -> exportHistory());
+		buttons.add(Box.createRigidArea(new Dimension(4, 0)));
+		buttons.add(exportButton);
+
+		importButton = createToolbarButton("Import", "Load flip history from an exported file");
+		importButton.addActionListener(e -> importHistory());
+		buttons.add(Box.createRigidArea(new Dimension(4, 0)));
+		buttons.add(importButton);
+
+		return toolbar;
+	}
+
+	private static JButton createToolbarButton(String text, String tooltip)
+	{
+		JButton button = new JButton(text);
+		button.setFocusable(false);
+		button.setFont(new Font("Arial", Font.PLAIN, 11));
+		button.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+		button.setForeground(Color.LIGHT_GRAY);
+		button.setBorder(BorderFactory.createEmptyBorder(3, 8, 3, 8));
+		button.setCursor(new Cursor(Cursor.HAND_CURSOR));
+		button.setToolTipText(tooltip);
+		return button;
+	}
+
+	private JTextField createListTextField(String tooltip)
+	{
+		JTextField field = new JTextField();
+		field.setFont(new Font("Arial", Font.PLAIN, 11));
+		field.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+		field.setForeground(Color.WHITE);
+		field.setCaretColor(Color.WHITE);
+		field.setToolTipText(tooltip);
+		return field;
+	}
+
+	/**
+	 * Run an action on the EDT once typing in a field pauses. The delay runs on the
+	 * plugin's scheduler, and each change pushes it back.
+	 */
+	private void onTextChanged(JTextField field, String taskName, Runnable action)
+	{
+		field.getDocument().addDocumentListener(new javax.swing.event.DocumentListener()
+		{
+			// Only touched on the EDT
+			private java.util.concurrent.ScheduledFuture<?> pending;
+
+			@Override
+			public void insertUpdate(javax.swing.event.DocumentEvent e)
+			{
+				restart();
+			}
+
+			@Override
+			public void removeUpdate(javax.swing.event.DocumentEvent e)
+			{
+				restart();
+			}
+
+			@Override
+			public void changedUpdate(javax.swing.event.DocumentEvent e)
+			{
+				restart();
+			}
+
+			private void restart()
+			{
+				if (pending != null)
+				{
+					pending.cancel(false);
+				}
+				pending = plugin.getScheduler().schedule(taskName, () -> SwingUtilities.invokeLater(action),
+					SEARCH_DELAY_MS, java.util.concurrent.TimeUnit.MILLISECONDS);
+			}
+		});
+	}
+
+	/**
+	 * Create a dropdown that re-sorts a list's view and shows its rows again
+	 */
+	private static <T> JComboBox<SortOption> createSortDropdown(SortOption[] options, FlipListView<T> view,
+																Runnable show)
+	{
+		JComboBox<SortOption> dropdown = new JComboBox<>(options);
+		dropdown.setFocusable(false);
+		dropdown.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+		dropdown.setForeground(Color.WHITE);
+		dropdown.setFont(new Font("Arial", Font.PLAIN, 11));
+		dropdown.addActionListener(e ->
+		{
+			SortOption option = (SortOption) dropdown.getSelectedItem();
+			if (option != null)
+			{
+				view.sortBy(option.column, option.descending);
+				show.run();
+			}
+		});
+		return dropdown;
+	}
+
+	private static JPanel createSortRow(JComboBox<SortOption> dropdown)
+	{
+		JLabel sortLabel = new JLabel("Sort: ");
+		sortLabel.setForeground(Color.LIGHT_GRAY);
+		sortLabel.setFont(new Font("Arial", Font.PLAIN, 11));
+
+		JPanel row = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 5));
+		row.setBackground(ColorScheme.DARK_GRAY_COLOR);
+		row.add(sortLabel);
+		row.add(dropdown);
+		return row;
+	}
+
+	private boolean isSearchingCompletedFlips()
+	{
+		return completedSearchField != null && !completedSearchField.getText().trim().isEmpty();
+	}
+
+	/**
+	 * Show the stored flips matching the search box, or the latest flips from the
+	 * server when it's empty
+	 */
+	private void searchCompletedFlips()
+	{
+		if (!isSearchingCompletedFlips())
+		{
+			if (currentCompletedFlips.isEmpty())
+			{
+				showNoCompletedFlips();
+			}
+			else
+			{
+				populateCompletedFlips(currentCompletedFlips, null);
+			}
+			return;
+		}
+
+		long start = metrics.startTimer();
+		CompletedFlipStore.SearchResult result = plugin.getCompletedFlipStore()
+			.search(completedSearchField.getText(), completedSearchLimit);
+		completedFlipsSearchLatency.recordSince(start);
+
+		// Only a page of rows is built at a time, the rest on request
+		JButton moreButton = null;
+		if (result.total > result.flips.size())
+		{
+			moreButton = new JButton(String.format("Show more (%d left)", result.total - result.flips.size()));
+			moreButton.setFocusable(false);
+			moreButton.setFont(new Font("Arial", Font.PLAIN, 11));
+			moreButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+			moreButton.addActionListener(e ->
+			{
+				completedSearchLimit += SEARCH_PAGE_SIZE;
+				searchCompletedFlips();
+			});
+		}
+
+		populateCompletedFlips(result.flips, moreButton);
+		setStatus(String.format("%d of %d flips match", result.total, plugin.getCompletedFlipStore().size()));
+	}
+
+	private JFileChooser createHistoryChooser()
+	{
+		JFileChooser chooser = new JFileChooser();
+		chooser.addChoosableFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Flip Smart history (*.fsh)", "fsh"));
+		chooser.addChoosableFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV (*.csv)", "csv"));
+		chooser.setAcceptAllFileFilterUsed(true);
+		return chooser;
+	}
+
+	private void exportHistory()
+	{
+		JFileChooser chooser = createHistoryChooser();
+		chooser.setSelectedFile(new java.io.File("flipsmart-history.fsh"));
+		if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION)
+		{
+			return;
+		}
+
+		java.io.File file = chooser.getSelectedFile();
+		transferHistory("Export", "history-export", () -> plugin.getHistoryExporter().exportTo(file));
+	}
+
+	private void importHistory()
+	{
+		JFileChooser chooser = createHistoryChooser();
+		if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION)
+		{
+			return;
+		}
+
+		java.io.File file = chooser.getSelectedFile();
+		transferHistory("Import", "history-import", () -> plugin.getHistoryExporter().importFrom(file));
+	}
+
+	private interface HistoryTransfer
+	{
+		FlipHistoryExporter.Result run() throws java.io.IOException;
+	}
+
+	/**
+	 * Run an export or import off the Swing thread and report how it went
+	 */
+	private void transferHistory(String title, String taskName, HistoryTransfer transfer)
+	{
+		exportButton.setEnabled(false);
+		importButton.setEnabled(false);
+		plugin.getScheduler().supply(taskName, () ->
+		{
+			try
+			{
+				return transfer.run();
+			}
+			catch (java.io.IOException e)
+			{
+				throw new java.io.UncheckedIOException(e);
+			}
+		}).whenComplete((result, throwable) ->
+			SwingUtilities.invokeLater(() ->
+			{
+				exportButton.setEnabled(true);
+				importButton.setEnabled(true);
+
+				if (throwable != null)
+				{
+					Throwable cause = throwable;
+					while ((cause instanceof java.util.concurrent.CompletionException
+						|| cause instanceof java.io.UncheckedIOException) && cause.getCause() != null)
+					{
+						cause = cause.getCause();
+					}
+					log.warn("{} of flip history failed", title, cause);
+					JOptionPane.showMessageDialog(
+						this,
+						title + " failed: " + cause.getMessage(),
+						"Error",
+						JOptionPane.ERROR_MESSAGE
+					);
+					return;
+				}
+
+				JOptionPane.showMessageDialog(
+					this,
+					result.toString(),
+					title,
+					JOptionPane.INFORMATION_MESSAGE
+				);
+
+				if ("Import".equals(title))
+				{
+					// Show the imported flips in the chart and search results
+					searchCompletedFlips();
+				}
+			}));
+	}
+
+	/**
+	 * Replay the recorded price history for every flip style and show the results
+	 */
+	private void runBacktest()
+	{
+		long slotBudget;
+		if (lastPerSlotBudget != null && lastPerSlotBudget > 0)
+		{
+			slotBudget = lastPerSlotBudget.longValue();
+		}
+		else if (getCashStack() != null && getCashStack() > 0)
+		{
+			slotBudget = getCashStack() / SlotAllocationOptimizer.GE_SLOTS;
+		}
+		else
+		{
+			slotBudget = DEFAULT_BACKTEST_SLOT_BUDGET;
+		}
+
+		backtestButton.setEnabled(false);
+		plugin.getScheduler().supply("backtest", () ->
+		{
+			java.util.Map<Integer, PriceHistoryStore.ItemHistory> prices = plugin.getPriceHistoryStore().snapshot();
+			if (prices.isEmpty())
+			{
+				return null;
+			}
+			return new Backtester().run(prices, plugin.getFillHistoryStore().snapshot(), slotBudget);
+		}).whenComplete((results, throwable) ->
+			SwingUtilities.invokeLater(() ->
+			{
+				backtestButton.setEnabled(true);
+
+				if (throwable != null)
+				{
+					log.warn("Backtest failed", throwable);
+					JOptionPane.showMessageDialog(
+						this,
+						"Backtest failed: " + throwable.getMessage(),
+						"Error",
+						JOptionPane.ERROR_MESSAGE
+					);
+				}
+				else if (results == null)
+				{
+					JOptionPane.showMessageDialog(
+						this,
+						"No price history recorded yet.\nHistory is saved each time recommendations are refreshed.",
+						"Backtest",
+						JOptionPane.INFORMATION_MESSAGE
+					);
+				}
+				else
+				{
+					JOptionPane.showMessageDialog(
+						this,
+						String.format("Slot budget: %s\n\n%s", formatGP(slotBudget), Backtester.format(results)),
+						"Backtest",
+						JOptionPane.INFORMATION_MESSAGE
+					);
+				}
+			}));
+	}
+
 	/**
 	 * Dismiss an active flip (remove from tracking)
 	 */
@@ -0,0 +1,861 @@
+package com.flipsmart;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Exports the local flip history (completed flips, items held by each account, and
+ * raw GE fills) to a file, and imports it back, to back it up, move it to another
+ * machine or analyse it elsewhere.
+ *
+ * Two formats are supported, picked by the file extension:
+ * <ul>
+ * <li>{@code .csv}: one row per record, with the record type in the first column</li>
+ * <li>anything else: a compact binary format of tagged records, with variable length
+ * numbers and times stored as the difference from the previous record</li>
+ * </ul>
+ *
+ * Both directions stream through the stores a chunk at a time, so memory use stays
+ * the same however many rows there are. Imports read the file twice: once to check
+ * all of it, so a damaged or cut off file is rejected before anything is stored,
+ * then again to store it. Records that are already stored are skipped, so importing
+ * the same file twice does nothing the second time.
+ */
+@Slf4j
+@Singleton
+public class FlipHistoryExporter
+{
+	private static final int FILE_MAGIC = 0x46534858; // "FSHX"
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int RECORD_END = 0;
+	private static final int RECORD_ITEM = 1;
+	private static final int RECORD_FLIP = 2;
+	private static final int RECORD_ACCOUNT = 3;
+	private static final int RECORD_LOT = 4;
+	private static final int RECORD_FILL = 5;
+
+	private static final String CSV_FLIP = "flip";
+	private static final String CSV_LOT = "lot";
+	private static final String CSV_FILL = "fill";
+	private static final String[] CSV_HEADER = {
+		"# Flip Smart history, version " + FORMAT_VERSION,
+		"# flip,id,item_id,item_name,quantity,buy_price,sell_price,ge_tax,net_profit,roi_percent,duration_seconds,buy_time,sell_time",
+		"# lot,account,item_id,quantity,total_cost",
+		"# fill,time,item_id,side,quantity,price",
+	};
+
+	private final CompletedFlipStore completedFlipStore;
+	private final FillHistoryStore fillHistoryStore;
+	private final AccountManager accountManager;
+
+	/**
+	 * What an export or import went through, and how fast
+	 */
+	public static class Result
+	{
+		public long flips;
+		public long lots;
+		public long fills;
+		// Records an import already had
+		public long skipped;
+		public long bytes;
+		public long nanos;
+
+		public long getRecords()
+		{
+			return flips + lots + fills + skipped;
+		}
+
+		public double getRecordsPerSecond()
+		{
+			return nanos > 0 ? getRecords() * 1e9 / nanos : 0;
+		}
+
+		public double getMegabytesPerSecond()
+		{
+			return nanos > 0 ? bytes * 1e9 / nanos / (1024 * 1024) : 0;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("%,d flips, %,d held items, %,d fills%s (%,d KB in %d ms, %,.0f records/s, %.1f MB/s)",
+				flips, lots, fills, skipped > 0 ? String.format(", %,d already stored", skipped) : "",
+				bytes / 1024, nanos / 1_000_000, getRecordsPerSecond(), getMegabytesPerSecond());
+		}
+	}
+
+	@Inject
+	public FlipHistoryExporter(CompletedFlipStore completedFlipStore, FillHistoryStore fillHistoryStore,
+							   AccountManager accountManager)
+	{
+		this.completedFlipStore = completedFlipStore;
+		this.fillHistoryStore = fillHistoryStore;
+		this.accountManager = accountManager;
+	}
+
+	static boolean isCsv(File file)
+	{
+		return file.getName().toLowerCase(Locale.ROOT).endsWith(".csv");
+	}
+
+	/**
+	 * Export everything to a file, as CSV if its name ends in .csv
+	 */
+	public Result exportTo(File file) throws IOException
+	{
+		long start = System.nanoTime();
+		Result result;
+		try (OutputStream out = new FileOutputStream(file))
+		{
+			result = isCsv(file) ? exportCsv(out) : exportBinary(out);
+		}
+		result.bytes = file.length();
+		result.nanos = System.nanoTime() - start;
+		log.info("Exported flip history to {}: {}", file, result);
+		return result;
+	}
+
+	/**
+	 * Import everything from a file, as CSV if its name ends in .csv
+	 *
+	 * @throws IOException If the file can't be read or is damaged, in which case nothing is imported
+	 */
+	public Result importFrom(File file) throws IOException
+	{
+		long start = System.nanoTime();
+		importFrom(file, false);
+		Result result = importFrom(file, true);
+		result.bytes = file.length();
+		result.nanos = System.nanoTime() - start;
+		log.info("Imported flip history from {}: {}", file, result);
+		return result;
+	}
+
+	/**
+	 * @param store False to only check the file
+	 */
+	private Result importFrom(File file, boolean store) throws IOException
+	{
+		try (InputStream in = new FileInputStream(file))
+		{
+			return isCsv(file) ? importCsv(in, store) : importBinary(in, store);
+		}
+	}
+
+	Result exportBinary(OutputStream stream) throws IOException
+	{
+		Result result = new Result();
+		RecordWriter out = new RecordWriter(stream);
+		out.writeInt(FILE_MAGIC);
+		out.writeInt(FORMAT_VERSION);
+
+		// Names are written the first time each item comes up rather than on every flip
+		Set<Integer> namedItems = new HashSet<>();
+		long lastTime = 0;
+
+		CompletedFlipStore.Chunk flips = new CompletedFlipStore.Chunk();
+		for (int from = 0; completedFlipStore.read(from, flips) > 0; from += flips.size)
+		{
+			for (int i = 0; i < flips.size; i++)
+			{
+				if (flips.names[i] != null && namedItems.add(flips.itemIds[i]))
+				{
+					out.writeByte(RECORD_ITEM);
+					out.writeVarLong(flips.itemIds[i]);
+					out.writeString(flips.names[i]);
+				}
+
+				out.writeByte(RECORD_FLIP);
+				out.writeVarLong(flips.ids[i]);
+				out.writeVarLong(flips.itemIds[i]);
+				out.writeVarLong(flips.quantities[i]);
+				out.writeVarLong(flips.buyPrices[i]);
+				out.writeVarLong(flips.sellPrices[i]);
+				out.writeVarLong(flips.taxes[i]);
+				out.writeSignedVarLong(flips.profits[i]);
+				out.writeFloat(flips.rois[i]);
+				out.writeVarLong(flips.durations[i]);
+				out.writeSignedVarLong(flips.sellTimes[i] - lastTime);
+				out.writeSignedVarLong(flips.sellTimes[i] - flips.buyTimes[i]);
+				lastTime = flips.sellTimes[i];
+				result.flips++;
+			}
+		}
+
+		for (AccountState account : accountManager.getAccounts())
+		{
+			Map<Integer, long[]> holdings = account.getHoldings();
+			if (holdings.isEmpty())
+			{
+				continue;
+			}
+
+			out.writeByte(RECORD_ACCOUNT);
+			out.writeString(account.getRsn());
+			for (Map.Entry<Integer, long[]> entry : holdings.entrySet())
+			{
+				out.writeByte(RECORD_LOT);
+				out.writeVarLong(entry.getKey());
+				out.writeVarLong(entry.getValue()[0]);
+				out.writeVarLong(entry.getValue()[1]);
+				result.lots++;
+			}
+		}
+
+		FillHistoryStore.Chunk fills = new FillHistoryStore.Chunk();
+		for (int from = 0; fillHistoryStore.read(from, fills) > 0; from += fills.size)
+		{
+			for (int i = 0; i < fills.size; i++)
+			{
+				out.writeByte(RECORD_FILL);
+				out.writeSignedVarLong(fills.times[i] - lastTime);
+				out.writeVarLong(fills.itemIds[i]);
+				out.writeBoolean(fills.buys[i]);
+				out.writeVarLong(fills.quantities[i]);
+				out.writeVarLong(fills.prices[i]);
+				lastTime = fills.times[i];
+				result.fills++;
+			}
+		}
+
+		// The record count lets an import tell a complete file from a cut off one
+		out.writeByte(RECORD_END);
+		out.writeVarLong(result.getRecords());
+		out.flush();
+		return result;
+	}
+
+	Result importBinary(InputStream stream, boolean store) throws IOException
+	{
+		Result result = new Result();
+		RecordReader in = new RecordReader(stream);
+		if (in.readInt() != FILE_MAGIC)
+		{
+			throw new IOException("Not a Flip Smart history file");
+		}
+		int version = in.readInt();
+		if (version > FORMAT_VERSION)
+		{
+			throw new IOException("History file is from a newer version of the plugin");
+		}
+
+		Importer importer = new Importer(result, store);
+		Map<Integer, String> names = new HashMap<>();
+		String account = null;
+		long lastTime = 0;
+		// Only flips, lots and fills count towards the total at the end
+		long records = 0;
+
+		try
+		{
+			while (true)
+			{
+				int type = in.readUnsignedByte();
+				switch (type)
+				{
+					case RECORD_END:
+						long expected = in.readVarLong();
+						if (expected != records)
+						{
+							throw new IOException("History file lists " + expected + " records but has " + records);
+						}
+						return result;
+					case RECORD_ITEM:
+						names.put((int) in.readVarLong(), in.readString());
+						break;
+					case RECORD_FLIP:
+					{
+						int id = (int) in.readVarLong();
+						int itemId = (int) in.readVarLong();
+						int quantity = (int) in.readVarLong();
+						int buyPrice = (int) in.readVarLong();
+						int sellPrice = (int) in.readVarLong();
+						int tax = (int) in.readVarLong();
+						int profit = (int) in.readSignedVarLong();
+						float roi = in.readFloat();
+						int duration = (int) in.readVarLong();
+						long sellTime = lastTime + in.readSignedVarLong();
+						long buyTime = sellTime - in.readSignedVarLong();
+						lastTime = sellTime;
+						importer.addFlip(id, itemId, names.get(itemId), quantity, buyPrice, sellPrice, tax, profit,
+							roi, duration, buyTime, sellTime);
+						records++;
+						break;
+					}
+					case RECORD_ACCOUNT:
+						account = in.readString();
+						break;
+					case RECORD_LOT:
+					{
+						int itemId = (int) in.readVarLong();
+						long quantity = in.readVarLong();
+						long cost = in.readVarLong();
+						importer.addLot(account, itemId, quantity, cost);
+						records++;
+						break;
+					}
+					case RECORD_FILL:
+					{
+						long time = lastTime + in.readSignedVarLong();
+						int itemId = (int) in.readVarLong();
+						boolean isBuy = in.readBoolean();
+						int quantity = (int) in.readVarLong();
+						int price = (int) in.readVarLong();
+						lastTime = time;
+						importer.addFill(time, itemId, isBuy, quantity, price);
+						records++;
+						break;
+					}
+					default:
+						throw new IOException("Unknown record type " + type + " in history file");
+				}
+			}
+		}
+		catch (EOFException e)
+		{
+			throw new IOException("History file ended early, after " + records + " records", e);
+		}
+		finally
+		{
+			// Leaves the stores sorted even if reading failed part way
+			importer.finish();
+		}
+	}
+
+	Result exportCsv(OutputStream stream) throws IOException
+	{
+		Result result = new Result();
+		Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16);
+		for (String line : CSV_HEADER)
+		{
+			out.write(line);
+			out.write('\n');
+		}
+
+		StringBuilder line = new StringBuilder(160);
+		CompletedFlipStore.Chunk flips = new CompletedFlipStore.Chunk();
+		for (int from = 0; completedFlipStore.read(from, flips) > 0; from += flips.size)
+		{
+			for (int i = 0; i < flips.size; i++)
+			{
+				line.setLength(0);
+				line.append(CSV_FLIP).append(',')
+					.append(flips.ids[i]).append(',')
+					.append(flips.itemIds[i]).append(',');
+				appendCsvText(line, flips.names[i]);
+				line.append(',').append(flips.quantities[i])
+					.append(',').append(flips.buyPrices[i])
+					.append(',').append(flips.sellPrices[i])
+					.append(',').append(flips.taxes[i])
+					.append(',').append(flips.profits[i])
+					.append(',').append(flips.rois[i])
+					.append(',').append(flips.durations[i])
+					.append(',');
+				appendCsvTime(line, flips.buyTimes[i]);
+				line.append(',');
+				appendCsvTime(line, flips.sellTimes[i]);
+				line.append('\n');
+				out.append(line);
+				result.flips++;
+			}
+		}
+
+		for (AccountState account : accountManager.getAccounts())
+		{
+			for (Map.Entry<Integer, long[]> entry : account.getHoldings().entrySet())
+			{
+				line.setLength(0);
+				line.append(CSV_LOT).append(',');
+				appendCsvText(line, account.getRsn());
+				line.append(',').append(entry.getKey())
+					.append(',').append(entry.getValue()[0])
+					.append(',').append(entry.getValue()[1])
+					.append('\n');
+				out.append(line);
+				result.lots++;
+			}
+		}
+
+		FillHistoryStore.Chunk fills = new FillHistoryStore.Chunk();
+		for (int from = 0; fillHistoryStore.read(from, fills) > 0; from += fills.size)
+		{
+			for (int i = 0; i < fills.size; i++)
+			{
+				line.setLength(0);
+				line.append(CSV_FILL).append(',');
+				appendCsvTime(line, fills.times[i]);
+				line.append(',').append(fills.itemIds[i])
+					.append(',').append(fills.buys[i] ? "buy" : "sell")
+					.append(',').append(fills.quantities[i])
+					.append(',').append(fills.prices[i])
+					.append('\n');
+				out.append(line);
+				result.fills++;
+			}
+		}
+
+		out.flush();
+		return result;
+	}
+
+	Result importCsv(InputStream stream, boolean store) throws IOException
+	{
+		Result result = new Result();
+		BufferedReader in = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8), 1 << 16);
+		Importer importer = new Importer(result, store);
+		List<String> fields = new ArrayList<>(16);
+		int lineNumber = 0;
+
+		try
+		{
+			String line;
+			while ((line = in.readLine()) != null)
+			{
+				lineNumber++;
+				if (line.isEmpty() || line.startsWith("#"))
+				{
+					continue;
+				}
+
+				splitCsv(line, fields);
+				try
+				{
+					switch (fields.get(0))
+					{
+						case CSV_FLIP:
+							importer.addFlip(
+								Integer.parseInt(fields.get(1)),
+								Integer.parseInt(fields.get(2)),
+								fields.get(3).isEmpty() ? null : fields.get(3),
+								Integer.parseInt(fields.get(4)),
+								Integer.parseInt(fields.get(5)),
+								Integer.parseInt(fields.get(6)),
+								Integer.parseInt(fields.get(7)),
+								Integer.parseInt(fields.get(8)),
+								Float.parseFloat(fields.get(9)),
+								Integer.parseInt(fields.get(10)),
+								parseCsvTime(fields.get(11)),
+								parseCsvTime(fields.get(12)));
+							break;
+						case CSV_LOT:
+							importer.addLot(fields.get(1),
+								Integer.parseInt(fields.get(2)),
+								Long.parseLong(fields.get(3)),
+								Long.parseLong(fields.get(4)));
+							break;
+						case CSV_FILL:
+							importer.addFill(
+								parseCsvTime(fields.get(1)),
+								Integer.parseInt(fields.get(2)),
+								"buy".equals(fields.get(3)),
+								Integer.parseInt(fields.get(4)),
+								Integer.parseInt(fields.get(5)));
+							break;
+						default:
+							throw new IOException("Unknown record type \"" + fields.get(0) + "\" on line " + lineNumber);
+					}
+				}
+				catch (NumberFormatException | IndexOutOfBoundsException | DateTimeParseException e)
+				{
+					throw new IOException("Could not read line " + lineNumber + ": " + e.getMessage(), e);
+				}
+			}
+		}
+		finally
+		{
+			importer.finish();
+		}
+		return result;
+	}
+
+	/**
+	 * Collects imported records into chunks and hands each one to its store when full.
+	 * When not storing, it only counts the records, to check a file before importing it.
+	 */
+	private class Importer
+	{
+		private final Result result;
+		private final boolean store;
+		private final CompletedFlipStore.Chunk flips = new CompletedFlipStore.Chunk();
+		private final FillHistoryStore.Chunk fills = new FillHistoryStore.Chunk();
+
+		Importer(Result result, boolean store)
+		{
+			this.result = result;
+			this.store = store;
+		}
+
+		void addFlip(int id, int itemId, String name, int quantity, int buyPrice, int sellPrice, int tax, int profit,
+					 float roi, int duration, long buyTime, long sellTime)
+		{
+			if (!store)
+			{
+				result.flips++;
+				return;
+			}
+
+			int i = flips.size++;
+			flips.ids[i] = id;
+			flips.itemIds[i] = itemId;
+			flips.names[i] = name;
+			flips.quantities[i] = quantity;
+			flips.buyPrices[i] = buyPrice;
+			flips.sellPrices[i] = sellPrice;
+			flips.taxes[i] = tax;
+			flips.profits[i] = profit;
+			flips.rois[i] = roi;
+			flips.durations[i] = duration;
+			flips.buyTimes[i] = buyTime;
+			flips.sellTimes[i] = sellTime;
+			if (flips.size == CompletedFlipStore.Chunk.CAPACITY)
+			{
+				flushFlips();
+			}
+		}
+
+		void addLot(String account, int itemId, long quantity, long cost)
+		{
+			if (!store)
+			{
+				result.lots++;
+				return;
+			}
+
+			if (account != null && accountManager.getOrCreate(account).importHolding(itemId, quantity, cost))
+			{
+				result.lots++;
+			}
+			else
+			{
+				result.skipped++;
+			}
+		}
+
+		void addFill(long time, int itemId, boolean isBuy, int quantity, int price)
+		{
+			if (!store)
+			{
+				result.fills++;
+				return;
+			}
+
+			int i = fills.size++;
+			fills.times[i] = time;
+			fills.itemIds[i] = itemId;
+			fills.buys[i] = isBuy;
+			fills.quantities[i] = quantity;
+			fills.prices[i] = price;
+			if (fills.size == FillHistoryStore.Chunk.CAPACITY)
+			{
+				flushFills();
+			}
+		}
+
+		void finish()
+		{
+			if (!store)
+			{
+				return;
+			}
+
+			flushFlips();
+			flushFills();
+			fillHistoryStore.finishImport();
+			if (result.lots > 0)
+			{
+				accountManager.save();
+			}
+		}
+
+		private void flushFlips()
+		{
+			int added = completedFlipStore.addRows(flips);
+			result.flips += added;
+			result.skipped += flips.size - added;
+			flips.size = 0;
+		}
+
+		private void flushFills()
+		{
+			int added = fillHistoryStore.addRows(fills);
+			result.fills += added;
+			result.skipped += fills.size - added;
+			fills.size = 0;
+		}
+	}
+
+	/**
+	 * Buffered writer for the binary format. Encodes straight into its own buffer, which
+	 * is much faster than a DataOutputStream for the many small writes a record takes.
+	 */
+	private static class RecordWriter
+	{
+		private final OutputStream out;
+		private final byte[] buffer = new byte[1 << 16];
+		private int position;
+
+		RecordWriter(OutputStream out)
+		{
+			this.out = out;
+		}
+
+		void writeByte(int value) throws IOException
+		{
+			if (position == buffer.length)
+			{
+				flushBuffer();
+			}
+			buffer[position++] = (byte) value;
+		}
+
+		void writeBoolean(boolean value) throws IOException
+		{
+			writeByte(value ? 1 : 0);
+		}
+
+		void writeInt(int value) throws IOException
+		{
+			writeByte(value >>> 24);
+			writeByte(value >>> 16);
+			writeByte(value >>> 8);
+			writeByte(value);
+		}
+
+		void writeFloat(float value) throws IOException
+		{
+			writeInt(Float.floatToIntBits(value));
+		}
+
+		void writeVarLong(long value) throws IOException
+		{
+			while ((value & ~0x7FL) != 0)
+			{
+				writeByte((int) (value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			writeByte((int) value);
+		}
+
+		/**
+		 * Zigzag encoded, so small negative numbers stay short too
+		 */
+		void writeSignedVarLong(long value) throws IOException
+		{
+			writeVarLong((value << 1) ^ (value >> 63));
+		}
+
+		void writeString(String value) throws IOException
+		{
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeVarLong(bytes.length);
+			for (byte b : bytes)
+			{
+				writeByte(b);
+			}
+		}
+
+		void flush() throws IOException
+		{
+			flushBuffer();
+			out.flush();
+		}
+
+		private void flushBuffer() throws IOException
+		{
+			out.write(buffer, 0, position);
+			position = 0;
+		}
+	}
+
+	/**
+	 * Buffered reader for the binary format
+	 */
+	private static class RecordReader
+	{
+		private final InputStream in;
+		private final byte[] buffer = new byte[1 << 16];
+		private int position;
+		private int limit;
+
+		RecordReader(InputStream in)
+		{
+			this.in = in;
+		}
+
+		int readUnsignedByte() throws IOException
+		{
+			if (position == limit)
+			{
+				limit = in.read(buffer, 0, buffer.length);
+				position = 0;
+				if (limit <= 0)
+				{
+					limit = 0;
+					throw new EOFException();
+				}
+			}
+			return buffer[position++] & 0xFF;
+		}
+
+		boolean readBoolean() throws IOException
+		{
+			return readUnsignedByte() != 0;
+		}
+
+		int readInt() throws IOException
+		{
+			return readUnsignedByte() << 24 | readUnsignedByte() << 16 | readUnsignedByte() << 8 | readUnsignedByte();
+		}
+
+		float readFloat() throws IOException
+		{
+			return Float.intBitsToFloat(readInt());
+		}
+
+		long readVarLong() throws IOException
+		{
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7)
+			{
+				int b = readUnsignedByte();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+				{
+					return value;
+				}
+			}
+			throw new IOException("Malformed number in history file");
+		}
+
+		long readSignedVarLong() throws IOException
+		{
+			long value = readVarLong();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		String readString() throws IOException
+		{
+			long length = readVarLong();
+			if (length > 1 << 16)
+			{
+				throw new IOException("Malformed text in history file");
+			}
+
+			byte[] bytes = new byte[(int) length];
+			for (int i = 0; i < bytes.length; i++)
+			{
+				bytes[i] = (byte) readUnsignedByte();
+			}
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+
+	private static void appendCsvText(StringBuilder line, String text)
+	{
+		if (text == null)
+		{
+			return;
+		}
+
+		if (text.indexOf(',') < 0 && text.indexOf('"') < 0)
+		{
+			line.append(text);
+			return;
+		}
+
+		line.append('"');
+		for (int i = 0; i < text.length(); i++)
+		{
+			char c = text.charAt(i);
+			if (c == '"')
+			{
+				line.append('"');
+			}
+			line.append(c);
+		}
+		line.append('"');
+	}
+
+	private static void appendCsvTime(StringBuilder line, long time)
+	{
+		if (time > 0)
+		{
+			line.append(Instant.ofEpochMilli(time));
+		}
+	}
+
+	private static long parseCsvTime(String text)
+	{
+		return text.isEmpty() ? 0 : Instant.parse(text).toEpochMilli();
+	}
+
+	/**
+	 * Split a CSV line into its fields, reusing the list
+	 */
+	static void splitCsv(String line, List<String> fields)
+	{
+		fields.clear();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++)
+		{
+			char c = line.charAt(i);
+			if (quoted)
+			{
+				if (c != '"')
+				{
+					field.append(c);
+				}
+				else if (i + 1 < line.length() && line.charAt(i + 1) == '"')
+				{
+					field.append('"');
+					i++;
+				}
+				else
+				{
+					quoted = false;
+				}
+			}
+			else if (c == '"')
+			{
+				quoted = true;
+			}
+			else if (c == ',')
+			{
+				fields.add(field.toString());
+				field.setLength(0);
+			}
+			else
+			{
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+	}
+}
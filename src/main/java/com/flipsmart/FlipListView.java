@@ -0,0 +1,284 @@
+package com.flipsmart;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A sorted and filtered view of a list shown in the panel.
+ *
+ * Each column's value is copied out of the items into a primitive array once, when
+ * the list changes. Sorting and filtering after that only rearrange an array of row
+ * indexes, so the panel can show the rows it already built in a new order without
+ * building them again or fetching anything.
+ *
+ * Filters use the same conditions as price alerts, e.g. {@code price <= 1m limit>=100},
+ * and a flag column can be given by name, e.g. {@code members} or {@code f2p}. A row
+ * whose value is missing (NaN) never passes a condition on that column, and sorts
+ * after every other row whichever way the column is sorted.
+ */
+public class FlipListView<T>
+{
+	private static final Pattern CONDITION = Pattern.compile("([a-z]+)(>=|<=|>|<)(\\S+)");
+	private static final Pattern OPERATOR = Pattern.compile("\\s*(>=|<=|>|<)\\s*");
+
+	private final List<String> names = new ArrayList<>();
+	// Name of the opposite of each flag column, or null for a numeric column
+	private final List<String> negatedNames = new ArrayList<>();
+	private final List<ToDoubleFunction<T>> keys = new ArrayList<>();
+
+	private double[][] values = new double[0][];
+	private int size;
+
+	private int sortColumn = -1;
+	private boolean descending;
+	private double[] mins = new double[0];
+	private double[] maxes = new double[0];
+
+	// Indexes of the rows that pass the filter, in display order
+	private int[] order = new int[0];
+	private int[] scratch = new int[0];
+	private int visible;
+
+	/**
+	 * Add a numeric column
+	 *
+	 * @return The column's index
+	 */
+	public int addColumn(String name, ToDoubleFunction<T> key)
+	{
+		names.add(name);
+		negatedNames.add(null);
+		keys.add(key);
+		return keys.size() - 1;
+	}
+
+	/**
+	 * Add a yes/no column, filtered by its name for yes or the negated name for no
+	 *
+	 * @return The column's index
+	 */
+	public int addFlag(String name, String negatedName, Predicate<T> flag)
+	{
+		int column = addColumn(name, item -> flag.test(item) ? 1 : 0);
+		negatedNames.set(column, negatedName);
+		return column;
+	}
+
+	/**
+	 * Replace the items, reading every column's value once
+	 */
+	public void setItems(List<? extends T> items)
+	{
+		size = items.size();
+		int columns = keys.size();
+		if (values.length != columns || order.length < size)
+		{
+			int capacity = Math.max(size, 16);
+			values = new double[columns][capacity];
+			order = new int[capacity];
+			scratch = new int[capacity];
+		}
+		if (mins.length != columns)
+		{
+			mins = new double[columns];
+			maxes = new double[columns];
+			clearFilter();
+		}
+
+		for (int i = 0; i < size; i++)
+		{
+			T item = items.get(i);
+			for (int column = 0; column < columns; column++)
+			{
+				values[column][i] = keys.get(column).applyAsDouble(item);
+			}
+		}
+		update();
+	}
+
+	/**
+	 * Sort by a column, or keep the items' own order for -1. Ties keep their own order too.
+	 */
+	public void sortBy(int column, boolean descending)
+	{
+		this.sortColumn = column;
+		this.descending = descending;
+		update();
+	}
+
+	/**
+	 * Show only the rows matching a filter
+	 *
+	 * @return False if part of the filter couldn't be understood, in which case it's ignored
+	 */
+	public boolean setFilter(String text)
+	{
+		clearFilter();
+		boolean valid = true;
+		// Join "price <= 1m" into one term before splitting the terms apart
+		String joined = OPERATOR.matcher(text.trim().toLowerCase(Locale.ROOT)).replaceAll("$1");
+		for (String term : joined.split("\\s+"))
+		{
+			if (!term.isEmpty() && !applyTerm(term))
+			{
+				valid = false;
+			}
+		}
+		update();
+		return valid;
+	}
+
+	private boolean applyTerm(String term)
+	{
+		int flag = names.indexOf(term);
+		if (flag >= 0 && negatedNames.get(flag) != null)
+		{
+			mins[flag] = 1;
+			return true;
+		}
+		int negated = negatedNames.indexOf(term);
+		if (negated >= 0)
+		{
+			maxes[negated] = 0;
+			return true;
+		}
+
+		Matcher matcher = CONDITION.matcher(term);
+		if (!matcher.matches())
+		{
+			return false;
+		}
+
+		int column = names.indexOf(matcher.group(1));
+		double amount = PriceAlertEngine.parseAmount(matcher.group(3));
+		if (column < 0 || Double.isNaN(amount))
+		{
+			return false;
+		}
+
+		switch (matcher.group(2))
+		{
+			case ">":
+				mins[column] = Math.max(mins[column], Math.nextUp(amount));
+				break;
+			case ">=":
+				mins[column] = Math.max(mins[column], amount);
+				break;
+			case "<":
+				maxes[column] = Math.min(maxes[column], Math.nextDown(amount));
+				break;
+			default:
+				maxes[column] = Math.min(maxes[column], amount);
+		}
+		return true;
+	}
+
+	private void clearFilter()
+	{
+		Arrays.fill(mins, Double.NEGATIVE_INFINITY);
+		Arrays.fill(maxes, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Number of rows that pass the filter
+	 */
+	public int size()
+	{
+		return visible;
+	}
+
+	/**
+	 * Index in the items of the row shown at a position
+	 */
+	public int get(int position)
+	{
+		return order[position];
+	}
+
+	private void update()
+	{
+		visible = 0;
+		rows:
+		for (int i = 0; i < size; i++)
+		{
+			for (int column = 0; column < mins.length; column++)
+			{
+				if (mins[column] == Double.NEGATIVE_INFINITY && maxes[column] == Double.POSITIVE_INFINITY)
+				{
+					continue;
+				}
+				// Written so a missing value fails the condition
+				double value = values[column][i];
+				if (!(value >= mins[column] && value <= maxes[column]))
+				{
+					continue rows;
+				}
+			}
+			order[visible++] = i;
+		}
+
+		if (sortColumn >= 0 && sortColumn < values.length)
+		{
+			sort(values[sortColumn], 0, visible);
+		}
+	}
+
+	/**
+	 * Merge sort of the row indexes by their key, which keeps ties in their own order
+	 */
+	private void sort(double[] key, int from, int to)
+	{
+		if (to - from < 2)
+		{
+			return;
+		}
+
+		int mid = (from + to) >>> 1;
+		sort(key, from, mid);
+		sort(key, mid, to);
+		if (!before(key, order[mid], order[mid - 1]))
+		{
+			// Already in order
+			return;
+		}
+
+		System.arraycopy(order, from, scratch, from, to - from);
+		int left = from;
+		int right = mid;
+		for (int i = from; i < to; i++)
+		{
+			if (right >= to || (left < mid && !before(key, scratch[right], scratch[left])))
+			{
+				order[i] = scratch[left++];
+			}
+			else
+			{
+				order[i] = scratch[right++];
+			}
+		}
+	}
+
+	/**
+	 * Whether row a goes before row b, with missing values last in either direction
+	 */
+	private boolean before(double[] key, int a, int b)
+	{
+		double x = key[a];
+		double y = key[b];
+		if (Double.isNaN(x))
+		{
+			return false;
+		}
+		if (Double.isNaN(y))
+		{
+			return true;
+		}
+		return descending ? x > y : x < y;
+	}
+}
@@ -67,10 +67,10 @@ public class FlipRecommendation
 	private Integer quantityAffordable;
 
 	@SerializedName("potential_profit")
-	private int potentialProfit;
+	private long potentialProfit;
 
 	@SerializedName("total_cost")
-	private int totalCost;
+	private long totalCost;
 
 	// Deprecated fields (kept for backwards compatibility)
 	@SerializedName("buy_price")
@@ -85,7 +85,7 @@ public class FlipRecommendation
 	/**
 	 * Format GP amount for display
 	 */
-	public String formatGP(int amount)
+	public String formatGP(long amount)
 	{
 		if (amount >= 1_000_000)
 		{
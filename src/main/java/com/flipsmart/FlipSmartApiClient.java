@@ -7,12 +7,27 @@ import okhttp3.*;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.zip.GZIPOutputStream;
 
 @Slf4j
 @Singleton
@@ -28,22 +43,115 @@ public class FlipSmartApiClient
 	// Cache to avoid spamming the API
 	private final Map<Integer, CachedAnalysis> analysisCache = new ConcurrentHashMap<>();
 	private static final long CACHE_DURATION_MS = 60_000; // 1 minute cache
+
+	// Analysis requests on their way, so callers asking for the same item share one
+	private final Map<Integer, CompletableFuture<FlipAnalysis>> analysisInFlight = new ConcurrentHashMap<>();
+
+	// Told about every analysis fetched from the API
+	private volatile Consumer<FlipAnalysis> analysisListener;
 	
-	// JWT token management
-	private volatile String jwtToken = null;
-	private volatile long tokenExpiry = 0;
-	
-	// Lock for authentication to prevent concurrent auth attempts
-	private final Object authLock = new Object();
+	// JWT token management. The token and its expiry are swapped together so a
+	// reader never sees one token with another's expiry.
+	private final AtomicReference<AuthToken> authToken = new AtomicReference<>();
+
+	// The background login in flight, shared by every request that needs a token
+	private final AtomicReference<CompletableFuture<Boolean>> loginInFlight = new AtomicReference<>();
+	private final AtomicReference<ScheduledFuture<?>> tokenRefreshTask = new AtomicReference<>();
+
+	// Used when the token doesn't say when it expires (tokens from this API last 7 days)
+	private static final long DEFAULT_TOKEN_LIFETIME_MS = 6 * 24 * 60 * 60 * 1000L;
+	// Log in again this long before the token expires, or halfway through a short-lived token
+	private static final long TOKEN_REFRESH_AHEAD_MS = 60 * 60 * 1000L;
+	// Wait this long before trying again if a background refresh fails
+	private static final long TOKEN_REFRESH_RETRY_MS = 5 * 60 * 1000L;
+
+	/**
+	 * A JWT and when to replace it
+	 */
+	private static class AuthToken
+	{
+		final String token;
+		final long expiresAt;
+		final long refreshAt;
+
+		AuthToken(String token, long expiresAt, long refreshAt)
+		{
+			this.token = token;
+			this.expiresAt = expiresAt;
+			this.refreshAt = refreshAt;
+		}
+
+		boolean isValid(long now)
+		{
+			return now < expiresAt;
+		}
+	}
+
+	// Metric names shown in the debug overlay
+	static final String METRIC_CACHE_HITS = "analysis.cache.hits";
+	static final String METRIC_CACHE_MISSES = "analysis.cache.misses";
+
+	private final FlipSmartMetrics.Histogram requestLatency;
+	private final FlipSmartMetrics.Counter requestCount;
+	private final FlipSmartMetrics.Counter requestErrors;
+	private final FlipSmartMetrics.Counter cacheHits;
+	private final FlipSmartMetrics.Counter cacheMisses;
+	private final FlipSmartMetrics.Counter bytesSent;
+	private final FlipSmartMetrics.Counter bytesReceived;
+	private final FlipSmartMetrics.Counter bytesDecoded;
+	private final FlipSmartMetrics.Histogram decodeLatency;
+	private final FlipSmartMetrics metrics;
+
+	// Orders requests by priority and limits how many run at once
+	private final RequestDispatcher dispatcher;
+
+	// Latest call per supersede key, so retries and resends of older calls can tell they're stale
+	private final Map<String, AtomicLong> supersedeGenerations = new ConcurrentHashMap<>();
+
+	// Retries for failed requests that are safe to repeat
+	private static final int MAX_ATTEMPTS = 3;
+	private static final long BASE_RETRY_DELAY_MS = 500;
+	private static final long MAX_RETRY_DELAY_MS = 8_000;
+	static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+	// One circuit breaker per endpoint, and the last good response of recent GETs to serve while one is open
+	private static final int MAX_CACHED_RESPONSES = 64;
+	private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+	private final Map<String, String> lastGoodResponses = Collections.synchronizedMap(
+		new LinkedHashMap<String, String>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest)
+			{
+				return size() > MAX_CACHED_RESPONSES;
+			}
+		});
+
+	private final FlipSmartScheduler scheduler;
+	private final TransactionJournal transactionJournal;
 
 	@Inject
-	public FlipSmartApiClient(FlipSmartConfig config, Gson gson, OkHttpClient okHttpClient)
+	public FlipSmartApiClient(FlipSmartConfig config, Gson gson, OkHttpClient okHttpClient, FlipSmartMetrics metrics,
+							  FlipSmartScheduler scheduler, TransactionJournal transactionJournal)
 	{
 		this.config = config;
 		// Use the injected Gson's builder to create a customized instance
 		this.gson = gson.newBuilder().create();
 		// Use the injected OkHttpClient directly as required by RuneLite
 		this.httpClient = okHttpClient;
+		this.metrics = metrics;
+		this.requestLatency = metrics.histogram("http.request");
+		this.requestCount = metrics.counter("http.requests");
+		this.requestErrors = metrics.counter("http.errors");
+		this.cacheHits = metrics.counter(METRIC_CACHE_HITS);
+		this.cacheMisses = metrics.counter(METRIC_CACHE_MISSES);
+		this.bytesSent = metrics.counter("http.bytes.sent");
+		this.bytesReceived = metrics.counter("http.bytes.received");
+		this.bytesDecoded = metrics.counter("http.bytes.decoded");
+		this.decodeLatency = metrics.histogram("http.decode");
+		this.dispatcher = new RequestDispatcher(() -> Math.max(1, Math.min(8, config.maxConcurrentRequests())));
+		this.scheduler = scheduler;
+		this.transactionJournal = transactionJournal;
 	}
 
 	/**
@@ -82,115 +190,626 @@ public class FlipSmartApiClient
 	 * @param request The request to execute
 	 * @param responseHandler Function to process successful response body and return result
 	 * @param errorHandler Consumer to handle errors
+	 * @param rejectedHandler Called with the status if the API rejects the request for
+	 *                        good, e.g. as invalid, so it shouldn't be sent again
 	 * @param retryOnAuth Whether to retry with re-authentication on 401
+	 * @param priority Dispatch priority
+	 * @param supersedeKey If not null, a later request with the same key cancels this one
 	 * @param <T> The return type
-	 * @return CompletableFuture with the result
+	 * @return CompletableFuture with the result, completed exceptionally with a
+	 *         CancellationException if the request is superseded
 	 */
 	private <T> CompletableFuture<T> executeAsync(Request request, Function<String, T> responseHandler, 
-												   Consumer<String> errorHandler, boolean retryOnAuth)
+												   Consumer<String> errorHandler, IntConsumer rejectedHandler,
+												   boolean retryOnAuth, RequestDispatcher.Priority priority,
+												   String supersedeKey)
 	{
-		CompletableFuture<T> future = new CompletableFuture<>();
-		
-		httpClient.newCall(request).enqueue(new Callback()
+		long generation = supersedeKey != null
+			? supersedeGenerations.computeIfAbsent(supersedeKey, key -> new AtomicLong()).incrementAndGet()
+			: 0;
+		ApiCall<T> apiCall = new ApiCall<>(request, responseHandler, errorHandler, rejectedHandler, retryOnAuth,
+			priority, supersedeKey, generation);
+		apiCall.send(supersedeKey);
+		return apiCall.future;
+	}
+
+	private void recordBytesSent(Request request)
+	{
+		if (!metrics.isEnabled() || request.body() == null)
 		{
-			@Override
-			public void onFailure(Call call, IOException e)
+			return;
+		}
+
+		try
+		{
+			long length = request.body().contentLength();
+			if (length > 0)
 			{
-				log.debug("Request failed: {}", e.getMessage());
-				if (errorHandler != null)
-				{
-					errorHandler.accept("Connection error: " + e.getMessage());
-				}
-				future.complete(null);
+				bytesSent.add(length);
 			}
+		}
+		catch (IOException e)
+		{
+			// Unknown length, nothing to count
+		}
+	}
 
-			@Override
-			public void onResponse(Call call, Response response) throws IOException
+	/**
+	 * Count a response's size on the wire and once decompressed. OkHttp asks for
+	 * gzip and unzips transparently, so the wire size comes from the network
+	 * response's Content-Length, which is missing for chunked responses.
+	 */
+	private void recordBytesReceived(Response response, String body)
+	{
+		if (!metrics.isEnabled())
+		{
+			return;
+		}
+
+		long decoded = body.getBytes(StandardCharsets.UTF_8).length;
+		bytesDecoded.add(decoded);
+
+		Response networkResponse = response.networkResponse();
+		String contentLength = networkResponse != null ? networkResponse.header("Content-Length") : null;
+		if (contentLength != null)
+		{
+			try
 			{
-				try (response)
+				bytesReceived.add(Long.parseLong(contentLength));
+				return;
+			}
+			catch (NumberFormatException e)
+			{
+				// Fall through and count the decoded size
+			}
+		}
+		if (networkResponse == null || networkResponse.header("Content-Encoding") == null)
+		{
+			bytesReceived.add(decoded);
+		}
+	}
+
+	/**
+	 * Gzip a JSON request body. The request must also be sent with
+	 * Content-Encoding: gzip.
+	 */
+	private static RequestBody gzipJson(String json) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream(json.length() / 4 + 64);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out))
+		{
+			gzip.write(json.getBytes(StandardCharsets.UTF_8));
+		}
+		return RequestBody.create(JSON, out.toByteArray());
+	}
+
+	/**
+	 * One API request and its retries. Server and connection failures are retried
+	 * with jittered exponential backoff when the request is safe to repeat, and
+	 * count against the endpoint's circuit breaker. While the breaker is open, or
+	 * once retries run out, a GET is answered from its last good response if there
+	 * is one.
+	 */
+	private class ApiCall<T>
+	{
+		private final Request request;
+		private final Function<String, T> responseHandler;
+		private final Consumer<String> errorHandler;
+		private final IntConsumer rejectedHandler;
+		private final boolean retryOnAuth;
+		private final RequestDispatcher.Priority priority;
+		private final String supersedeKey;
+		private final long generation;
+		private final CircuitBreaker breaker;
+		private final CompletableFuture<T> future = new CompletableFuture<>();
+		private int attempt;
+
+		ApiCall(Request request, Function<String, T> responseHandler, Consumer<String> errorHandler,
+				IntConsumer rejectedHandler, boolean retryOnAuth, RequestDispatcher.Priority priority,
+				String supersedeKey, long generation)
+		{
+			this.request = request;
+			this.responseHandler = responseHandler;
+			this.errorHandler = errorHandler;
+			this.rejectedHandler = rejectedHandler;
+			this.retryOnAuth = retryOnAuth;
+			this.priority = priority;
+			this.supersedeKey = supersedeKey;
+			this.generation = generation;
+			this.breaker = circuitBreakers.computeIfAbsent(getEndpoint(request.url()), key -> new CircuitBreaker());
+		}
+
+		/**
+		 * Send the request
+		 *
+		 * @param dispatchKey Key to supersede older calls with. Only a call's first send
+		 *                    passes its key, so a retry or resend never cancels a newer call.
+		 */
+		void send(String dispatchKey)
+		{
+			if (isSuperseded())
+			{
+				cancelSuperseded();
+				return;
+			}
+
+			if (!breaker.allowRequest())
+			{
+				log.debug("Circuit open for {}, not sending request", getEndpoint(request.url()));
+				completeFromCache();
+				return;
+			}
+
+			long start = metrics.startTimer();
+			requestCount.increment();
+			recordBytesSent(request);
+
+			dispatcher.enqueue(httpClient.newCall(request), priority, dispatchKey, new Callback()
+			{
+				@Override
+				public void onFailure(Call call, IOException e)
+				{
+					requestLatency.recordSince(start);
+					if (call.isCanceled())
+					{
+						breaker.recordCancelled();
+						cancelSuperseded();
+						return;
+					}
+
+					requestErrors.increment();
+					breaker.recordFailure();
+					log.debug("Request failed: {}", e.getMessage());
+					if (retryLater())
+					{
+						return;
+					}
+
+					if (errorHandler != null)
+					{
+						errorHandler.accept("Connection error: " + e.getMessage());
+					}
+					completeFromCache();
+				}
+
+				@Override
+				public void onResponse(Call call, Response response) throws IOException
 				{
-					if (response.code() == 401 && retryOnAuth)
+					requestLatency.recordSince(start);
+					try (response)
 					{
-						// Token might have expired, try to re-authenticate
-						log.debug("Received 401, attempting to re-authenticate");
-						jwtToken = null;
-						
-						authenticateAsync().thenAccept(authSuccess ->
+						if (response.code() == 401 && retryOnAuth)
 						{
-							if (authSuccess)
+							breaker.recordSuccess();
+							retryAfterLogin();
+							return;
+						}
+
+						if (!response.isSuccessful())
+						{
+							requestErrors.increment();
+							log.debug("Request returned error: {}", response.code());
+
+							if (isServerError(response.code()))
 							{
-								// Rebuild request with new token
-								Request retryRequest = request.newBuilder()
-									.header("Authorization", "Bearer " + jwtToken)
-									.build();
-								
-								// Retry without auth retry to prevent infinite loop
-								executeAsync(retryRequest, responseHandler, errorHandler, false)
-									.thenAccept(future::complete);
+								breaker.recordFailure();
+								if (retryLater())
+								{
+									return;
+								}
+								if (errorHandler != null)
+								{
+									errorHandler.accept("Error " + response.code());
+								}
+								completeFromCache();
+								return;
 							}
-							else
+
+							// The server is up, it just rejected this request
+							breaker.recordSuccess();
+							if (errorHandler != null)
 							{
-								future.complete(null);
+								errorHandler.accept("Error " + response.code());
 							}
-						});
-						return;
+							if (rejectedHandler != null && isRejected(response.code()))
+							{
+								rejectedHandler.accept(response.code());
+							}
+							future.complete(null);
+							return;
+						}
+
+						breaker.recordSuccess();
+						if (isSuperseded())
+						{
+							// A retry that finished after a newer call was made, don't let it overwrite anything
+							cancelSuperseded();
+							return;
+						}
+
+						String jsonData = response.body() != null ? response.body().string() : "";
+						recordBytesReceived(response, jsonData);
+
+						long decodeStart = metrics.startTimer();
+						T result = responseHandler.apply(jsonData);
+						decodeLatency.recordSince(decodeStart);
+						if (isCacheable())
+						{
+							lastGoodResponses.put(getCacheKey(), jsonData);
+						}
+						future.complete(result);
 					}
-					
-					if (!response.isSuccessful())
+					catch (Exception e)
 					{
-						log.debug("Request returned error: {}", response.code());
-						if (errorHandler != null)
+						if (call.isCanceled())
 						{
-							errorHandler.accept("Error " + response.code());
+							// Superseded while the body was being read
+							breaker.recordCancelled();
+							cancelSuperseded();
+							return;
 						}
+						log.debug("Error processing response: {}", e.getMessage());
 						future.complete(null);
-						return;
 					}
+				}
+			});
+		}
 
-					String jsonData = response.body() != null ? response.body().string() : "";
-					T result = responseHandler.apply(jsonData);
-					future.complete(result);
+		/**
+		 * Token might have expired, re-authenticate and send the request once more
+		 */
+		private void retryAfterLogin()
+		{
+			log.debug("Received 401, attempting to re-authenticate");
+			invalidateToken(request.header("Authorization"));
+
+			// Concurrent 401s all wait on the same login
+			authenticateAsync().thenAccept(authSuccess ->
+			{
+				AuthToken token = authToken.get();
+				if (authSuccess && token != null)
+				{
+					// Rebuild request with new token
+					Request retryRequest = request.newBuilder()
+						.header("Authorization", "Bearer " + token.token)
+						.build();
+
+					// Retry without auth retry to prevent infinite loop. It stays this call's
+					// generation, so a newer call made meanwhile still wins.
+					ApiCall<T> retry = new ApiCall<>(retryRequest, responseHandler, errorHandler, rejectedHandler,
+						false, priority, supersedeKey, generation);
+					retry.send(null);
+					retry.future
+						.whenComplete((result, error) ->
+						{
+							if (error != null)
+							{
+								future.completeExceptionally(error);
+							}
+							else
+							{
+								future.complete(result);
+							}
+						});
 				}
-				catch (Exception e)
+				else
 				{
-					log.debug("Error processing response: {}", e.getMessage());
 					future.complete(null);
 				}
+			});
+		}
+
+		/**
+		 * Schedule another attempt if the request is safe to repeat and has attempts left
+		 *
+		 * @return Whether a retry was scheduled
+		 */
+		private boolean retryLater()
+		{
+			if (!isRetryable() || attempt + 1 >= MAX_ATTEMPTS)
+			{
+				return false;
 			}
-		});
-		
-		return future;
+
+			// Full jitter: anywhere up to the exponential backoff for this attempt
+			long backoff = Math.min(MAX_RETRY_DELAY_MS, BASE_RETRY_DELAY_MS << attempt);
+			long delay = ThreadLocalRandom.current().nextLong(backoff + 1);
+			attempt++;
+
+			log.debug("Retrying {} in {} ms (attempt {} of {})", request.url(), delay, attempt + 1, MAX_ATTEMPTS);
+			return scheduler.schedule("api-retry", () -> send(null), delay, TimeUnit.MILLISECONDS) != null;
+		}
+
+		/**
+		 * GET, PUT and DELETE can be repeated safely, and so can a POST with an idempotency key
+		 */
+		private boolean isRetryable()
+		{
+			String method = request.method();
+			return "GET".equals(method) || "PUT".equals(method) || "DELETE".equals(method)
+				|| request.header(IDEMPOTENCY_KEY_HEADER) != null;
+		}
+
+		/**
+		 * Whether a newer call with the same supersede key has been made since this one
+		 */
+		private boolean isSuperseded()
+		{
+			if (supersedeKey == null)
+			{
+				return false;
+			}
+			AtomicLong latest = supersedeGenerations.get(supersedeKey);
+			return latest != null && latest.get() != generation;
+		}
+
+		private void cancelSuperseded()
+		{
+			log.debug("Request superseded: {}", request.url());
+			future.completeExceptionally(new CancellationException("Superseded by a newer request"));
+		}
+
+		private boolean isCacheable()
+		{
+			return "GET".equals(request.method());
+		}
+
+		/**
+		 * Requests that supersede each other share a cache entry, since only the latest matters
+		 */
+		private String getCacheKey()
+		{
+			return supersedeKey != null ? supersedeKey : request.url().toString();
+		}
+
+		/**
+		 * Answer with the last good response for this request, or null if there isn't one
+		 */
+		private void completeFromCache()
+		{
+			if (isSuperseded())
+			{
+				cancelSuperseded();
+				return;
+			}
+
+			String cached = isCacheable() ? lastGoodResponses.get(getCacheKey()) : null;
+			if (cached == null)
+			{
+				future.complete(null);
+				return;
+			}
+
+			log.debug("Serving cached response for {}", request.url());
+			try
+			{
+				future.complete(responseHandler.apply(cached));
+			}
+			catch (Exception e)
+			{
+				log.debug("Error processing cached response: {}", e.getMessage());
+				future.complete(null);
+			}
+		}
+	}
+
+	private static boolean isServerError(int code)
+	{
+		return code >= 500 || code == 429;
+	}
+
+	/**
+	 * Whether a 4xx means the request itself is bad, rather than auth, a timeout or a
+	 * conflict that could clear up if it's sent again later
+	 */
+	private static boolean isRejected(int code)
+	{
+		return code >= 400 && code < 500 && code != 401 && code != 403 && code != 408 && code != 409;
+	}
+
+	/**
+	 * Name an endpoint by its path without ids, e.g. /transactions/active-flips/123
+	 * becomes transactions/active-flips
+	 */
+	private static String getEndpoint(HttpUrl url)
+	{
+		StringBuilder endpoint = new StringBuilder();
+		for (String segment : url.pathSegments())
+		{
+			if (segment.isEmpty() || segment.chars().allMatch(Character::isDigit))
+			{
+				continue;
+			}
+			if (endpoint.length() > 0)
+			{
+				endpoint.append('/');
+			}
+			endpoint.append(segment);
+		}
+		return endpoint.toString();
+	}
+
+	/**
+	 * Get the endpoints whose circuit breaker isn't closed, i.e. that are failing
+	 * fast and serving cached data
+	 */
+	public List<String> getDegradedEndpoints()
+	{
+		List<String> degraded = new ArrayList<>();
+		for (Map.Entry<String, CircuitBreaker> entry : circuitBreakers.entrySet())
+		{
+			if (entry.getValue().getState() != CircuitBreaker.State.CLOSED)
+			{
+				degraded.add(entry.getKey());
+			}
+		}
+		Collections.sort(degraded);
+		return degraded;
 	}
 	
 	/**
 	 * Execute an authenticated request asynchronously
 	 */
 	private <T> CompletableFuture<T> executeAuthenticatedAsync(Request.Builder requestBuilder,
-															   Function<String, T> responseHandler)
+															   Function<String, T> responseHandler,
+															   RequestDispatcher.Priority priority,
+															   String supersedeKey)
+	{
+		return executeAuthenticatedAsync(requestBuilder, responseHandler, null, priority, supersedeKey);
+	}
+
+	/**
+	 * Execute an authenticated request asynchronously
+	 *
+	 * @param rejectedHandler Called with the status if the API rejects the request for good
+	 */
+	private <T> CompletableFuture<T> executeAuthenticatedAsync(Request.Builder requestBuilder,
+															   Function<String, T> responseHandler,
+															   IntConsumer rejectedHandler,
+															   RequestDispatcher.Priority priority,
+															   String supersedeKey)
 	{
 		return ensureAuthenticatedAsync().thenCompose(authenticated ->
 		{
-			if (!authenticated)
+			AuthToken token = authToken.get();
+			if (!authenticated || token == null)
 			{
 				log.debug("Failed to authenticate");
 				return CompletableFuture.completedFuture(null);
 			}
 			
 			Request request = requestBuilder
-				.header("Authorization", "Bearer " + jwtToken)
+				.header("Authorization", "Bearer " + token.token)
 				.build();
 			
-			return executeAsync(request, responseHandler, null, true);
+			return executeAsync(request, responseHandler, null, rejectedHandler, true, priority, supersedeKey);
 		});
 	}
 	
 	/**
-	 * Authenticate with the API and obtain a JWT token via login (async)
+	 * Authenticate with the API and obtain a JWT token via login (async).
+	 * Only one login runs at a time; callers that arrive while one is in flight
+	 * share its result.
 	 */
 	private CompletableFuture<Boolean> authenticateAsync()
 	{
-		return loginAsync(config.email(), config.password())
-			.thenApply(result -> result.success);
+		while (true)
+		{
+			CompletableFuture<Boolean> inFlight = loginInFlight.get();
+			if (inFlight != null)
+			{
+				return inFlight;
+			}
+
+			CompletableFuture<Boolean> login = new CompletableFuture<>();
+			if (!loginInFlight.compareAndSet(null, login))
+			{
+				continue;
+			}
+
+			loginAsync(config.email(), config.password()).whenComplete((result, error) ->
+			{
+				loginInFlight.compareAndSet(login, null);
+				login.complete(error == null && result != null && result.success);
+			});
+			return login;
+		}
+	}
+
+	/**
+	 * Store a new token and schedule its refresh
+	 */
+	private void setToken(String token)
+	{
+		long now = System.currentTimeMillis();
+		long expiresAt = getTokenExpiry(token);
+		if (expiresAt <= now)
+		{
+			expiresAt = now + DEFAULT_TOKEN_LIFETIME_MS;
+		}
+		long refreshAt = expiresAt - Math.min(TOKEN_REFRESH_AHEAD_MS, (expiresAt - now) / 2);
+
+		authToken.set(new AuthToken(token, expiresAt, refreshAt));
+		scheduleTokenRefresh(refreshAt - now);
+	}
+
+	/**
+	 * Drop the token a request was rejected with, unless it has already been replaced
+	 *
+	 * @param authorization The request's Authorization header
+	 */
+	private void invalidateToken(String authorization)
+	{
+		AuthToken current = authToken.get();
+		if (current != null && ("Bearer " + current.token).equals(authorization))
+		{
+			authToken.compareAndSet(current, null);
+		}
+	}
+
+	/**
+	 * Read the expiry time from a JWT's exp claim
+	 *
+	 * @return Expiry in epoch millis, or 0 if it can't be read
+	 */
+	private long getTokenExpiry(String token)
+	{
+		try
+		{
+			String[] parts = token.split("\\.");
+			if (parts.length < 2)
+			{
+				return 0;
+			}
+
+			String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+			JsonObject claims = gson.fromJson(payload, JsonObject.class);
+			if (claims != null && claims.has("exp"))
+			{
+				return claims.get("exp").getAsLong() * 1000;
+			}
+		}
+		catch (Exception e)
+		{
+			log.debug("Could not read token expiry: {}", e.getMessage());
+		}
+		return 0;
+	}
+
+	/**
+	 * Log in again in the background before the token expires, so no request has
+	 * to wait for a login
+	 */
+	private void scheduleTokenRefresh(long delayMs)
+	{
+		ScheduledFuture<?> task = scheduler.schedule("token-refresh", this::refreshToken,
+			Math.max(0, delayMs), TimeUnit.MILLISECONDS);
+		ScheduledFuture<?> previous = tokenRefreshTask.getAndSet(task);
+		if (previous != null)
+		{
+			previous.cancel(false);
+		}
+	}
+
+	private void refreshToken()
+	{
+		String email = config.email();
+		String password = config.password();
+		if (email == null || email.isEmpty() || password == null || password.isEmpty())
+		{
+			return;
+		}
+
+		log.debug("Refreshing auth token");
+		authenticateAsync().thenAccept(success ->
+		{
+			AuthToken token = authToken.get();
+			if (!success && token != null && token.isValid(System.currentTimeMillis()))
+			{
+				// The old token still works for now, try again later
+				scheduleTokenRefresh(TOKEN_REFRESH_RETRY_MS);
+			}
+		});
 	}
 	
 	/**
@@ -228,7 +847,7 @@ public class FlipSmartApiClient
 			.post(body)
 			.build();
 		
-		httpClient.newCall(request).enqueue(new Callback()
+		dispatcher.enqueue(httpClient.newCall(request), RequestDispatcher.Priority.AUTH, null, new Callback()
 		{
 			@Override
 			public void onFailure(Call call, IOException e)
@@ -262,13 +881,7 @@ public class FlipSmartApiClient
 					String jsonData = response.body().string();
 					JsonObject tokenResponse = gson.fromJson(jsonData, JsonObject.class);
 					
-					synchronized (authLock)
-					{
-						jwtToken = tokenResponse.get("access_token").getAsString();
-						// JWT tokens from this API expire in 7 days, but we'll check earlier
-						// Set expiry to 6 days to refresh before actual expiry
-						tokenExpiry = System.currentTimeMillis() + (6 * 24 * 60 * 60 * 1000L);
-					}
+					setToken(tokenResponse.get("access_token").getAsString());
 					
 					log.info("Successfully authenticated with API");
 					future.complete(new AuthResult(true, "Login successful!"));
@@ -342,7 +955,7 @@ public class FlipSmartApiClient
 			.post(body)
 			.build();
 		
-		httpClient.newCall(request).enqueue(new Callback()
+		dispatcher.enqueue(httpClient.newCall(request), RequestDispatcher.Priority.AUTH, null, new Callback()
 		{
 			@Override
 			public void onFailure(Call call, IOException e)
@@ -372,11 +985,7 @@ public class FlipSmartApiClient
 					String jsonData = response.body().string();
 					JsonObject tokenResponse = gson.fromJson(jsonData, JsonObject.class);
 					
-					synchronized (authLock)
-					{
-						jwtToken = tokenResponse.get("access_token").getAsString();
-						tokenExpiry = System.currentTimeMillis() + (6 * 24 * 60 * 60 * 1000L);
-					}
+					setToken(tokenResponse.get("access_token").getAsString());
 					
 					log.info("Successfully signed up and authenticated with API");
 					future.complete(new AuthResult(true, "Account created successfully!"));
@@ -414,7 +1023,8 @@ public class FlipSmartApiClient
 	 */
 	public boolean isAuthenticated()
 	{
-		return jwtToken != null && System.currentTimeMillis() < tokenExpiry;
+		AuthToken token = authToken.get();
+		return token != null && token.isValid(System.currentTimeMillis());
 	}
 	
 	/**
@@ -422,10 +1032,11 @@ public class FlipSmartApiClient
 	 */
 	public void clearAuth()
 	{
-		synchronized (authLock)
+		authToken.set(null);
+		ScheduledFuture<?> refresh = tokenRefreshTask.getAndSet(null);
+		if (refresh != null)
 		{
-			jwtToken = null;
-			tokenExpiry = 0;
+			refresh.cancel(false);
 		}
 	}
 	
@@ -450,7 +1061,7 @@ public class FlipSmartApiClient
 		{
 			log.info("Successfully updated RSN to: {}", rsn);
 			return true;
-		}).exceptionally(e ->
+		}, RequestDispatcher.Priority.AUTH, null).exceptionally(e ->
 		{
 			log.debug("Failed to update RSN: {}", e.getMessage());
 			return false;
@@ -463,8 +1074,16 @@ public class FlipSmartApiClient
 	private CompletableFuture<Boolean> ensureAuthenticatedAsync()
 	{
 		// Check if we have a token and it's not expired
-		if (jwtToken != null && System.currentTimeMillis() < tokenExpiry)
+		AuthToken token = authToken.get();
+		long now = System.currentTimeMillis();
+		if (token != null && token.isValid(now))
 		{
+			if (now >= token.refreshAt)
+			{
+				// Due for a refresh (e.g. the scheduled one was missed while asleep),
+				// so start one in the background and keep using this token meanwhile
+				authenticateAsync();
+			}
 			return CompletableFuture.completedFuture(true);
 		}
 		
@@ -481,8 +1100,16 @@ public class FlipSmartApiClient
 		CachedAnalysis cached = analysisCache.get(itemId);
 		if (cached != null && !cached.isExpired())
 		{
+			cacheHits.increment();
 			return CompletableFuture.completedFuture(cached.getAnalysis());
 		}
+		cacheMisses.increment();
+
+		CompletableFuture<FlipAnalysis> inFlight = analysisInFlight.get(itemId);
+		if (inFlight != null)
+		{
+			return inFlight;
+		}
 
 		String apiUrl = getApiUrl();
 		String url = String.format("%s/analysis/%d?timeframe=1h", apiUrl, itemId);
@@ -491,12 +1118,36 @@ public class FlipSmartApiClient
 			.url(url)
 			.get();
 		
-		return executeAuthenticatedAsync(requestBuilder, jsonData ->
+		CompletableFuture<FlipAnalysis> future = new CompletableFuture<>();
+		inFlight = analysisInFlight.putIfAbsent(itemId, future);
+		if (inFlight != null)
+		{
+			return inFlight;
+		}
+
+		executeAuthenticatedAsync(requestBuilder, jsonData ->
 		{
 			FlipAnalysis analysis = gson.fromJson(jsonData, FlipAnalysis.class);
 			analysisCache.put(itemId, new CachedAnalysis(analysis));
+			Consumer<FlipAnalysis> listener = analysisListener;
+			if (listener != null && analysis != null)
+			{
+				listener.accept(analysis);
+			}
 			return analysis;
+		}, RequestDispatcher.Priority.ANALYSIS, null).whenComplete((analysis, error) ->
+		{
+			analysisInFlight.remove(itemId, future);
+			if (error != null)
+			{
+				future.completeExceptionally(error);
+			}
+			else
+			{
+				future.complete(analysis);
+			}
 		});
+		return future;
 	}
 
 	/**
@@ -521,47 +1172,129 @@ public class FlipSmartApiClient
 			.get();
 		
 		return executeAuthenticatedAsync(requestBuilder, jsonData ->
-			gson.fromJson(jsonData, FlipFinderResponse.class));
+			gson.fromJson(jsonData, FlipFinderResponse.class),
+			RequestDispatcher.Priority.RECOMMENDATIONS, "flip-finder");
 	}
 
 	/**
-	 * Record a Grand Exchange transaction asynchronously
+	 * Open the WebSocket the API pushes change notifications on
+	 *
+	 * @return The socket, or null if not authenticated
+	 */
+	public CompletableFuture<WebSocket> openUpdatesSocket(WebSocketListener listener)
+	{
+		return ensureAuthenticatedAsync().thenApply(authenticated ->
+		{
+			AuthToken token = authToken.get();
+			if (!authenticated || token == null)
+			{
+				return null;
+			}
+
+			Request request = new Request.Builder()
+				.url(getApiUrl() + "/updates")
+				.header("Authorization", "Bearer " + token.token)
+				.build();
+			return httpClient.newWebSocket(request, listener);
+		});
+	}
+
+	/**
+	 * Record a Grand Exchange transaction asynchronously. The transaction is journaled
+	 * until the API accepts it, so it can be resent if this attempt fails.
 	 */
 	public CompletableFuture<Void> recordTransactionAsync(int itemId, String itemName, boolean isBuy, 
 														  int quantity, int pricePerItem, Integer geSlot, 
 														  Integer recommendedSellPrice)
+	{
+		TransactionJournal.Entry entry = transactionJournal.add(itemId, itemName, isBuy, quantity, pricePerItem,
+			geSlot, recommendedSellPrice);
+		return sendTransactionAsync(entry);
+	}
+
+	/**
+	 * Resend transactions that the API hasn't accepted yet
+	 */
+	public void resendJournaledTransactions()
+	{
+		List<TransactionJournal.Entry> unsent = transactionJournal.takeUnsent();
+		if (!unsent.isEmpty())
+		{
+			log.info("Resending {} unsent transactions", unsent.size());
+		}
+		for (TransactionJournal.Entry entry : unsent)
+		{
+			sendTransactionAsync(entry);
+		}
+	}
+
+	private CompletableFuture<Void> sendTransactionAsync(TransactionJournal.Entry entry)
 	{
 		String apiUrl = getApiUrl();
 		String url = String.format("%s/transactions", apiUrl);
 		
 		// Create JSON body
 		JsonObject jsonBody = new JsonObject();
-		jsonBody.addProperty("item_id", itemId);
-		jsonBody.addProperty("item_name", itemName);
-		jsonBody.addProperty("is_buy", isBuy);
-		jsonBody.addProperty("quantity", quantity);
-		jsonBody.addProperty("price_per_item", pricePerItem);
-		if (geSlot != null)
+		jsonBody.addProperty("item_id", entry.itemId);
+		jsonBody.addProperty("item_name", entry.itemName);
+		jsonBody.addProperty("is_buy", entry.isBuy);
+		jsonBody.addProperty("quantity", entry.quantity);
+		jsonBody.addProperty("price_per_item", entry.pricePerItem);
+		if (entry.geSlot != null)
 		{
-			jsonBody.addProperty("ge_slot", geSlot);
+			jsonBody.addProperty("ge_slot", entry.geSlot);
 		}
-		if (recommendedSellPrice != null)
+		if (entry.recommendedSellPrice != null)
 		{
-			jsonBody.addProperty("recommended_sell_price", recommendedSellPrice);
+			jsonBody.addProperty("recommended_sell_price", entry.recommendedSellPrice);
 		}
 		
-		RequestBody body = RequestBody.create(JSON, jsonBody.toString());
-		
+		// The journal id lets the API recognise a resent transaction
 		Request.Builder requestBuilder = new Request.Builder()
 			.url(url)
-			.post(body);
+			.header(IDEMPOTENCY_KEY_HEADER, entry.id);
+
+		String json = jsonBody.toString();
+		RequestBody body = null;
+		if (config.compressTransactions())
+		{
+			try
+			{
+				body = gzipJson(json);
+				requestBuilder.header("Content-Encoding", "gzip");
+			}
+			catch (IOException e)
+			{
+				log.debug("Could not compress transaction, sending it uncompressed: {}", e.getMessage());
+			}
+		}
+		if (body == null)
+		{
+			body = RequestBody.create(JSON, json);
+		}
+		requestBuilder.post(body);
 		
 		return executeAuthenticatedAsync(requestBuilder, jsonData ->
 		{
 			JsonObject responseObj = gson.fromJson(jsonData, JsonObject.class);
-			log.info("Transaction recorded: {}", responseObj.get("message").getAsString());
-			return null;
-		}).thenApply(v -> null);
+			log.info("Transaction recorded: {}", responseObj != null && responseObj.has("message")
+				? responseObj.get("message").getAsString()
+				: entry.itemName);
+			return true;
+		}, status -> transactionJournal.reject(entry.id, status), RequestDispatcher.Priority.TRANSACTION, null)
+			.handle((recorded, error) ->
+			{
+				if (Boolean.TRUE.equals(recorded))
+				{
+					transactionJournal.complete(entry.id);
+				}
+				else
+				{
+					// Does nothing if the API rejected it and it has already been dropped
+					transactionJournal.release(entry.id);
+				}
+				return null;
+			});
 	}
 
 	/**
@@ -577,7 +1310,8 @@ public class FlipSmartApiClient
 			.get();
 		
 		return executeAuthenticatedAsync(requestBuilder, jsonData ->
-			gson.fromJson(jsonData, ActiveFlipsResponse.class));
+			gson.fromJson(jsonData, ActiveFlipsResponse.class),
+			RequestDispatcher.Priority.FLIPS, "active-flips");
 	}
 
 	/**
@@ -596,7 +1330,7 @@ public class FlipSmartApiClient
 		{
 			log.info("Successfully dismissed active flip for item {}", itemId);
 			return true;
-		}).exceptionally(e ->
+		}, RequestDispatcher.Priority.FLIPS, null).exceptionally(e ->
 		{
 			log.warn("Failed to dismiss active flip: {}", e.getMessage());
 			return false;
@@ -616,7 +1350,16 @@ public class FlipSmartApiClient
 			.get();
 		
 		return executeAuthenticatedAsync(requestBuilder, jsonData ->
-			gson.fromJson(jsonData, CompletedFlipsResponse.class));
+			gson.fromJson(jsonData, CompletedFlipsResponse.class),
+			RequestDispatcher.Priority.FLIPS, "completed-flips");
+	}
+
+	/**
+	 * Set what to call with each analysis fetched from the API, or null for nothing
+	 */
+	public void setAnalysisListener(Consumer<FlipAnalysis> listener)
+	{
+		analysisListener = listener;
 	}
 
 	/**
@@ -31,6 +31,42 @@ public interface FlipSmartConfig extends Config
 		return "";
 	}
 
+	@ConfigItem(
+		keyName = "maxConcurrentRequests",
+		name = "Max Concurrent Requests",
+		description = "How many API requests can run at once (1-8). Transactions and logins are sent first.",
+		section = advancedSection,
+		position = 1
+	)
+	default int maxConcurrentRequests()
+	{
+		return 4;
+	}
+
+	@ConfigItem(
+		keyName = "compressTransactions",
+		name = "Compress Transaction Uploads",
+		description = "Gzip transactions sent to the API. Only turn this on if your API server accepts gzip request bodies.",
+		section = advancedSection,
+		position = 2
+	)
+	default boolean compressTransactions()
+	{
+		return false;
+	}
+
+	@ConfigItem(
+		keyName = "liveUpdates",
+		name = "Live Updates",
+		description = "Keep a connection open so the API can push changes as they happen. Falls back to the refresh interval when the connection drops.",
+		section = advancedSection,
+		position = 3
+	)
+	default boolean liveUpdates()
+	{
+		return false;
+	}
+
 	// Hidden config items (not shown in UI, but used for persistence)
 	// These are accessed via ConfigManager directly
 
@@ -119,7 +155,7 @@ public interface FlipSmartConfig extends Config
 	@ConfigItem(
 		keyName = "minProfit",
 		name = "Minimum Profit",
-		description = "Minimum profit margin to highlight (in GP)",
+		description = "Hide recommendations with a margin below this (in GP)",
 		section = flipFinderSection,
 		position = 4
 	)
@@ -210,6 +246,53 @@ public interface FlipSmartConfig extends Config
 		return true;
 	}
 
+	// ============================================
+	// Alerts Section
+	// ============================================
+	@ConfigSection(
+		name = "Price Alerts",
+		description = "Get notified when items meet your margin, ROI, volume or price targets",
+		position = 4,
+		closedByDefault = true
+	)
+	String alertsSection = "alerts";
+
+	@ConfigItem(
+		keyName = "alertRules",
+		name = "Alert Rules",
+		description = "One rule per line, an item name or id (or all, members, f2p), a colon and conditions on margin, roi, volume or price, "
+			+ "e.g. \"Abyssal whip: margin >= 50k and volume > 500\". Lines starting with # are ignored.",
+		section = alertsSection,
+		position = 0
+	)
+	default String alertRules()
+	{
+		return "";
+	}
+
+	// ============================================
+	// Debug Section
+	// ============================================
+	@ConfigSection(
+		name = "Debug",
+		description = "Diagnostics for troubleshooting the plugin",
+		position = 5,
+		closedByDefault = true
+	)
+	String debugSection = "debug";
+
+	@ConfigItem(
+		keyName = "showDebugMetrics",
+		name = "Show Metrics Overlay",
+		description = "Record timings for the overlay, GE events, API calls and panel refreshes and show them in an overlay",
+		section = debugSection,
+		position = 0
+	)
+	default boolean showDebugMetrics()
+	{
+		return false;
+	}
+
 	// ============================================
 	// Flip Style Enum
 	// ============================================
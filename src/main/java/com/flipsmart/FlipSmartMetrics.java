@@ -0,0 +1,269 @@
+package com.flipsmart;
+
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free counters and latency histograms for the plugin's hot paths, shown by
+ * {@link MetricsOverlay} when debug metrics are turned on.
+ *
+ * Call sites look up their counters and histograms once and keep them in fields.
+ * While metrics are off, {@link #startTimer()} returns 0 and every record call is a
+ * single branch that does nothing.
+ */
+@Singleton
+public class FlipSmartMetrics
+{
+	// Latencies below this many microseconds get a bucket each
+	private static final int LINEAR_BUCKETS = 16;
+	// Above that, each power of two is split into this many buckets (about 12% error)
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = LINEAR_BUCKETS + (63 - 4) * SUB_BUCKETS;
+
+	private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+	private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+	private volatile boolean enabled;
+	private volatile long resetNanos = System.nanoTime();
+
+	/**
+	 * A count of events
+	 */
+	public final class Counter
+	{
+		private final LongAdder count = new LongAdder();
+
+		public void increment()
+		{
+			if (enabled)
+			{
+				count.increment();
+			}
+		}
+
+		/**
+		 * Add an amount, e.g. a number of bytes
+		 */
+		public void add(long amount)
+		{
+			if (enabled)
+			{
+				count.add(amount);
+			}
+		}
+
+		public long getCount()
+		{
+			return count.sum();
+		}
+
+		/**
+		 * Events per second since the metrics were last reset
+		 */
+		public double getRate()
+		{
+			double seconds = getElapsedSeconds();
+			return seconds > 0 ? count.sum() / seconds : 0;
+		}
+	}
+
+	/**
+	 * Latencies in log-linear microsecond buckets
+	 */
+	public final class Histogram
+	{
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		private final LongAdder count = new LongAdder();
+
+		/**
+		 * Record the time since a value returned by {@link #startTimer()}
+		 */
+		public void recordSince(long startNanos)
+		{
+			if (startNanos != 0)
+			{
+				long micros = (System.nanoTime() - startNanos) / 1000;
+				buckets.incrementAndGet(bucketFor(micros));
+				count.increment();
+			}
+		}
+
+		/**
+		 * Record a duration measured some other way, e.g. between two wall clock times
+		 */
+		public void recordMillis(long millis)
+		{
+			if (enabled)
+			{
+				buckets.incrementAndGet(bucketFor(millis * 1000));
+				count.increment();
+			}
+		}
+
+		public long getCount()
+		{
+			return count.sum();
+		}
+
+		/**
+		 * Estimate a percentile, in milliseconds
+		 *
+		 * @param quantile Between 0 and 1, e.g. 0.99 for p99
+		 */
+		public double getPercentileMillis(double quantile)
+		{
+			long total = count.sum();
+			if (total == 0)
+			{
+				return 0;
+			}
+
+			long rank = (long) Math.ceil(quantile * total);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++)
+			{
+				seen += buckets.get(i);
+				if (seen >= rank)
+				{
+					return bucketMidpoint(i) / 1000.0;
+				}
+			}
+			return bucketMidpoint(BUCKETS - 1) / 1000.0;
+		}
+
+		void reset()
+		{
+			for (int i = 0; i < BUCKETS; i++)
+			{
+				buckets.set(i, 0);
+			}
+			count.reset();
+		}
+	}
+
+	/**
+	 * Get or create a counter
+	 */
+	public Counter counter(String name)
+	{
+		return counters.computeIfAbsent(name, key -> new Counter());
+	}
+
+	/**
+	 * Get or create a latency histogram
+	 */
+	public Histogram histogram(String name)
+	{
+		return histograms.computeIfAbsent(name, key -> new Histogram());
+	}
+
+	/**
+	 * Start timing something, to be passed to {@link Histogram#recordSince}
+	 *
+	 * @return The current time, or 0 if metrics are off
+	 */
+	public long startTimer()
+	{
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Turn recording on or off. Turning it on starts from empty metrics.
+	 */
+	public void setEnabled(boolean enabled)
+	{
+		if (enabled && !this.enabled)
+		{
+			reset();
+		}
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Clear all counters and histograms
+	 */
+	public void reset()
+	{
+		for (Counter counter : counters.values())
+		{
+			counter.count.reset();
+		}
+		for (Histogram histogram : histograms.values())
+		{
+			histogram.reset();
+		}
+		resetNanos = System.nanoTime();
+	}
+
+	/**
+	 * Seconds since the metrics were last reset
+	 */
+	public double getElapsedSeconds()
+	{
+		return (System.nanoTime() - resetNanos) / 1_000_000_000.0;
+	}
+
+	/**
+	 * Get all counters, sorted by name
+	 */
+	public Map<String, Counter> getCounters()
+	{
+		return new TreeMap<>(counters);
+	}
+
+	/**
+	 * Get all histograms, sorted by name
+	 */
+	public Map<String, Histogram> getHistograms()
+	{
+		return new TreeMap<>(histograms);
+	}
+
+	/**
+	 * Share of lookups that hit a cache, from a pair of hit and miss counters
+	 *
+	 * @return Hit rate between 0 and 1, or -1 if there were no lookups
+	 */
+	public double getHitRate(String hitCounter, String missCounter)
+	{
+		long hits = counter(hitCounter).getCount();
+		long misses = counter(missCounter).getCount();
+		long lookups = hits + misses;
+		return lookups > 0 ? (double) hits / lookups : -1;
+	}
+
+	private static int bucketFor(long micros)
+	{
+		if (micros < LINEAR_BUCKETS)
+		{
+			return (int) Math.max(0, micros);
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return Math.min(BUCKETS - 1, LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket);
+	}
+
+	private static double bucketMidpoint(int bucket)
+	{
+		if (bucket < LINEAR_BUCKETS)
+		{
+			return bucket + 0.5;
+		}
+
+		int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+		int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+		long lower = (long) (SUB_BUCKETS + subBucket) * width;
+		return lower + width / 2.0;
+	}
+}
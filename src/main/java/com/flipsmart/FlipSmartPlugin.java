@@ -7,11 +7,10 @@ import net.runelite.api.Client;
 import net.runelite.api.GameState;
 import net.runelite.api.GrandExchangeOffer;
 import net.runelite.api.GrandExchangeOfferState;
-import net.runelite.api.Item;
-import net.runelite.api.ItemContainer;
 import net.runelite.api.events.GameStateChanged;
 import net.runelite.api.events.GrandExchangeOfferChanged;
 import net.runelite.api.events.ItemContainerChanged;
+import net.runelite.client.events.ConfigChanged;
 import net.runelite.client.input.MouseListener;
 import net.runelite.client.input.MouseManager;
 import net.runelite.client.config.ConfigManager;
@@ -23,8 +22,8 @@ import net.runelite.client.ui.overlay.OverlayManager;
 import javax.inject.Inject;
 import java.awt.Point;
 import java.awt.Rectangle;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @PluginDescriptor(
@@ -47,6 +46,9 @@ public class FlipSmartPlugin extends Plugin
 	@Inject
 	private GrandExchangeOverlay geOverlay;
 
+	@Inject
+	private MetricsOverlay metricsOverlay;
+
 	@Inject
 	private FlipSmartApiClient apiClient;
 
@@ -62,6 +64,51 @@ public class FlipSmartPlugin extends Plugin
 	@Inject
 	private ConfigManager configManager;
 
+	@Inject
+	@Getter
+	private AccountManager accountManager;
+
+	@Inject
+	@Getter
+	private PriceHistoryStore priceHistoryStore;
+
+	@Inject
+	@Getter
+	private FillHistoryStore fillHistoryStore;
+
+	@Inject
+	@Getter
+	private CompletedFlipStore completedFlipStore;
+
+	@Inject
+	@Getter
+	private FlipHistoryExporter historyExporter;
+
+	@Inject
+	@Getter
+	private RecommendationAnalytics recommendationAnalytics;
+
+	@Inject
+	@Getter
+	private FlipSmartScheduler scheduler;
+
+	@Inject
+	@Getter
+	private FlipSmartMetrics metrics;
+
+	@Inject
+	private TransactionJournal transactionJournal;
+
+	@Inject
+	private PushUpdateChannel pushUpdateChannel;
+
+	@Inject
+	private StaleOfferMonitor staleOfferMonitor;
+
+	@Inject
+	@Getter
+	private PriceAlertEngine priceAlertEngine;
+
 	// Flip Finder panel
 	private FlipFinderPanel flipFinderPanel;
 	private net.runelite.client.ui.NavigationButton flipFinderNavButton;
@@ -70,50 +117,64 @@ public class FlipSmartPlugin extends Plugin
 	@Getter
 	private int currentCashStack = 0;
 
-	// Auto-refresh timer for flip finder
-	private java.util.Timer flipFinderRefreshTimer;
+	// How often to resend transactions the API hasn't accepted yet
+	private static final long TRANSACTION_RESEND_MINUTES = 1;
+
+	// Delay before refreshing the panel after a fill, so a burst of fills only refreshes once
+	private static final long FILL_REFRESH_DELAY_MS = 500;
+	// Delay before saving buy limit usage after a buy, so a burst of fills is saved once
+	private static final long BUY_LIMIT_SAVE_DELAY_MS = 30_000;
+
+	// Scheduled flip finder auto-refresh and pending post-fill refresh
+	private ScheduledFuture<?> flipFinderRefreshTask;
+	private ScheduledFuture<?> fillRefreshTask;
+	private ScheduledFuture<?> buyLimitSaveTask;
 	private long lastFlipFinderRefresh = 0;
 
-	// Track GE offers to detect when they complete
-	private final Map<Integer, TrackedOffer> trackedOffers = new ConcurrentHashMap<>();
-	
+	// Cash stack when a change in it last refreshed recommendations
+	private long lastRefreshBudget = 0;
+	// Refresh once the cash stack moves by this share of a slot's budget, and at least this many coins
+	private static final double BUDGET_CHANGE_SHARE = 0.25;
+	private static final long MIN_BUDGET_CHANGE = 100_000;
+	private static final long BUDGET_REFRESH_INTERVAL_MS = 30_000;
+
+	// Time spent handling GE offer events, for the metrics overlay
+	private FlipSmartMetrics.Histogram offerChangedLatency;
+
+	// Flip finder refreshes skipped because live updates were connected
+	private FlipSmartMetrics.Counter skippedPolls;
+
 	// Track login to avoid recording existing offers as new transactions
 	private static final int GE_LOGIN_BURST_WINDOW = 3; // ticks
 	private int lastLoginTick = 0;
 	
-	// Track recommended prices from flip finder (item_id -> recommended_sell_price)
-	private final Map<Integer, Integer> recommendedPrices = new ConcurrentHashMap<>();
+	// Recommendations shown by the flip finder, so buys can be attributed to them
+	@Getter
+	private final RecommendationRegistry recommendations = new RecommendationRegistry();
 
 	/**
-	 * Helper class to track GE offers
+	 * Buy limit usage of the account that's logged in
 	 */
-	private static class TrackedOffer
+	public BuyLimitTracker getBuyLimitTracker()
 	{
-		int itemId;
-		String itemName;
-		boolean isBuy;
-		int totalQuantity;
-		int price;
-		int previousQuantitySold;
+		return accountManager.getCurrent().getBuyLimits();
+	}
 
-		TrackedOffer(int itemId, String itemName, boolean isBuy, int totalQuantity, int price, int quantitySold)
-		{
-			this.itemId = itemId;
-			this.itemName = itemName;
-			this.isBuy = isBuy;
-			this.totalQuantity = totalQuantity;
-			this.price = price;
-			this.previousQuantitySold = quantitySold;
-		}
+	/**
+	 * Number of empty GE slots on the account that's logged in
+	 */
+	public int getFreeGeSlots()
+	{
+		return accountManager.getCurrent().getFreeSlots();
 	}
 	
 	/**
-	 * Store recommended sell price when user views/acts on a flip recommendation
+	 * Store a recommendation when user views/acts on it, with the style it was ranked for
 	 */
-	public void setRecommendedSellPrice(int itemId, int recommendedSellPrice)
+	public void recordRecommendation(FlipRecommendation rec, FlipSmartConfig.FlipStyle style)
 	{
-		recommendedPrices.put(itemId, recommendedSellPrice);
-		log.debug("Stored recommended sell price for item {}: {}", itemId, recommendedSellPrice);
+		recommendations.put(rec.getItemId(), rec.getRecommendedSellPrice(), rec.getRecommendedBuyPrice(),
+			style, System.currentTimeMillis());
 	}
 	
 	/**
@@ -122,15 +183,16 @@ public class FlipSmartPlugin extends Plugin
 	public java.util.List<PendingOrder> getPendingBuyOrders()
 	{
 		java.util.List<PendingOrder> pendingOrders = new java.util.ArrayList<>();
+		long now = System.currentTimeMillis();
 		
-		for (java.util.Map.Entry<Integer, TrackedOffer> entry : trackedOffers.entrySet())
+		for (java.util.Map.Entry<Integer, AccountState.TrackedOffer> entry : accountManager.getCurrent().offers.entrySet())
 		{
-			TrackedOffer offer = entry.getValue();
+			AccountState.TrackedOffer offer = entry.getValue();
 			
 			// Only include buy orders with 0 fills
 			if (offer.isBuy && offer.previousQuantitySold == 0)
 			{
-				Integer recommendedSellPrice = recommendedPrices.get(offer.itemId);
+				Integer recommendedSellPrice = recommendations.getSellPrice(offer.itemId, now);
 				
 				PendingOrder pending = new PendingOrder(
 					offer.itemId,
@@ -176,7 +238,26 @@ public class FlipSmartPlugin extends Plugin
 	{
 		log.info("Flip Smart started!");
 		overlayManager.add(geOverlay);
+		overlayManager.add(metricsOverlay);
 		mouseManager.registerMouseListener(overlayMouseListener);
+		metrics.setEnabled(config.showDebugMetrics());
+		offerChangedLatency = metrics.histogram("ge.offerChanged");
+		skippedPolls = metrics.counter("push.skippedPolls");
+		scheduler.start();
+		
+		// Restore each account's offers and buy limit usage, and local history, from the previous session
+		accountManager.load();
+		recommendationAnalytics.load();
+		// Price history can be large, so it's read in the background. Snapshots recorded
+		// before it finishes are kept.
+		scheduler.supply("price-history-load", () ->
+		{
+			priceHistoryStore.load();
+			return null;
+		});
+		fillHistoryStore.load();
+		completedFlipStore.load();
+		transactionJournal.load();
 		
 		// Initialize Flip Finder panel
 		if (config.showFlipFinder())
@@ -184,8 +265,23 @@ public class FlipSmartPlugin extends Plugin
 			initializeFlipFinderPanel();
 		}
 
-		// Start auto-refresh timer for flip finder
-		startFlipFinderRefreshTimer();
+		// Start auto-refresh for flip finder
+		scheduleFlipFinderRefresh();
+		if (config.liveUpdates())
+		{
+			pushUpdateChannel.start(this::onPushUpdate);
+		}
+
+		// Look for offers the market has moved away from
+		staleOfferMonitor.start();
+
+		// Check alert rules against every analysis fetched, recommendations are passed in by the panel
+		priceAlertEngine.setRules(config.alertRules());
+		apiClient.setAnalysisListener(priceAlertEngine::onAnalysis);
+
+		// Keep retrying transactions recorded while the API was unreachable
+		scheduler.scheduleAtFixedRate("transaction-resend", apiClient::resendJournaledTransactions,
+			TRANSACTION_RESEND_MINUTES, TRANSACTION_RESEND_MINUTES, TimeUnit.MINUTES);
 		
 		// Note: Cash stack and RSN will be synced when player logs in via onGameStateChanged
 		// Don't access client data during startup - must be on client thread
@@ -196,6 +292,8 @@ public class FlipSmartPlugin extends Plugin
 	{
 		log.info("Flip Smart stopped!");
 		overlayManager.remove(geOverlay);
+		overlayManager.remove(metricsOverlay);
+		metrics.setEnabled(false);
 		mouseManager.unregisterMouseListener(overlayMouseListener);
 		
 		// Remove flip finder panel
@@ -204,8 +302,20 @@ public class FlipSmartPlugin extends Plugin
 			clientToolbar.removeNavigation(flipFinderNavButton);
 		}
 		
-		// Stop auto-refresh timer
-		stopFlipFinderRefreshTimer();
+		// Stop auto-refresh and any other scheduled work
+		cancelFlipFinderRefresh();
+		pushUpdateChannel.stop();
+		staleOfferMonitor.stop();
+		apiClient.setAnalysisListener(null);
+		scheduler.stop();
+		
+		// Persist each account's offers and buy limit usage for the next session
+		accountManager.save();
+		recommendationAnalytics.save();
+		transactionJournal.save();
+		priceHistoryStore.close();
+		fillHistoryStore.close();
+		completedFlipStore.close();
 	}
 
 	@Subscribe
@@ -248,25 +358,104 @@ public class FlipSmartPlugin extends Plugin
 		String rsn = client.getLocalPlayer().getName();
 		if (rsn != null && !rsn.isEmpty())
 		{
+			switchAccount();
 			log.debug("Syncing RSN: {}", rsn);
 			apiClient.updateRSN(rsn);
 		}
 	}
 
+	/**
+	 * Switch to the logged in account's state if it isn't current yet
+	 *
+	 * @return The logged in account's state
+	 */
+	private AccountState switchAccount()
+	{
+		AccountState previous = accountManager.getCurrent();
+		String rsn = client.getLocalPlayer() != null ? client.getLocalPlayer().getName() : null;
+		if (rsn == null || rsn.isEmpty() || !accountManager.switchTo(rsn))
+		{
+			return previous;
+		}
+
+		log.info("Switched to account {}", rsn);
+		staleOfferMonitor.clear();
+		onWealthChanged();
+		scheduler.supply("account-save", () ->
+		{
+			accountManager.save();
+			return null;
+		});
+		if (flipFinderPanel != null)
+		{
+			javax.swing.SwingUtilities.invokeLater(() -> flipFinderPanel.updatePendingOrders(getPendingBuyOrders()));
+		}
+		return accountManager.getCurrent();
+	}
+
 	@Subscribe
-	public void onItemContainerChanged(ItemContainerChanged event)
+	public void onConfigChanged(ConfigChanged event)
 	{
-		// Only process inventory changes
-		if (event.getContainerId() != 93) // 93 is the inventory container ID
+		if (!"flipsmart".equals(event.getGroup()))
 		{
 			return;
 		}
 
-		updateCashStack();
+		if ("flipFinderRefreshMinutes".equals(event.getKey()))
+		{
+			scheduleFlipFinderRefresh();
+		}
+
+		if ("liveUpdates".equals(event.getKey()))
+		{
+			if (config.liveUpdates())
+			{
+				pushUpdateChannel.start(this::onPushUpdate);
+			}
+			else
+			{
+				pushUpdateChannel.stop();
+			}
+		}
+
+		if ("alertRules".equals(event.getKey()))
+		{
+			priceAlertEngine.setRules(config.alertRules());
+		}
+
+		if ("showDebugMetrics".equals(event.getKey()))
+		{
+			metrics.setEnabled(config.showDebugMetrics());
+		}
+
+		// These only filter the fetched candidates, so re-rank locally instead of refetching
+		if (flipFinderPanel != null
+			&& ("minProfit".equals(event.getKey()) || "flipFinderLimit".equals(event.getKey())))
+		{
+			javax.swing.SwingUtilities.invokeLater(flipFinderPanel::rerankRecommendations);
+		}
+	}
+
+	@Subscribe
+	public void onItemContainerChanged(ItemContainerChanged event)
+	{
+		// Only the inventory and bank hold coins, anything else is ignored
+		WealthTracker wealth = accountManager.getCurrent().getWealth();
+		if (wealth.updateContainer(event.getContainerId(), event.getItemContainer()))
+		{
+			onWealthChanged();
+		}
 	}
 
 	@Subscribe
 	public void onGrandExchangeOfferChanged(GrandExchangeOfferChanged offerEvent)
+	{
+		long start = metrics.startTimer();
+		handleOfferChanged(offerEvent);
+		offerChangedLatency.recordSince(start);
+	}
+
+	private void handleOfferChanged(GrandExchangeOfferChanged offerEvent)
 	{
 		final int slot = offerEvent.getSlot();
 		final GrandExchangeOffer offer = offerEvent.getOffer();
@@ -277,12 +466,31 @@ public class FlipSmartPlugin extends Plugin
 			return;
 		}
 
+		// Offers belong to whichever account is logged in
+		AccountState account = switchAccount();
+		updateFreeGeSlots(account);
+		if (account.getWealth().updateGeSlot(slot, offer))
+		{
+			onWealthChanged();
+		}
+
 		int itemId = offer.getItemId();
 		int quantitySold = offer.getQuantitySold();
 		int totalQuantity = offer.getTotalQuantity();
 		int price = offer.getPrice();
 		int spent = offer.getSpent();
 		GrandExchangeOfferState state = offer.getState();
+
+		// Follow how fast the slot is filling, for its time to completion
+		FillRateEstimator fillRates = account.getFillRates();
+		boolean active = state == GrandExchangeOfferState.BUYING || state == GrandExchangeOfferState.SELLING;
+		if (fillRates.update(slot, itemId, state == GrandExchangeOfferState.BUYING, quantitySold, totalQuantity,
+			active, System.currentTimeMillis()))
+		{
+			fillRates.setVolumePerHour(slot, priceHistoryStore.getLatestVolumePerHour(itemId));
+		}
+		staleOfferMonitor.update(slot, itemId, state == GrandExchangeOfferState.BUYING, price, quantitySold,
+			active, System.currentTimeMillis());
 		
 		// Get item name (must be called on client thread)
 		String itemName = itemManager.getItemComposition(itemId).getName();
@@ -301,7 +509,7 @@ public class FlipSmartPlugin extends Plugin
 							state == GrandExchangeOfferState.CANCELLED_BUY;
 			
 			// Track the current state so future changes are detected correctly
-			trackedOffers.put(slot, new TrackedOffer(itemId, itemName, isBuy, totalQuantity, price, quantitySold));
+			account.offers.put(slot, new AccountState.TrackedOffer(itemId, itemName, isBuy, totalQuantity, price, quantitySold));
 			return;
 		}
 
@@ -316,7 +524,7 @@ public class FlipSmartPlugin extends Plugin
 			// Only record the cancellation if some items were actually filled
 			if (quantitySold > 0)
 			{
-				TrackedOffer previousOffer = trackedOffers.get(slot);
+				AccountState.TrackedOffer previousOffer = account.offers.get(slot);
 				
 				// Check if we have any unfilled items that need to be recorded as cancelled
 				if (previousOffer != null && quantitySold > previousOffer.previousQuantitySold)
@@ -332,7 +540,18 @@ public class FlipSmartPlugin extends Plugin
 						pricePerItem);
 
 					// Get recommended sell price if available
-					Integer recommendedSellPrice = isBuy ? recommendedPrices.get(itemId) : null;
+					RecommendationRegistry.Attribution attribution = isBuy
+						? recommendations.get(itemId, System.currentTimeMillis()) : null;
+					Integer recommendedSellPrice = attribution != null ? attribution.recommendedSellPrice : null;
+					
+					if (isBuy)
+					{
+						account.getBuyLimits().recordPurchase(itemId, newQuantity);
+						scheduleBuyLimitSave(account.getBuyLimits());
+					}
+					account.recordFill(itemId, isBuy, newQuantity, pricePerItem);
+					recordAttributedFill(account, itemId, isBuy, newQuantity, pricePerItem, attribution);
+					fillHistoryStore.record(itemId, isBuy, newQuantity, pricePerItem);
 					
 					apiClient.recordTransactionAsync(
 						itemId,
@@ -353,26 +572,26 @@ public class FlipSmartPlugin extends Plugin
 			}
 			else
 			{
-				TrackedOffer previousOffer = trackedOffers.get(slot);
+				AccountState.TrackedOffer previousOffer = account.offers.get(slot);
 				log.info("Order cancelled with no fills: {} {}",
 					isBuy ? "BUY" : "SELL",
 					previousOffer != null ? previousOffer.itemName : itemName);
 			}
 			
 			// Clean up tracked offer
-			trackedOffers.remove(slot);
+			account.offers.remove(slot);
 			return;
 		}
 		
 		// Handle empty state (offer collected/cleared)
 		if (state == GrandExchangeOfferState.EMPTY)
 		{
-			trackedOffers.remove(slot);
+			account.offers.remove(slot);
 			return;
 		}
 
 		// Get the previously tracked offer for this slot
-		TrackedOffer previousOffer = trackedOffers.get(slot);
+		AccountState.TrackedOffer previousOffer = account.offers.get(slot);
 
 		// Detect if quantity sold has increased (partial or full fill)
 		if (quantitySold > 0)
@@ -406,7 +625,21 @@ public class FlipSmartPlugin extends Plugin
 					totalQuantity);
 
 				// Get recommended sell price if this was a buy from a recommendation
-				Integer recommendedSellPrice = isBuy ? recommendedPrices.get(itemId) : null;
+				RecommendationRegistry.Attribution attribution = isBuy
+					? recommendations.get(itemId, System.currentTimeMillis()) : null;
+				Integer recommendedSellPrice = attribution != null ? attribution.recommendedSellPrice : null;
+				
+				// Count bought items against the item's 4 hour buy limit
+				if (isBuy)
+				{
+					account.getBuyLimits().recordPurchase(itemId, newQuantity);
+					scheduleBuyLimitSave(account.getBuyLimits());
+				}
+				
+				// Keep a local record of the fill for this account's profit and for backtesting
+				account.recordFill(itemId, isBuy, newQuantity, pricePerItem);
+				recordAttributedFill(account, itemId, isBuy, newQuantity, pricePerItem, attribution);
+				fillHistoryStore.record(itemId, isBuy, newQuantity, pricePerItem);
 				
 				// Record the transaction asynchronously
 				apiClient.recordTransactionAsync(
@@ -420,31 +653,22 @@ public class FlipSmartPlugin extends Plugin
 				);
 				
 				// Clear recommended price after recording (only for buys)
-				if (isBuy && recommendedSellPrice != null)
+				if (attribution != null)
 				{
-					recommendedPrices.remove(itemId);
+					recommendations.remove(itemId);
 				}
 
-				// Refresh active flips panel if it exists
-				// Use a Swing Timer to add a small delay without blocking the EDT
-				if (flipFinderPanel != null)
-				{
-					javax.swing.Timer refreshTimer = new javax.swing.Timer(500, e -> {
-						// This will update both pending orders and active flips
-						flipFinderPanel.refresh();
-					});
-					refreshTimer.setRepeats(false);
-					refreshTimer.start();
-				}
+				// Refresh active flips panel if it exists, after a small delay
+				scheduleFillRefresh();
 			}
 
 			// Update tracked offer
-			trackedOffers.put(slot, new TrackedOffer(itemId, itemName, isBuy, totalQuantity, price, quantitySold));
+			account.offers.put(slot, new AccountState.TrackedOffer(itemId, itemName, isBuy, totalQuantity, price, quantitySold));
 		}
 		else
 		{
 			// New offer with no items sold yet, track it
-			trackedOffers.put(slot, new TrackedOffer(itemId, itemName, isBuy, totalQuantity, price, 0));
+			account.offers.put(slot, new AccountState.TrackedOffer(itemId, itemName, isBuy, totalQuantity, price, 0));
 			
 			// If this is a new buy order, refresh the flip finder panel to show pending order
 			if (isBuy && previousOffer == null && flipFinderPanel != null)
@@ -456,6 +680,28 @@ public class FlipSmartPlugin extends Plugin
 		}
 	}
 
+	/**
+	 * Count the empty GE slots for the slot allocation optimizer
+	 */
+	private void updateFreeGeSlots(AccountState account)
+	{
+		GrandExchangeOffer[] offers = client.getGrandExchangeOffers();
+		if (offers == null)
+		{
+			return;
+		}
+
+		int free = 0;
+		for (GrandExchangeOffer offer : offers)
+		{
+			if (offer == null || offer.getState() == GrandExchangeOfferState.EMPTY)
+			{
+				free++;
+			}
+		}
+		account.setFreeSlots(free);
+	}
+
 	/**
 	 * Initialize the Flip Finder panel and add it to the sidebar
 	 */
@@ -516,97 +762,189 @@ public class FlipSmartPlugin extends Plugin
 	}
 
 	/**
-	 * Update the player's current cash stack from inventory
+	 * Recount the coins in the inventory, e.g. after logging in
 	 */
 	private void updateCashStack()
 	{
-		ItemContainer inventory = client.getItemContainer(93); // 93 = inventory
-		if (inventory == null)
+		WealthTracker wealth = accountManager.getCurrent().getWealth();
+		if (wealth.updateContainer(WealthTracker.INVENTORY_CONTAINER, client.getItemContainer(WealthTracker.INVENTORY_CONTAINER)))
 		{
-			currentCashStack = 0;
-			return;
+			onWealthChanged();
 		}
+	}
 
-		int totalCash = 0;
-		Item[] items = inventory.getItems();
+	/**
+	 * Update the cash stack used for recommendations, and refresh them if it has
+	 * moved far enough to change what fits in a slot
+	 */
+	private void onWealthChanged()
+	{
+		long total = accountManager.getCurrent().getWealth().getTotal();
+		currentCashStack = (int) Math.min(Integer.MAX_VALUE, total);
+		log.debug("Updated cash stack: {}", currentCashStack);
 
-		// Item IDs for coins
-		final int COINS_995 = 995;
+		FlipFinderPanel panel = flipFinderPanel;
+		if (panel == null || Math.abs(total - lastRefreshBudget) < getBudgetRefreshThreshold(panel, total))
+		{
+			return;
+		}
 
-		for (Item item : items)
+		// Don't refresh more than every 30 seconds while coins move around
+		long now = System.currentTimeMillis();
+		if (now - lastFlipFinderRefresh <= BUDGET_REFRESH_INTERVAL_MS)
 		{
-			if (item.getId() == COINS_995)
-			{
-				totalCash += item.getQuantity();
-			}
+			return;
 		}
 
-		if (totalCash != currentCashStack)
+		lastRefreshBudget = total;
+		lastFlipFinderRefresh = now;
+		javax.swing.SwingUtilities.invokeLater(panel::refreshRecommendations);
+	}
+
+	/**
+	 * How far the cash stack has to move before recommendations are refetched: a
+	 * share of the budget per slot from the last recommendations
+	 */
+	private static long getBudgetRefreshThreshold(FlipFinderPanel panel, long total)
+	{
+		Double perSlotBudget = panel.getLastPerSlotBudget();
+		long slotBudget = perSlotBudget != null && perSlotBudget > 0
+			? perSlotBudget.longValue()
+			: total / SlotAllocationOptimizer.GE_SLOTS;
+		return Math.max(MIN_BUDGET_CHANGE, (long) (slotBudget * BUDGET_CHANGE_SHARE));
+	}
+
+	/**
+	 * Schedule the flip finder auto-refresh, replacing any existing schedule
+	 */
+	private synchronized void scheduleFlipFinderRefresh()
+	{
+		cancelFlipFinderRefresh();
+
+		// Schedule refresh based on config
+		int refreshMinutes = Math.max(1, Math.min(60, config.flipFinderRefreshMinutes()));
+		long refreshIntervalMs = refreshMinutes * 60 * 1000L;
+
+		flipFinderRefreshTask = scheduler.scheduleAtFixedRate("flip-finder-refresh", () ->
 		{
-			currentCashStack = totalCash;
-			log.debug("Updated cash stack: {}", currentCashStack);
+			if (pushUpdateChannel.isConnected())
+			{
+				// The API pushes changes, so there's nothing to poll for
+				skippedPolls.increment();
+				return;
+			}
 
-			// If cash stack changed significantly and we have a flip finder panel, refresh it
-			if (flipFinderPanel != null && totalCash > 100_000)
+			if (flipFinderPanel != null && config.showFlipFinder())
 			{
-				// Only auto-refresh if it's been more than 30 seconds since last refresh
-				long now = System.currentTimeMillis();
-				if (now - lastFlipFinderRefresh > 30_000)
+				javax.swing.SwingUtilities.invokeLater(() ->
 				{
-					lastFlipFinderRefresh = now;
+					log.debug("Auto-refreshing flip finder");
+					lastFlipFinderRefresh = System.currentTimeMillis();
 					flipFinderPanel.refresh();
-				}
+				});
 			}
-		}
+		}, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+
+		log.info("Flip Finder auto-refresh scheduled (every {} minutes)", refreshMinutes);
 	}
 
 	/**
-	 * Start the auto-refresh timer for flip finder
+	 * Cancel the flip finder auto-refresh
 	 */
-	private void startFlipFinderRefreshTimer()
+	private synchronized void cancelFlipFinderRefresh()
 	{
-		if (flipFinderRefreshTimer != null)
+		if (flipFinderRefreshTask != null)
 		{
-			flipFinderRefreshTimer.cancel();
+			flipFinderRefreshTask.cancel(false);
+			flipFinderRefreshTask = null;
+			log.debug("Flip Finder auto-refresh cancelled");
 		}
+	}
 
-		flipFinderRefreshTimer = new java.util.Timer("FlipFinderRefreshTimer", true);
-		
-		// Schedule refresh based on config
-		int refreshMinutes = Math.max(1, Math.min(60, config.flipFinderRefreshMinutes()));
-		long refreshIntervalMs = refreshMinutes * 60 * 1000L;
+	/**
+	 * Refetch whatever the API says has changed
+	 */
+	private void onPushUpdate(PushUpdateChannel.Topic topic)
+	{
+		FlipFinderPanel panel = flipFinderPanel;
+		if (panel == null || !config.showFlipFinder())
+		{
+			return;
+		}
 
-		flipFinderRefreshTimer.scheduleAtFixedRate(new java.util.TimerTask()
+		javax.swing.SwingUtilities.invokeLater(() ->
 		{
-			@Override
-			public void run()
+			switch (topic)
 			{
-				if (flipFinderPanel != null && config.showFlipFinder())
-				{
-					javax.swing.SwingUtilities.invokeLater(() ->
-					{
-						log.debug("Auto-refreshing flip finder");
-						lastFlipFinderRefresh = System.currentTimeMillis();
-						flipFinderPanel.refresh();
-					});
-				}
+				case RECOMMENDATIONS:
+					lastFlipFinderRefresh = System.currentTimeMillis();
+					panel.refreshRecommendations();
+					break;
+				case ACTIVE_FLIPS:
+					panel.refreshActiveFlips();
+					break;
+				case COMPLETED_FLIPS:
+					panel.refreshCompletedFlips();
+					break;
 			}
-		}, refreshIntervalMs, refreshIntervalMs);
+		});
+	}
+
+	/**
+	 * Join a fill to the recommendation it came from, saving the stats when it
+	 * finishes a flip
+	 */
+	private void recordAttributedFill(AccountState account, int itemId, boolean isBuy, int quantity,
+									  int pricePerItem, RecommendationRegistry.Attribution attribution)
+	{
+		if (recommendationAnalytics.recordFill(account, itemId, isBuy, quantity, pricePerItem,
+			attribution, System.currentTimeMillis()))
+		{
+			scheduler.supply("analytics-save", () ->
+			{
+				recommendationAnalytics.save();
+				accountManager.save();
+				return null;
+			});
+		}
+	}
+
+	/**
+	 * Refresh the panel shortly after a fill. Fills that arrive before the refresh
+	 * runs push it back, so they're picked up together.
+	 */
+	private synchronized void scheduleFillRefresh()
+	{
+		if (flipFinderPanel == null)
+		{
+			return;
+		}
+
+		if (fillRefreshTask != null)
+		{
+			fillRefreshTask.cancel(false);
+		}
 
-		log.info("Flip Finder auto-refresh started (every {} minutes)", refreshMinutes);
+		// This will update both pending orders and active flips
+		fillRefreshTask = scheduler.schedule("fill-refresh",
+			() -> javax.swing.SwingUtilities.invokeLater(flipFinderPanel::refresh),
+			FILL_REFRESH_DELAY_MS, TimeUnit.MILLISECONDS);
 	}
 
 	/**
-	 * Stop the auto-refresh timer for flip finder
+	 * Save buy limit usage off the client thread shortly after a buy. Buys that
+	 * arrive before the save runs push it back, so they're saved together. Whatever
+	 * is still unsaved at shutdown is saved with the accounts.
 	 */
-	private void stopFlipFinderRefreshTimer()
+	private synchronized void scheduleBuyLimitSave(BuyLimitTracker buyLimits)
 	{
-		if (flipFinderRefreshTimer != null)
+		if (buyLimitSaveTask != null)
 		{
-			flipFinderRefreshTimer.cancel();
-			flipFinderRefreshTimer = null;
-			log.info("Flip Finder auto-refresh stopped");
+			buyLimitSaveTask.cancel(false);
 		}
+
+		buyLimitSaveTask = scheduler.schedule("buy-limit-save", buyLimits::save,
+			BUY_LIMIT_SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
 	}
 
 	@Provides
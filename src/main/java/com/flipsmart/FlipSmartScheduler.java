@@ -0,0 +1,268 @@
+package com.flipsmart;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Singleton;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs all of the plugin's periodic, delayed and background work on small,
+ * plugin-owned thread pools, and keeps latency stats for each named task.
+ *
+ * Timers (retries, token refresh, debounces, refreshes) run on one pool and should
+ * be quick. Long file and compute jobs passed to {@link #supply} run on a separate
+ * pool, so an export or a backtest can't hold the timers up.
+ *
+ * Tasks that need the UI should hop to the EDT themselves with
+ * {@link javax.swing.SwingUtilities#invokeLater}.
+ */
+@Slf4j
+@Singleton
+public class FlipSmartScheduler
+{
+	private static final int TIMER_THREADS = 2;
+	private static final int BACKGROUND_THREADS = 2;
+	// Long enough for a history file rewrite or an export to finish
+	private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+
+	private final Map<String, TaskStats> stats = new ConcurrentHashMap<>();
+	private ScheduledThreadPoolExecutor executor;
+	private ThreadPoolExecutor background;
+
+	/**
+	 * Run counts and latencies for one named task
+	 */
+	public static class TaskStats
+	{
+		private final LongAdder runs = new LongAdder();
+		private final LongAdder failures = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		void record(long nanos, boolean failed)
+		{
+			runs.increment();
+			if (failed)
+			{
+				failures.increment();
+			}
+			totalNanos.add(nanos);
+			maxNanos.accumulateAndGet(nanos, Math::max);
+		}
+
+		public long getRuns()
+		{
+			return runs.sum();
+		}
+
+		public long getFailures()
+		{
+			return failures.sum();
+		}
+
+		public double getAverageMillis()
+		{
+			long count = runs.sum();
+			return count > 0 ? totalNanos.sum() / (count * 1_000_000.0) : 0;
+		}
+
+		public double getMaxMillis()
+		{
+			return maxNanos.get() / 1_000_000.0;
+		}
+	}
+
+	/**
+	 * Start the thread pools. Called from the plugin's startUp.
+	 */
+	public synchronized void start()
+	{
+		if (executor != null)
+		{
+			return;
+		}
+
+		executor = new ScheduledThreadPoolExecutor(TIMER_THREADS, threadFactory("flipsmart-scheduler-"));
+		// Drop cancelled tasks straight away rather than when their delay runs out
+		executor.setRemoveOnCancelPolicy(true);
+		// On stop, drop repeating and delayed tasks but let ones already due finish
+		executor.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+		background = new ThreadPoolExecutor(BACKGROUND_THREADS, BACKGROUND_THREADS, 0, TimeUnit.MILLISECONDS,
+			new LinkedBlockingQueue<>(), threadFactory("flipsmart-background-"));
+	}
+
+	/**
+	 * Cancel repeating and delayed tasks and stop the thread pools, waiting a while for
+	 * running ones such as file writes to finish. Called from the plugin's shutDown.
+	 */
+	public void stop()
+	{
+		ScheduledThreadPoolExecutor stoppingTimers;
+		ExecutorService stoppingBackground;
+		synchronized (this)
+		{
+			stoppingTimers = executor;
+			stoppingBackground = background;
+			executor = null;
+			background = null;
+		}
+		if (stoppingTimers == null)
+		{
+			return;
+		}
+
+		// Background jobs already queued still run, such as a save made while stopping
+		stoppingTimers.shutdown();
+		stoppingBackground.shutdown();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT_MS);
+		try
+		{
+			if (!stoppingTimers.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)
+				|| !stoppingBackground.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS))
+			{
+				log.warn("Scheduler tasks did not finish within {} ms, interrupting them", SHUTDOWN_TIMEOUT_MS);
+				stoppingTimers.shutdownNow();
+				stoppingBackground.shutdownNow();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			stoppingTimers.shutdownNow();
+			stoppingBackground.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+
+		for (Map.Entry<String, TaskStats> entry : stats.entrySet())
+		{
+			TaskStats taskStats = entry.getValue();
+			log.debug("Task {}: {} runs, {} failed, avg {} ms, max {} ms",
+				entry.getKey(),
+				taskStats.getRuns(),
+				taskStats.getFailures(),
+				String.format("%.2f", taskStats.getAverageMillis()),
+				String.format("%.2f", taskStats.getMaxMillis()));
+		}
+	}
+
+	/**
+	 * Run a task once after a delay
+	 *
+	 * @return The scheduled task, or null if the scheduler isn't running
+	 */
+	public synchronized ScheduledFuture<?> schedule(String name, Runnable task, long delay, TimeUnit unit)
+	{
+		if (executor == null)
+		{
+			log.debug("Scheduler stopped, dropping task {}", name);
+			return null;
+		}
+		return executor.schedule(timed(name, task), delay, unit);
+	}
+
+	/**
+	 * Run a task repeatedly at a fixed rate
+	 *
+	 * @return The scheduled task, or null if the scheduler isn't running
+	 */
+	public synchronized ScheduledFuture<?> scheduleAtFixedRate(String name, Runnable task, long initialDelay,
+															   long period, TimeUnit unit)
+	{
+		if (executor == null)
+		{
+			log.debug("Scheduler stopped, dropping task {}", name);
+			return null;
+		}
+		return executor.scheduleAtFixedRate(timed(name, task), initialDelay, period, unit);
+	}
+
+	/**
+	 * Run a long task, such as file IO or a backtest, on the background pool and get its result
+	 */
+	public synchronized <T> CompletableFuture<T> supply(String name, Supplier<T> task)
+	{
+		CompletableFuture<T> future = new CompletableFuture<>();
+		if (background == null)
+		{
+			future.completeExceptionally(new IllegalStateException("Scheduler is not running"));
+			return future;
+		}
+
+		background.execute(() ->
+		{
+			long start = System.nanoTime();
+			try
+			{
+				future.complete(task.get());
+				record(name, System.nanoTime() - start, false);
+			}
+			catch (Throwable e)
+			{
+				record(name, System.nanoTime() - start, true);
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Get latency stats for every task that has run
+	 */
+	public Map<String, TaskStats> getStats()
+	{
+		return Collections.unmodifiableMap(stats);
+	}
+
+	/**
+	 * Wrap a task to time it, and to log failures so a repeating task keeps running
+	 */
+	private Runnable timed(String name, Runnable task)
+	{
+		return () ->
+		{
+			long start = System.nanoTime();
+			boolean failed = false;
+			try
+			{
+				task.run();
+			}
+			catch (Throwable e)
+			{
+				failed = true;
+				log.warn("Scheduled task {} failed", name, e);
+			}
+			record(name, System.nanoTime() - start, failed);
+		};
+	}
+
+	private static ThreadFactory threadFactory(String prefix)
+	{
+		AtomicInteger threadCount = new AtomicInteger();
+		return runnable ->
+		{
+			Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	private void record(String name, long nanos, boolean failed)
+	{
+		stats.computeIfAbsent(name, key -> new TaskStats()).record(nanos, failed);
+	}
+}
@@ -0,0 +1,111 @@
+package com.flipsmart;
+
+import net.runelite.api.ItemID;
+
+import java.util.Arrays;
+
+/**
+ * GE tax and flip profit calculations, shared by the panel, overlay and local engines.
+ *
+ * Tax is 2% of the sell price per item, rounded down and capped at 5M. Items sold
+ * for under 50 gp round down to no tax, and a few items are exempt entirely. All
+ * amounts are longs so totals for expensive items can't overflow.
+ */
+public final class GePricing
+{
+	// Tax is price / TAX_DIVISOR, i.e. 2% rounded down
+	private static final long TAX_DIVISOR = 50;
+	public static final long MAX_TAX = 5_000_000L;
+
+	// Items the GE doesn't tax, sorted for binary search
+	private static final int[] EXEMPT_ITEMS = sorted(
+		ItemID.OLD_SCHOOL_BOND,
+		ItemID.CHISEL,
+		ItemID.GARDENING_TROWEL,
+		ItemID.GLASSBLOWING_PIPE,
+		ItemID.HAMMER,
+		ItemID.NEEDLE,
+		ItemID.PESTLE_AND_MORTAR,
+		ItemID.RAKE,
+		ItemID.SAW,
+		ItemID.SECATEURS,
+		ItemID.SEED_DIBBER,
+		ItemID.SHEARS,
+		ItemID.SPADE,
+		ItemID.WATERING_CAN
+	);
+
+	private GePricing()
+	{
+	}
+
+	/**
+	 * Check if an item is exempt from GE tax
+	 */
+	public static boolean isTaxExempt(int itemId)
+	{
+		return Arrays.binarySearch(EXEMPT_ITEMS, itemId) >= 0;
+	}
+
+	/**
+	 * GE tax on a single item sold at a price, ignoring item exemptions
+	 */
+	public static long tax(long price)
+	{
+		if (price <= 0)
+		{
+			return 0;
+		}
+		return Math.min(price / TAX_DIVISOR, MAX_TAX);
+	}
+
+	/**
+	 * GE tax on a single item sold at a price
+	 */
+	public static long tax(int itemId, long price)
+	{
+		return isTaxExempt(itemId) ? 0 : tax(price);
+	}
+
+	/**
+	 * What the seller receives per item after tax
+	 */
+	public static long netSellPrice(int itemId, long price)
+	{
+		return price - tax(itemId, price);
+	}
+
+	/**
+	 * Profit per item from buying at one price and selling at another, after tax
+	 */
+	public static long profitPerItem(int itemId, long buyPrice, long sellPrice)
+	{
+		return sellPrice - tax(itemId, sellPrice) - buyPrice;
+	}
+
+	/**
+	 * Profit from flipping a quantity of an item, after tax
+	 */
+	public static long profit(int itemId, long buyPrice, long sellPrice, long quantity)
+	{
+		return profitPerItem(itemId, buyPrice, sellPrice) * quantity;
+	}
+
+	/**
+	 * Return on investment as a percentage, after tax
+	 */
+	public static double roiPercent(int itemId, long buyPrice, long sellPrice)
+	{
+		if (buyPrice <= 0)
+		{
+			return 0;
+		}
+		return profitPerItem(itemId, buyPrice, sellPrice) * 100.0 / buyPrice;
+	}
+
+	private static int[] sorted(int... values)
+	{
+		Arrays.sort(values);
+		return values;
+	}
+}
@@ -58,6 +58,10 @@ public class GrandExchangeOverlay extends Overlay
 	private final FlipSmartConfig config;
 	private final ItemManager itemManager;
 	private final SpriteManager spriteManager;
+	private final FlipSmartMetrics metrics;
+	private final FlipSmartMetrics.Histogram renderLatency;
+	private final AccountManager accountManager;
+	private final StaleOfferMonitor staleOfferMonitor;
 	
 	private Point preferredLocation = new Point(100, 100);
 	private boolean isCollapsed = false;
@@ -65,12 +69,18 @@ public class GrandExchangeOverlay extends Overlay
 	private BufferedImage geIcon;
 
 	@Inject
-	private GrandExchangeOverlay(Client client, FlipSmartConfig config, ItemManager itemManager, SpriteManager spriteManager)
+	private GrandExchangeOverlay(Client client, FlipSmartConfig config, ItemManager itemManager, SpriteManager spriteManager,
+								 FlipSmartMetrics metrics, AccountManager accountManager,
+								 StaleOfferMonitor staleOfferMonitor)
 	{
 		this.client = client;
 		this.config = config;
 		this.itemManager = itemManager;
 		this.spriteManager = spriteManager;
+		this.metrics = metrics;
+		this.renderLatency = metrics.histogram("overlay.render");
+		this.accountManager = accountManager;
+		this.staleOfferMonitor = staleOfferMonitor;
 		
 		setPosition(OverlayPosition.DYNAMIC);
 		setPriority(OverlayPriority.MED);
@@ -91,6 +101,14 @@ public class GrandExchangeOverlay extends Overlay
 
 	@Override
 	public Dimension render(Graphics2D graphics)
+	{
+		long start = metrics.startTimer();
+		Dimension dimension = renderOffers(graphics);
+		renderLatency.recordSince(start);
+		return dimension;
+	}
+
+	private Dimension renderOffers(Graphics2D graphics)
 	{
 		if (!config.showGEOverlay())
 		{
@@ -259,6 +277,9 @@ public class GrandExchangeOverlay extends Overlay
 	// Reset to regular font for content
 		graphics.setFont(FontManager.getRunescapeFont());
 		
+		FillRateEstimator fillRates = accountManager.getCurrent().getFillRates();
+		long now = System.currentTimeMillis();
+		
 		// Render each slot
 		for (int slot = 0; slot < offers.length; slot++)
 		{
@@ -341,12 +362,31 @@ public class GrandExchangeOverlay extends Overlay
 			
 			// Line 1: Slot label only
 			String slotLabel = (slot + 1) + ". " + (isBuy ? "Buy" : "Sell");
+			long tax = isBuy ? 0 : GePricing.tax(itemId, price);
+			if (tax > 0)
+			{
+				slotLabel += " (tax " + PRICE_FORMAT.format(tax) + " ea)";
+			}
 			// Draw shadow
 			graphics.setColor(Color.BLACK);
 			graphics.drawString(slotLabel, x + PADDING + 1, currentY + 1);
 			// Draw main text
 			graphics.setColor(isBuy ? COLOR_BUY : COLOR_SELL);
 			graphics.drawString(slotLabel, x + PADDING, currentY);
+			
+			// Right aligned: a better price if the offer has gone stale, otherwise the time to complete
+			int suggestedPrice = staleOfferMonitor.getSuggestedPrice(slot);
+			long eta = suggestedPrice > 0 ? -1 : fillRates.getEtaMillis(slot, now);
+			String hintText = suggestedPrice > 0 ? "Reprice " + PRICE_FORMAT.format(suggestedPrice)
+				: eta > 0 ? FillRateEstimator.formatEta(eta) : null;
+			if (hintText != null)
+			{
+				int hintX = x + textWidth + PADDING - graphics.getFontMetrics().stringWidth(hintText);
+				graphics.setColor(Color.BLACK);
+				graphics.drawString(hintText, hintX + 1, currentY + 1);
+				graphics.setColor(suggestedPrice > 0 ? COLOR_CANCELLED : COLOR_TEXT);
+				graphics.drawString(hintText, hintX, currentY);
+			}
 			currentY += LINE_HEIGHT;
 			
 			// Line 2: Item name with icon on the right
@@ -0,0 +1,82 @@
+package com.flipsmart;
+
+import net.runelite.client.ui.overlay.OverlayPanel;
+import net.runelite.client.ui.overlay.OverlayPosition;
+import net.runelite.client.ui.overlay.components.LineComponent;
+import net.runelite.client.ui.overlay.components.TitleComponent;
+
+import javax.inject.Inject;
+import java.awt.*;
+import java.util.Map;
+
+/**
+ * Debug overlay showing hot-path latencies, request rates and cache hit rates
+ */
+public class MetricsOverlay extends OverlayPanel
+{
+	private static final Color COLOR_TITLE = new Color(255, 215, 0); // Gold
+	private static final Color COLOR_LABEL = new Color(200, 200, 200);
+
+	private final FlipSmartConfig config;
+	private final FlipSmartMetrics metrics;
+
+	@Inject
+	private MetricsOverlay(FlipSmartConfig config, FlipSmartMetrics metrics)
+	{
+		this.config = config;
+		this.metrics = metrics;
+		setPosition(OverlayPosition.TOP_LEFT);
+	}
+
+	@Override
+	public Dimension render(Graphics2D graphics)
+	{
+		if (!config.showDebugMetrics())
+		{
+			return null;
+		}
+
+		panelComponent.getChildren().add(TitleComponent.builder()
+			.text("Flip Smart Metrics")
+			.color(COLOR_TITLE)
+			.build());
+
+		// Latencies: p50 / p99 in milliseconds
+		for (Map.Entry<String, FlipSmartMetrics.Histogram> entry : metrics.getHistograms().entrySet())
+		{
+			FlipSmartMetrics.Histogram histogram = entry.getValue();
+			if (histogram.getCount() == 0)
+			{
+				continue;
+			}
+
+			panelComponent.getChildren().add(LineComponent.builder()
+				.left(entry.getKey())
+				.leftColor(COLOR_LABEL)
+				.right(String.format("%.2f / %.2f ms",
+					histogram.getPercentileMillis(0.5),
+					histogram.getPercentileMillis(0.99)))
+				.build());
+		}
+
+		// Counts and rates
+		for (Map.Entry<String, FlipSmartMetrics.Counter> entry : metrics.getCounters().entrySet())
+		{
+			FlipSmartMetrics.Counter counter = entry.getValue();
+			panelComponent.getChildren().add(LineComponent.builder()
+				.left(entry.getKey())
+				.leftColor(COLOR_LABEL)
+				.right(String.format("%d (%.2f/s)", counter.getCount(), counter.getRate()))
+				.build());
+		}
+
+		double hitRate = metrics.getHitRate(FlipSmartApiClient.METRIC_CACHE_HITS, FlipSmartApiClient.METRIC_CACHE_MISSES);
+		panelComponent.getChildren().add(LineComponent.builder()
+			.left("analysis cache hit rate")
+			.leftColor(COLOR_LABEL)
+			.right(hitRate < 0 ? "-" : String.format("%.0f%%", hitRate * 100))
+			.build());
+
+		return super.render(graphics);
+	}
+}
@@ -0,0 +1,441 @@
+package com.flipsmart;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.Notifier;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Watches prices for the alert rules set in the config and sends a RuneLite
+ * notification when one starts to match.
+ *
+ * One rule per line, a target and conditions separated by a colon:
+ * <pre>
+ * Abyssal whip: margin &gt;= 50k
+ * 4151: roi &gt; 3 and volume &gt;= 500
+ * members: roi &gt;= 5 and price &lt;= 1m
+ * </pre>
+ * The target is an item name or id, or one of the categories {@code all},
+ * {@code members} or {@code f2p}. Conditions compare {@code margin} (after tax),
+ * {@code roi} (percent), {@code volume} (per hour) or {@code price} (buy price).
+ * Margin, ROI and price are all worked out from the market's instant buy and sell
+ * prices, the same way for flip finder results and item analyses, so an item checked
+ * from both doesn't flip between two sets of numbers.
+ *
+ * Rules are indexed by item id and name, so each price update only looks at the
+ * rules for its own item and the category rules. Updates that don't change an
+ * item's numbers are skipped.
+ */
+@Slf4j
+@Singleton
+public class PriceAlertEngine
+{
+	// A rule that stops and starts matching again within this long only notifies once
+	private static final long RENOTIFY_MS = 30 * 60 * 1000L;
+
+	private static final Pattern CONDITION = Pattern.compile("([a-z]+)\\s*(>=|<=|>|<)\\s*(\\S+)");
+	private static final Pattern NUMBER = Pattern.compile("[-+]?(\\d+\\.?\\d*|\\.\\d+)");
+
+	private static final int MARGIN = 0;
+	private static final int ROI = 1;
+	private static final int VOLUME = 2;
+	private static final int PRICE = 3;
+	private static final String[] METRIC_NAMES = {"margin", "roi", "volume", "price"};
+
+	private final Consumer<String> notifier;
+	private final LongSupplier clock;
+
+	private volatile RuleSet rules = new RuleSet();
+
+	// Last numbers seen for each item
+	private final Map<Integer, Sample> lastSamples = new HashMap<>();
+	// Rule index << 32 | item id, for rules matching the item at the last update
+	private final Set<Long> matching = new HashSet<>();
+	private final Map<Long, Long> notifiedAt = new HashMap<>();
+
+	/**
+	 * An item's numbers from one update. Missing values are NaN.
+	 */
+	static class Sample
+	{
+		final int itemId;
+		final String name;
+		final boolean members;
+		final double[] values = new double[METRIC_NAMES.length];
+
+		Sample(int itemId, String name, boolean members)
+		{
+			this.itemId = itemId;
+			this.name = name;
+			this.members = members;
+		}
+
+		boolean sameValues(Sample other)
+		{
+			for (int i = 0; i < values.length; i++)
+			{
+				if (Double.doubleToLongBits(values[i]) != Double.doubleToLongBits(other.values[i]))
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * One parsed line of the rules
+	 */
+	static class Rule
+	{
+		final int index;
+		final String text;
+		final int[] metrics;
+		final boolean[] greater;
+		final boolean[] orEqual;
+		final double[] thresholds;
+
+		Rule(int index, String text, int conditions)
+		{
+			this.index = index;
+			this.text = text;
+			metrics = new int[conditions];
+			greater = new boolean[conditions];
+			orEqual = new boolean[conditions];
+			thresholds = new double[conditions];
+		}
+
+		boolean matches(Sample sample)
+		{
+			for (int i = 0; i < metrics.length; i++)
+			{
+				double value = sample.values[metrics[i]];
+				boolean met = greater[i]
+					? (orEqual[i] ? value >= thresholds[i] : value > thresholds[i])
+					: (orEqual[i] ? value <= thresholds[i] : value < thresholds[i]);
+				// NaN fails every comparison, so a missing value never matches
+				if (!met)
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * The rules indexed by what they watch
+	 */
+	static class RuleSet
+	{
+		final Map<Integer, List<Rule>> byItemId = new HashMap<>();
+		final Map<String, List<Rule>> byName = new HashMap<>();
+		final List<Rule> all = new ArrayList<>();
+		final List<Rule> members = new ArrayList<>();
+		final List<Rule> f2p = new ArrayList<>();
+		int size;
+	}
+
+	@Inject
+	public PriceAlertEngine(Notifier notifier)
+	{
+		this(notifier::notify, System::currentTimeMillis);
+	}
+
+	/**
+	 * @param notifier Shows a notification
+	 * @param clock Current time in milliseconds
+	 */
+	PriceAlertEngine(Consumer<String> notifier, LongSupplier clock)
+	{
+		this.notifier = notifier;
+		this.clock = clock;
+	}
+
+	/**
+	 * Replace the rules with ones parsed from the config. Lines that can't be parsed
+	 * are skipped.
+	 */
+	public synchronized void setRules(String text)
+	{
+		rules = parse(text);
+		lastSamples.clear();
+		matching.clear();
+		notifiedAt.clear();
+		log.debug("Loaded {} price alert rules", rules.size);
+	}
+
+	/**
+	 * Check the rules against a batch of flip finder results
+	 */
+	public void onRecommendations(List<FlipRecommendation> recommendations)
+	{
+		if (rules.size == 0 || recommendations == null)
+		{
+			return;
+		}
+
+		for (FlipRecommendation rec : recommendations)
+		{
+			Sample sample = new Sample(rec.getItemId(), rec.getItemName(), rec.isMembers());
+			setPrices(sample, rec.getInstantSellPrice(), rec.getInstantBuyPrice());
+			sample.values[VOLUME] = rec.getVolumePerHour();
+			evaluate(sample);
+		}
+	}
+
+	/**
+	 * Check the rules against an item analysis
+	 */
+	public void onAnalysis(FlipAnalysis analysis)
+	{
+		if (rules.size == 0 || analysis == null || analysis.getCurrentPrices() == null)
+		{
+			return;
+		}
+
+		FlipAnalysis.CurrentPrices prices = analysis.getCurrentPrices();
+		Sample sample = new Sample(analysis.getItemId(), analysis.getItemName(), analysis.isMembers());
+		setPrices(sample, prices.getLow() != null ? prices.getLow() : 0,
+			prices.getHigh() != null ? prices.getHigh() : 0);
+		sample.values[VOLUME] = analysis.getLiquidity() != null && analysis.getLiquidity().getTotalVolumePerHour() != null
+			? analysis.getLiquidity().getTotalVolumePerHour() : Double.NaN;
+		evaluate(sample);
+	}
+
+	/**
+	 * Set margin, ROI and price from buying at the instant sell price and selling at
+	 * the instant buy price. They're missing if either price is.
+	 */
+	private static void setPrices(Sample sample, int low, int high)
+	{
+		if (low <= 0 || high <= 0)
+		{
+			sample.values[MARGIN] = Double.NaN;
+			sample.values[ROI] = Double.NaN;
+			sample.values[PRICE] = low > 0 ? low : Double.NaN;
+			return;
+		}
+
+		sample.values[MARGIN] = GePricing.profitPerItem(sample.itemId, low, high);
+		sample.values[ROI] = GePricing.roiPercent(sample.itemId, low, high);
+		sample.values[PRICE] = low;
+	}
+
+	private synchronized void evaluate(Sample sample)
+	{
+		Sample previous = lastSamples.put(sample.itemId, sample);
+		if (previous != null && previous.sameValues(sample))
+		{
+			return;
+		}
+
+		RuleSet ruleSet = rules;
+		long now = clock.getAsLong();
+		evaluate(ruleSet.byItemId.get(sample.itemId), sample, now);
+		if (sample.name != null)
+		{
+			evaluate(ruleSet.byName.get(sample.name.toLowerCase(Locale.ROOT)), sample, now);
+		}
+		evaluate(ruleSet.all, sample, now);
+		evaluate(sample.members ? ruleSet.members : ruleSet.f2p, sample, now);
+	}
+
+	private void evaluate(List<Rule> candidates, Sample sample, long now)
+	{
+		if (candidates == null)
+		{
+			return;
+		}
+
+		for (Rule rule : candidates)
+		{
+			long key = (long) rule.index << 32 | (sample.itemId & 0xFFFFFFFFL);
+			if (!rule.matches(sample))
+			{
+				matching.remove(key);
+				continue;
+			}
+
+			// Only notify when a rule starts matching, and not again if it's just flickering
+			if (!matching.add(key))
+			{
+				continue;
+			}
+			Long last = notifiedAt.get(key);
+			if (last != null && now - last < RENOTIFY_MS)
+			{
+				continue;
+			}
+			notifiedAt.put(key, now);
+			notifier.accept(describe(rule, sample));
+		}
+	}
+
+	private static String describe(Rule rule, Sample sample)
+	{
+		StringBuilder message = new StringBuilder("Flip Smart: ")
+			.append(sample.name != null ? sample.name : "Item " + sample.itemId);
+		for (int i = 0; i < rule.metrics.length; i++)
+		{
+			int metric = rule.metrics[i];
+			message.append(i == 0 ? " " : ", ").append(METRIC_NAMES[metric]).append(' ');
+			double value = sample.values[metric];
+			message.append(metric == ROI ? String.format("%.1f%%", value) : String.format("%,d", (long) value));
+		}
+		return message.append(" (").append(rule.text).append(')').toString();
+	}
+
+	static RuleSet parse(String text)
+	{
+		RuleSet ruleSet = new RuleSet();
+		if (text == null)
+		{
+			return ruleSet;
+		}
+
+		for (String line : text.split("\\r?\\n"))
+		{
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+			{
+				continue;
+			}
+
+			int colon = line.indexOf(':');
+			String target = colon > 0 ? line.substring(0, colon).trim().toLowerCase(Locale.ROOT) : "";
+			Rule rule = target.isEmpty() ? null : parseConditions(ruleSet.size, line, line.substring(colon + 1));
+			if (rule == null)
+			{
+				log.warn("Ignoring price alert rule \"{}\"", line);
+				continue;
+			}
+
+			switch (target)
+			{
+				case "all":
+					ruleSet.all.add(rule);
+					break;
+				case "members":
+					ruleSet.members.add(rule);
+					break;
+				case "f2p":
+					ruleSet.f2p.add(rule);
+					break;
+				default:
+					Integer itemId = parseItemId(target);
+					if (itemId != null)
+					{
+						ruleSet.byItemId.computeIfAbsent(itemId, id -> new ArrayList<>()).add(rule);
+					}
+					else
+					{
+						ruleSet.byName.computeIfAbsent(target, name -> new ArrayList<>()).add(rule);
+					}
+			}
+			ruleSet.size++;
+		}
+		return ruleSet;
+	}
+
+	/**
+	 * Parse the conditions of a rule, e.g. {@code roi > 3 and volume >= 500}
+	 *
+	 * @return The rule, or null if the conditions aren't valid
+	 */
+	private static Rule parseConditions(int index, String line, String text)
+	{
+		String[] conditions = text.trim().toLowerCase(Locale.ROOT).split("\\s+and\\s+");
+		Rule rule = new Rule(index, line, conditions.length);
+		for (int i = 0; i < conditions.length; i++)
+		{
+			Matcher matcher = CONDITION.matcher(conditions[i].trim());
+			if (!matcher.matches())
+			{
+				return null;
+			}
+
+			int metric = indexOf(METRIC_NAMES, matcher.group(1));
+			double threshold = parseAmount(matcher.group(3));
+			if (metric < 0 || Double.isNaN(threshold))
+			{
+				return null;
+			}
+
+			String op = matcher.group(2);
+			rule.metrics[i] = metric;
+			rule.greater[i] = op.charAt(0) == '>';
+			rule.orEqual[i] = op.endsWith("=");
+			rule.thresholds[i] = threshold;
+		}
+		return rule;
+	}
+
+	private static Integer parseItemId(String target)
+	{
+		if (!target.chars().allMatch(Character::isDigit))
+		{
+			return null;
+		}
+
+		try
+		{
+			return Integer.parseInt(target);
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Parse a number with an optional k, m or b suffix, or NaN if it isn't one
+	 */
+	static double parseAmount(String text)
+	{
+		if (text.isEmpty())
+		{
+			return Double.NaN;
+		}
+
+		double multiplier = 1;
+		char suffix = Character.toLowerCase(text.charAt(text.length() - 1));
+		if (suffix == 'k' || suffix == 'm' || suffix == 'b')
+		{
+			multiplier = suffix == 'k' ? 1e3 : suffix == 'm' ? 1e6 : 1e9;
+			text = text.substring(0, text.length() - 1);
+		}
+
+		// Checked first, as parseDouble also takes things like 1e9, 5d and NaN
+		text = text.replace(",", "").replace("%", "");
+		if (!NUMBER.matcher(text).matches())
+		{
+			return Double.NaN;
+		}
+		return Double.parseDouble(text) * multiplier;
+	}
+
+	private static int indexOf(String[] values, String value)
+	{
+		for (int i = 0; i < values.length; i++)
+		{
+			if (values[i].equals(value))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+}
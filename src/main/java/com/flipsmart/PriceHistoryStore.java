@@ -0,0 +1,508 @@
+package com.flipsmart;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.RuneLite;
+
+import javax.inject.Singleton;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a local history of the prices the flip finder has recommended for each item,
+ * so strategies can be replayed later (see {@link Backtester}).
+ *
+ * Snapshots are appended to a file in the RuneLite directory as they arrive and
+ * loaded into per-item column arrays in the background on startup. Snapshots older
+ * than {@link #MAX_AGE_MS} are dropped when loading, and each item keeps at most
+ * {@link #MAX_SNAPSHOTS_PER_ITEM}, so heap use stays bounded however often the
+ * flip finder refreshes.
+ */
+@Slf4j
+@Singleton
+public class PriceHistoryStore
+{
+	static final File HISTORY_DIR = new File(RuneLite.RUNELITE_DIR, "flipsmart");
+	private static final String FILE_NAME = "price-history.dat";
+	static final int FILE_MAGIC = 0x46535048; // "FSPH"
+	static final int FORMAT_VERSION = 1;
+	private static final long MAX_AGE_MS = 90L * 24 * 60 * 60 * 1000;
+	// About four weeks of snapshots at the default 5 minute refresh
+	static final int MAX_SNAPSHOTS_PER_ITEM = 8192;
+	private static final int HEADER_BYTES = 8;
+	// Item id, time, six ints and the risk byte
+	static final int RECORD_BYTES = 4 + 8 + 6 * 4 + 1;
+
+	private final File file;
+	private final Map<Integer, ItemHistory> items = new HashMap<>();
+	private DataOutputStream out;
+
+	/**
+	 * Writes all of a store's records when its file is rewritten
+	 */
+	interface RecordWriter
+	{
+		void writeAll(DataOutputStream out) throws IOException;
+	}
+
+	/**
+	 * Price snapshots for one item, in time order
+	 */
+	public static class ItemHistory
+	{
+		public final int itemId;
+		// Latest known buy limit
+		public int buyLimit;
+		public int size;
+		// Snapshots ever added, including ones since dropped
+		public long added;
+		public long[] times;
+		public int[] high;
+		public int[] low;
+		public int[] recommendedBuy;
+		public int[] recommendedSell;
+		// Buy limit at each snapshot, 0 if unknown
+		public int[] buyLimits;
+		public int[] volumePerHour;
+		public byte[] risk;
+
+		ItemHistory(int itemId, int capacity)
+		{
+			this.itemId = itemId;
+			times = new long[capacity];
+			high = new int[capacity];
+			low = new int[capacity];
+			recommendedBuy = new int[capacity];
+			recommendedSell = new int[capacity];
+			buyLimits = new int[capacity];
+			volumePerHour = new int[capacity];
+			risk = new byte[capacity];
+		}
+
+		/**
+		 * Add a snapshot, dropping the oldest quarter first if the item is full
+		 *
+		 * @return Number of snapshots dropped
+		 */
+		int add(long time, int high, int low, int recommendedBuy, int recommendedSell, int buyLimit,
+				int volumePerHour, int risk)
+		{
+			int dropped = 0;
+			if (size == MAX_SNAPSHOTS_PER_ITEM)
+			{
+				dropped = MAX_SNAPSHOTS_PER_ITEM / 4;
+				dropOldest(dropped);
+			}
+			if (size == times.length)
+			{
+				resize(Math.min(size * 2, MAX_SNAPSHOTS_PER_ITEM));
+			}
+			this.times[size] = time;
+			this.high[size] = high;
+			this.low[size] = low;
+			this.recommendedBuy[size] = recommendedBuy;
+			this.recommendedSell[size] = recommendedSell;
+			this.buyLimits[size] = buyLimit;
+			this.volumePerHour[size] = volumePerHour;
+			this.risk[size] = (byte) risk;
+			if (buyLimit > 0)
+			{
+				this.buyLimit = buyLimit;
+			}
+			size++;
+			added++;
+			return dropped;
+		}
+
+		/**
+		 * Buy limit at a snapshot, or the latest known one if it wasn't recorded
+		 */
+		public int getBuyLimit(int index)
+		{
+			return buyLimits[index] > 0 ? buyLimits[index] : buyLimit;
+		}
+
+		ItemHistory copy()
+		{
+			return copy(0);
+		}
+
+		/**
+		 * Copy the snapshots from an index onwards
+		 */
+		ItemHistory copy(int from)
+		{
+			ItemHistory copy = new ItemHistory(itemId, 0);
+			copy.buyLimit = buyLimit;
+			copy.size = size - from;
+			copy.added = added;
+			copy.times = Arrays.copyOfRange(times, from, size);
+			copy.high = Arrays.copyOfRange(high, from, size);
+			copy.low = Arrays.copyOfRange(low, from, size);
+			copy.recommendedBuy = Arrays.copyOfRange(recommendedBuy, from, size);
+			copy.recommendedSell = Arrays.copyOfRange(recommendedSell, from, size);
+			copy.buyLimits = Arrays.copyOfRange(buyLimits, from, size);
+			copy.volumePerHour = Arrays.copyOfRange(volumePerHour, from, size);
+			copy.risk = Arrays.copyOfRange(risk, from, size);
+			return copy;
+		}
+
+		private void dropOldest(int count)
+		{
+			int kept = size - count;
+			System.arraycopy(times, count, times, 0, kept);
+			System.arraycopy(high, count, high, 0, kept);
+			System.arraycopy(low, count, low, 0, kept);
+			System.arraycopy(recommendedBuy, count, recommendedBuy, 0, kept);
+			System.arraycopy(recommendedSell, count, recommendedSell, 0, kept);
+			System.arraycopy(buyLimits, count, buyLimits, 0, kept);
+			System.arraycopy(volumePerHour, count, volumePerHour, 0, kept);
+			System.arraycopy(risk, count, risk, 0, kept);
+			size = kept;
+		}
+
+		private void resize(int capacity)
+		{
+			times = Arrays.copyOf(times, capacity);
+			high = Arrays.copyOf(high, capacity);
+			low = Arrays.copyOf(low, capacity);
+			recommendedBuy = Arrays.copyOf(recommendedBuy, capacity);
+			recommendedSell = Arrays.copyOf(recommendedSell, capacity);
+			buyLimits = Arrays.copyOf(buyLimits, capacity);
+			volumePerHour = Arrays.copyOf(volumePerHour, capacity);
+			risk = Arrays.copyOf(risk, capacity);
+		}
+	}
+
+	public PriceHistoryStore()
+	{
+		this(new File(HISTORY_DIR, FILE_NAME));
+	}
+
+	/**
+	 * @param file Where to keep the history
+	 */
+	PriceHistoryStore(File file)
+	{
+		this.file = file;
+	}
+
+	/**
+	 * Load history from disk and open the file for appending. Snapshots recorded
+	 * before this is called are kept, after the loaded ones, and added to the file.
+	 *
+	 * The file is read and, if needed, compacted without holding the store's lock, so
+	 * recording and reading history carry on while it loads. Only swapping the loaded
+	 * history in takes the lock.
+	 */
+	public void load()
+	{
+		close();
+		Map<Integer, ItemHistory> loadedItems = new HashMap<>();
+		long cutoff = System.currentTimeMillis() - MAX_AGE_MS;
+		int read = 0;
+		int dropped = 0;
+		boolean rewrite = !file.exists() || (file.length() - HEADER_BYTES) % RECORD_BYTES != 0;
+
+		if (file.exists())
+		{
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+			{
+				if (in.readInt() != FILE_MAGIC || in.readInt() != FORMAT_VERSION)
+				{
+					log.warn("Ignoring price history with unknown format");
+					rewrite = true;
+				}
+				else
+				{
+					while (true)
+					{
+						int itemId = in.readInt();
+						long time = in.readLong();
+						int high = in.readInt();
+						int low = in.readInt();
+						int recommendedBuy = in.readInt();
+						int recommendedSell = in.readInt();
+						int buyLimit = in.readInt();
+						int volumePerHour = in.readInt();
+						int risk = in.readByte();
+						read++;
+
+						if (time < cutoff)
+						{
+							dropped++;
+							continue;
+						}
+						dropped += addSnapshot(loadedItems, itemId, time, high, low, recommendedBuy, recommendedSell,
+							buyLimit, volumePerHour, risk);
+					}
+				}
+			}
+			catch (EOFException e)
+			{
+				// End of file (a partly written last record is dropped)
+			}
+			catch (IOException e)
+			{
+				log.warn("Could not read price history: {}", e.getMessage());
+			}
+		}
+
+		log.debug("Loaded {} price snapshots for {} items ({} expired or over the limit)",
+			read - dropped, loadedItems.size(), dropped);
+
+		// Rewrite the file without dropped records once they're over a quarter of it, so it
+		// doesn't grow without bound but isn't rewritten on every startup either. Nothing
+		// else can see the loaded history yet, so this needs no lock.
+		boolean compact = rewrite || dropped > read / 4;
+		DataOutputStream opened = openHistoryFile(file, FILE_MAGIC, FORMAT_VERSION,
+			compact ? fileOut -> writeAll(fileOut, loadedItems) : null);
+
+		synchronized (this)
+		{
+			out = opened;
+			// Snapshots recorded while loading weren't written, as the file wasn't open yet
+			for (ItemHistory history : items.values())
+			{
+				for (int i = 0; i < history.size; i++)
+				{
+					addSnapshot(loadedItems, history.itemId, history.times[i], history.high[i], history.low[i],
+						history.recommendedBuy[i], history.recommendedSell[i], history.buyLimits[i],
+						history.volumePerHour[i], history.risk[i]);
+					append(history.itemId, history.times[i], history.high[i], history.low[i],
+						history.recommendedBuy[i], history.recommendedSell[i], history.buyLimits[i],
+						history.volumePerHour[i], history.risk[i]);
+				}
+			}
+			flush();
+			items.clear();
+			items.putAll(loadedItems);
+		}
+	}
+
+	/**
+	 * Flush and close the history file
+	 */
+	public synchronized void close()
+	{
+		if (out == null)
+		{
+			return;
+		}
+
+		try
+		{
+			out.close();
+		}
+		catch (IOException e)
+		{
+			log.warn("Could not close price history: {}", e.getMessage());
+		}
+		out = null;
+	}
+
+	/**
+	 * Record the prices from a batch of recommendations
+	 */
+	public synchronized void recordAll(List<FlipRecommendation> recommendations)
+	{
+		long now = System.currentTimeMillis();
+		for (FlipRecommendation rec : recommendations)
+		{
+			int buyLimit = rec.getBuyLimit() != null ? rec.getBuyLimit() : 0;
+			int risk = (int) Math.max(0, Math.min(100, rec.getRiskScore()));
+			addSnapshot(items, rec.getItemId(), now, rec.getInstantBuyPrice(), rec.getInstantSellPrice(),
+				rec.getRecommendedBuyPrice(), rec.getRecommendedSellPrice(), buyLimit,
+				(int) rec.getVolumePerHour(), risk);
+			append(rec.getItemId(), now, rec.getInstantBuyPrice(), rec.getInstantSellPrice(),
+				rec.getRecommendedBuyPrice(), rec.getRecommendedSellPrice(), buyLimit,
+				(int) rec.getVolumePerHour(), risk);
+		}
+		flush();
+	}
+
+	/**
+	 * Most recent hourly volume recorded for an item, or 0 if it has no history
+	 */
+	public synchronized int getLatestVolumePerHour(int itemId)
+	{
+		ItemHistory history = items.get(itemId);
+		return history != null && history.size > 0 ? history.volumePerHour[history.size - 1] : 0;
+	}
+
+	/**
+	 * Number of snapshots ever recorded for an item, which goes up with every new one
+	 */
+	public synchronized long getSnapshotCount(int itemId)
+	{
+		ItemHistory history = items.get(itemId);
+		return history != null ? history.added : 0;
+	}
+
+	/**
+	 * Get a copy of an item's snapshots since a time, or null if it has no history
+	 */
+	public synchronized ItemHistory getHistorySince(int itemId, long since)
+	{
+		ItemHistory history = items.get(itemId);
+		if (history == null)
+		{
+			return null;
+		}
+
+		// Snapshots are in time order, so find the first one in range by binary search
+		int from = Arrays.binarySearch(history.times, 0, history.size, since);
+		if (from < 0)
+		{
+			from = -from - 1;
+		}
+		return history.copy(from);
+	}
+
+	/**
+	 * Get a copy of every item's history that is safe to read from other threads
+	 */
+	public synchronized Map<Integer, ItemHistory> snapshot()
+	{
+		Map<Integer, ItemHistory> copy = new HashMap<>(items.size() * 2);
+		for (ItemHistory history : items.values())
+		{
+			copy.put(history.itemId, history.copy());
+		}
+		return copy;
+	}
+
+	private static int addSnapshot(Map<Integer, ItemHistory> items, int itemId, long time, int high, int low,
+								   int recommendedBuy, int recommendedSell, int buyLimit, int volumePerHour, int risk)
+	{
+		ItemHistory history = items.computeIfAbsent(itemId, id -> new ItemHistory(id, 16));
+		return history.add(time, high, low, recommendedBuy, recommendedSell, buyLimit, volumePerHour, risk);
+	}
+
+	/**
+	 * Write a snapshot to the file if it's open
+	 */
+	private void append(int itemId, long time, int high, int low, int recommendedBuy, int recommendedSell,
+						int buyLimit, int volumePerHour, int risk)
+	{
+		if (out == null)
+		{
+			return;
+		}
+
+		try
+		{
+			write(out, itemId, time, high, low, recommendedBuy, recommendedSell, buyLimit, volumePerHour, risk);
+		}
+		catch (IOException e)
+		{
+			log.warn("Could not write price history: {}", e.getMessage());
+		}
+	}
+
+	private static void writeAll(DataOutputStream out, Map<Integer, ItemHistory> items) throws IOException
+	{
+		for (ItemHistory history : items.values())
+		{
+			for (int i = 0; i < history.size; i++)
+			{
+				write(out, history.itemId, history.times[i], history.high[i], history.low[i],
+					history.recommendedBuy[i], history.recommendedSell[i], history.buyLimits[i],
+					history.volumePerHour[i], history.risk[i]);
+			}
+		}
+	}
+
+	private static void write(DataOutputStream out, int itemId, long time, int high, int low, int recommendedBuy,
+							  int recommendedSell, int buyLimit, int volumePerHour, int risk) throws IOException
+	{
+		out.writeInt(itemId);
+		out.writeLong(time);
+		out.writeInt(high);
+		out.writeInt(low);
+		out.writeInt(recommendedBuy);
+		out.writeInt(recommendedSell);
+		out.writeInt(buyLimit);
+		out.writeInt(volumePerHour);
+		out.writeByte(risk);
+	}
+
+	/**
+	 * Open one of the local history files for appending, first rewriting it with all
+	 * of a store's records if asked. The rewrite goes to a temporary file that then
+	 * replaces the old one, so a crash part way through leaves the old file as it was.
+	 *
+	 * @param records Writes every record for a rewrite, or null to append to the file as it is
+	 * @return The open file, or null if it couldn't be opened
+	 */
+	static DataOutputStream openHistoryFile(File file, int magic, int version, RecordWriter records)
+	{
+		File dir = file.getParentFile();
+		if (dir != null && !dir.exists() && !dir.mkdirs())
+		{
+			log.warn("Could not create {}", dir);
+			return null;
+		}
+
+		try
+		{
+			if (records != null)
+			{
+				File temp = new File(dir, file.getName() + ".tmp");
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+				{
+					out.writeInt(magic);
+					out.writeInt(version);
+					records.writeAll(out);
+				}
+
+				try
+				{
+					Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+				}
+				catch (AtomicMoveNotSupportedException e)
+				{
+					Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+
+			return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+		}
+		catch (IOException e)
+		{
+			log.warn("Could not open {} for writing: {}", file.getName(), e.getMessage());
+			return null;
+		}
+	}
+
+	private void flush()
+	{
+		if (out == null)
+		{
+			return;
+		}
+
+		try
+		{
+			out.flush();
+		}
+		catch (IOException e)
+		{
+			log.warn("Could not write price history: {}", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package com.flipsmart;
+
+import net.runelite.client.ui.ColorScheme;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small charts of an item's recent instant buy and sell prices, drawn from the
+ * recorded price history.
+ *
+ * Each chart is drawn once into an image and kept for the item until a new price
+ * snapshot is recorded for it, so rows showing one only copy the image when they
+ * paint. Only used on the Swing thread.
+ */
+public class PriceSparklines
+{
+	public static final int WIDTH = 180;
+	public static final int HEIGHT = 32;
+
+	// How far back the chart goes
+	private static final long WINDOW_MS = 6 * 60 * 60 * 1000L;
+	// Most images to keep, enough for a full list of recommendations and then some
+	private static final int MAX_CACHED = 128;
+
+	private static final Color HIGH_COLOR = new Color(100, 255, 100);
+	private static final Color LOW_COLOR = new Color(255, 180, 100);
+
+	private final PriceHistoryStore priceHistoryStore;
+
+	// Least recently used first
+	private final Map<Integer, Sparkline> cache = new LinkedHashMap<Integer, Sparkline>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, Sparkline> eldest)
+		{
+			return size() > MAX_CACHED;
+		}
+	};
+
+	private static class Sparkline
+	{
+		final long version;
+		// Null if there wasn't enough history to draw
+		final BufferedImage image;
+
+		Sparkline(long version, BufferedImage image)
+		{
+			this.version = version;
+			this.image = image;
+		}
+	}
+
+	public PriceSparklines(PriceHistoryStore priceHistoryStore)
+	{
+		this.priceHistoryStore = priceHistoryStore;
+	}
+
+	/**
+	 * Get the chart for an item, drawing it if there's no up to date one
+	 *
+	 * @return The chart, or null if there isn't enough recent history to draw one
+	 */
+	public BufferedImage get(int itemId)
+	{
+		long version = priceHistoryStore.getSnapshotCount(itemId);
+		Sparkline sparkline = cache.get(itemId);
+		if (sparkline == null || sparkline.version != version)
+		{
+			PriceHistoryStore.ItemHistory history =
+				priceHistoryStore.getHistorySince(itemId, System.currentTimeMillis() - WINDOW_MS);
+			sparkline = new Sparkline(version, history != null ? draw(history) : null);
+			cache.put(itemId, sparkline);
+		}
+		return sparkline.image;
+	}
+
+	private static BufferedImage draw(PriceHistoryStore.ItemHistory history)
+	{
+		if (history.size < 2)
+		{
+			return null;
+		}
+
+		long start = history.times[0];
+		long span = Math.max(1, history.times[history.size - 1] - start);
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (int i = 0; i < history.size; i++)
+		{
+			min = Math.min(min, Math.min(history.high[i], history.low[i]));
+			max = Math.max(max, Math.max(history.high[i], history.low[i]));
+		}
+		double range = Math.max(1, max - min);
+
+		int[] xs = new int[history.size];
+		int[] highYs = new int[history.size];
+		int[] lowYs = new int[history.size];
+		for (int i = 0; i < history.size; i++)
+		{
+			xs[i] = (int) Math.round((history.times[i] - start) * (WIDTH - 1.0) / span);
+			highYs[i] = 1 + (int) Math.round((max - history.high[i]) * (HEIGHT - 3) / range);
+			lowYs[i] = 1 + (int) Math.round((max - history.low[i]) * (HEIGHT - 3) / range);
+		}
+
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setColor(ColorScheme.DARK_GRAY_COLOR);
+		g.fillRect(0, 0, WIDTH, HEIGHT);
+		g.setStroke(new BasicStroke(1.2f));
+		g.setColor(LOW_COLOR);
+		g.drawPolyline(xs, lowYs, history.size);
+		g.setColor(HIGH_COLOR);
+		g.drawPolyline(xs, highYs, history.size);
+		g.dispose();
+		return image;
+	}
+}
@@ -0,0 +1,255 @@
+package com.flipsmart;
+
+import net.runelite.client.ui.ColorScheme;
+
+import javax.swing.JPanel;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.event.MouseEvent;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Line chart of cumulative profit over a {@link ProfitTimeline.Series}.
+ *
+ * A year of hourly buckets is far more points than the sidebar has pixels, so the
+ * line is downsampled to about one point per pixel with Largest Triangle Three
+ * Buckets, which keeps the peaks and dips a plain average would flatten. The
+ * downsampled points are kept until the series or the width changes, so repaints
+ * only draw.
+ */
+public class ProfitChart extends JPanel
+{
+	private static final int HEIGHT = 110;
+	private static final int PADDING = 4;
+	private static final Color LINE_COLOR = ColorScheme.BRAND_ORANGE;
+	private static final Color ZERO_COLOR = new Color(80, 80, 80);
+	private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("d MMM HH:mm");
+	private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("d MMM yyyy");
+
+	private final FlipSmartMetrics metrics;
+	private final FlipSmartMetrics.Histogram renderLatency;
+
+	private ProfitTimeline.Series series;
+	// Running total at the end of each bucket
+	private double[] cumulative = new double[0];
+	private double min;
+	private double max;
+
+	// Downsampled bucket indexes for the current width
+	private int[] points = new int[0];
+	private int pointsWidth = -1;
+
+	public ProfitChart(FlipSmartMetrics metrics)
+	{
+		this.metrics = metrics;
+		this.renderLatency = metrics.histogram("panel.profitChart");
+		setBackground(ColorScheme.DARKER_GRAY_COLOR);
+		setPreferredSize(new Dimension(0, HEIGHT));
+		setMinimumSize(new Dimension(0, HEIGHT));
+		setMaximumSize(new Dimension(Integer.MAX_VALUE, HEIGHT));
+		// Registers for tooltips, which come from getToolTipText(MouseEvent)
+		setToolTipText("");
+	}
+
+	public void setSeries(ProfitTimeline.Series series)
+	{
+		this.series = series;
+		long[] profits = series.profits;
+		cumulative = new double[profits.length];
+		min = 0;
+		max = 0;
+		long total = 0;
+		for (int i = 0; i < profits.length; i++)
+		{
+			total += profits[i];
+			cumulative[i] = total;
+			min = Math.min(min, total);
+			max = Math.max(max, total);
+		}
+		pointsWidth = -1;
+		repaint();
+	}
+
+	@Override
+	protected void paintComponent(Graphics g)
+	{
+		super.paintComponent(g);
+		if (cumulative.length < 2)
+		{
+			return;
+		}
+
+		long start = metrics.startTimer();
+		int width = getWidth() - 2 * PADDING;
+		if (width != pointsWidth)
+		{
+			points = downsample(cumulative, Math.max(2, width));
+			pointsWidth = width;
+		}
+
+		Graphics2D g2 = (Graphics2D) g.create();
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+		// Zero line
+		g2.setColor(ZERO_COLOR);
+		int zeroY = toY(0);
+		g2.drawLine(PADDING, zeroY, PADDING + width, zeroY);
+
+		int[] xs = new int[points.length];
+		int[] ys = new int[points.length];
+		for (int i = 0; i < points.length; i++)
+		{
+			xs[i] = toX(points[i], width);
+			ys[i] = toY(cumulative[points[i]]);
+		}
+		g2.setColor(LINE_COLOR);
+		g2.setStroke(new BasicStroke(1.5f));
+		g2.drawPolyline(xs, ys, points.length);
+
+		// Total so far, top left
+		g2.setFont(new Font("Arial", Font.PLAIN, 10));
+		double total = cumulative[cumulative.length - 1];
+		g2.setColor(total >= 0 ? ColorScheme.PROGRESS_COMPLETE_COLOR : ColorScheme.PROGRESS_ERROR_COLOR);
+		g2.drawString(formatGp((long) total), PADDING + 2, PADDING + 10);
+		g2.dispose();
+
+		renderLatency.recordSince(start);
+	}
+
+	@Override
+	public String getToolTipText(MouseEvent event)
+	{
+		if (series == null || cumulative.length < 2)
+		{
+			return null;
+		}
+
+		int width = getWidth() - 2 * PADDING;
+		int bucket = (int) Math.round((event.getX() - PADDING) * (cumulative.length - 1) / (double) Math.max(1, width));
+		bucket = Math.max(0, Math.min(cumulative.length - 1, bucket));
+
+		long time = series.startOf(bucket);
+		DateTimeFormatter format = series.resolution == ProfitTimeline.Resolution.HOUR ? HOUR_FORMAT : DAY_FORMAT;
+		String date = format.format(Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()));
+		if (series.resolution == ProfitTimeline.Resolution.WEEK)
+		{
+			date = "Week of " + date;
+		}
+		return String.format("<html>%s<br>%s (total %s)</html>", date,
+			formatGp(series.profits[bucket]), formatGp((long) cumulative[bucket]));
+	}
+
+	private int toX(int bucket, int width)
+	{
+		return PADDING + (int) Math.round(bucket * (double) width / (cumulative.length - 1));
+	}
+
+	private int toY(double value)
+	{
+		int height = getHeight() - 2 * PADDING;
+		double range = max - min;
+		if (range <= 0)
+		{
+			return PADDING + height / 2;
+		}
+		return PADDING + (int) Math.round((max - value) * height / range);
+	}
+
+	private static String formatGp(long amount)
+	{
+		String sign = amount < 0 ? "-" : "+";
+		long abs = Math.abs(amount);
+		if (abs >= 1_000_000)
+		{
+			return String.format("%s%.1fM", sign, abs / 1_000_000.0);
+		}
+		if (abs >= 1_000)
+		{
+			return String.format("%s%.1fK", sign, abs / 1_000.0);
+		}
+		return sign + abs;
+	}
+
+	/**
+	 * Pick the points of an evenly spaced series that best keep its shape, with Largest
+	 * Triangle Three Buckets. The first and last points are always kept. Each bucket
+	 * in between keeps the point forming the largest triangle with the point kept
+	 * before it and the average of the next bucket.
+	 *
+	 * @param threshold How many points to keep
+	 * @return Indexes of the kept points, in order
+	 */
+	static int[] downsample(double[] values, int threshold)
+	{
+		int length = values.length;
+		if (threshold >= length || threshold < 3)
+		{
+			int count = Math.min(length, Math.max(threshold, 2));
+			int[] all = new int[count];
+			for (int i = 0; i < count; i++)
+			{
+				all[i] = count == length ? i : (int) ((long) i * (length - 1) / (count - 1));
+			}
+			return all;
+		}
+
+		int[] kept = new int[threshold];
+		double bucketSize = (double) (length - 2) / (threshold - 2);
+		int previous = 0;
+		kept[0] = 0;
+
+		for (int i = 0; i < threshold - 2; i++)
+		{
+			// Average of the next bucket, the third corner of the triangle
+			int nextStart = (int) ((i + 1) * bucketSize) + 1;
+			int nextEnd = Math.min(length, (int) ((i + 2) * bucketSize) + 1);
+			double avgX = 0;
+			double avgY = 0;
+			for (int j = nextStart; j < nextEnd; j++)
+			{
+				avgX += j;
+				avgY += values[j];
+			}
+			int nextCount = nextEnd - nextStart;
+			if (nextCount > 0)
+			{
+				avgX /= nextCount;
+				avgY /= nextCount;
+			}
+			else
+			{
+				avgX = length - 1;
+				avgY = values[length - 1];
+			}
+
+			int start = (int) (i * bucketSize) + 1;
+			int end = (int) ((i + 1) * bucketSize) + 1;
+			double bestArea = -1;
+			int best = start;
+			for (int j = start; j < end; j++)
+			{
+				// Twice the triangle's area, which ranks the same
+				double area = Math.abs((previous - avgX) * (values[j] - values[previous])
+					- (previous - j) * (avgY - values[previous]));
+				if (area > bestArea)
+				{
+					bestArea = area;
+					best = j;
+				}
+			}
+
+			kept[i + 1] = best;
+			previous = best;
+		}
+
+		kept[threshold - 1] = length - 1;
+		return kept;
+	}
+}
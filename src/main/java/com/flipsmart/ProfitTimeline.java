@@ -0,0 +1,259 @@
+package com.flipsmart;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Completed flip profit summed into hour, day and week buckets, and per item.
+ *
+ * Every flip is added to all three bucket sizes as it comes in, so a chart of any
+ * of them is a copy of an array that's already summed, however long the history.
+ * Days and weeks follow the local time zone, with weeks starting on Monday. Each
+ * flip is placed by the zone's offset at the time it sold, so a day either side of
+ * a daylight saving change still starts at midnight, and is 23 or 25 hours long.
+ */
+public class ProfitTimeline
+{
+	public enum Resolution
+	{
+		HOUR("Hourly", 60 * 60 * 1000L),
+		DAY("Daily", 24 * 60 * 60 * 1000L),
+		WEEK("Weekly", 7 * 24 * 60 * 60 * 1000L);
+
+		private final String label;
+		private final long millis;
+
+		Resolution(String label, long millis)
+		{
+			this.label = label;
+			this.millis = millis;
+		}
+
+		public long getMillis()
+		{
+			return millis;
+		}
+
+		@Override
+		public String toString()
+		{
+			return label;
+		}
+	}
+
+	// 1970-01-01 was a Thursday, so weeks are shifted to start on Monday
+	private static final long WEEK_SHIFT_MS = 3 * 24 * 60 * 60 * 1000L;
+	// Times further ahead than this are bad data, and would stretch the buckets
+	private static final long MAX_AHEAD_MS = 24 * 60 * 60 * 1000L;
+
+	/**
+	 * Profit per bucket of a timeline, oldest first
+	 */
+	public static class Series
+	{
+		public final Resolution resolution;
+		// Start of the first bucket
+		public final long start;
+		public final long[] profits;
+
+		private final ZoneId zone;
+		private final long firstBucket;
+
+		Series(Resolution resolution, ZoneId zone, long firstBucket, long[] profits)
+		{
+			this.resolution = resolution;
+			this.zone = zone;
+			this.firstBucket = firstBucket;
+			this.start = profits.length == 0 ? 0 : ProfitTimeline.startOf(resolution, zone, firstBucket);
+			this.profits = profits;
+		}
+
+		/**
+		 * Start of the bucket at an index, which isn't a fixed step from the first
+		 * when daylight saving changes in between
+		 */
+		public long startOf(int index)
+		{
+			return ProfitTimeline.startOf(resolution, zone, firstBucket + index);
+		}
+	}
+
+	/**
+	 * An item's total over the whole history
+	 */
+	public static class ItemProfit
+	{
+		public final int itemId;
+		public final long profit;
+		public final int flips;
+
+		ItemProfit(int itemId, long profit, int flips)
+		{
+			this.itemId = itemId;
+			this.profit = profit;
+			this.flips = flips;
+		}
+	}
+
+	private final ZoneId zone;
+	private final long[] firstBucket = new long[Resolution.values().length];
+	private final long[][] buckets = new long[Resolution.values().length][];
+	private final int[] bucketCounts = new int[Resolution.values().length];
+
+	// Item id -> total profit and flip count
+	private final Map<Integer, long[]> items = new HashMap<>();
+
+	public ProfitTimeline()
+	{
+		this(ZoneId.systemDefault());
+	}
+
+	ProfitTimeline(ZoneId zone)
+	{
+		this.zone = zone;
+		clear();
+	}
+
+	public void clear()
+	{
+		Arrays.fill(bucketCounts, 0);
+		for (int i = 0; i < buckets.length; i++)
+		{
+			buckets[i] = new long[16];
+		}
+		items.clear();
+	}
+
+	/**
+	 * Add a completed flip's profit at the time it sold
+	 */
+	public void add(int itemId, long time, long profit)
+	{
+		if (time > 0 && time <= System.currentTimeMillis() + MAX_AHEAD_MS)
+		{
+			for (Resolution resolution : Resolution.values())
+			{
+				addToBucket(resolution, time, profit);
+			}
+		}
+
+		long[] total = items.computeIfAbsent(itemId, id -> new long[2]);
+		total[0] += profit;
+		total[1]++;
+	}
+
+	private void addToBucket(Resolution resolution, long time, long profit)
+	{
+		int level = resolution.ordinal();
+		long bucket = bucketOf(resolution, time);
+		long[] profits = buckets[level];
+		int count = bucketCounts[level];
+
+		if (count == 0)
+		{
+			firstBucket[level] = bucket;
+			count = 1;
+		}
+		else if (bucket < firstBucket[level])
+		{
+			// Earlier than anything so far, so make room at the front
+			int shift = (int) (firstBucket[level] - bucket);
+			long[] grown = new long[Math.max(profits.length, count + shift)];
+			System.arraycopy(profits, 0, grown, shift, count);
+			profits = grown;
+			firstBucket[level] = bucket;
+			count += shift;
+		}
+
+		int index = (int) (bucket - firstBucket[level]);
+		if (index >= profits.length)
+		{
+			profits = Arrays.copyOf(profits, Math.max(profits.length * 2, index + 1));
+		}
+		count = Math.max(count, index + 1);
+		profits[index] += profit;
+
+		buckets[level] = profits;
+		bucketCounts[level] = count;
+	}
+
+	/**
+	 * Bucket of a time, counted in local time since 1970-01-01 00:00 local
+	 */
+	private long bucketOf(Resolution resolution, long time)
+	{
+		long local = time + zone.getRules().getOffset(Instant.ofEpochMilli(time)).getTotalSeconds() * 1000L;
+		if (resolution == Resolution.WEEK)
+		{
+			local += WEEK_SHIFT_MS;
+		}
+		return Math.floorDiv(local, resolution.millis);
+	}
+
+	private static long startOf(Resolution resolution, ZoneId zone, long bucket)
+	{
+		long local = bucket * resolution.millis;
+		if (resolution == Resolution.WEEK)
+		{
+			local -= WEEK_SHIFT_MS;
+		}
+		// A local time skipped by daylight saving moves to just after the gap
+		return LocalDateTime.ofEpochSecond(Math.floorDiv(local, 1000L), 0, ZoneOffset.UTC)
+			.atZone(zone)
+			.toInstant()
+			.toEpochMilli();
+	}
+
+	/**
+	 * Copy of the buckets at a resolution, from the first flip up to now
+	 */
+	public Series getSeries(Resolution resolution, long now)
+	{
+		int level = resolution.ordinal();
+		int count = bucketCounts[level];
+		if (count == 0)
+		{
+			return new Series(resolution, zone, 0, new long[0]);
+		}
+
+		// Run up to the current bucket, so quiet time since the last flip shows as flat
+		long last = Math.max(firstBucket[level] + count - 1, bucketOf(resolution, now));
+		int length = (int) Math.min(Integer.MAX_VALUE - 8, last - firstBucket[level] + 1);
+		long[] profits = Arrays.copyOf(buckets[level], length);
+		return new Series(resolution, zone, firstBucket[level], profits);
+	}
+
+	/**
+	 * Items with the largest profits, followed by those with the largest losses
+	 *
+	 * @param limit Most items to return from each end
+	 */
+	public List<ItemProfit> getItemBreakdown(int limit)
+	{
+		List<ItemProfit> all = new ArrayList<>(items.size());
+		for (Map.Entry<Integer, long[]> entry : items.entrySet())
+		{
+			long[] total = entry.getValue();
+			all.add(new ItemProfit(entry.getKey(), total[0], (int) total[1]));
+		}
+		all.sort((a, b) -> Long.compare(b.profit, a.profit));
+
+		List<ItemProfit> result = new ArrayList<>();
+		for (int i = 0; i < all.size() && i < limit && all.get(i).profit > 0; i++)
+		{
+			result.add(all.get(i));
+		}
+		for (int i = all.size() - 1; i >= 0 && all.size() - i <= limit && all.get(i).profit < 0; i--)
+		{
+			result.add(all.get(i));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,287 @@
+package com.flipsmart;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * A WebSocket the API uses to tell the plugin when recommendations or flips change,
+ * so the panel updates straight away instead of on the next poll.
+ *
+ * Each message names what changed and the plugin refetches it. Messages for the
+ * same topic that arrive close together are delivered once. While the socket is
+ * down the plugin keeps polling, and the channel reconnects with a growing delay.
+ */
+@Slf4j
+@Singleton
+public class PushUpdateChannel
+{
+	/**
+	 * What changed on the server
+	 */
+	public enum Topic
+	{
+		RECOMMENDATIONS("recommendations"),
+		ACTIVE_FLIPS("active_flips"),
+		COMPLETED_FLIPS("completed_flips");
+
+		private final String type;
+
+		Topic(String type)
+		{
+			this.type = type;
+		}
+
+		static Topic fromType(String type)
+		{
+			for (Topic topic : values())
+			{
+				if (topic.type.equals(type))
+				{
+					return topic;
+				}
+			}
+			return null;
+		}
+	}
+
+	private static final long MIN_RECONNECT_MS = 5_000;
+	private static final long MAX_RECONNECT_MS = 5 * 60_000;
+	// Messages for a topic within this window are delivered together
+	private static final long COALESCE_MS = 250;
+
+	private final FlipSmartApiClient apiClient;
+	private final FlipSmartScheduler scheduler;
+	private final Gson gson;
+
+	private final FlipSmartMetrics.Counter messageCount;
+	private final FlipSmartMetrics.Counter reconnectCount;
+	private final FlipSmartMetrics.Histogram staleness;
+
+	private final AtomicBoolean[] pending = new AtomicBoolean[Topic.values().length];
+
+	private volatile Consumer<Topic> listener;
+	private volatile WebSocket socket;
+	private volatile boolean connected;
+	private volatile boolean running;
+	private long reconnectMs = MIN_RECONNECT_MS;
+	private ScheduledFuture<?> reconnectTask;
+
+	@Inject
+	public PushUpdateChannel(FlipSmartApiClient apiClient, FlipSmartScheduler scheduler, FlipSmartMetrics metrics,
+							 Gson gson)
+	{
+		this.apiClient = apiClient;
+		this.scheduler = scheduler;
+		this.gson = gson;
+		this.messageCount = metrics.counter("push.messages");
+		this.reconnectCount = metrics.counter("push.reconnects");
+		this.staleness = metrics.histogram("push.staleness");
+		for (int i = 0; i < pending.length; i++)
+		{
+			pending[i] = new AtomicBoolean();
+		}
+	}
+
+	/**
+	 * Open the channel
+	 *
+	 * @param listener Called on a scheduler thread with each topic that changed
+	 */
+	public synchronized void start(Consumer<Topic> listener)
+	{
+		if (running)
+		{
+			return;
+		}
+		this.listener = listener;
+		running = true;
+		reconnectMs = MIN_RECONNECT_MS;
+		connect();
+	}
+
+	/**
+	 * Close the channel and stop reconnecting
+	 */
+	public synchronized void stop()
+	{
+		running = false;
+		connected = false;
+		if (reconnectTask != null)
+		{
+			reconnectTask.cancel(false);
+			reconnectTask = null;
+		}
+		if (socket != null)
+		{
+			socket.close(1000, "Plugin stopped");
+			socket = null;
+		}
+	}
+
+	/**
+	 * Check if updates are being pushed, in which case polling can be skipped
+	 */
+	public boolean isConnected()
+	{
+		return connected;
+	}
+
+	private void connect()
+	{
+		// The socket is kept once it opens, failures before then arrive on the listener
+		apiClient.openUpdatesSocket(new Listener()).whenComplete((opened, error) ->
+		{
+			if (opened == null)
+			{
+				scheduleReconnect();
+			}
+		});
+	}
+
+	private synchronized void scheduleReconnect()
+	{
+		if (!running || (reconnectTask != null && !reconnectTask.isDone()))
+		{
+			return;
+		}
+
+		log.debug("Live updates unavailable, polling and reconnecting in {}s", reconnectMs / 1000);
+		reconnectTask = scheduler.schedule("push-reconnect", () ->
+		{
+			reconnectCount.increment();
+			connect();
+		}, reconnectMs, TimeUnit.MILLISECONDS);
+		reconnectMs = Math.min(reconnectMs * 2, MAX_RECONNECT_MS);
+	}
+
+	/**
+	 * Handle a message from the server. Runs on OkHttp's reader thread, where anything
+	 * thrown would close the socket and start a reconnect, so nothing is trusted.
+	 */
+	void onMessage(String text)
+	{
+		Topic topic;
+		long sentAt;
+		try
+		{
+			JsonObject message = gson.fromJson(text, JsonObject.class);
+			JsonElement type = message != null ? message.get("type") : null;
+			topic = type != null && type.isJsonPrimitive() ? Topic.fromType(type.getAsString()) : null;
+			JsonElement sent = topic != null ? message.get("sent_at") : null;
+			sentAt = sent != null && sent.isJsonPrimitive() && sent.getAsJsonPrimitive().isNumber() ? sent.getAsLong() : 0;
+		}
+		catch (Exception e)
+		{
+			log.debug("Ignoring malformed update: {}", e.getMessage());
+			return;
+		}
+
+		if (topic == null)
+		{
+			return;
+		}
+
+		messageCount.increment();
+		if (sentAt > 0)
+		{
+			// How far behind the server the plugin hears about a change
+			staleness.recordMillis(System.currentTimeMillis() - sentAt);
+		}
+
+		deliverLater(topic);
+	}
+
+	private void deliverLater(Topic topic)
+	{
+		if (pending[topic.ordinal()].compareAndSet(false, true))
+		{
+			scheduler.schedule("push-deliver", () ->
+			{
+				pending[topic.ordinal()].set(false);
+				Consumer<Topic> current = listener;
+				if (running && current != null)
+				{
+					current.accept(topic);
+				}
+			}, COALESCE_MS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private class Listener extends WebSocketListener
+	{
+		@Override
+		public void onOpen(WebSocket webSocket, Response response)
+		{
+			synchronized (PushUpdateChannel.this)
+			{
+				if (!running)
+				{
+					webSocket.close(1000, "Plugin stopped");
+					return;
+				}
+				log.info("Live updates connected");
+				socket = webSocket;
+				connected = true;
+				reconnectMs = MIN_RECONNECT_MS;
+			}
+
+			// Catch up on anything missed while disconnected
+			for (Topic topic : Topic.values())
+			{
+				deliverLater(topic);
+			}
+		}
+
+		@Override
+		public void onMessage(WebSocket webSocket, String text)
+		{
+			PushUpdateChannel.this.onMessage(text);
+		}
+
+		@Override
+		public void onClosing(WebSocket webSocket, int code, String reason)
+		{
+			webSocket.close(1000, null);
+		}
+
+		@Override
+		public void onClosed(WebSocket webSocket, int code, String reason)
+		{
+			disconnected(webSocket, reason);
+		}
+
+		@Override
+		public void onFailure(WebSocket webSocket, Throwable t, Response response)
+		{
+			disconnected(webSocket, t.getMessage());
+		}
+
+		private void disconnected(WebSocket webSocket, String reason)
+		{
+			synchronized (PushUpdateChannel.this)
+			{
+				if (socket != null && socket != webSocket)
+				{
+					// An older socket closing after a reconnect
+					return;
+				}
+				log.debug("Live updates disconnected: {}", reason);
+				connected = false;
+				socket = null;
+			}
+			scheduleReconnect();
+		}
+	}
+}
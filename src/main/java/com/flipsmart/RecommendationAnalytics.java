@@ -0,0 +1,261 @@
+package com.flipsmart;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.config.ConfigManager;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.lang.reflect.Type;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Measures how well recommendations work out. A buy is joined to the recommendation
+ * that prompted it, the sells that follow are matched against that buy, and the
+ * realised margin is compared to the one predicted when the item was recommended.
+ *
+ * Totals are kept per flip style and updated as each fill comes in, so reading the
+ * stats never has to go back over past flips.
+ */
+@Slf4j
+@Singleton
+public class RecommendationAnalytics
+{
+	private static final String CONFIG_GROUP = "flipsmart";
+	private static final String CONFIG_KEY = "recommendationStats";
+
+	private final ConfigManager configManager;
+	private final Gson gson;
+
+	private final Map<FlipSmartConfig.FlipStyle, StyleStats> stats = new EnumMap<>(FlipSmartConfig.FlipStyle.class);
+
+	/**
+	 * Running totals for recommendations of one flip style
+	 */
+	public static class StyleStats
+	{
+		// Recommendations that were bought
+		long buys;
+		// Bought recommendations that have been sold off completely
+		long flips;
+		// Flips whose profit was at least the predicted profit
+		long hits;
+		long unitsSold;
+		long predictedProfit;
+		long realisedProfit;
+		// From the recommendation to the first buy fill, summed over buys
+		long fillTimeMs;
+		// From the first buy fill to the last sell, summed over flips
+		long holdTimeMs;
+
+		public long getBuys()
+		{
+			return buys;
+		}
+
+		public long getFlips()
+		{
+			return flips;
+		}
+
+		/**
+		 * Share of finished flips that made at least their predicted profit, or -1 if none have finished
+		 */
+		public double getHitRate()
+		{
+			return flips > 0 ? (double) hits / flips : -1;
+		}
+
+		public long getRealisedProfit()
+		{
+			return realisedProfit;
+		}
+
+		public long getPredictedProfit()
+		{
+			return predictedProfit;
+		}
+
+		/**
+		 * Average realised margin per item sold
+		 */
+		public long getRealisedMargin()
+		{
+			return unitsSold > 0 ? realisedProfit / unitsSold : 0;
+		}
+
+		/**
+		 * Average predicted margin per item sold
+		 */
+		public long getPredictedMargin()
+		{
+			return unitsSold > 0 ? predictedProfit / unitsSold : 0;
+		}
+
+		public long getAverageFillTimeMs()
+		{
+			return buys > 0 ? fillTimeMs / buys : 0;
+		}
+
+		public long getAverageHoldTimeMs()
+		{
+			return flips > 0 ? holdTimeMs / flips : 0;
+		}
+
+		StyleStats copy()
+		{
+			StyleStats copy = new StyleStats();
+			copy.buys = buys;
+			copy.flips = flips;
+			copy.hits = hits;
+			copy.unitsSold = unitsSold;
+			copy.predictedProfit = predictedProfit;
+			copy.realisedProfit = realisedProfit;
+			copy.fillTimeMs = fillTimeMs;
+			copy.holdTimeMs = holdTimeMs;
+			return copy;
+		}
+	}
+
+	/**
+	 * Items bought from a recommendation and not sold yet. Kept per account, since
+	 * only that account can sell them.
+	 */
+	static class Position
+	{
+		FlipSmartConfig.FlipStyle style;
+		long predictedMargin;
+		long firstFillAt;
+		long quantity;
+		long cost;
+		long predictedProfit;
+		long realisedProfit;
+	}
+
+	@Inject
+	public RecommendationAnalytics(ConfigManager configManager, Gson gson)
+	{
+		this.configManager = configManager;
+		this.gson = gson;
+	}
+
+	/**
+	 * Join a fill to the recommendation it came from. Buys open or add to a position
+	 * if they were recommended, sells close out an open position.
+	 *
+	 * @param attribution The recommendation a buy came from, or null
+	 * @return True if a flip was finished by this fill
+	 */
+	public synchronized boolean recordFill(AccountState account, int itemId, boolean isBuy, int quantity,
+										   int pricePerItem, RecommendationRegistry.Attribution attribution, long now)
+	{
+		if (quantity <= 0)
+		{
+			return false;
+		}
+
+		Position position = account.attributed.get(itemId);
+		if (isBuy)
+		{
+			if (position == null)
+			{
+				if (attribution == null || attribution.style == null)
+				{
+					return false;
+				}
+
+				position = new Position();
+				position.style = attribution.style;
+				position.predictedMargin = GePricing.profitPerItem(itemId,
+					attribution.recommendedBuyPrice, attribution.recommendedSellPrice);
+				position.firstFillAt = now;
+				account.attributed.put(itemId, position);
+
+				StyleStats styleStats = statsFor(position.style);
+				styleStats.buys++;
+				styleStats.fillTimeMs += Math.max(0, now - attribution.recordedAt);
+			}
+
+			position.quantity += quantity;
+			position.cost += (long) quantity * pricePerItem;
+			return false;
+		}
+
+		if (position == null)
+		{
+			return false;
+		}
+
+		long matched = Math.min(quantity, position.quantity);
+		long cost = position.cost * matched / position.quantity;
+		long realised = GePricing.netSellPrice(itemId, pricePerItem) * matched - cost;
+		long predicted = position.predictedMargin * matched;
+
+		StyleStats styleStats = statsFor(position.style);
+		styleStats.unitsSold += matched;
+		styleStats.realisedProfit += realised;
+		styleStats.predictedProfit += predicted;
+
+		position.realisedProfit += realised;
+		position.predictedProfit += predicted;
+		position.quantity -= matched;
+		position.cost -= cost;
+		if (position.quantity > 0)
+		{
+			return false;
+		}
+
+		account.attributed.remove(itemId);
+		styleStats.flips++;
+		styleStats.holdTimeMs += Math.max(0, now - position.firstFillAt);
+		if (position.realisedProfit >= position.predictedProfit)
+		{
+			styleStats.hits++;
+		}
+		return true;
+	}
+
+	/**
+	 * A copy of the totals for one style
+	 */
+	public synchronized StyleStats getStats(FlipSmartConfig.FlipStyle style)
+	{
+		return statsFor(style).copy();
+	}
+
+	public synchronized void load()
+	{
+		String json = configManager.getConfiguration(CONFIG_GROUP, CONFIG_KEY);
+		if (json == null || json.isEmpty())
+		{
+			return;
+		}
+
+		try
+		{
+			Type type = new TypeToken<Map<FlipSmartConfig.FlipStyle, StyleStats>>(){}.getType();
+			Map<FlipSmartConfig.FlipStyle, StyleStats> saved = gson.fromJson(json, type);
+			if (saved != null)
+			{
+				saved.remove(null);
+				stats.putAll(saved);
+			}
+		}
+		catch (Exception e)
+		{
+			log.warn("Could not load recommendation stats: {}", e.getMessage());
+		}
+	}
+
+	public synchronized void save()
+	{
+		configManager.setConfiguration(CONFIG_GROUP, CONFIG_KEY, gson.toJson(stats));
+	}
+
+	private StyleStats statsFor(FlipSmartConfig.FlipStyle style)
+	{
+		return stats.computeIfAbsent(style, s -> new StyleStats());
+	}
+}
@@ -0,0 +1,216 @@
+package com.flipsmart;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Re-ranks a fetched pool of flip candidates locally, so changing the minimum profit
+ * or the number of recommendations doesn't need another round trip to the API. The
+ * API filters the pool by flip style, so a pool is only ranked for the style it
+ * was fetched with.
+ *
+ * Candidate fields are copied into primitive arrays once, and each ranking keeps
+ * only the best K scores in a small heap rather than sorting the whole pool.
+ */
+public class RecommendationRanker
+{
+	/**
+	 * Scores a candidate from its recommendation fields; higher is better
+	 */
+	public interface ScoringFunction
+	{
+		double score(double efficiency, double liquidity, double risk, double roi, int margin);
+	}
+
+	// Favour liquid, low risk items
+	private static final ScoringFunction CONSERVATIVE = (efficiency, liquidity, risk, roi, margin) ->
+		0.4 * efficiency + 0.4 * liquidity - 0.5 * risk + 0.5 * roi;
+
+	// Let the API's efficiency score lead, with a little weight on liquidity and risk
+	private static final ScoringFunction BALANCED = (efficiency, liquidity, risk, roi, margin) ->
+		0.7 * efficiency + 0.2 * liquidity - 0.2 * risk + roi;
+
+	// Chase margin and ROI, accepting more risk
+	private static final ScoringFunction AGGRESSIVE = (efficiency, liquidity, risk, roi, margin) ->
+		0.4 * efficiency + 2.0 * roi + 10.0 * Math.log1p(Math.max(0, margin)) - 0.05 * risk;
+
+	private FlipRecommendation[] candidates = new FlipRecommendation[0];
+	private double[] efficiency = new double[0];
+	private double[] liquidity = new double[0];
+	private double[] risk = new double[0];
+	private double[] roi = new double[0];
+	private int[] margin = new int[0];
+
+	/**
+	 * Get the scoring function for a flip style
+	 */
+	public static ScoringFunction forStyle(FlipSmartConfig.FlipStyle style)
+	{
+		if (style == null)
+		{
+			return BALANCED;
+		}
+
+		switch (style)
+		{
+			case CONSERVATIVE:
+				return CONSERVATIVE;
+			case AGGRESSIVE:
+				return AGGRESSIVE;
+			default:
+				return BALANCED;
+		}
+	}
+
+	/**
+	 * Replace the candidate pool
+	 */
+	public void setCandidates(List<FlipRecommendation> recommendations)
+	{
+		int n = recommendations.size();
+		candidates = recommendations.toArray(new FlipRecommendation[n]);
+		efficiency = new double[n];
+		liquidity = new double[n];
+		risk = new double[n];
+		roi = new double[n];
+		margin = new int[n];
+
+		for (int i = 0; i < n; i++)
+		{
+			FlipRecommendation rec = candidates[i];
+			efficiency[i] = rec.getEfficiencyScore();
+			liquidity[i] = rec.getLiquidityScore();
+			risk[i] = rec.getRiskScore();
+			roi[i] = rec.getRoiPercent();
+			margin[i] = rec.getMargin();
+		}
+	}
+
+	/**
+	 * Check if there are candidates to rank
+	 */
+	public boolean hasCandidates()
+	{
+		return candidates.length > 0;
+	}
+
+	/**
+	 * Get the top candidates by score
+	 *
+	 * @param scorer Scoring function to rank by
+	 * @param minMargin Candidates with a lower margin are skipped
+	 * @param limit Maximum number of results
+	 * @return Best candidates, highest score first
+	 */
+	public List<FlipRecommendation> rank(ScoringFunction scorer, int minMargin, int limit)
+	{
+		int k = Math.min(limit, candidates.length);
+		if (k <= 0)
+		{
+			return Collections.emptyList();
+		}
+
+		// Min-heap of the best k seen so far, root is the weakest
+		double[] heapScore = new double[k];
+		int[] heapIndex = new int[k];
+		int size = 0;
+
+		for (int i = 0; i < candidates.length; i++)
+		{
+			if (margin[i] < minMargin)
+			{
+				continue;
+			}
+
+			double score = scorer.score(efficiency[i], liquidity[i], risk[i], roi[i], margin[i]);
+			if (size < k)
+			{
+				heapScore[size] = score;
+				heapIndex[size] = i;
+				siftUp(heapScore, heapIndex, size);
+				size++;
+			}
+			else if (isBetter(score, i, heapScore[0], heapIndex[0]))
+			{
+				heapScore[0] = score;
+				heapIndex[0] = i;
+				siftDown(heapScore, heapIndex, size);
+			}
+		}
+
+		// Pop the weakest off first so the result ends up best-first
+		FlipRecommendation[] ranked = new FlipRecommendation[size];
+		for (int end = size - 1; end >= 0; end--)
+		{
+			ranked[end] = candidates[heapIndex[0]];
+			heapScore[0] = heapScore[end];
+			heapIndex[0] = heapIndex[end];
+			siftDown(heapScore, heapIndex, end);
+		}
+
+		List<FlipRecommendation> result = new ArrayList<>(size);
+		Collections.addAll(result, ranked);
+		return result;
+	}
+
+	/**
+	 * Higher score wins, ties go to the candidate the API ranked first
+	 */
+	private static boolean isBetter(double score, int index, double otherScore, int otherIndex)
+	{
+		return score > otherScore || (score == otherScore && index < otherIndex);
+	}
+
+	private static void siftUp(double[] scores, int[] indexes, int pos)
+	{
+		while (pos > 0)
+		{
+			int parent = (pos - 1) >>> 1;
+			if (!isBetter(scores[parent], indexes[parent], scores[pos], indexes[pos]))
+			{
+				break;
+			}
+			swap(scores, indexes, pos, parent);
+			pos = parent;
+		}
+	}
+
+	private static void siftDown(double[] scores, int[] indexes, int size)
+	{
+		int pos = 0;
+		while (true)
+		{
+			int left = 2 * pos + 1;
+			if (left >= size)
+			{
+				break;
+			}
+
+			int right = left + 1;
+			int weakest = left;
+			if (right < size && isBetter(scores[left], indexes[left], scores[right], indexes[right]))
+			{
+				weakest = right;
+			}
+
+			if (!isBetter(scores[pos], indexes[pos], scores[weakest], indexes[weakest]))
+			{
+				break;
+			}
+			swap(scores, indexes, pos, weakest);
+			pos = weakest;
+		}
+	}
+
+	private static void swap(double[] scores, int[] indexes, int a, int b)
+	{
+		double score = scores[a];
+		scores[a] = scores[b];
+		scores[b] = score;
+
+		int index = indexes[a];
+		indexes[a] = indexes[b];
+		indexes[b] = index;
+	}
+}
@@ -0,0 +1,250 @@
+package com.flipsmart;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the recommendation shown for each item, so a buy that fills later can
+ * be attributed to it: the suggested sell price, the buy price and flip style it
+ * was recommended at, and when.
+ *
+ * The panel records every item it shows on each refresh, so an entry keeps the time
+ * it was first recommended at its prices and style, and only that resets when they
+ * change. The time it was last shown is kept separately for expiry.
+ *
+ * Entries live in parallel primitive arrays with open addressing on the item id,
+ * so lookups don't allocate and memory stays flat however long the session runs.
+ * Entries expire after {@link #TTL_MS}, and once the table is full the oldest entry
+ * makes room for a new one.
+ */
+public class RecommendationRegistry
+{
+	// Older recommendations are too stale to attribute a buy to
+	static final long TTL_MS = 60 * 60 * 1000L;
+	private static final int MAX_ENTRIES = 512;
+	// Kept at most half full so probe sequences stay short
+	private static final int CAPACITY = MAX_ENTRIES * 2;
+	private static final int EMPTY = -1;
+
+	private final int[] itemIds = new int[CAPACITY];
+	private final int[] sellPrices = new int[CAPACITY];
+	private final int[] buyPrices = new int[CAPACITY];
+	private final byte[] styles = new byte[CAPACITY];
+	// When last shown, for expiry
+	private final long[] recordedAt = new long[CAPACITY];
+	// When first shown at the current prices and style
+	private final long[] firstRecordedAt = new long[CAPACITY];
+	private int size;
+
+	/**
+	 * The recommendation a buy came from
+	 */
+	public static class Attribution
+	{
+		public final int itemId;
+		public final int recommendedSellPrice;
+		public final int recommendedBuyPrice;
+		public final FlipSmartConfig.FlipStyle style;
+		// When the item was first recommended at these prices and style
+		public final long recordedAt;
+
+		Attribution(int itemId, int recommendedSellPrice, int recommendedBuyPrice,
+					FlipSmartConfig.FlipStyle style, long recordedAt)
+		{
+			this.itemId = itemId;
+			this.recommendedSellPrice = recommendedSellPrice;
+			this.recommendedBuyPrice = recommendedBuyPrice;
+			this.style = style;
+			this.recordedAt = recordedAt;
+		}
+	}
+
+	public RecommendationRegistry()
+	{
+		Arrays.fill(itemIds, EMPTY);
+	}
+
+	/**
+	 * Remember a recommendation, replacing any earlier one for the item. Showing the
+	 * same recommendation again only extends how long it's kept.
+	 */
+	public synchronized void put(int itemId, int recommendedSellPrice, int recommendedBuyPrice,
+								 FlipSmartConfig.FlipStyle style, long now)
+	{
+		byte styleOrdinal = (byte) (style != null ? style.ordinal() : -1);
+		int index = find(itemId);
+		if (index >= 0 && now - recordedAt[index] > TTL_MS)
+		{
+			delete(index);
+			index = -1;
+		}
+		if (index < 0)
+		{
+			if (size >= MAX_ENTRIES)
+			{
+				makeRoom(now);
+			}
+			index = insertionPoint(itemId);
+			itemIds[index] = itemId;
+			firstRecordedAt[index] = now;
+			size++;
+		}
+		else if (sellPrices[index] != recommendedSellPrice || buyPrices[index] != recommendedBuyPrice
+			|| styles[index] != styleOrdinal)
+		{
+			firstRecordedAt[index] = now;
+		}
+
+		sellPrices[index] = recommendedSellPrice;
+		buyPrices[index] = recommendedBuyPrice;
+		styles[index] = styleOrdinal;
+		recordedAt[index] = now;
+	}
+
+	/**
+	 * Get the recommendation for an item if it hasn't expired
+	 */
+	public synchronized Attribution get(int itemId, long now)
+	{
+		int index = find(itemId);
+		if (index < 0)
+		{
+			return null;
+		}
+
+		if (now - recordedAt[index] > TTL_MS)
+		{
+			delete(index);
+			return null;
+		}
+
+		byte style = styles[index];
+		return new Attribution(itemId, sellPrices[index], buyPrices[index],
+			style >= 0 ? FlipSmartConfig.FlipStyle.values()[style] : null, firstRecordedAt[index]);
+	}
+
+	/**
+	 * Get the recommended sell price for an item if it hasn't expired
+	 */
+	public synchronized Integer getSellPrice(int itemId, long now)
+	{
+		int index = find(itemId);
+		if (index < 0 || now - recordedAt[index] > TTL_MS)
+		{
+			return null;
+		}
+		return sellPrices[index];
+	}
+
+	/**
+	 * Forget an item's recommendation, e.g. once a buy has been attributed to it
+	 */
+	public synchronized void remove(int itemId)
+	{
+		int index = find(itemId);
+		if (index >= 0)
+		{
+			delete(index);
+		}
+	}
+
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Drop expired entries, or if none have expired, the oldest one
+	 */
+	private void makeRoom(long now)
+	{
+		for (int i = 0; i < CAPACITY; )
+		{
+			if (itemIds[i] != EMPTY && now - recordedAt[i] > TTL_MS)
+			{
+				// Deleting can shift a later entry into this slot, so look at it again
+				delete(i);
+				continue;
+			}
+			i++;
+		}
+
+		if (size < MAX_ENTRIES)
+		{
+			return;
+		}
+
+		int oldest = -1;
+		for (int i = 0; i < CAPACITY; i++)
+		{
+			if (itemIds[i] != EMPTY && (oldest < 0 || recordedAt[i] < recordedAt[oldest]))
+			{
+				oldest = i;
+			}
+		}
+		delete(oldest);
+	}
+
+	private int find(int itemId)
+	{
+		for (int i = slotFor(itemId); itemIds[i] != EMPTY; i = (i + 1) & (CAPACITY - 1))
+		{
+			if (itemIds[i] == itemId)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int insertionPoint(int itemId)
+	{
+		int i = slotFor(itemId);
+		while (itemIds[i] != EMPTY)
+		{
+			i = (i + 1) & (CAPACITY - 1);
+		}
+		return i;
+	}
+
+	/**
+	 * Remove the entry at an index, shifting later entries of the probe sequence
+	 * back so lookups never stop early at the gap
+	 */
+	private void delete(int index)
+	{
+		int gap = index;
+		int i = index;
+		while (true)
+		{
+			i = (i + 1) & (CAPACITY - 1);
+			if (itemIds[i] == EMPTY)
+			{
+				break;
+			}
+
+			// Move the entry back if its home slot isn't between the gap and where it is now
+			int home = slotFor(itemIds[i]);
+			boolean reachable = gap <= i ? (home > gap && home <= i) : (home > gap || home <= i);
+			if (!reachable)
+			{
+				itemIds[gap] = itemIds[i];
+				sellPrices[gap] = sellPrices[i];
+				buyPrices[gap] = buyPrices[i];
+				styles[gap] = styles[i];
+				recordedAt[gap] = recordedAt[i];
+				firstRecordedAt[gap] = firstRecordedAt[i];
+				gap = i;
+			}
+		}
+
+		itemIds[gap] = EMPTY;
+		size--;
+	}
+
+	private static int slotFor(int itemId)
+	{
+		// Item ids are mostly sequential, so spread them before masking
+		int h = itemId * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & (CAPACITY - 1);
+	}
+}
@@ -0,0 +1,221 @@
+package com.flipsmart;
+
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+/**
+ * Queues API calls by priority and limits how many are in flight at once, so a
+ * burst of analysis lookups can't hold up a transaction or a login.
+ *
+ * Calls run FIFO within a priority. A call that has waited longer than
+ * {@link #STARVATION_MS} goes next whatever its priority, so low priority calls
+ * still make progress under load. A call can give a key, and a newer call with
+ * the same key cancels it, whether it's still queued or already running.
+ */
+@Slf4j
+class RequestDispatcher
+{
+	/**
+	 * Request priorities, highest first
+	 */
+	enum Priority
+	{
+		TRANSACTION,
+		AUTH,
+		FLIPS,
+		RECOMMENDATIONS,
+		ANALYSIS
+	}
+
+	private static final long STARVATION_MS = 2000;
+
+	private final IntSupplier maxInFlight;
+	private final List<ArrayDeque<PendingCall>> queues = new ArrayList<>();
+	private final Map<String, PendingCall> callsByKey = new HashMap<>();
+	private int inFlight;
+
+	private static class PendingCall
+	{
+		final Call call;
+		final Priority priority;
+		final String key;
+		final Callback callback;
+		final long queuedAt = System.currentTimeMillis();
+		boolean started;
+
+		PendingCall(Call call, Priority priority, String key, Callback callback)
+		{
+			this.call = call;
+			this.priority = priority;
+			this.key = key;
+			this.callback = callback;
+		}
+	}
+
+	/**
+	 * @param maxInFlight Supplies the current limit on concurrent calls
+	 */
+	RequestDispatcher(IntSupplier maxInFlight)
+	{
+		this.maxInFlight = maxInFlight;
+		for (int i = 0; i < Priority.values().length; i++)
+		{
+			queues.add(new ArrayDeque<>());
+		}
+	}
+
+	/**
+	 * Queue a call
+	 *
+	 * @param call The call to run
+	 * @param priority Its priority
+	 * @param supersedeKey If not null, cancels any earlier call with the same key
+	 * @param callback Completed when the call finishes, or with a failure if it's cancelled
+	 */
+	void enqueue(Call call, Priority priority, String supersedeKey, Callback callback)
+	{
+		PendingCall pending = new PendingCall(call, priority, supersedeKey, callback);
+		PendingCall superseded = null;
+
+		synchronized (this)
+		{
+			if (supersedeKey != null)
+			{
+				superseded = callsByKey.put(supersedeKey, pending);
+				if (superseded != null && !superseded.started)
+				{
+					queues.get(superseded.priority.ordinal()).remove(superseded);
+				}
+			}
+			queues.get(priority.ordinal()).add(pending);
+		}
+
+		if (superseded != null)
+		{
+			log.debug("Cancelling superseded request {}", superseded.call.request().url());
+			superseded.call.cancel();
+			if (!superseded.started)
+			{
+				// Never handed to OkHttp, so nothing else will complete its callback
+				superseded.callback.onFailure(superseded.call, new IOException("Canceled"));
+			}
+		}
+
+		dispatch();
+	}
+
+	/**
+	 * Start as many queued calls as the in-flight limit allows
+	 */
+	private void dispatch()
+	{
+		List<PendingCall> toStart = new ArrayList<>();
+		synchronized (this)
+		{
+			int limit = Math.max(1, maxInFlight.getAsInt());
+			while (inFlight < limit)
+			{
+				PendingCall next = pollNext();
+				if (next == null)
+				{
+					break;
+				}
+				next.started = true;
+				inFlight++;
+				toStart.add(next);
+			}
+		}
+
+		for (PendingCall pending : toStart)
+		{
+			pending.call.enqueue(new Callback()
+			{
+				@Override
+				public void onFailure(Call call, IOException e)
+				{
+					try
+					{
+						pending.callback.onFailure(call, e);
+					}
+					finally
+					{
+						finished(pending);
+					}
+				}
+
+				@Override
+				public void onResponse(Call call, Response response) throws IOException
+				{
+					try
+					{
+						pending.callback.onResponse(call, response);
+					}
+					finally
+					{
+						finished(pending);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Pick the next call: the oldest if it has waited too long, otherwise the
+	 * first call of the highest priority
+	 */
+	private PendingCall pollNext()
+	{
+		ArrayDeque<PendingCall> oldestQueue = null;
+		ArrayDeque<PendingCall> highestQueue = null;
+		for (ArrayDeque<PendingCall> queue : queues)
+		{
+			PendingCall head = queue.peekFirst();
+			if (head == null)
+			{
+				continue;
+			}
+			if (highestQueue == null)
+			{
+				highestQueue = queue;
+			}
+			if (oldestQueue == null || head.queuedAt < oldestQueue.peekFirst().queuedAt)
+			{
+				oldestQueue = queue;
+			}
+		}
+
+		if (highestQueue == null)
+		{
+			return null;
+		}
+
+		if (System.currentTimeMillis() - oldestQueue.peekFirst().queuedAt > STARVATION_MS)
+		{
+			return oldestQueue.pollFirst();
+		}
+		return highestQueue.pollFirst();
+	}
+
+	private void finished(PendingCall pending)
+	{
+		synchronized (this)
+		{
+			inFlight--;
+			if (pending.key != null && callsByKey.get(pending.key) == pending)
+			{
+				callsByKey.remove(pending.key);
+			}
+		}
+		dispatch();
+	}
+}
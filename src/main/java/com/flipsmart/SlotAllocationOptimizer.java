@@ -0,0 +1,214 @@
+package com.flipsmart;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Chooses which recommendations to put in the free GE slots, and how many of each
+ * to buy, to maximise expected profit per hour with the available cash.
+ *
+ * This is a bounded knapsack over (slots, cash): each item can take at most one
+ * slot and its value grows with quantity until either the buy limit or the
+ * item's trade volume caps it. Cash is split into {@link #BUDGET_UNITS} units so
+ * the solve is a small dynamic program that takes about a millisecond for 50 items.
+ */
+@Slf4j
+public final class SlotAllocationOptimizer
+{
+	public static final int GE_SLOTS = 8;
+
+	// Resolution the cash stack is split into for the dynamic program
+	private static final int BUDGET_UNITS = 64;
+
+	// Hours over which a slot's profit is measured (one buy limit window)
+	private static final double HORIZON_HOURS = 4.0;
+
+	// Share of an item's hourly volume we can expect to trade ourselves
+	private static final double VOLUME_SHARE = 0.1;
+
+	private SlotAllocationOptimizer()
+	{
+	}
+
+	/**
+	 * A recommendation assigned to a GE slot
+	 */
+	public static class Allocation
+	{
+		public final FlipRecommendation recommendation;
+		public final int quantity;
+		public final long cost;
+		public final double profitPerHour;
+
+		Allocation(FlipRecommendation recommendation, int quantity, long cost, double profitPerHour)
+		{
+			this.recommendation = recommendation;
+			this.quantity = quantity;
+			this.cost = cost;
+			this.profitPerHour = profitPerHour;
+		}
+	}
+
+	/**
+	 * Find the best allocation of candidates to free slots
+	 *
+	 * @param candidates Recommendations to choose from
+	 * @param cash Cash available to spend
+	 * @param freeSlots Number of empty GE slots
+	 * @param buyLimits Buy limit usage, used to cap quantities (may be null)
+	 * @return Chosen allocations, highest profit per hour first
+	 */
+	public static List<Allocation> optimize(List<FlipRecommendation> candidates, long cash, int freeSlots,
+											BuyLimitTracker buyLimits)
+	{
+		long start = System.nanoTime();
+
+		int slots = Math.min(freeSlots, GE_SLOTS);
+		int n = candidates.size();
+		if (n == 0 || slots <= 0 || cash <= 0)
+		{
+			return Collections.emptyList();
+		}
+
+		double unitCash = (double) cash / BUDGET_UNITS;
+
+		// value[i][u]: expected profit/hour of item i given u budget units
+		double[][] value = new double[n][];
+		int[] maxUnits = new int[n];
+		for (int i = 0; i < n; i++)
+		{
+			FlipRecommendation rec = candidates.get(i);
+			int maxQuantity = getMaxQuantity(rec, buyLimits);
+			int price = rec.getRecommendedBuyPrice();
+
+			double[] itemValue = new double[BUDGET_UNITS + 1];
+			int units = 0;
+			if (maxQuantity > 0 && price > 0 && rec.getMargin() > 0)
+			{
+				for (units = 1; units <= BUDGET_UNITS; units++)
+				{
+					int quantity = (int) Math.min(maxQuantity, (long) (units * unitCash) / price);
+					itemValue[units] = getProfitPerHour(rec, quantity);
+
+					// More budget won't buy any more of this item
+					if (quantity >= maxQuantity)
+					{
+						break;
+					}
+				}
+				units = Math.min(units, BUDGET_UNITS);
+			}
+			value[i] = itemValue;
+			maxUnits[i] = units;
+		}
+
+		// best[j][c]: best profit/hour using at most j slots and c budget units
+		double[][] best = new double[slots + 1][BUDGET_UNITS + 1];
+		byte[][] choice = new byte[n][(slots + 1) * (BUDGET_UNITS + 1)];
+
+		for (int i = 0; i < n; i++)
+		{
+			double[] itemValue = value[i];
+			int itemMaxUnits = maxUnits[i];
+			if (itemMaxUnits == 0)
+			{
+				continue;
+			}
+
+			// Slots are visited high to low so each item is used at most once
+			for (int j = slots; j >= 1; j--)
+			{
+				double[] withItem = best[j];
+				double[] withoutItem = best[j - 1];
+				for (int c = BUDGET_UNITS; c >= 1; c--)
+				{
+					int limit = Math.min(c, itemMaxUnits);
+					double bestValue = withItem[c];
+					int bestUnits = 0;
+					for (int u = 1; u <= limit; u++)
+					{
+						double candidate = withoutItem[c - u] + itemValue[u];
+						if (candidate > bestValue)
+						{
+							bestValue = candidate;
+							bestUnits = u;
+						}
+					}
+					if (bestUnits > 0)
+					{
+						withItem[c] = bestValue;
+						choice[i][j * (BUDGET_UNITS + 1) + c] = (byte) bestUnits;
+					}
+				}
+			}
+		}
+
+		// Walk the choices back to find which items were picked
+		List<Allocation> allocations = new ArrayList<>();
+		int j = slots;
+		int c = BUDGET_UNITS;
+		for (int i = n - 1; i >= 0 && j > 0; i--)
+		{
+			int units = choice[i][j * (BUDGET_UNITS + 1) + c];
+			if (units == 0)
+			{
+				continue;
+			}
+
+			FlipRecommendation rec = candidates.get(i);
+			int quantity = (int) Math.min(getMaxQuantity(rec, buyLimits),
+				(long) (units * unitCash) / rec.getRecommendedBuyPrice());
+			allocations.add(new Allocation(rec, quantity,
+				(long) quantity * rec.getRecommendedBuyPrice(),
+				getProfitPerHour(rec, quantity)));
+
+			j--;
+			c -= units;
+		}
+
+		allocations.sort((a, b) -> Double.compare(b.profitPerHour, a.profitPerHour));
+
+		log.debug("Allocated {} of {} candidates to {} slots in {} us",
+			allocations.size(), n, slots, (System.nanoTime() - start) / 1000);
+
+		return allocations;
+	}
+
+	/**
+	 * Most of an item worth buying: bounded by the remaining buy limit and by how
+	 * many we could expect to buy and sell again within the horizon
+	 */
+	private static int getMaxQuantity(FlipRecommendation rec, BuyLimitTracker buyLimits)
+	{
+		int limit = rec.getBuyLimit() != null && rec.getBuyLimit() > 0
+			? rec.getBuyLimit()
+			: rec.getRecommendedQuantity();
+
+		if (buyLimits != null)
+		{
+			Integer remaining = buyLimits.getRemaining(rec.getItemId(), rec.getBuyLimit());
+			if (remaining != null)
+			{
+				limit = remaining;
+			}
+		}
+
+		// Each unit needs to be bought and then sold, so it takes two trades
+		double tradable = rec.getVolumePerHour() * VOLUME_SHARE * HORIZON_HOURS / 2;
+		return (int) Math.min(limit, Math.max(1, tradable));
+	}
+
+	/**
+	 * Expected profit per hour for flipping a quantity of an item, discounted by risk
+	 */
+	private static double getProfitPerHour(FlipRecommendation rec, int quantity)
+	{
+		double riskScore = Math.max(0, Math.min(100, rec.getRiskScore()));
+		// A risk score of 100 halves the expected profit
+		double successChance = 1.0 - riskScore / 200.0;
+		return (double) rec.getMargin() * quantity * successChance / HORIZON_HOURS;
+	}
+}
@@ -0,0 +1,198 @@
+package com.flipsmart;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the logged in account's GE offers for ones that have sat unfilled while
+ * the market moved away from them, and suggests a price that would fill.
+ *
+ * Offer changes only mark their slot. A background check then fetches the current
+ * prices for marked slots, and for slots that have sat still long enough that the
+ * market may have moved, through the cached analysis path. Nothing runs on the
+ * client thread.
+ */
+@Slf4j
+@Singleton
+public class StaleOfferMonitor
+{
+	private static final long CHECK_INTERVAL_SECONDS = 60;
+	// An offer with no fills for this long is worth checking against the market
+	private static final long STALE_AFTER_MS = 10 * 60 * 1000L;
+	// How often to look at the prices again for a slot that hasn't changed
+	private static final long RECHECK_MS = 5 * 60 * 1000L;
+
+	private final FlipSmartApiClient apiClient;
+	private final FlipSmartScheduler scheduler;
+
+	private final int[] itemIds = new int[SlotAllocationOptimizer.GE_SLOTS];
+	private final boolean[] buys = new boolean[SlotAllocationOptimizer.GE_SLOTS];
+	private final int[] prices = new int[SlotAllocationOptimizer.GE_SLOTS];
+	private final int[] filled = new int[SlotAllocationOptimizer.GE_SLOTS];
+	// When the offer was placed or last filled
+	private final long[] lastActivityAt = new long[SlotAllocationOptimizer.GE_SLOTS];
+	private final long[] checkedAt = new long[SlotAllocationOptimizer.GE_SLOTS];
+	private final boolean[] changed = new boolean[SlotAllocationOptimizer.GE_SLOTS];
+	// Price that would fill, or 0 if the offer is fine
+	private final int[] suggestedPrices = new int[SlotAllocationOptimizer.GE_SLOTS];
+
+	private ScheduledFuture<?> checkTask;
+
+	@Inject
+	public StaleOfferMonitor(FlipSmartApiClient apiClient, FlipSmartScheduler scheduler)
+	{
+		this.apiClient = apiClient;
+		this.scheduler = scheduler;
+		Arrays.fill(itemIds, -1);
+	}
+
+	public synchronized void start()
+	{
+		if (checkTask == null)
+		{
+			checkTask = scheduler.scheduleAtFixedRate("stale-offers", this::check,
+				CHECK_INTERVAL_SECONDS, CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+		}
+	}
+
+	public synchronized void stop()
+	{
+		if (checkTask != null)
+		{
+			checkTask.cancel(false);
+			checkTask = null;
+		}
+		clear();
+	}
+
+	/**
+	 * Forget every slot, e.g. when a different account logs in
+	 */
+	public synchronized void clear()
+	{
+		Arrays.fill(itemIds, -1);
+		Arrays.fill(suggestedPrices, 0);
+	}
+
+	/**
+	 * Update a slot from its offer, marking it for the next check if it changed
+	 *
+	 * @param active False once the offer has completed, been cancelled or collected
+	 */
+	public synchronized void update(int slot, int itemId, boolean isBuy, int price, int quantity,
+									boolean active, long now)
+	{
+		if (slot < 0 || slot >= itemIds.length)
+		{
+			return;
+		}
+
+		if (!active)
+		{
+			itemIds[slot] = -1;
+			suggestedPrices[slot] = 0;
+			return;
+		}
+
+		if (itemIds[slot] != itemId || buys[slot] != isBuy || prices[slot] != price)
+		{
+			itemIds[slot] = itemId;
+			buys[slot] = isBuy;
+			prices[slot] = price;
+			filled[slot] = quantity;
+			lastActivityAt[slot] = now;
+			suggestedPrices[slot] = 0;
+			changed[slot] = true;
+		}
+		else if (quantity != filled[slot])
+		{
+			filled[slot] = quantity;
+			lastActivityAt[slot] = now;
+			// Still filling, so it's competitive for now
+			suggestedPrices[slot] = 0;
+			changed[slot] = true;
+		}
+	}
+
+	/**
+	 * Price a slot's offer should move to in order to fill
+	 *
+	 * @return The suggested price, or 0 if the offer isn't stale
+	 */
+	public synchronized int getSuggestedPrice(int slot)
+	{
+		return slot >= 0 && slot < suggestedPrices.length ? suggestedPrices[slot] : 0;
+	}
+
+	/**
+	 * Look up current prices for the slots that need it
+	 */
+	void check()
+	{
+		long now = System.currentTimeMillis();
+		for (int slot = 0; slot < itemIds.length; slot++)
+		{
+			int itemId;
+			synchronized (this)
+			{
+				itemId = itemIds[slot];
+				if (itemId < 0 || now - lastActivityAt[slot] < STALE_AFTER_MS
+					|| (!changed[slot] && now - checkedAt[slot] < RECHECK_MS))
+				{
+					continue;
+				}
+				changed[slot] = false;
+				checkedAt[slot] = now;
+			}
+
+			int checkedSlot = slot;
+			apiClient.getItemAnalysisAsync(itemId).thenAccept(analysis ->
+			{
+				if (analysis != null && analysis.getCurrentPrices() != null)
+				{
+					applyPrices(checkedSlot, itemId, analysis.getCurrentPrices());
+				}
+			});
+		}
+	}
+
+	private synchronized void applyPrices(int slot, int itemId, FlipAnalysis.CurrentPrices current)
+	{
+		// The slot may have moved on to another offer while the prices were on their way
+		if (itemIds[slot] != itemId || current.getHigh() == null || current.getLow() == null)
+		{
+			return;
+		}
+
+		int suggested = suggestPrice(buys[slot], prices[slot], current.getHigh(), current.getLow());
+		if (suggested != suggestedPrices[slot])
+		{
+			log.debug("Slot {} offer at {} is {}", slot, prices[slot],
+				suggested > 0 ? "stale, suggesting " + suggested : "still competitive");
+		}
+		suggestedPrices[slot] = suggested;
+	}
+
+	/**
+	 * A buy below what items are instantly selling for, or a sell above what they're
+	 * instantly bought for, won't fill until the market comes back to it. Suggest
+	 * just inside the other side of the spread, keeping some margin where there is one.
+	 *
+	 * @param high The instant buy price
+	 * @param low The instant sell price
+	 * @return The suggested price, or 0 if the offer is competitive
+	 */
+	static int suggestPrice(boolean isBuy, int price, int high, int low)
+	{
+		if (isBuy)
+		{
+			return price < low ? Math.max(low, Math.min(low + 1, high - 1)) : 0;
+		}
+		return price > high ? Math.min(high, Math.max(high - 1, low + 1)) : 0;
+	}
+}
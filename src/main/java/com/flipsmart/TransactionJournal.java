@@ -0,0 +1,267 @@
+package com.flipsmart;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.config.ConfigManager;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps GE transactions until the API has accepted them, so fills made while the
+ * API is down are sent once it's back. Each entry has an id that is sent as the
+ * request's idempotency key, which makes resending it safe.
+ *
+ * The journal in memory is what gets sent. Changes are saved to the config in the
+ * background shortly after they're made, so a burst of fills is saved once and the
+ * client thread never serialises the journal.
+ */
+@Slf4j
+@Singleton
+public class TransactionJournal
+{
+	private static final String CONFIG_GROUP = "flipsmart";
+	private static final String CONFIG_KEY = "transactionJournal";
+
+	// Oldest entries are dropped past this, so a long outage can't grow the config forever
+	private static final int MAX_ENTRIES = 500;
+	// Short, as the journal is what survives a crash
+	private static final long SAVE_DELAY_MS = 2000;
+
+	private final ConfigManager configManager;
+	private final Gson gson;
+	private final FlipSmartScheduler scheduler;
+
+	private final Map<String, Entry> entries = new LinkedHashMap<>();
+	private final Set<String> sending = new HashSet<>();
+	private ScheduledFuture<?> saveTask;
+
+	/**
+	 * A transaction waiting to be accepted by the API
+	 */
+	public static class Entry
+	{
+		public String id;
+		public int itemId;
+		public String itemName;
+		public boolean isBuy;
+		public int quantity;
+		public int pricePerItem;
+		public Integer geSlot;
+		public Integer recommendedSellPrice;
+		public long recordedAt;
+	}
+
+	@Inject
+	public TransactionJournal(ConfigManager configManager, Gson gson, FlipSmartScheduler scheduler)
+	{
+		this.configManager = configManager;
+		this.gson = gson;
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Add a transaction to the journal. It's marked as being sent.
+	 */
+	public Entry add(int itemId, String itemName, boolean isBuy, int quantity, int pricePerItem,
+					 Integer geSlot, Integer recommendedSellPrice)
+	{
+		Entry entry = new Entry();
+		entry.id = UUID.randomUUID().toString();
+		entry.itemId = itemId;
+		entry.itemName = itemName;
+		entry.isBuy = isBuy;
+		entry.quantity = quantity;
+		entry.pricePerItem = pricePerItem;
+		entry.geSlot = geSlot;
+		entry.recommendedSellPrice = recommendedSellPrice;
+		entry.recordedAt = System.currentTimeMillis();
+
+		synchronized (this)
+		{
+			entries.put(entry.id, entry);
+			sending.add(entry.id);
+
+			while (entries.size() > MAX_ENTRIES)
+			{
+				String oldest = entries.keySet().iterator().next();
+				log.warn("Transaction journal full, dropping {}", entries.get(oldest).itemName);
+				entries.remove(oldest);
+				sending.remove(oldest);
+			}
+		}
+
+		scheduleSave();
+		return entry;
+	}
+
+	/**
+	 * The API accepted a transaction
+	 */
+	public void complete(String id)
+	{
+		synchronized (this)
+		{
+			sending.remove(id);
+			if (entries.remove(id) == null)
+			{
+				return;
+			}
+		}
+		scheduleSave();
+	}
+
+	/**
+	 * The API rejected a transaction as invalid, so resending it won't help. It's
+	 * dropped from the journal.
+	 *
+	 * @param status HTTP status the API answered with
+	 */
+	public void reject(String id, int status)
+	{
+		Entry entry;
+		synchronized (this)
+		{
+			sending.remove(id);
+			entry = entries.remove(id);
+		}
+		if (entry == null)
+		{
+			return;
+		}
+
+		log.warn("API rejected transaction for {} x{} with status {}, dropping it",
+			entry.itemName, entry.quantity, status);
+		scheduleSave();
+	}
+
+	/**
+	 * Sending a transaction failed, so it can be picked up again later
+	 */
+	public synchronized void release(String id)
+	{
+		sending.remove(id);
+	}
+
+	/**
+	 * Get the transactions that aren't being sent right now, and mark them as being sent
+	 */
+	public synchronized List<Entry> takeUnsent()
+	{
+		List<Entry> unsent = new ArrayList<>();
+		for (Entry entry : entries.values())
+		{
+			if (sending.add(entry.id))
+			{
+				unsent.add(entry);
+			}
+		}
+		return unsent;
+	}
+
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * Load the journal saved by a previous session
+	 */
+	public void load()
+	{
+		String json = configManager.getConfiguration(CONFIG_GROUP, CONFIG_KEY);
+		if (json == null || json.isEmpty())
+		{
+			return;
+		}
+
+		List<Entry> saved;
+		try
+		{
+			Type type = new TypeToken<List<Entry>>(){}.getType();
+			saved = gson.fromJson(json, type);
+		}
+		catch (Exception e)
+		{
+			log.warn("Could not load transaction journal: {}", e.getMessage());
+			return;
+		}
+
+		if (saved == null)
+		{
+			return;
+		}
+
+		synchronized (this)
+		{
+			entries.clear();
+			sending.clear();
+			for (Entry entry : saved)
+			{
+				if (entry != null && entry.id != null)
+				{
+					entries.put(entry.id, entry);
+				}
+			}
+			log.debug("Loaded {} unsent transactions", entries.size());
+		}
+	}
+
+	/**
+	 * Persist the journal now, replacing any save waiting to run
+	 */
+	public void save()
+	{
+		List<Entry> snapshot;
+		synchronized (this)
+		{
+			if (saveTask != null)
+			{
+				saveTask.cancel(false);
+				saveTask = null;
+			}
+			snapshot = new ArrayList<>(entries.values());
+		}
+
+		if (snapshot.isEmpty())
+		{
+			configManager.unsetConfiguration(CONFIG_GROUP, CONFIG_KEY);
+		}
+		else
+		{
+			configManager.setConfiguration(CONFIG_GROUP, CONFIG_KEY, gson.toJson(snapshot));
+		}
+	}
+
+	/**
+	 * Save a little later in the background, unless a save is already waiting
+	 */
+	private synchronized void scheduleSave()
+	{
+		if (saveTask != null)
+		{
+			return;
+		}
+
+		// If the scheduler has stopped, this stays null and the plugin saves the journal as it shuts down
+		saveTask = scheduler.schedule("journal-save", () ->
+		{
+			synchronized (this)
+			{
+				saveTask = null;
+			}
+			save();
+		}, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+	}
+}
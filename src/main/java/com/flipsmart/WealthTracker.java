@@ -0,0 +1,129 @@
+package com.flipsmart;
+
+import net.runelite.api.GrandExchangeOffer;
+import net.runelite.api.GrandExchangeOfferState;
+import net.runelite.api.ItemContainer;
+import net.runelite.api.ItemID;
+
+/**
+ * Keeps a running total of an account's coins in the inventory, the bank and
+ * uncollected in the GE, with platinum tokens counted at 1,000 coins each.
+ *
+ * Each source keeps its own subtotal. A change event only recounts the container
+ * or GE slot it's about and adjusts the total by the difference, and it reports
+ * whether the total moved so callers can skip unchanged events.
+ */
+public class WealthTracker
+{
+	static final int INVENTORY_CONTAINER = 93;
+	static final int BANK_CONTAINER = 95;
+	private static final long PLATINUM_TOKEN_VALUE = 1000;
+
+	private long inventory;
+	private long bank;
+	private final long[] geSlots = new long[SlotAllocationOptimizer.GE_SLOTS];
+	private long total;
+
+	/**
+	 * Recount a container if it's one that holds coins
+	 *
+	 * @return True if the total changed
+	 */
+	public synchronized boolean updateContainer(int containerId, ItemContainer container)
+	{
+		if (containerId != INVENTORY_CONTAINER && containerId != BANK_CONTAINER)
+		{
+			return false;
+		}
+
+		long coins = container == null ? 0 : countCoins(container);
+		long previous = containerId == INVENTORY_CONTAINER ? inventory : bank;
+		if (coins == previous)
+		{
+			return false;
+		}
+
+		if (containerId == INVENTORY_CONTAINER)
+		{
+			inventory = coins;
+		}
+		else
+		{
+			bank = coins;
+		}
+		total += coins - previous;
+		return true;
+	}
+
+	/**
+	 * Recount the coins waiting to be collected from a GE slot
+	 *
+	 * @return True if the total changed
+	 */
+	public synchronized boolean updateGeSlot(int slot, GrandExchangeOffer offer)
+	{
+		if (slot < 0 || slot >= geSlots.length)
+		{
+			return false;
+		}
+
+		long coins = offer == null ? 0 : uncollectedCoins(offer);
+		if (coins == geSlots[slot])
+		{
+			return false;
+		}
+
+		total += coins - geSlots[slot];
+		geSlots[slot] = coins;
+		return true;
+	}
+
+	public synchronized long getInventory()
+	{
+		return inventory;
+	}
+
+	public synchronized long getBank()
+	{
+		return bank;
+	}
+
+	public synchronized long getUncollected()
+	{
+		return total - inventory - bank;
+	}
+
+	/**
+	 * All coins the account could put into offers
+	 */
+	public synchronized long getTotal()
+	{
+		return total;
+	}
+
+	private static long countCoins(ItemContainer container)
+	{
+		return (long) container.count(ItemID.COINS_995)
+			+ container.count(ItemID.PLATINUM_TOKEN) * PLATINUM_TOKEN_VALUE;
+	}
+
+	/**
+	 * Coins from a sale, or the unspent part of a buy, sitting in a finished offer.
+	 * Running offers are left out, since what's been collected from them isn't known.
+	 */
+	private static long uncollectedCoins(GrandExchangeOffer offer)
+	{
+		GrandExchangeOfferState state = offer.getState();
+		switch (state)
+		{
+			case SOLD:
+			case CANCELLED_SELL:
+				return offer.getSpent();
+			case BOUGHT:
+			case CANCELLED_BUY:
+				return Math.max(0, (long) offer.getTotalQuantity() * offer.getPrice() - offer.getSpent());
+			default:
+				return 0;
+		}
+	}
+}
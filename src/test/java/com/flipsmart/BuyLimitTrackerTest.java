@@ -0,0 +1,49 @@
+package com.flipsmart;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BuyLimitTrackerTest
+{
+	private final Gson gson = new Gson();
+
+	@Test
+	public void testTracksUsage()
+	{
+		BuyLimitTracker tracker = new BuyLimitTracker(null, gson);
+		tracker.recordPurchase(1, 70);
+		tracker.recordPurchase(1, 20);
+		tracker.recordPurchase(2, 5);
+		tracker.recordPurchase(3, 0);
+
+		assertEquals(90, tracker.getUsed(1));
+		assertEquals(5, tracker.getUsed(2));
+		assertEquals(0, tracker.getUsed(3));
+		assertEquals(10, (int) tracker.getRemaining(1, 100));
+		assertEquals(0, (int) tracker.getRemaining(1, 50));
+		assertNull(tracker.getRemaining(1, null));
+	}
+
+	@Test
+	public void testMovesUsageToAccount()
+	{
+		// Usage from before accounts were tracked, moving to the first account to log in
+		BuyLimitTracker legacy = new BuyLimitTracker(null, gson);
+		legacy.recordPurchase(1, 70);
+		legacy.recordPurchase(2, 5);
+		BuyLimitTracker account = new BuyLimitTracker(null, gson, BuyLimitTracker.CONFIG_KEY + "_player");
+		account.recordPurchase(1, 10);
+
+		assertEquals(2, legacy.moveTo(account));
+
+		assertEquals(80, account.getUsed(1));
+		assertEquals(5, account.getUsed(2));
+		assertEquals(20, (int) account.getRemaining(1, 100));
+		assertEquals(0, legacy.getUsed(1));
+		assertEquals(0, legacy.getUsed(2));
+		assertEquals(0, legacy.moveTo(account));
+	}
+}
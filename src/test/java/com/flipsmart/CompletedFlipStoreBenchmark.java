@@ -0,0 +1,94 @@
+package com.flipsmart;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long a search of the completed flip history takes, which has to stay under
+ * 15 ms over 200,000 flips. The store is held in memory and never loaded from disk.
+ *
+ * Run with {@code ./gradlew jmh -Pargs=CompletedFlipStore}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompletedFlipStoreBenchmark
+{
+	private static final int ITEMS = 3000;
+	private static final String[] WORDS = {
+		"abyssal", "dragon", "rune", "adamant", "mithril", "twisted", "super", "ancient", "blessed", "crystal",
+		"whip", "dagger", "bones", "bow", "potion", "scimitar", "platebody", "shield", "staff", "ring",
+	};
+
+	@Param({"200000"})
+	public int flips;
+
+	@Param({"", "dragon", "dragon dag", "profit>100k", "roi>=5 duration<30m", "rune profit>10k days<=7"})
+	public String query;
+
+	private final CompletedFlipStore store = new CompletedFlipStore();
+
+	@Setup
+	public void setUp()
+	{
+		Random random = new Random(42);
+		long now = System.currentTimeMillis();
+		long time = now - 90L * 24 * 60 * 60 * 1000;
+		long step = 90L * 24 * 60 * 60 * 1000 / flips;
+		CompletedFlipStore.Chunk chunk = new CompletedFlipStore.Chunk();
+		for (int id = 1; id <= flips; id++)
+		{
+			int i = chunk.size++;
+			int itemId = random.nextInt(ITEMS);
+			int buyPrice = 100 + random.nextInt(5_000_000);
+			time += random.nextInt((int) (2 * step));
+			chunk.ids[i] = id;
+			chunk.itemIds[i] = itemId;
+			chunk.names[i] = name(itemId);
+			chunk.quantities[i] = 1 + random.nextInt(1000);
+			chunk.buyPrices[i] = buyPrice;
+			chunk.sellPrices[i] = buyPrice + random.nextInt(buyPrice / 10 + 1);
+			chunk.profits[i] = random.nextInt(1_000_000) - 200_000;
+			chunk.rois[i] = random.nextInt(2000) / 100f;
+			chunk.durations[i] = random.nextInt(8 * 3600);
+			chunk.buyTimes[i] = time - chunk.durations[i] * 1000L;
+			chunk.sellTimes[i] = time;
+			if (chunk.size == CompletedFlipStore.Chunk.CAPACITY || id == flips)
+			{
+				store.addRows(chunk);
+				chunk.size = 0;
+			}
+		}
+		// Build the indexes up front, as the first search after new flips would
+		store.search("", 1);
+	}
+
+	@Benchmark
+	public CompletedFlipStore.SearchResult search()
+	{
+		return store.search(query, 50);
+	}
+
+	/**
+	 * A two word name, so item names share words the way real ones do
+	 */
+	private static String name(int itemId)
+	{
+		return WORDS[itemId % 10] + " " + WORDS[10 + itemId / 10 % 10] + " " + itemId;
+	}
+}
@@ -0,0 +1,315 @@
+package com.flipsmart;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class CompletedFlipStoreTest
+{
+	private static final long MINUTE_MS = 60 * 1000L;
+	private static final String[] NAMES = {
+		"Abyssal whip", "Abyssal dagger", "Dragon dagger", "Dragon bones", "Twisted bow", "Zulrah's scales",
+		"Rune platebody", "Rune scimitar", "Saradomin brew(4)", "Super combat potion(4)",
+	};
+
+	@Test
+	public void testPrefixSearch()
+	{
+		CompletedFlipStore store = new CompletedFlipStore();
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < NAMES.length; i++)
+		{
+			store.addAll(Collections.singletonList(flip(i + 1, i, NAMES[i], 100, 1000, now - i * MINUTE_MS)));
+		}
+
+		assertEquals(2, store.search("aby", 10).total);
+		assertEquals(2, store.search("DAG", 10).total);
+		assertEquals(1, store.search("aby dag", 10).total);
+		assertEquals("Abyssal dagger", store.search("dagger abyssal", 10).flips.get(0).getItemName());
+		// Words are split on anything but letters and digits
+		assertEquals(1, store.search("scales", 10).total);
+		assertEquals(1, store.search("zulrah", 10).total);
+		assertEquals(1, store.search("brew", 10).total);
+		assertEquals(2, store.search("rune", 10).total);
+		// Only the start of a word matches
+		assertEquals(0, store.search("byssal", 10).total);
+		assertEquals(0, store.search("whips", 10).total);
+		assertEquals(0, store.search("xyz", 10).total);
+	}
+
+	@Test
+	public void testNumericBounds()
+	{
+		CompletedFlipStore store = new CompletedFlipStore();
+		long now = System.currentTimeMillis();
+		int[] profits = {99, 100, 101, 1000, 1500};
+		for (int i = 0; i < profits.length; i++)
+		{
+			CompletedFlip flip = flip(i + 1, 1, "Abyssal whip", profits[i], 60 * (i + 1), now - i * MINUTE_MS);
+			flip.setRoiPercent(i + 0.5);
+			store.addAll(Collections.singletonList(flip));
+		}
+
+		assertEquals(3, store.search("profit>100", 10).total);
+		assertEquals(4, store.search("profit>=100", 10).total);
+		assertEquals(1, store.search("profit<100", 10).total);
+		assertEquals(2, store.search("profit<=100", 10).total);
+		assertEquals(1, store.search("profit=100", 10).total);
+		assertEquals(2, store.search("profit>=1k", 10).total);
+		assertEquals(1, store.search("profit>1k", 10).total);
+		assertEquals(1, store.search("profit>=1.5k", 10).total);
+
+		// ROIs are 0.5, 1.5, 2.5, 3.5 and 4.5
+		assertEquals(3, store.search("roi>2", 10).total);
+		assertEquals(2, store.search("roi>=2.5 roi<4", 10).total);
+		assertEquals(1, store.search("roi<1", 10).total);
+
+		// Durations are 1 to 5 minutes, and plain numbers are minutes
+		assertEquals(2, store.search("duration<=2", 10).total);
+		assertEquals(1, store.search("duration<2m", 10).total);
+		assertEquals(5, store.search("duration<1h", 10).total);
+		assertEquals(0, store.search("duration>1d", 10).total);
+
+		// Combined with a name and each other
+		assertEquals(2, store.search("whip profit>=100 duration<4m", 10).total);
+		assertEquals(0, store.search("dagger profit>=100", 10).total);
+	}
+
+	@Test
+	public void testDaysCondition()
+	{
+		CompletedFlipStore store = new CompletedFlipStore();
+		long now = System.currentTimeMillis();
+		for (int day = 0; day < 10; day++)
+		{
+			store.addAll(Collections.singletonList(flip(day + 1, 1, "Abyssal whip", 100, 60,
+				now - day * 24 * 60 * MINUTE_MS - MINUTE_MS)));
+		}
+
+		assertEquals(3, store.search("days<=3", 10).total);
+		assertEquals(7, store.search("days>3", 10).total);
+	}
+
+	@Test
+	public void testMatchesBruteForce()
+	{
+		Random random = new Random(11);
+		CompletedFlipStore store = new CompletedFlipStore();
+		long now = System.currentTimeMillis();
+		CompletedFlipStore.Chunk chunk = generate(random, CompletedFlipStore.Chunk.CAPACITY, now);
+		store.addRows(chunk);
+
+		String[] words = {"aby", "dag", "dragon", "rune", "bones", "s", "super", "twisted bow", ""};
+		for (int round = 0; round < 300; round++)
+		{
+			StringBuilder query = new StringBuilder(words[random.nextInt(words.length)]);
+			int conditions = random.nextInt(4);
+			for (int i = 0; i < conditions; i++)
+			{
+				String[] fields = {"profit", "roi", "duration", "days"};
+				String[] ops = {"<", "<=", ">", ">=", "="};
+				String field = fields[random.nextInt(fields.length)];
+				String value = field.equals("profit") ? String.valueOf(random.nextInt(200_000) - 50_000)
+					: field.equals("roi") ? String.valueOf(random.nextInt(200) / 10.0)
+					: field.equals("duration") ? random.nextInt(240) + "m"
+					: String.valueOf(random.nextInt(40));
+				query.append(' ').append(field).append(ops[random.nextInt(ops.length)]).append(value);
+			}
+
+			List<String> terms = new ArrayList<>();
+			List<CompletedFlipStore.Range> ranges = new ArrayList<>();
+			CompletedFlipStore.parseQuery(query.toString(), now, terms, ranges);
+			CompletedFlipStore.SearchResult result = store.search(terms, ranges, 20);
+
+			List<Integer> expected = bruteForce(chunk, terms, ranges);
+			assertEquals(query.toString(), expected.size(), result.total);
+			for (int i = 0; i < result.flips.size(); i++)
+			{
+				assertEquals(query.toString(), (int) expected.get(i), result.flips.get(i).getId());
+			}
+		}
+	}
+
+	@Test
+	public void testSkipsDuplicateIds()
+	{
+		CompletedFlipStore store = new CompletedFlipStore();
+		long now = System.currentTimeMillis();
+		List<CompletedFlip> flips = Arrays.asList(
+			flip(1, 1, "Abyssal whip", 100, 60, now),
+			flip(2, 1, "Abyssal whip", 200, 60, now));
+
+		assertEquals(2, store.addAll(flips));
+		assertEquals(0, store.addAll(flips));
+		assertEquals(1, store.addAll(Arrays.asList(flip(2, 1, "Abyssal whip", 200, 60, now),
+			flip(3, 1, "Abyssal whip", 300, 60, now))));
+
+		CompletedFlipStore.Chunk chunk = new CompletedFlipStore.Chunk();
+		assertEquals(3, store.read(0, chunk));
+		assertEquals(0, store.addRows(chunk));
+		assertEquals(3, store.size());
+		assertEquals(3, store.search("whip", 10).total);
+	}
+
+	@Test
+	public void testIndexRebuiltAfterAdding()
+	{
+		CompletedFlipStore store = new CompletedFlipStore();
+		long now = System.currentTimeMillis();
+		store.addAll(Collections.singletonList(flip(1, 1, "Abyssal whip", 100, 60, now - 2 * MINUTE_MS)));
+		assertEquals(1, store.search("profit>=100", 10).total);
+		assertEquals(0, store.search("dragon", 10).total);
+
+		store.addAll(Arrays.asList(
+			flip(2, 2, "Dragon bones", 500, 60, now - MINUTE_MS),
+			flip(3, 1, "Abyssal whip", 50, 60, now)));
+		assertEquals(2, store.search("profit>=100", 10).total);
+		assertEquals(1, store.search("dragon", 10).total);
+		assertEquals(2, store.search("whip", 10).total);
+
+		// Most recent first, whether or not there's a condition to walk
+		assertEquals(3, store.search("", 10).flips.get(0).getId());
+		assertEquals(3, store.search("whip", 10).flips.get(0).getId());
+		assertEquals(2, store.search("profit>=100", 10).flips.get(0).getId());
+		assertEquals(1, store.search("", 1).flips.size());
+		assertEquals(3, store.search("", 1).total);
+	}
+
+	@Test
+	public void testTotalsDontOverflow()
+	{
+		CompletedFlipStore store = new CompletedFlipStore();
+		CompletedFlip flip = flip(1, 1, "Abyssal whip", 0, 60, System.currentTimeMillis());
+		flip.setQuantity(10_000);
+		flip.setBuyPricePerItem(300_000);
+		flip.setSellPricePerItem(310_000);
+		store.addAll(Collections.singletonList(flip));
+
+		CompletedFlip found = store.search("whip", 1).flips.get(0);
+		assertEquals(3_000_000_000L, found.getBuyTotal());
+		assertEquals(3_100_000_000L, found.getSellTotal());
+		assertEquals(100_000_000L, found.getGrossProfit());
+	}
+
+	/**
+	 * Ids of the rows matching every term and range, most recent first
+	 */
+	private static List<Integer> bruteForce(CompletedFlipStore.Chunk chunk, List<String> terms,
+											List<CompletedFlipStore.Range> ranges)
+	{
+		List<Integer> rows = new ArrayList<>();
+		for (int row = 0; row < chunk.size; row++)
+		{
+			if (matchesTerms(chunk.names[row], terms) && matchesRanges(chunk, row, ranges))
+			{
+				rows.add(row);
+			}
+		}
+		// Rows were generated in time order, and ties go to the later row
+		List<Integer> ids = new ArrayList<>();
+		for (int i = rows.size() - 1; i >= 0; i--)
+		{
+			ids.add(chunk.ids[rows.get(i)]);
+		}
+		return ids;
+	}
+
+	private static boolean matchesTerms(String name, List<String> terms)
+	{
+		for (String term : terms)
+		{
+			boolean found = false;
+			for (String word : name.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+			{
+				found |= word.startsWith(term);
+			}
+			if (!found)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean matchesRanges(CompletedFlipStore.Chunk chunk, int row, List<CompletedFlipStore.Range> ranges)
+	{
+		for (CompletedFlipStore.Range range : ranges)
+		{
+			long key;
+			switch (range.field)
+			{
+				case CompletedFlipStore.PROFIT:
+					key = chunk.profits[row];
+					break;
+				case CompletedFlipStore.ROI:
+					key = Math.round(chunk.rois[row] * 100);
+					break;
+				case CompletedFlipStore.DURATION:
+					key = chunk.durations[row];
+					break;
+				default:
+					key = chunk.sellTimes[row] / 60_000;
+			}
+			if (key < range.min || key > range.max)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Flips over the last 30 days in time order, at most one a minute
+	 */
+	static CompletedFlipStore.Chunk generate(Random random, int count, long now)
+	{
+		CompletedFlipStore.Chunk chunk = new CompletedFlipStore.Chunk();
+		long time = now - 30L * 24 * 60 * MINUTE_MS;
+		long step = 30L * 24 * 60 * MINUTE_MS / count;
+		for (int i = 0; i < count; i++)
+		{
+			time += MINUTE_MS * (1 + random.nextInt((int) (2 * step / MINUTE_MS)));
+			int itemId = random.nextInt(NAMES.length);
+			int buyPrice = 100 + random.nextInt(5_000_000);
+			int quantity = 1 + random.nextInt(1000);
+			chunk.ids[i] = i + 1;
+			chunk.itemIds[i] = itemId;
+			chunk.names[i] = NAMES[itemId];
+			chunk.quantities[i] = quantity;
+			chunk.buyPrices[i] = buyPrice;
+			chunk.sellPrices[i] = buyPrice + random.nextInt(buyPrice / 10 + 1);
+			chunk.taxes[i] = 0;
+			chunk.profits[i] = random.nextInt(200_000) - 50_000;
+			chunk.rois[i] = random.nextInt(2000) / 100f;
+			chunk.durations[i] = random.nextInt(4 * 3600);
+			chunk.buyTimes[i] = time - chunk.durations[i] * 1000L;
+			chunk.sellTimes[i] = time;
+		}
+		chunk.size = count;
+		return chunk;
+	}
+
+	private static CompletedFlip flip(int id, int itemId, String name, int profit, int durationSeconds, long sellTime)
+	{
+		CompletedFlip flip = new CompletedFlip();
+		flip.setId(id);
+		flip.setItemId(itemId);
+		flip.setItemName(name);
+		flip.setQuantity(1);
+		flip.setBuyPricePerItem(1000);
+		flip.setSellPricePerItem(1000 + profit);
+		flip.setNetProfit(profit);
+		flip.setFlipDurationSeconds(durationSeconds);
+		flip.setBuyTime(Instant.ofEpochMilli(sellTime - durationSeconds * 1000L).toString());
+		flip.setSellTime(Instant.ofEpochMilli(sellTime).toString());
+		return flip;
+	}
+}
@@ -0,0 +1,153 @@
+package com.flipsmart;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Measures how fast {@link FlipHistoryExporter} exports and imports history in both
+ * formats, over generated stores held in memory.
+ *
+ * Run with {@code ./gradlew historyBenchmark}, optionally passing
+ * {@code -Pargs="flips fills"}, e.g. {@code -Pargs="2000000 5000000"}.
+ */
+public class FlipHistoryBenchmark
+{
+	private static final int ITEMS = 3000;
+	private static final int HELD_ITEMS = 40;
+
+	public static void main(String[] args) throws Exception
+	{
+		int flipCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int fillCount = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+
+		CompletedFlipStore completedFlips = new CompletedFlipStore();
+		FillHistoryStore fills = new FillHistoryStore();
+		AccountManager accounts = createAccountManager();
+		generate(completedFlips, fills, accounts.getCurrent(), flipCount, fillCount);
+		FlipHistoryExporter source = new FlipHistoryExporter(completedFlips, fills, accounts);
+		System.out.printf("Generated %,d flips, %,d fills and %d held items%n%n", flipCount, fillCount, HELD_ITEMS);
+		System.out.printf("%-8s %-6s %12s %10s %14s %10s %12s%n",
+			"format", "step", "records", "ms", "records/s", "MB/s", "bytes/record");
+
+		for (String extension : new String[]{"fsh", "csv"})
+		{
+			File file = File.createTempFile("flipsmart-history", "." + extension);
+			file.deleteOnExit();
+			try
+			{
+				FlipHistoryExporter.Result exported = source.exportTo(file);
+				print(extension, "export", exported);
+
+				FlipHistoryExporter target = new FlipHistoryExporter(
+					new CompletedFlipStore(), new FillHistoryStore(), createAccountManager());
+				FlipHistoryExporter.Result imported = target.importFrom(file);
+				print(extension, "import", imported);
+
+				if (imported.flips != exported.flips || imported.fills != exported.fills || imported.lots != exported.lots)
+				{
+					System.out.printf("  MISMATCH: exported %s%n  imported %s%n", exported, imported);
+				}
+
+				// A second import of the same file should find everything already there
+				FlipHistoryExporter.Result again = target.importFrom(file);
+				print(extension, "again", again);
+			}
+			finally
+			{
+				file.delete();
+			}
+		}
+
+		Runtime runtime = Runtime.getRuntime();
+		System.out.printf("%nHeap in use: %,d MB%n", (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024));
+	}
+
+	private static void print(String format, String step, FlipHistoryExporter.Result result)
+	{
+		System.out.printf("%-8s %-6s %,12d %,10d %,14.0f %10.1f %12.1f%n",
+			format, step, result.getRecords(), result.nanos / 1_000_000, result.getRecordsPerSecond(),
+			result.getMegabytesPerSecond(), result.getRecords() > 0 ? result.bytes / (double) result.getRecords() : 0);
+	}
+
+	/**
+	 * Stores that are never loaded stay in memory and don't touch the RuneLite directory.
+	 * There's no ConfigManager outside the client either, so accounts aren't saved.
+	 */
+	private static AccountManager createAccountManager()
+	{
+		Gson gson = new Gson();
+		return new AccountManager(null, gson, new BuyLimitTracker(null, gson))
+		{
+			@Override
+			public void save()
+			{
+			}
+		};
+	}
+
+	private static void generate(CompletedFlipStore completedFlips, FillHistoryStore fillStore, AccountState account,
+								 int flipCount, int fillCount)
+	{
+		Random random = new Random(42);
+		long now = System.currentTimeMillis();
+		long start = now - 365L * 24 * 60 * 60 * 1000;
+
+		CompletedFlipStore.Chunk flips = new CompletedFlipStore.Chunk();
+		long time = start;
+		long step = (now - start) / Math.max(1, flipCount);
+		for (int id = 1; id <= flipCount; id++)
+		{
+			int i = flips.size++;
+			int itemId = random.nextInt(ITEMS);
+			int buyPrice = 100 + random.nextInt(5_000_000);
+			int sellPrice = buyPrice + random.nextInt(Math.max(2, buyPrice / 20)) - buyPrice / 100;
+			// Keep each flip's totals within an int, like real ones
+			int quantity = 1 + random.nextInt(Math.max(1, 50_000_000 / buyPrice));
+			int tax = (int) GePricing.tax(itemId, sellPrice) * quantity;
+			time += 1 + random.nextInt((int) Math.max(1, 2 * step));
+			flips.ids[i] = id;
+			flips.itemIds[i] = itemId;
+			flips.names[i] = "Item " + itemId;
+			flips.quantities[i] = quantity;
+			flips.buyPrices[i] = buyPrice;
+			flips.sellPrices[i] = sellPrice;
+			flips.taxes[i] = tax;
+			flips.profits[i] = (sellPrice - buyPrice) * quantity - tax;
+			flips.rois[i] = (sellPrice - buyPrice) * 100f / buyPrice;
+			flips.durations[i] = random.nextInt(12 * 60 * 60);
+			flips.buyTimes[i] = time - flips.durations[i] * 1000L;
+			flips.sellTimes[i] = time;
+			if (flips.size == CompletedFlipStore.Chunk.CAPACITY || id == flipCount)
+			{
+				completedFlips.addRows(flips);
+				flips.size = 0;
+			}
+		}
+
+		FillHistoryStore.Chunk fills = new FillHistoryStore.Chunk();
+		time = start;
+		step = (now - start) / Math.max(1, fillCount);
+		for (int n = 1; n <= fillCount; n++)
+		{
+			int i = fills.size++;
+			time += random.nextInt((int) Math.max(1, 2 * step));
+			fills.times[i] = time;
+			fills.itemIds[i] = random.nextInt(ITEMS);
+			fills.buys[i] = random.nextBoolean();
+			fills.quantities[i] = 1 + random.nextInt(1000);
+			fills.prices[i] = 100 + random.nextInt(5_000_000);
+			if (fills.size == FillHistoryStore.Chunk.CAPACITY || n == fillCount)
+			{
+				fillStore.addRows(fills);
+				fills.size = 0;
+			}
+		}
+
+		for (int itemId = 0; itemId < HELD_ITEMS; itemId++)
+		{
+			account.importHolding(itemId, 1 + random.nextInt(1000), 1000 + random.nextInt(10_000_000));
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package com.flipsmart;
+
+import com.google.gson.Gson;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FlipHistoryExporterTest
+{
+	private static final int FLIPS = 5;
+	private static final int FILLS = 7;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FlipHistoryExporter source;
+	private CompletedFlipStore targetFlips;
+	private FillHistoryStore targetFills;
+	private AccountManager targetAccounts;
+	private FlipHistoryExporter target;
+
+	@Before
+	public void setUp()
+	{
+		CompletedFlipStore flips = new CompletedFlipStore();
+		FillHistoryStore fills = new FillHistoryStore();
+		AccountManager accounts = createAccountManager();
+		generate(flips, fills, accounts.getCurrent());
+		source = new FlipHistoryExporter(flips, fills, accounts);
+
+		targetFlips = new CompletedFlipStore();
+		targetFills = new FillHistoryStore();
+		targetAccounts = createAccountManager();
+		target = new FlipHistoryExporter(targetFlips, targetFills, targetAccounts);
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException
+	{
+		for (String extension : new String[]{"fsh", "csv"})
+		{
+			setUp();
+			File file = folder.newFile("history." + extension);
+			source.exportTo(file);
+
+			FlipHistoryExporter.Result imported = target.importFrom(file);
+			assertEquals(extension, FLIPS, imported.flips);
+			assertEquals(extension, FILLS, imported.fills);
+			assertEquals(extension, 1, imported.lots);
+
+			// Everything is already there the second time
+			FlipHistoryExporter.Result again = target.importFrom(file);
+			assertEquals(extension, 0, again.flips + again.fills + again.lots);
+			assertEquals(extension, FLIPS, targetFlips.size());
+			assertEquals(extension, FILLS, targetFills.size());
+		}
+	}
+
+	@Test
+	public void testTruncatedFileImportsNothing() throws IOException
+	{
+		File file = folder.newFile("history.fsh");
+		source.exportTo(file);
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 10));
+
+		assertRejected(file, "ended early");
+	}
+
+	@Test
+	public void testRecordCountMismatchImportsNothing() throws IOException
+	{
+		File file = folder.newFile("history.fsh");
+		source.exportTo(file);
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		// The count is a single byte varlong at the very end for this few records
+		bytes[bytes.length - 1]++;
+		Files.write(file.toPath(), bytes);
+
+		assertRejected(file, "records but has");
+	}
+
+	@Test
+	public void testBadCsvLineImportsNothing() throws IOException
+	{
+		File file = folder.newFile("history.csv");
+		source.exportTo(file);
+		String csv = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		Files.write(file.toPath(), (csv + "fill,not a time,1,buy,1,1\n").getBytes(StandardCharsets.UTF_8));
+
+		assertRejected(file, "Could not read line");
+	}
+
+	private void assertRejected(File file, String message)
+	{
+		try
+		{
+			target.importFrom(file);
+			fail("expected the import to fail");
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().contains(message));
+		}
+		assertEquals(0, targetFlips.size());
+		assertEquals(0, targetFills.size());
+		assertTrue(targetAccounts.getCurrent().getHoldings().isEmpty());
+	}
+
+	/**
+	 * There's no ConfigManager outside the client, so accounts aren't saved
+	 */
+	private static AccountManager createAccountManager()
+	{
+		Gson gson = new Gson();
+		return new AccountManager(null, gson, new BuyLimitTracker(null, gson))
+		{
+			@Override
+			public void save()
+			{
+			}
+		};
+	}
+
+	private static void generate(CompletedFlipStore completedFlips, FillHistoryStore fillStore, AccountState account)
+	{
+		long time = 1_700_000_000_000L;
+		CompletedFlipStore.Chunk flips = new CompletedFlipStore.Chunk();
+		for (int i = 0; i < FLIPS; i++)
+		{
+			flips.ids[i] = i + 1;
+			flips.itemIds[i] = 100 + i;
+			flips.names[i] = "Item " + (100 + i);
+			flips.quantities[i] = 10;
+			flips.buyPrices[i] = 1000;
+			flips.sellPrices[i] = 1100;
+			flips.taxes[i] = 22;
+			flips.profits[i] = 780;
+			flips.rois[i] = 7.8f;
+			flips.durations[i] = 600;
+			flips.buyTimes[i] = time + i * 60_000L - 600_000L;
+			flips.sellTimes[i] = time + i * 60_000L;
+		}
+		flips.size = FLIPS;
+		completedFlips.addRows(flips);
+
+		FillHistoryStore.Chunk fills = new FillHistoryStore.Chunk();
+		for (int i = 0; i < FILLS; i++)
+		{
+			fills.times[i] = time + i * 30_000L;
+			fills.itemIds[i] = 100 + i % 3;
+			fills.buys[i] = i % 2 == 0;
+			fills.quantities[i] = 5 + i;
+			fills.prices[i] = 1000 + i;
+		}
+		fills.size = FILLS;
+		fillStore.addRows(fills);
+
+		account.importHolding(100, 10, 10_000);
+	}
+}
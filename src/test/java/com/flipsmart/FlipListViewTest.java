@@ -0,0 +1,158 @@
+package com.flipsmart;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlipListViewTest
+{
+	private static final class Row
+	{
+		final double price;
+		final double roi;
+		final boolean members;
+
+		Row(double price, double roi, boolean members)
+		{
+			this.price = price;
+			this.roi = roi;
+			this.members = members;
+		}
+	}
+
+	private final FlipListView<Row> view = new FlipListView<>();
+	private int price;
+	private int roi;
+
+	@Before
+	public void setUp()
+	{
+		price = view.addColumn("price", row -> row.price);
+		roi = view.addColumn("roi", row -> row.roi);
+		view.addFlag("members", "f2p", row -> row.members);
+
+		List<Row> rows = Arrays.asList(
+			new Row(500, 2, true),
+			new Row(100, Double.NaN, false),
+			new Row(500, 8, false),
+			new Row(1_000_000, 5, true),
+			new Row(100, 1, true),
+			new Row(2_000_000, Double.NaN, false));
+		view.setItems(rows);
+	}
+
+	@Test
+	public void testKeepsOwnOrderUnsorted()
+	{
+		assertRows(0, 1, 2, 3, 4, 5);
+	}
+
+	@Test
+	public void testSortIsStableBothWays()
+	{
+		view.sortBy(price, false);
+		assertRows(1, 4, 0, 2, 3, 5);
+
+		view.sortBy(price, true);
+		assertRows(5, 3, 0, 2, 1, 4);
+	}
+
+	@Test
+	public void testMissingValuesSortLast()
+	{
+		view.sortBy(roi, false);
+		assertRows(4, 0, 3, 2, 1, 5);
+
+		view.sortBy(roi, true);
+		assertRows(2, 3, 0, 4, 1, 5);
+	}
+
+	@Test
+	public void testFlags()
+	{
+		assertTrue(view.setFilter("members"));
+		assertRows(0, 3, 4);
+
+		assertTrue(view.setFilter("F2P"));
+		assertRows(1, 2, 5);
+
+		assertTrue(view.setFilter("members f2p"));
+		assertRows();
+	}
+
+	@Test
+	public void testBounds()
+	{
+		assertTrue(view.setFilter("price>500"));
+		assertRows(3, 5);
+
+		assertTrue(view.setFilter("price>=500"));
+		assertRows(0, 2, 3, 5);
+
+		assertTrue(view.setFilter("price<500"));
+		assertRows(1, 4);
+
+		assertTrue(view.setFilter("price<=500"));
+		assertRows(0, 1, 2, 4);
+
+		assertTrue(view.setFilter("price>100 price<1m"));
+		assertRows(0, 2);
+
+		assertTrue(view.setFilter("price >= 1m"));
+		assertRows(3, 5);
+
+		assertTrue(view.setFilter("  price>= 100  members "));
+		assertRows(0, 3, 4);
+	}
+
+	@Test
+	public void testMissingValuesFailConditions()
+	{
+		assertTrue(view.setFilter("roi>=0"));
+		assertRows(0, 2, 3, 4);
+
+		assertTrue(view.setFilter("roi<100"));
+		assertRows(0, 2, 3, 4);
+
+		// A condition on another column leaves them in
+		assertTrue(view.setFilter("price>=100"));
+		assertRows(0, 1, 2, 3, 4, 5);
+	}
+
+	@Test
+	public void testInvalidTermsAreIgnored()
+	{
+		assertFalse(view.setFilter("price>lots members"));
+		assertRows(0, 3, 4);
+
+		assertFalse(view.setFilter("speed>5"));
+		assertRows(0, 1, 2, 3, 4, 5);
+
+		assertTrue(view.setFilter(""));
+		assertRows(0, 1, 2, 3, 4, 5);
+	}
+
+	@Test
+	public void testFilterAndSortTogether()
+	{
+		view.sortBy(price, true);
+		assertTrue(view.setFilter("price<=500"));
+		assertRows(0, 2, 1, 4);
+	}
+
+	private void assertRows(int... expected)
+	{
+		int[] actual = new int[view.size()];
+		for (int i = 0; i < actual.length; i++)
+		{
+			actual[i] = view.get(i);
+		}
+		assertArrayEquals(expected, actual);
+	}
+}
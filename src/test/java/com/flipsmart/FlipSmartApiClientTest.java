@@ -0,0 +1,216 @@
+package com.flipsmart;
+
+import com.google.gson.Gson;
+import okhttp3.OkHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FlipSmartApiClientTest
+{
+	private static final long TIMEOUT_SECONDS = 10;
+
+	private final Gson gson = new Gson();
+	private MockFlipSmartServer server;
+	private FlipSmartScheduler scheduler;
+	private OkHttpClient httpClient;
+	private TransactionJournal journal;
+	private FlipSmartApiClient apiClient;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		server = new MockFlipSmartServer();
+		server.start();
+		scheduler = new FlipSmartScheduler();
+		scheduler.start();
+		httpClient = new OkHttpClient();
+		journal = MockFlipSmartServer.createJournal(gson, scheduler);
+		apiClient = createClient();
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		scheduler.stop();
+		server.stop();
+		httpClient.dispatcher().executorService().shutdown();
+		httpClient.connectionPool().evictAll();
+	}
+
+	@Test
+	public void testRetriesWithBackoff() throws Exception
+	{
+		server.failNext(2, 503);
+
+		long start = System.currentTimeMillis();
+		assertNotNull(get(apiClient.getFlipRecommendationsAsync(1_000_000, "balanced", 20)));
+		long elapsed = System.currentTimeMillis() - start;
+
+		assertEquals(3, flipFinderRequests());
+		// Two retries, each waiting at most its backoff of 500 ms then 1 s
+		assertTrue("took " + elapsed + " ms", elapsed < 1500 + 1000);
+	}
+
+	@Test
+	public void testGivesUpAfterMaxAttempts() throws Exception
+	{
+		server.failNext(5, 503);
+
+		assertNull(get(apiClient.getFlipRecommendationsAsync(1_000_000, "balanced", 20)));
+		assertEquals(3, flipFinderRequests());
+	}
+
+	@Test
+	public void testCircuitOpensAndServesCachedResponse() throws Exception
+	{
+		FlipFinderResponse first = get(apiClient.getFlipRecommendationsAsync(1_000_000, "balanced", 20));
+		assertNotNull(first);
+
+		// Every attempt fails, so the breaker opens and the last good response is served
+		server.failNext(3, 503);
+		FlipFinderResponse failed = get(apiClient.getFlipRecommendationsAsync(1_000_000, "balanced", 20));
+		assertNotNull(failed);
+		assertEquals(first.getRecommendations().get(0).getRecommendedBuyPrice(),
+			failed.getRecommendations().get(0).getRecommendedBuyPrice());
+		assertEquals(Collections.singletonList("flip-finder"), apiClient.getDegradedEndpoints());
+
+		// While it's open, calls don't reach the server at all
+		long requests = flipFinderRequests();
+		assertNotNull(get(apiClient.getFlipRecommendationsAsync(1_000_000, "balanced", 20)));
+		assertEquals(requests, flipFinderRequests());
+	}
+
+	@Test
+	public void testRetriesReuseIdempotencyKey() throws Exception
+	{
+		server.failNext(2, 503);
+
+		get(apiClient.recordTransactionAsync(100, "Item 100", true, 10, 1000, 0, null));
+
+		List<String> keys = server.getReceivedIdempotencyKeys();
+		assertEquals(3, keys.size());
+		assertEquals(1, keys.stream().distinct().count());
+		assertEquals(1, server.getTransactions());
+		assertEquals(0, journal.size());
+	}
+
+	@Test
+	public void testResendAfterRestartReusesIdempotencyKey() throws Exception
+	{
+		server.failNext(3, 503);
+		get(apiClient.recordTransactionAsync(100, "Item 100", true, 10, 1000, 0, null));
+		assertEquals(1, journal.size());
+		assertEquals(0, server.getTransactions());
+
+		// A new client, as after a restart, so the open circuit doesn't hold the resend back
+		createClient().resendJournaledTransactions();
+		waitFor(() -> journal.size() == 0);
+
+		List<String> keys = server.getReceivedIdempotencyKeys();
+		assertEquals(4, keys.size());
+		assertEquals(1, keys.stream().distinct().count());
+		assertEquals(1, server.getTransactions());
+		assertEquals(0, server.getDuplicateTransactions());
+	}
+
+	@Test
+	public void testRejectedTransactionIsDropped() throws Exception
+	{
+		server.failNext(1, 422);
+		get(apiClient.recordTransactionAsync(100, "Item 100", true, 10, 1000, 0, null));
+
+		assertEquals(0, journal.size());
+		assertEquals(1, server.getReceivedIdempotencyKeys().size());
+	}
+
+	@Test
+	public void testNewerCallSupersedesOlder() throws Exception
+	{
+		// Log in first, so both calls go out straight away
+		get(apiClient.getActiveFlipsAsync());
+		server.setLatency(300, 0);
+
+		CompletableFuture<FlipFinderResponse> older = apiClient.getFlipRecommendationsAsync(1_000_000, "balanced", 20);
+		CompletableFuture<FlipFinderResponse> newer = apiClient.getFlipRecommendationsAsync(2_000_000, "balanced", 20);
+
+		assertCancelled(older);
+		assertNotNull(get(newer));
+	}
+
+	@Test
+	public void testRetryDoesNotSupersedeNewerCall() throws Exception
+	{
+		get(apiClient.getActiveFlipsAsync());
+		server.setLatency(300, 0);
+
+		// The first call fails straight away and waits to retry, then a newer one is made
+		server.failNext(1, 503);
+		CompletableFuture<FlipFinderResponse> older = apiClient.getFlipRecommendationsAsync(1_000_000, "balanced", 20);
+		waitFor(() -> server.getInjectedErrors() == 1);
+		CompletableFuture<FlipFinderResponse> newer = apiClient.getFlipRecommendationsAsync(2_000_000, "balanced", 20);
+
+		assertNotNull(get(newer));
+		assertCancelled(older);
+	}
+
+	private FlipSmartApiClient createClient()
+	{
+		return new FlipSmartApiClient(server.createConfig(8), gson, httpClient, new FlipSmartMetrics(), scheduler,
+			journal);
+	}
+
+	private long flipFinderRequests()
+	{
+		return server.getRequestCounts().getOrDefault("GET /flip-finder", 0L);
+	}
+
+	private static <T> T get(CompletableFuture<T> future) throws Exception
+	{
+		return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+	}
+
+	private static void assertCancelled(CompletableFuture<?> future) throws Exception
+	{
+		try
+		{
+			get(future);
+			fail("expected the call to be superseded");
+		}
+		catch (CancellationException e)
+		{
+			// Expected
+		}
+		catch (ExecutionException e)
+		{
+			assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof CancellationException);
+		}
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + TIMEOUT_SECONDS * 1000;
+		while (!condition.getAsBoolean())
+		{
+			if (System.currentTimeMillis() > deadline)
+			{
+				fail("timed out waiting");
+			}
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package com.flipsmart;
+
+import com.google.gson.Gson;
+import okhttp3.OkHttpClient;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives {@link FlipSmartApiClient} against a {@link MockFlipSmartServer} at a high
+ * request rate and reports throughput, latency percentiles and how failures were
+ * handled.
+ *
+ * Run with {@code ./gradlew loadTest}, optionally passing
+ * {@code -Pargs="requests concurrency latencyMs errorRate payloadItems"},
+ * e.g. {@code -Pargs="20000 64 20 0.05 50"}.
+ */
+public class FlipSmartLoadTest
+{
+	private static final String[] OPERATIONS = {
+		"flip-finder", "analysis", "transaction", "active-flips", "completed-flips"
+	};
+
+	/**
+	 * Outcomes of one kind of call
+	 */
+	private static class OperationStats
+	{
+		final FlipSmartMetrics.Histogram latency;
+		final LongAdder succeeded = new LongAdder();
+		final LongAdder empty = new LongAdder();
+		final LongAdder superseded = new LongAdder();
+		final LongAdder failed = new LongAdder();
+
+		OperationStats(FlipSmartMetrics metrics, String name)
+		{
+			latency = metrics.histogram("load." + name);
+		}
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		int requests = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+		int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+		long latencyMs = args.length > 2 ? Long.parseLong(args[2]) : 10;
+		double errorRate = args.length > 3 ? Double.parseDouble(args[3]) : 0.02;
+		int payloadItems = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+
+		MockFlipSmartServer server = new MockFlipSmartServer();
+		server.setLatency(latencyMs, latencyMs / 2);
+		server.setErrorRate(errorRate);
+		server.setPayloadItems(payloadItems);
+		server.start();
+
+		FlipSmartConfig config = server.createConfig(8);
+
+		Gson gson = new Gson();
+		FlipSmartMetrics metrics = new FlipSmartMetrics();
+		metrics.setEnabled(true);
+		FlipSmartScheduler scheduler = new FlipSmartScheduler();
+		scheduler.start();
+
+		TransactionJournal journal = MockFlipSmartServer.createJournal(gson, scheduler);
+
+		OkHttpClient httpClient = new OkHttpClient();
+		FlipSmartApiClient apiClient = new FlipSmartApiClient(config, gson, httpClient, metrics, scheduler, journal);
+
+		Map<String, OperationStats> stats = new LinkedHashMap<>();
+		for (String operation : OPERATIONS)
+		{
+			stats.put(operation, new OperationStats(metrics, operation));
+		}
+
+		System.out.printf("Sending %d requests, %d at a time, to %s (latency %d ms, error rate %.0f%%, %d items)%n",
+			requests, concurrency, server.getUrl(), latencyMs, errorRate * 100, payloadItems);
+
+		Semaphore permits = new Semaphore(concurrency);
+		List<CompletableFuture<?>> outstanding = new ArrayList<>();
+		long start = System.nanoTime();
+
+		for (int i = 0; i < requests; i++)
+		{
+			permits.acquire();
+			String operation = OPERATIONS[ThreadLocalRandom.current().nextInt(OPERATIONS.length)];
+			OperationStats operationStats = stats.get(operation);
+			long callStart = metrics.startTimer();
+
+			CompletableFuture<?> future = call(apiClient, operation).whenComplete((result, error) ->
+			{
+				operationStats.latency.recordSince(callStart);
+				if (error == null)
+				{
+					(result != null ? operationStats.succeeded : operationStats.empty).increment();
+				}
+				else if (unwrap(error) instanceof CancellationException)
+				{
+					operationStats.superseded.increment();
+				}
+				else
+				{
+					operationStats.failed.increment();
+				}
+				permits.release();
+			});
+			outstanding.add(future);
+		}
+
+		CompletableFuture.allOf(outstanding.toArray(new CompletableFuture[0]))
+			.handle((ignored, error) -> null)
+			.get(5, TimeUnit.MINUTES);
+		double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+		System.out.printf("%nCompleted %d calls in %.2f s (%.0f calls/s)%n%n", requests, seconds, requests / seconds);
+		System.out.printf("%-16s %8s %8s %8s %8s %10s %10s %10s%n",
+			"operation", "ok", "empty", "replaced", "failed", "p50 ms", "p90 ms", "p99 ms");
+		for (Map.Entry<String, OperationStats> entry : stats.entrySet())
+		{
+			OperationStats operationStats = entry.getValue();
+			System.out.printf("%-16s %8d %8d %8d %8d %10.2f %10.2f %10.2f%n",
+				entry.getKey(),
+				operationStats.succeeded.sum(),
+				operationStats.empty.sum(),
+				operationStats.superseded.sum(),
+				operationStats.failed.sum(),
+				operationStats.latency.getPercentileMillis(0.5),
+				operationStats.latency.getPercentileMillis(0.9),
+				operationStats.latency.getPercentileMillis(0.99));
+		}
+
+		System.out.printf("%nClient: %d HTTP requests, %d errors, analysis cache hit rate %.0f%%%n",
+			metrics.counter("http.requests").getCount(),
+			metrics.counter("http.errors").getCount(),
+			Math.max(0, metrics.getHitRate(FlipSmartApiClient.METRIC_CACHE_HITS, FlipSmartApiClient.METRIC_CACHE_MISSES)) * 100);
+		System.out.printf("Server: %d injected errors, %d transactions, %d resent duplicates, %d still journaled%n",
+			server.getInjectedErrors(), server.getTransactions(), server.getDuplicateTransactions(), journal.size());
+		System.out.printf("Degraded endpoints: %s%n", apiClient.getDegradedEndpoints());
+		for (Map.Entry<String, Long> entry : server.getRequestCounts().entrySet())
+		{
+			System.out.printf("  %-36s %d%n", entry.getKey(), entry.getValue());
+		}
+
+		scheduler.stop();
+		server.stop();
+		httpClient.dispatcher().executorService().shutdown();
+		httpClient.connectionPool().evictAll();
+	}
+
+	private static CompletableFuture<?> call(FlipSmartApiClient apiClient, String operation)
+	{
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		switch (operation)
+		{
+			case "flip-finder":
+				return apiClient.getFlipRecommendationsAsync(10_000_000, "balanced", 20);
+			case "analysis":
+				return apiClient.getItemAnalysisAsync(random.nextInt(2, 500));
+			case "transaction":
+				int itemId = random.nextInt(2, 500);
+				// Completes once sent or journaled, the journal size shows what's still unsent
+				return apiClient.recordTransactionAsync(itemId, "Item " + itemId, random.nextBoolean(),
+					random.nextInt(1, 1000), random.nextInt(1, 1_000_000), random.nextInt(0, 8), null)
+					.thenApply(ignored -> Boolean.TRUE);
+			case "active-flips":
+				return apiClient.getActiveFlipsAsync();
+			default:
+				return apiClient.getCompletedFlipsAsync(50);
+		}
+	}
+
+	private static Throwable unwrap(Throwable error)
+	{
+		return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+	}
+}
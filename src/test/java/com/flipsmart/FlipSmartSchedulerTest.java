@@ -0,0 +1,69 @@
+package com.flipsmart;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FlipSmartSchedulerTest
+{
+	private FlipSmartScheduler scheduler;
+
+	@Before
+	public void setUp()
+	{
+		scheduler = new FlipSmartScheduler();
+		scheduler.start();
+	}
+
+	@After
+	public void tearDown()
+	{
+		scheduler.stop();
+	}
+
+	@Test
+	public void testLongJobsDontHoldUpTimers() throws Exception
+	{
+		// Fill every background thread with a job that waits until released
+		CountDownLatch release = new CountDownLatch(1);
+		for (int i = 0; i < 4; i++)
+		{
+			scheduler.supply("export", () ->
+			{
+				try
+				{
+					release.await();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				return null;
+			});
+		}
+
+		CountDownLatch fired = new CountDownLatch(1);
+		scheduler.schedule("api-retry", fired::countDown, 10, TimeUnit.MILLISECONDS);
+		assertTrue("timer waited behind long jobs", fired.await(2, TimeUnit.SECONDS));
+		release.countDown();
+	}
+
+	@Test
+	public void testStopLetsQueuedJobsFinish() throws Exception
+	{
+		CompletableFuture<Integer> result = scheduler.supply("account-save", () -> 42);
+		scheduler.stop();
+
+		assertEquals(42, (int) result.get(1, TimeUnit.SECONDS));
+		assertNull(scheduler.schedule("fill-refresh", () -> { }, 0, TimeUnit.MILLISECONDS));
+		assertTrue(scheduler.supply("account-save", () -> 0).isCompletedExceptionally());
+	}
+}
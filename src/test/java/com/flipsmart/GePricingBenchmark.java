@@ -0,0 +1,80 @@
+package com.flipsmart;
+
+import net.runelite.api.ItemID;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long {@link GePricing} takes to work out profit over a large batch of flips,
+ * as the backtester and history panels do.
+ *
+ * Run with {@code ./gradlew jmh -Pargs=GePricing}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GePricingBenchmark
+{
+	@Param({"100000"})
+	public int flips;
+
+	private int[] itemIds;
+	private int[] buyPrices;
+	private int[] sellPrices;
+	private int[] quantities;
+
+	@Setup
+	public void setUp()
+	{
+		Random random = new Random(42);
+		itemIds = new int[flips];
+		buyPrices = new int[flips];
+		sellPrices = new int[flips];
+		quantities = new int[flips];
+		for (int i = 0; i < flips; i++)
+		{
+			// Mostly taxed items, with the odd exempt one
+			itemIds[i] = random.nextInt(20) == 0 ? ItemID.HAMMER : 1 + random.nextInt(30_000);
+			buyPrices[i] = 1 + random.nextInt(500_000_000);
+			sellPrices[i] = (int) (buyPrices[i] * (0.9 + random.nextDouble() * 0.2));
+			quantities[i] = 1 + random.nextInt(25_000);
+		}
+	}
+
+	@Benchmark
+	public long totalProfit()
+	{
+		long total = 0;
+		for (int i = 0; i < flips; i++)
+		{
+			total += GePricing.profit(itemIds[i], buyPrices[i], sellPrices[i], quantities[i]);
+		}
+		return total;
+	}
+
+	@Benchmark
+	public double totalRoi()
+	{
+		double total = 0;
+		for (int i = 0; i < flips; i++)
+		{
+			total += GePricing.roiPercent(itemIds[i], buyPrices[i], sellPrices[i]);
+		}
+		return total;
+	}
+}
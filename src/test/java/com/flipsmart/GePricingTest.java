@@ -0,0 +1,128 @@
+package com.flipsmart;
+
+import net.runelite.api.ItemID;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GePricingTest
+{
+	// Not on the exemption list
+	private static final int TAXED_ITEM = ItemID.SPADE + 1;
+
+	private static final int[] EXEMPT_ITEMS = {
+		ItemID.OLD_SCHOOL_BOND, ItemID.CHISEL, ItemID.GARDENING_TROWEL, ItemID.GLASSBLOWING_PIPE, ItemID.HAMMER,
+		ItemID.NEEDLE, ItemID.PESTLE_AND_MORTAR, ItemID.RAKE, ItemID.SAW, ItemID.SECATEURS, ItemID.SEED_DIBBER,
+		ItemID.SHEARS, ItemID.SPADE, ItemID.WATERING_CAN
+	};
+
+	@Test
+	public void testTaxRoundsDown()
+	{
+		assertEquals(0, GePricing.tax(-100));
+		assertEquals(0, GePricing.tax(0));
+		assertEquals(0, GePricing.tax(1));
+		assertEquals(0, GePricing.tax(49));
+		assertEquals(1, GePricing.tax(50));
+		assertEquals(1, GePricing.tax(99));
+		assertEquals(2, GePricing.tax(100));
+		assertEquals(19_999, GePricing.tax(999_999));
+	}
+
+	@Test
+	public void testTaxCap()
+	{
+		assertEquals(4_999_999, GePricing.tax(249_999_999));
+		assertEquals(GePricing.MAX_TAX, GePricing.tax(250_000_000));
+		assertEquals(GePricing.MAX_TAX, GePricing.tax(Integer.MAX_VALUE));
+		assertEquals(GePricing.MAX_TAX, GePricing.tax(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testExemptItems()
+	{
+		for (int itemId : EXEMPT_ITEMS)
+		{
+			assertTrue(GePricing.isTaxExempt(itemId));
+			assertEquals(0, GePricing.tax(itemId, 10_000_000));
+			assertEquals(10_000_000, GePricing.netSellPrice(itemId, 10_000_000));
+			assertEquals(100, GePricing.profitPerItem(itemId, 900, 1000));
+		}
+
+		assertFalse(GePricing.isTaxExempt(TAXED_ITEM));
+		assertEquals(200_000, GePricing.tax(TAXED_ITEM, 10_000_000));
+		assertEquals(80, GePricing.profitPerItem(TAXED_ITEM, 900, 1000));
+	}
+
+	@Test
+	public void testEveryPriceUpToTenMillion()
+	{
+		long previousNet = 0;
+		for (long price = 0; price <= 10_000_000; price++)
+		{
+			long tax = GePricing.tax(TAXED_ITEM, price);
+			assertEquals("tax at " + price, price * 2 / 100, tax);
+
+			// Raising the price never lowers what the seller gets
+			long net = GePricing.netSellPrice(TAXED_ITEM, price);
+			assertTrue(price + " nets less than " + (price - 1), net >= previousNet);
+			previousNet = net;
+		}
+	}
+
+	@Test
+	public void testProfitMatchesExactArithmetic()
+	{
+		Random random = new Random(11);
+		for (int i = 0; i < 1_000_000; i++)
+		{
+			int itemId = random.nextInt(8) == 0 ? EXEMPT_ITEMS[random.nextInt(EXEMPT_ITEMS.length)] : TAXED_ITEM;
+			long buyPrice = random.nextInt(Integer.MAX_VALUE);
+			long sellPrice = random.nextInt(Integer.MAX_VALUE);
+			long quantity = random.nextInt(Integer.MAX_VALUE);
+
+			assertEquals(itemId + " " + buyPrice + " " + sellPrice + " x" + quantity,
+				exactProfit(itemId, buyPrice, sellPrice, quantity),
+				BigInteger.valueOf(GePricing.profit(itemId, buyPrice, sellPrice, quantity)));
+		}
+	}
+
+	@Test
+	public void testExpensiveItemsDontOverflow()
+	{
+		// Sold at max cash, so taxed the 5M cap, times a buy limit that overflows an int
+		assertEquals((147_483_647L - 5_000_000L) * 70_000L,
+			GePricing.profit(TAXED_ITEM, 2_000_000_000, Integer.MAX_VALUE, 70_000));
+		assertEquals(-2_000_000_000L * 70_000L, GePricing.profit(TAXED_ITEM, 2_000_000_000, 0, 70_000));
+	}
+
+	@Test
+	public void testRoi()
+	{
+		assertEquals(0, GePricing.roiPercent(TAXED_ITEM, 0, 1000), 0);
+		assertEquals(0, GePricing.roiPercent(TAXED_ITEM, -5, 1000), 0);
+		assertEquals(7.8, GePricing.roiPercent(TAXED_ITEM, 1000, 1100), 1e-9);
+		assertEquals(10, GePricing.roiPercent(ItemID.HAMMER, 1000, 1100), 1e-9);
+		assertEquals(-100, GePricing.roiPercent(TAXED_ITEM, 1000, 0), 1e-9);
+	}
+
+	/**
+	 * Profit worked out from the tax rules with arbitrary precision
+	 */
+	private static BigInteger exactProfit(int itemId, long buyPrice, long sellPrice, long quantity)
+	{
+		BigInteger sell = BigInteger.valueOf(sellPrice);
+		BigInteger tax = BigInteger.ZERO;
+		if (!GePricing.isTaxExempt(itemId))
+		{
+			tax = sell.multiply(BigInteger.valueOf(2)).divide(BigInteger.valueOf(100))
+				.min(BigInteger.valueOf(5_000_000));
+		}
+		return sell.subtract(tax).subtract(BigInteger.valueOf(buyPrice)).multiply(BigInteger.valueOf(quantity));
+	}
+}
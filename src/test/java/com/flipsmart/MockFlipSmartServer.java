@@ -0,0 +1,596 @@
+package com.flipsmart;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * An in-process stand-in for the Flip Smart API, for load and integration testing
+ * {@link FlipSmartApiClient} without a real server.
+ *
+ * Serves the endpoints the client uses with generated data, and the {@code /updates}
+ * WebSocket that {@link PushUpdateChannel} listens on. Latency, the share of requests
+ * that fail with a 503 and the number of items per response can be set, or the next
+ * few requests can be made to fail. The server counts requests per endpoint and
+ * transactions it received twice.
+ */
+public class MockFlipSmartServer
+{
+	private static final String TOKEN_SECRET = "mock";
+	// Held so the level sticks; cancelled and pooled connections would otherwise log a warning each
+	private static final Logger MOCK_WEB_SERVER_LOGGER = Logger.getLogger(MockWebServer.class.getName());
+
+	static
+	{
+		MOCK_WEB_SERVER_LOGGER.setLevel(Level.SEVERE);
+	}
+
+	private final Gson gson = new Gson();
+	private final MockWebServer server = new MockWebServer();
+	private final Set<WebSocket> updateSockets = ConcurrentHashMap.newKeySet();
+
+	private volatile long latencyMs;
+	private volatile long latencyJitterMs;
+	private volatile double errorRate;
+	private volatile int payloadItems = 20;
+	private final AtomicInteger failuresLeft = new AtomicInteger();
+	private volatile int failureStatus;
+
+	private final Map<String, LongAdder> requestCounts = new ConcurrentHashMap<>();
+	private final LongAdder injectedErrors = new LongAdder();
+	private final LongAdder transactions = new LongAdder();
+	private final LongAdder duplicateTransactions = new LongAdder();
+	private final LongAdder compressedTransactions = new LongAdder();
+	private final Set<String> idempotencyKeys = ConcurrentHashMap.newKeySet();
+	private final List<String> receivedIdempotencyKeys = Collections.synchronizedList(new ArrayList<>());
+	private final LongAdder pushedUpdates = new LongAdder();
+
+	public MockFlipSmartServer()
+	{
+		server.setDispatcher(new Dispatcher()
+		{
+			@Override
+			public MockResponse dispatch(RecordedRequest request)
+			{
+				return handle(request);
+			}
+		});
+	}
+
+	/**
+	 * Start listening on any free port
+	 */
+	public void start() throws IOException
+	{
+		server.start(InetAddress.getByName("127.0.0.1"), 0);
+	}
+
+	public void stop() throws IOException
+	{
+		for (WebSocket socket : updateSockets)
+		{
+			socket.close(1001, "Server stopping");
+		}
+		server.shutdown();
+	}
+
+	/**
+	 * The URL to set as the client's API URL override
+	 */
+	public String getUrl()
+	{
+		return "http://127.0.0.1:" + server.getPort();
+	}
+
+	/**
+	 * A config pointing the client at this server
+	 */
+	public FlipSmartConfig createConfig(int maxConcurrentRequests)
+	{
+		return new FlipSmartConfig()
+		{
+			@Override
+			public String apiUrl()
+			{
+				return getUrl();
+			}
+
+			@Override
+			public String email()
+			{
+				return "load@test";
+			}
+
+			@Override
+			public String password()
+			{
+				return "password";
+			}
+
+			@Override
+			public int maxConcurrentRequests()
+			{
+				return maxConcurrentRequests;
+			}
+		};
+	}
+
+	/**
+	 * A transaction journal that lives in memory only, since there's no ConfigManager
+	 * outside the client
+	 */
+	public static TransactionJournal createJournal(Gson gson, FlipSmartScheduler scheduler)
+	{
+		return new TransactionJournal(null, gson, scheduler)
+		{
+			@Override
+			public void load()
+			{
+			}
+
+			@Override
+			public void save()
+			{
+			}
+		};
+	}
+
+	/**
+	 * Tell every client connected to {@code /updates} that something changed
+	 *
+	 * @param type What changed, e.g. "recommendations"
+	 * @return Number of clients told
+	 */
+	public int pushUpdate(String type)
+	{
+		JsonObject message = new JsonObject();
+		message.addProperty("type", type);
+		message.addProperty("sent_at", System.currentTimeMillis());
+		String text = message.toString();
+
+		int sent = 0;
+		for (WebSocket socket : updateSockets)
+		{
+			if (socket.send(text))
+			{
+				sent++;
+			}
+		}
+		pushedUpdates.add(sent);
+		return sent;
+	}
+
+	/**
+	 * Clients connected to {@code /updates} right now
+	 */
+	public int getUpdateConnections()
+	{
+		return updateSockets.size();
+	}
+
+	/**
+	 * Update messages sent, counting one per connected client
+	 */
+	public long getPushedUpdates()
+	{
+		return pushedUpdates.sum();
+	}
+
+	/**
+	 * Delay every response by this long, give or take up to the jitter
+	 */
+	public void setLatency(long latencyMs, long latencyJitterMs)
+	{
+		this.latencyMs = latencyMs;
+		this.latencyJitterMs = latencyJitterMs;
+	}
+
+	/**
+	 * Fail this share of requests (0 to 1) with a 503
+	 */
+	public void setErrorRate(double errorRate)
+	{
+		this.errorRate = errorRate;
+	}
+
+	/**
+	 * Answer the next requests, other than logins, straight away with an error status
+	 *
+	 * @param count How many requests to fail
+	 * @param status Status to answer with, e.g. 503 or 422
+	 */
+	public void failNext(int count, int status)
+	{
+		failureStatus = status;
+		failuresLeft.set(count);
+	}
+
+	/**
+	 * Number of recommendations, active flips and completed flips in each response
+	 */
+	public void setPayloadItems(int payloadItems)
+	{
+		this.payloadItems = payloadItems;
+	}
+
+	/**
+	 * Requests received per endpoint, sorted by endpoint
+	 */
+	public Map<String, Long> getRequestCounts()
+	{
+		Map<String, Long> counts = new TreeMap<>();
+		requestCounts.forEach((endpoint, count) -> counts.put(endpoint, count.sum()));
+		return counts;
+	}
+
+	public long getInjectedErrors()
+	{
+		return injectedErrors.sum();
+	}
+
+	/**
+	 * Transactions accepted, not counting ones resent with a known idempotency key
+	 */
+	public long getTransactions()
+	{
+		return transactions.sum();
+	}
+
+	public long getDuplicateTransactions()
+	{
+		return duplicateTransactions.sum();
+	}
+
+	/**
+	 * The idempotency key of every request that had one, in order, including ones that failed
+	 */
+	public List<String> getReceivedIdempotencyKeys()
+	{
+		synchronized (receivedIdempotencyKeys)
+		{
+			return new ArrayList<>(receivedIdempotencyKeys);
+		}
+	}
+
+	public long getCompressedTransactions()
+	{
+		return compressedTransactions.sum();
+	}
+
+	private MockResponse handle(RecordedRequest request)
+	{
+		String path = request.getRequestUrl() != null ? request.getRequestUrl().encodedPath() : "/";
+		String method = request.getMethod();
+		requestCounts.computeIfAbsent(method + " " + path.replaceAll("/\\d+", "/{id}"), key -> new LongAdder())
+			.increment();
+		String idempotencyKey = request.getHeader(FlipSmartApiClient.IDEMPOTENCY_KEY_HEADER);
+		if (idempotencyKey != null)
+		{
+			receivedIdempotencyKeys.add(idempotencyKey);
+		}
+
+		if (!path.startsWith("/auth/") && failuresLeft.getAndUpdate(left -> Math.max(0, left - 1)) > 0)
+		{
+			injectedErrors.increment();
+			return json(failureStatus, "{\"detail\":\"Injected failure\"}");
+		}
+
+		sleep();
+
+		if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate)
+		{
+			injectedErrors.increment();
+			return json(503, "{\"detail\":\"Injected failure\"}");
+		}
+
+		if (path.startsWith("/auth/login") || path.startsWith("/auth/signup"))
+		{
+			JsonObject response = new JsonObject();
+			response.addProperty("access_token", createToken());
+			return json(200, response.toString());
+		}
+		else if (path.startsWith("/auth/rsn"))
+		{
+			return json(200, "{\"message\":\"RSN updated\"}");
+		}
+		else if (!isAuthorized(request))
+		{
+			return json(401, "{\"detail\":\"Not authenticated\"}");
+		}
+		else if (path.equals("/updates"))
+		{
+			return new MockResponse().withWebSocketUpgrade(new UpdatesListener());
+		}
+		else if (path.startsWith("/analysis/"))
+		{
+			return json(200, gson.toJson(createAnalysis(parseId(path))));
+		}
+		else if (path.equals("/flip-finder"))
+		{
+			return json(200, gson.toJson(createRecommendations()));
+		}
+		else if (path.equals("/transactions") && "POST".equals(method))
+		{
+			return handleTransaction(request);
+		}
+		else if (path.startsWith("/transactions/active-flips/") && "DELETE".equals(method))
+		{
+			return json(200, "{\"message\":\"Dismissed\"}");
+		}
+		else if (path.equals("/transactions/active-flips"))
+		{
+			return json(200, gson.toJson(createActiveFlips()));
+		}
+		else if (path.equals("/flips/completed"))
+		{
+			return json(200, gson.toJson(createCompletedFlips()));
+		}
+		else
+		{
+			return json(404, "{\"detail\":\"Not found\"}");
+		}
+	}
+
+	private MockResponse handleTransaction(RecordedRequest request)
+	{
+		boolean gzip = "gzip".equalsIgnoreCase(request.getHeader("Content-Encoding"));
+		JsonObject body;
+		try
+		{
+			InputStream in = gzip ? new GZIPInputStream(request.getBody().inputStream()) : request.getBody().inputStream();
+			body = gson.fromJson(new String(readAll(in), StandardCharsets.UTF_8), JsonObject.class);
+		}
+		catch (IOException e)
+		{
+			body = null;
+		}
+		if (body == null || !body.has("item_id"))
+		{
+			return json(422, "{\"detail\":\"Invalid transaction\"}");
+		}
+
+		if (gzip)
+		{
+			compressedTransactions.increment();
+		}
+
+		String key = request.getHeader(FlipSmartApiClient.IDEMPOTENCY_KEY_HEADER);
+		if (key != null && !idempotencyKeys.add(key))
+		{
+			duplicateTransactions.increment();
+		}
+		else
+		{
+			transactions.increment();
+		}
+		return json(200, "{\"message\":\"Transaction recorded\"}");
+	}
+
+	/**
+	 * Keeps track of the clients listening for updates
+	 */
+	private class UpdatesListener extends WebSocketListener
+	{
+		@Override
+		public void onOpen(WebSocket webSocket, Response response)
+		{
+			updateSockets.add(webSocket);
+		}
+
+		@Override
+		public void onClosing(WebSocket webSocket, int code, String reason)
+		{
+			updateSockets.remove(webSocket);
+			webSocket.close(1000, null);
+		}
+
+		@Override
+		public void onClosed(WebSocket webSocket, int code, String reason)
+		{
+			updateSockets.remove(webSocket);
+		}
+
+		@Override
+		public void onFailure(WebSocket webSocket, Throwable t, Response response)
+		{
+			updateSockets.remove(webSocket);
+		}
+	}
+
+	private void sleep()
+	{
+		long delay = latencyMs;
+		if (latencyJitterMs > 0)
+		{
+			delay += ThreadLocalRandom.current().nextLong(-latencyJitterMs, latencyJitterMs + 1);
+		}
+		if (delay <= 0)
+		{
+			return;
+		}
+
+		try
+		{
+			Thread.sleep(delay);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static boolean isAuthorized(RecordedRequest request)
+	{
+		String authorization = request.getHeader("Authorization");
+		return authorization != null && authorization.startsWith("Bearer ") && authorization.endsWith("." + TOKEN_SECRET);
+	}
+
+	/**
+	 * A JWT-shaped token with an exp claim, so the client schedules its refresh as it would for a real one
+	 */
+	private static String createToken()
+	{
+		long exp = System.currentTimeMillis() / 1000 + 7 * 24 * 60 * 60;
+		Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		String header = encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8));
+		String payload = encoder.encodeToString(("{\"exp\":" + exp + "}").getBytes(StandardCharsets.UTF_8));
+		return header + "." + payload + "." + TOKEN_SECRET;
+	}
+
+	private static int parseId(String path)
+	{
+		try
+		{
+			return Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+		}
+		catch (NumberFormatException e)
+		{
+			return 0;
+		}
+	}
+
+	private static FlipAnalysis createAnalysis(int itemId)
+	{
+		FlipAnalysis analysis = new FlipAnalysis();
+		analysis.setItemId(itemId);
+		analysis.setItemName("Item " + itemId);
+		analysis.setBuyLimit(1000);
+		return analysis;
+	}
+
+	private FlipFinderResponse createRecommendations()
+	{
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		List<FlipRecommendation> recommendations = new ArrayList<>();
+		for (int i = 0; i < payloadItems; i++)
+		{
+			int buy = random.nextInt(100, 5_000_000);
+			int sell = buy + random.nextInt(1, Math.max(2, buy / 20));
+
+			FlipRecommendation recommendation = new FlipRecommendation();
+			recommendation.setItemId(i + 2);
+			recommendation.setItemName("Item " + (i + 2));
+			recommendation.setBuyLimit(random.nextInt(8, 25_000));
+			recommendation.setInstantBuyPrice(sell);
+			recommendation.setInstantSellPrice(buy);
+			recommendation.setRecommendedBuyPrice(buy);
+			recommendation.setRecommendedSellPrice(sell);
+			recommendation.setRecommendedQuantity(random.nextInt(1, 1000));
+			recommendation.setRoiPercent((sell - buy) * 100.0 / buy);
+			recommendation.setLiquidityScore(random.nextDouble(100));
+			recommendation.setLiquidityRating("Good");
+			recommendation.setVolumePerHour(random.nextDouble(10_000));
+			recommendation.setRiskScore(random.nextDouble(100));
+			recommendation.setRiskRating("Low");
+			recommendation.setEfficiencyScore(random.nextDouble(100));
+			recommendation.setEfficiencyRating("Good");
+			recommendations.add(recommendation);
+		}
+
+		FlipFinderResponse response = new FlipFinderResponse();
+		response.setFlipStyle("balanced");
+		response.setTotalItemsAnalyzed(payloadItems * 10);
+		response.setItemsMatchingCriteria(payloadItems);
+		response.setRecommendations(recommendations);
+		return response;
+	}
+
+	private ActiveFlipsResponse createActiveFlips()
+	{
+		List<ActiveFlip> flips = new ArrayList<>();
+		long invested = 0;
+		for (int i = 0; i < payloadItems; i++)
+		{
+			ActiveFlip flip = new ActiveFlip();
+			flip.setItemId(i + 2);
+			flip.setItemName("Item " + (i + 2));
+			flip.setTotalQuantity(100);
+			flip.setAverageBuyPrice(1000 + i);
+			flip.setTotalInvested(100L * (1000 + i));
+			flip.setTransactionCount(1);
+			invested += flip.getTotalInvested();
+			flips.add(flip);
+		}
+
+		ActiveFlipsResponse response = new ActiveFlipsResponse();
+		response.setActiveFlips(flips);
+		response.setTotalItems(flips.size());
+		response.setTotalInvested(invested);
+		return response;
+	}
+
+	private CompletedFlipsResponse createCompletedFlips()
+	{
+		List<CompletedFlip> flips = new ArrayList<>();
+		for (int i = 0; i < payloadItems; i++)
+		{
+			CompletedFlip flip = new CompletedFlip();
+			flip.setId(i + 1);
+			flip.setItemId(i + 2);
+			flip.setItemName("Item " + (i + 2));
+			flip.setQuantity(100);
+			flip.setBuyPricePerItem(1000);
+			flip.setBuyTotal(100_000);
+			flip.setSellPricePerItem(1100);
+			flip.setSellTotal(110_000);
+			flip.setGrossProfit(10_000);
+			flip.setGeTax(2_200);
+			flip.setNetProfit(7_800);
+			flip.setRoiPercent(7.8);
+			flip.setFlipDurationSeconds(600);
+			flip.setSuccessful(true);
+			flips.add(flip);
+		}
+
+		CompletedFlipsResponse response = new CompletedFlipsResponse();
+		response.setFlips(flips);
+		response.setCount(flips.size());
+		return response;
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) != -1)
+		{
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	private static MockResponse json(int status, String body)
+	{
+		return new MockResponse()
+			.setResponseCode(status)
+			.setHeader("Content-Type", "application/json")
+			.setBody(body);
+	}
+}
@@ -0,0 +1,184 @@
+package com.flipsmart;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PriceAlertEngineTest
+{
+	private static final long MINUTE_MS = 60 * 1000L;
+
+	private final List<String> notifications = new ArrayList<>();
+	private long now = 1_700_000_000_000L;
+	private final PriceAlertEngine engine = new PriceAlertEngine(notifications::add, () -> now);
+
+	@Test
+	public void testParseAmount()
+	{
+		assertEquals(50, PriceAlertEngine.parseAmount("50"), 0);
+		assertEquals(50_000, PriceAlertEngine.parseAmount("50k"), 0);
+		assertEquals(1_500_000, PriceAlertEngine.parseAmount("1.5M"), 0);
+		assertEquals(2e9, PriceAlertEngine.parseAmount("2b"), 0);
+		assertEquals(1_234_567, PriceAlertEngine.parseAmount("1,234,567"), 0);
+		assertEquals(3.5, PriceAlertEngine.parseAmount("3.5%"), 0);
+		assertEquals(-200, PriceAlertEngine.parseAmount("-200"), 0);
+		assertEquals(0.5, PriceAlertEngine.parseAmount(".5"), 0);
+
+		for (String invalid : new String[]{"", "k", "abc", "1e9", "5d", "5f", "NaN", "Infinity", "1.2.3", "--5"})
+		{
+			assertTrue(invalid, Double.isNaN(PriceAlertEngine.parseAmount(invalid)));
+		}
+	}
+
+	@Test
+	public void testParseRules()
+	{
+		PriceAlertEngine.RuleSet rules = PriceAlertEngine.parse(String.join("\n",
+			"# a comment",
+			"",
+			"Abyssal whip: margin >= 50k",
+			"4151: roi>3 and volume >= 500",
+			"members: roi >= 5% AND price <= 1m",
+			"f2p: price < 100",
+			"all: volume > 1k",
+			"no colon margin > 5",
+			": margin > 5",
+			"Item: speed > 5",
+			"Item: margin > lots",
+			"Item: margin = 5",
+			"Item: margin > 5 and",
+			"Item: margin > 5 or roi > 2"));
+
+		assertEquals(5, rules.size);
+		assertEquals(1, rules.byName.get("abyssal whip").size());
+		assertEquals(1, rules.byItemId.get(4151).size());
+		assertEquals(1, rules.members.size());
+		assertEquals(1, rules.f2p.size());
+		assertEquals(1, rules.all.size());
+
+		PriceAlertEngine.Rule rule = rules.members.get(0);
+		assertEquals(2, rule.metrics.length);
+		assertEquals(5, rule.thresholds[0], 0);
+		assertTrue(rule.greater[0]);
+		assertTrue(rule.orEqual[0]);
+		assertEquals(1_000_000, rule.thresholds[1], 0);
+		assertTrue(!rule.greater[1]);
+	}
+
+	@Test
+	public void testTargets()
+	{
+		engine.setRules(String.join("\n",
+			"abyssal WHIP: price > 0",
+			"4151: price > 0",
+			"members: price > 100",
+			"f2p: price > 100",
+			"all: price > 1000"));
+
+		engine.onRecommendations(Collections.singletonList(recommendation(4151, "Abyssal whip", true, 1500, 1600)));
+		// Its name, its id, members and all
+		assertEquals(4, notifications.size());
+
+		notifications.clear();
+		engine.onRecommendations(Collections.singletonList(recommendation(1, "Bronze bar", false, 200, 210)));
+		// Only f2p, as its price is too low for all
+		assertEquals(1, notifications.size());
+		assertTrue(notifications.get(0), notifications.get(0).contains("f2p: price > 100"));
+	}
+
+	@Test
+	public void testNotifiesOnlyWhenRuleStartsMatching()
+	{
+		engine.setRules("Abyssal whip: margin >= 50k and volume > 100");
+
+		update(1_500_000, 1_540_000);
+		assertEquals(0, notifications.size());
+
+		update(1_500_000, 1_600_000);
+		assertEquals(1, notifications.size());
+
+		// Still matching, with different numbers
+		now += MINUTE_MS;
+		update(1_500_000, 1_610_000);
+		assertEquals(1, notifications.size());
+
+		// Stops and starts again soon after, which is just flickering
+		now += MINUTE_MS;
+		update(1_500_000, 1_540_000);
+		now += MINUTE_MS;
+		update(1_500_000, 1_600_000);
+		assertEquals(1, notifications.size());
+
+		// Stops and starts again half an hour after the notification
+		now += 30 * MINUTE_MS;
+		update(1_500_000, 1_540_000);
+		update(1_500_000, 1_600_000);
+		assertEquals(2, notifications.size());
+	}
+
+	@Test
+	public void testSameNumbersFromEitherSource()
+	{
+		engine.setRules("Abyssal whip: margin >= 50k");
+
+		update(1_500_000, 1_600_000);
+		assertEquals(1, notifications.size());
+
+		// The analysis has the same market prices, but the server's own margin and
+		// ROI, which are ignored, so the rule keeps matching rather than flickering
+		FlipAnalysis analysis = new FlipAnalysis();
+		analysis.setItemId(4151);
+		analysis.setItemName("Abyssal whip");
+		analysis.setMembers(true);
+		FlipAnalysis.CurrentPrices prices = new FlipAnalysis.CurrentPrices();
+		prices.setLow(1_500_000);
+		prices.setHigh(1_600_000);
+		prices.setNetMargin(0);
+		prices.setRoiPercent(0.0);
+		analysis.setCurrentPrices(prices);
+		for (int i = 0; i < 3; i++)
+		{
+			now += 40 * MINUTE_MS;
+			engine.onAnalysis(analysis);
+			update(1_500_000, 1_600_000);
+		}
+		assertEquals(1, notifications.size());
+	}
+
+	@Test
+	public void testMissingValuesNeverMatch()
+	{
+		engine.setRules("all: price >= 0");
+
+		FlipAnalysis analysis = new FlipAnalysis();
+		analysis.setItemId(4151);
+		analysis.setCurrentPrices(new FlipAnalysis.CurrentPrices());
+		engine.onAnalysis(analysis);
+
+		assertEquals(0, notifications.size());
+	}
+
+	private void update(int low, int high)
+	{
+		engine.onRecommendations(Collections.singletonList(recommendation(4151, "Abyssal whip", true, low, high)));
+	}
+
+	private static FlipRecommendation recommendation(int itemId, String name, boolean members, int low, int high)
+	{
+		FlipRecommendation rec = new FlipRecommendation();
+		rec.setItemId(itemId);
+		rec.setItemName(name);
+		rec.setMembers(members);
+		rec.setInstantSellPrice(low);
+		rec.setInstantBuyPrice(high);
+		rec.setRecommendedBuyPrice(low + 1);
+		rec.setRecommendedSellPrice(high - 1);
+		rec.setVolumePerHour(1000);
+		return rec;
+	}
+}
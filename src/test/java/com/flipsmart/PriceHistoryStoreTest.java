@@ -0,0 +1,287 @@
+package com.flipsmart;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PriceHistoryStoreTest
+{
+	private static final long MINUTE_MS = 60 * 1000L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRoundTrip() throws IOException
+	{
+		File file = folder.newFile("price-history.dat");
+		PriceHistoryStore store = new PriceHistoryStore(file);
+		store.load();
+		store.recordAll(Arrays.asList(recommendation(1, 1000, 1100, 100), recommendation(2, 50, 60, 0)));
+		store.close();
+		assertEquals(8 + 2 * PriceHistoryStore.RECORD_BYTES, file.length());
+
+		PriceHistoryStore loaded = new PriceHistoryStore(file);
+		long modified = file.lastModified() - 60_000;
+		assertTrue(file.setLastModified(modified));
+		loaded.load();
+		loaded.close();
+
+		// A clean file is appended to, not rewritten
+		assertEquals(modified, file.lastModified());
+
+		Map<Integer, PriceHistoryStore.ItemHistory> items = loaded.snapshot();
+		assertEquals(2, items.size());
+		PriceHistoryStore.ItemHistory history = items.get(1);
+		assertEquals(1, history.size);
+		assertEquals(1010, history.high[0]);
+		assertEquals(990, history.low[0]);
+		assertEquals(1000, history.recommendedBuy[0]);
+		assertEquals(1100, history.recommendedSell[0]);
+		assertEquals(100, history.buyLimits[0]);
+		assertEquals(5000, history.volumePerHour[0]);
+		assertEquals(20, history.risk[0]);
+		assertEquals(0, items.get(2).buyLimit);
+	}
+
+	@Test
+	public void testDropsPartialRecord() throws IOException
+	{
+		File file = folder.newFile("price-history.dat");
+		long now = System.currentTimeMillis();
+		try (DataOutputStream out = open(file))
+		{
+			write(out, 1, now - 10 * MINUTE_MS, 100);
+			write(out, 1, now - 5 * MINUTE_MS, 100);
+			out.writeInt(1);
+			out.writeLong(now);
+		}
+
+		PriceHistoryStore store = new PriceHistoryStore(file);
+		store.load();
+		store.close();
+
+		assertEquals(2, store.snapshot().get(1).size);
+		assertEquals(8 + 2 * PriceHistoryStore.RECORD_BYTES, file.length());
+		assertFalse(new File(folder.getRoot(), file.getName() + ".tmp").exists());
+	}
+
+	@Test
+	public void testKeepsBuyLimitPerSnapshot() throws IOException
+	{
+		File file = folder.newFile("price-history.dat");
+		long now = System.currentTimeMillis();
+		try (DataOutputStream out = open(file))
+		{
+			// Expired, so dropped when loading
+			write(out, 1, now - 100L * 24 * 60 * MINUTE_MS, 10);
+			write(out, 1, now - 15 * MINUTE_MS, 100);
+			write(out, 1, now - 10 * MINUTE_MS, 0);
+			write(out, 1, now - 5 * MINUTE_MS, 50);
+		}
+
+		for (int pass = 0; pass < 2; pass++)
+		{
+			PriceHistoryStore store = new PriceHistoryStore(file);
+			store.load();
+			store.close();
+
+			PriceHistoryStore.ItemHistory history = store.snapshot().get(1);
+			assertEquals(3, history.size);
+			assertArrayEquals(new int[]{100, 0, 50}, history.buyLimits);
+			assertEquals(50, history.buyLimit);
+			assertEquals(100, history.getBuyLimit(0));
+			assertEquals(50, history.getBuyLimit(1));
+		}
+	}
+
+	@Test
+	public void testCompactsOnlyWhenManyExpired() throws IOException
+	{
+		File file = folder.newFile("price-history.dat");
+		long now = System.currentTimeMillis();
+		long expired = now - 100L * 24 * 60 * MINUTE_MS;
+		try (DataOutputStream out = open(file))
+		{
+			write(out, 1, expired, 100);
+			for (int i = 0; i < 4; i++)
+			{
+				write(out, 1, now - (10 - i) * MINUTE_MS, 100);
+			}
+		}
+
+		// A fifth of the file has expired, which isn't worth a rewrite
+		long modified = file.lastModified() - 60_000;
+		assertTrue(file.setLastModified(modified));
+		PriceHistoryStore store = new PriceHistoryStore(file);
+		store.load();
+		store.close();
+		assertEquals(4, store.snapshot().get(1).size);
+		assertEquals(modified, file.lastModified());
+		assertEquals(8 + 5 * PriceHistoryStore.RECORD_BYTES, file.length());
+
+		// Once over a quarter has expired, the file is compacted
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true))))
+		{
+			write(out, 2, expired, 100);
+		}
+		store = new PriceHistoryStore(file);
+		store.load();
+		store.close();
+		assertEquals(4, store.snapshot().get(1).size);
+		assertEquals(8 + 4 * PriceHistoryStore.RECORD_BYTES, file.length());
+	}
+
+	@Test
+	public void testKeepsSnapshotsRecordedBeforeLoad() throws IOException
+	{
+		File file = folder.newFile("price-history.dat");
+		try (DataOutputStream out = open(file))
+		{
+			write(out, 1, System.currentTimeMillis() - 5 * MINUTE_MS, 100);
+		}
+
+		PriceHistoryStore store = new PriceHistoryStore(file);
+		store.recordAll(Collections.singletonList(recommendation(1, 1000, 1100, 100)));
+		store.load();
+		store.close();
+		assertEquals(2, store.snapshot().get(1).size);
+		assertEquals(2, store.getSnapshotCount(1));
+		// Appended after loading, without rewriting the file
+		assertEquals(8 + 2 * PriceHistoryStore.RECORD_BYTES, file.length());
+
+		PriceHistoryStore loaded = new PriceHistoryStore(file);
+		loaded.load();
+		loaded.close();
+		PriceHistoryStore.ItemHistory history = loaded.snapshot().get(1);
+		assertEquals(2, history.size);
+		assertTrue(history.times[0] < history.times[1]);
+	}
+
+	@Test
+	public void testCapsSnapshotsPerItem()
+	{
+		PriceHistoryStore store = new PriceHistoryStore(new File(folder.getRoot(), "unused.dat"));
+		List<FlipRecommendation> batch = Collections.singletonList(recommendation(1, 1000, 1100, 100));
+		int count = PriceHistoryStore.MAX_SNAPSHOTS_PER_ITEM * 2 + 1;
+		for (int i = 0; i < count; i++)
+		{
+			batch.get(0).setRecommendedBuyPrice(i);
+			store.recordAll(batch);
+		}
+
+		PriceHistoryStore.ItemHistory history = store.snapshot().get(1);
+		assertTrue(history.size <= PriceHistoryStore.MAX_SNAPSHOTS_PER_ITEM);
+		assertEquals(count - 1, history.recommendedBuy[history.size - 1]);
+		assertEquals(count - history.size, history.recommendedBuy[0]);
+		// Still changes with every snapshot, so sparklines know to redraw
+		assertEquals(count, store.getSnapshotCount(1));
+	}
+
+	@Test
+	public void testBacktestUsesBuyLimitAtEachSnapshot() throws IOException
+	{
+		long start = System.currentTimeMillis() - 24 * 60 * MINUTE_MS;
+		int snapshots = 200;
+		int[] tenThenMore = new int[snapshots];
+		int[] ten = new int[snapshots];
+		int[] more = new int[snapshots];
+		Arrays.fill(tenThenMore, 10);
+		Arrays.fill(ten, 10);
+		Arrays.fill(more, 1000);
+		tenThenMore[snapshots - 1] = 1000;
+
+		long limitedThenRaised = backtest(start, tenThenMore);
+		long limited = backtest(start, ten);
+		long raised = backtest(start, more);
+
+		// Only the last snapshot had the bigger limit, too late to finish a flip with it
+		assertEquals(limited, limitedThenRaised);
+		assertTrue(limited > 0);
+		assertTrue(raised > limited);
+	}
+
+	/**
+	 * Write a history with a buy limit per snapshot, load it and backtest the balanced style
+	 */
+	private long backtest(long start, int[] buyLimits) throws IOException
+	{
+		File file = folder.newFile();
+		try (DataOutputStream out = open(file))
+		{
+			for (int i = 0; i < buyLimits.length; i++)
+			{
+				write(out, 1, start + i * 5 * MINUTE_MS, buyLimits[i]);
+			}
+		}
+
+		PriceHistoryStore store = new PriceHistoryStore(file);
+		store.load();
+		store.close();
+
+		FillHistoryStore.Fills fills = new FillHistoryStore.Fills(0, new long[0], new int[0], new boolean[0],
+			new int[0], new int[0]);
+		for (Backtester.Result result : new Backtester().run(store.snapshot(), fills, 100_000_000L))
+		{
+			if (result.style == FlipSmartConfig.FlipStyle.BALANCED)
+			{
+				return result.profit;
+			}
+		}
+		throw new AssertionError("no balanced result");
+	}
+
+	private static DataOutputStream open(File file) throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		out.writeInt(PriceHistoryStore.FILE_MAGIC);
+		out.writeInt(PriceHistoryStore.FORMAT_VERSION);
+		return out;
+	}
+
+	/**
+	 * Write a snapshot where the market trades through a 1000/1100 flip
+	 */
+	private static void write(DataOutputStream out, int itemId, long time, int buyLimit) throws IOException
+	{
+		out.writeInt(itemId);
+		out.writeLong(time);
+		out.writeInt(1100);
+		out.writeInt(1000);
+		out.writeInt(1000);
+		out.writeInt(1100);
+		out.writeInt(buyLimit);
+		out.writeInt(1_000_000);
+		out.writeByte(0);
+	}
+
+	private static FlipRecommendation recommendation(int itemId, int buyPrice, int sellPrice, int buyLimit)
+	{
+		FlipRecommendation rec = new FlipRecommendation();
+		rec.setItemId(itemId);
+		rec.setItemName("Item " + itemId);
+		rec.setInstantBuyPrice(buyPrice + 10);
+		rec.setInstantSellPrice(buyPrice - 10);
+		rec.setRecommendedBuyPrice(buyPrice);
+		rec.setRecommendedSellPrice(sellPrice);
+		rec.setBuyLimit(buyLimit);
+		rec.setVolumePerHour(5000);
+		rec.setRiskScore(20);
+		return rec;
+	}
+}
@@ -0,0 +1,74 @@
+package com.flipsmart;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long the profit chart takes to get a year of hourly profit ready to draw:
+ * copying the series out of the timeline, and downsampling it to the chart's width.
+ *
+ * Run with {@code ./gradlew jmh -Pargs=ProfitChart}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProfitChartBenchmark
+{
+	private static final long HOUR_MS = 60 * 60 * 1000L;
+
+	@Param({"220", "1000"})
+	public int width;
+
+	private final ProfitTimeline timeline = new ProfitTimeline();
+	private long now;
+	private double[] cumulative;
+
+	@Setup
+	public void setUp()
+	{
+		Random random = new Random(42);
+		now = System.currentTimeMillis();
+		long start = now - 365 * 24 * HOUR_MS;
+		// About 20 flips an hour for a year
+		for (long time = start; time < now; time += random.nextInt((int) (HOUR_MS / 10)))
+		{
+			timeline.add(random.nextInt(3000), time, random.nextInt(1_000_000) - 200_000);
+		}
+
+		long[] profits = timeline.getSeries(ProfitTimeline.Resolution.HOUR, now).profits;
+		cumulative = new double[profits.length];
+		long total = 0;
+		for (int i = 0; i < profits.length; i++)
+		{
+			total += profits[i];
+			cumulative[i] = total;
+		}
+	}
+
+	@Benchmark
+	public ProfitTimeline.Series series()
+	{
+		return timeline.getSeries(ProfitTimeline.Resolution.HOUR, now);
+	}
+
+	@Benchmark
+	public int[] downsample()
+	{
+		return ProfitChart.downsample(cumulative, width);
+	}
+}
@@ -0,0 +1,68 @@
+package com.flipsmart;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ProfitChartTest
+{
+	@Test
+	public void testDownsampleKeepsShape()
+	{
+		Random random = new Random(7);
+		for (int length : new int[]{4, 10, 101, 1000, 8760})
+		{
+			double[] values = new double[length];
+			double total = 0;
+			for (int i = 0; i < length; i++)
+			{
+				total += random.nextGaussian() * 1000;
+				values[i] = total;
+			}
+
+			for (int threshold : new int[]{3, 4, 50, 220, length - 1})
+			{
+				if (threshold < 3 || threshold >= length)
+				{
+					continue;
+				}
+				int[] kept = ProfitChart.downsample(values, threshold);
+				String name = length + " to " + threshold;
+				assertEquals(name, threshold, kept.length);
+				assertEquals(name, 0, kept[0]);
+				assertEquals(name, length - 1, kept[threshold - 1]);
+				for (int i = 1; i < kept.length; i++)
+				{
+					assertTrue(name, kept[i] > kept[i - 1]);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDownsampleKeepsSpike()
+	{
+		double[] values = new double[1000];
+		values[437] = 1_000_000;
+		int[] kept = ProfitChart.downsample(values, 20);
+		boolean found = false;
+		for (int index : kept)
+		{
+			found |= index == 437;
+		}
+		assertTrue(found);
+	}
+
+	@Test
+	public void testDownsampleShortSeries()
+	{
+		double[] values = {1, 2, 3, 4, 5};
+		assertArrayEquals(new int[]{0, 1, 2, 3, 4}, ProfitChart.downsample(values, 5));
+		assertArrayEquals(new int[]{0, 1, 2, 3, 4}, ProfitChart.downsample(values, 200));
+		assertArrayEquals(new int[]{0, 4}, ProfitChart.downsample(values, 2));
+	}
+}
@@ -0,0 +1,84 @@
+package com.flipsmart;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ProfitTimelineTest
+{
+	private static final ZoneId LONDON = ZoneId.of("Europe/London");
+
+	@Test
+	public void testDaysStartAtLocalMidnightAcrossDaylightSaving()
+	{
+		ProfitTimeline timeline = new ProfitTimeline(LONDON);
+		// Clocks went forward at 01:00 on 2024-03-31, and back at 02:00 on 2024-10-27
+		timeline.add(1, time(2024, 3, 30, 23, 30), 1);
+		timeline.add(1, time(2024, 3, 31, 0, 30), 10);
+		timeline.add(1, time(2024, 3, 31, 23, 30), 100);
+		timeline.add(1, time(2024, 4, 1, 0, 30), 1000);
+
+		ProfitTimeline.Series days = timeline.getSeries(ProfitTimeline.Resolution.DAY, time(2024, 4, 1, 12, 0));
+		assertArrayEquals(new long[]{1, 110, 1000}, days.profits);
+		assertEquals(time(2024, 3, 30, 0, 0), days.start);
+		assertEquals(time(2024, 3, 31, 0, 0), days.startOf(1));
+		assertEquals(time(2024, 4, 1, 0, 0), days.startOf(2));
+
+		timeline.clear();
+		timeline.add(1, time(2024, 10, 26, 23, 30), 1);
+		timeline.add(1, time(2024, 10, 27, 0, 30), 10);
+		timeline.add(1, time(2024, 10, 27, 23, 30), 100);
+		timeline.add(1, time(2024, 10, 28, 0, 30), 1000);
+
+		days = timeline.getSeries(ProfitTimeline.Resolution.DAY, time(2024, 10, 28, 12, 0));
+		assertArrayEquals(new long[]{1, 110, 1000}, days.profits);
+		assertEquals(time(2024, 10, 28, 0, 0), days.startOf(2));
+	}
+
+	@Test
+	public void testWeeksStartOnLocalMonday()
+	{
+		ProfitTimeline timeline = new ProfitTimeline(LONDON);
+		// Sunday night and Monday just after midnight, in summer time
+		timeline.add(1, time(2024, 6, 2, 23, 30), 1);
+		timeline.add(1, time(2024, 6, 3, 0, 30), 10);
+		// Monday just after midnight in winter, the other side of the change
+		timeline.add(1, time(2024, 11, 4, 0, 30), 100);
+
+		ProfitTimeline.Series weeks = timeline.getSeries(ProfitTimeline.Resolution.WEEK, time(2024, 11, 4, 12, 0));
+		assertEquals(time(2024, 5, 27, 0, 0), weeks.start);
+		assertEquals(1, weeks.profits[0]);
+		assertEquals(10, weeks.profits[1]);
+		assertEquals(100, weeks.profits[weeks.profits.length - 1]);
+		assertEquals(time(2024, 11, 4, 0, 0), weeks.startOf(weeks.profits.length - 1));
+	}
+
+	@Test
+	public void testItemBreakdown()
+	{
+		ProfitTimeline timeline = new ProfitTimeline(LONDON);
+		timeline.add(1, time(2024, 1, 1, 12, 0), 500);
+		timeline.add(1, time(2024, 1, 2, 12, 0), 500);
+		timeline.add(2, time(2024, 1, 2, 12, 0), 300);
+		timeline.add(3, time(2024, 1, 2, 12, 0), -200);
+		timeline.add(4, time(2024, 1, 2, 12, 0), 0);
+
+		List<ProfitTimeline.ItemProfit> items = timeline.getItemBreakdown(5);
+		assertEquals(3, items.size());
+		assertEquals(1, items.get(0).itemId);
+		assertEquals(1000, items.get(0).profit);
+		assertEquals(2, items.get(0).flips);
+		assertEquals(2, items.get(1).itemId);
+		assertEquals(3, items.get(2).itemId);
+	}
+
+	private static long time(int year, int month, int day, int hour, int minute)
+	{
+		return LocalDateTime.of(year, month, day, hour, minute).atZone(LONDON).toInstant().toEpochMilli();
+	}
+}
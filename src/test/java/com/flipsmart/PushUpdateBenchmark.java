@@ -0,0 +1,191 @@
+package com.flipsmart;
+
+import com.google.gson.Gson;
+import okhttp3.OkHttpClient;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares how stale the plugin's recommendations get with pushed updates against
+ * polling, and how many requests each takes, against a {@link MockFlipSmartServer}.
+ *
+ * The server's recommendations change at random times. With push, the server
+ * announces each change on {@code /updates} and the client refetches when
+ * {@link PushUpdateChannel} delivers it. With polling, the client refetches on a
+ * fixed interval. Staleness is the time from a change to the end of the first
+ * fetch that started after it.
+ *
+ * Run with {@code ./gradlew pushBenchmark}, optionally passing
+ * {@code -Pargs="seconds changesPerMinute pollSeconds latencyMs"},
+ * e.g. {@code -Pargs="120 20 30 20"}.
+ */
+public class PushUpdateBenchmark
+{
+	/**
+	 * What one mode cost and how far behind it fell
+	 */
+	private static class Run
+	{
+		final FlipSmartMetrics.Histogram staleness;
+		final LongAdder changes = new LongAdder();
+		final LongAdder fetches = new LongAdder();
+		long missed;
+		long requests;
+		long pushed;
+
+		Run(FlipSmartMetrics metrics, String name)
+		{
+			staleness = metrics.histogram("staleness." + name);
+		}
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+		double changesPerMinute = args.length > 1 ? Double.parseDouble(args[1]) : 20;
+		int pollSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 15;
+		long latencyMs = args.length > 3 ? Long.parseLong(args[3]) : 20;
+
+		System.out.printf("%d s per mode, %.0f changes a minute, polling every %d s, %d ms latency%n",
+			seconds, changesPerMinute, pollSeconds, latencyMs);
+
+		FlipSmartMetrics metrics = new FlipSmartMetrics();
+		metrics.setEnabled(true);
+		Run push = run(metrics, true, seconds, changesPerMinute, pollSeconds, latencyMs);
+		Run poll = run(metrics, false, seconds, changesPerMinute, pollSeconds, latencyMs);
+
+		System.out.printf("%n%-6s %8s %8s %8s %8s %10s %10s %10s %10s%n",
+			"mode", "changes", "missed", "fetches", "requests", "pushed", "p50 ms", "p90 ms", "p99 ms");
+		print("push", push);
+		print("poll", poll);
+	}
+
+	private static void print(String name, Run run)
+	{
+		System.out.printf("%-6s %8d %8d %8d %8d %10d %10.0f %10.0f %10.0f%n",
+			name,
+			run.changes.sum(),
+			run.missed,
+			run.fetches.sum(),
+			run.requests,
+			run.pushed,
+			run.staleness.getPercentileMillis(0.5),
+			run.staleness.getPercentileMillis(0.9),
+			run.staleness.getPercentileMillis(0.99));
+	}
+
+	/**
+	 * Change the server's recommendations for a while and track how quickly the client sees each change
+	 *
+	 * @param usePush Refetch on pushed updates, rather than on a poll interval
+	 */
+	private static Run run(FlipSmartMetrics metrics, boolean usePush, int seconds, double changesPerMinute,
+						   int pollSeconds, long latencyMs) throws Exception
+	{
+		MockFlipSmartServer server = new MockFlipSmartServer();
+		server.setLatency(latencyMs, latencyMs / 2);
+		server.start();
+
+		Gson gson = new Gson();
+		FlipSmartScheduler scheduler = new FlipSmartScheduler();
+		scheduler.start();
+		OkHttpClient httpClient = new OkHttpClient();
+		FlipSmartApiClient apiClient = new FlipSmartApiClient(server.createConfig(8), gson, httpClient, metrics,
+			scheduler, MockFlipSmartServer.createJournal(gson, scheduler));
+
+		Run run = new Run(metrics, usePush ? "push" : "poll");
+		// Times of changes the client hasn't fetched yet
+		Queue<Long> unseen = new ConcurrentLinkedQueue<>();
+		AtomicBoolean fetching = new AtomicBoolean();
+		Runnable fetch = () ->
+		{
+			// Like the plugin, skip a refresh while one is still running
+			if (!fetching.compareAndSet(false, true))
+			{
+				return;
+			}
+			long started = System.currentTimeMillis();
+			run.fetches.increment();
+			apiClient.getFlipRecommendationsAsync(10_000_000, "balanced", 20).whenComplete((response, error) ->
+			{
+				long finished = System.currentTimeMillis();
+				for (Iterator<Long> it = unseen.iterator(); it.hasNext(); )
+				{
+					long changedAt = it.next();
+					if (changedAt <= started)
+					{
+						run.staleness.recordMillis(finished - changedAt);
+						it.remove();
+					}
+				}
+				fetching.set(false);
+			});
+		};
+
+		PushUpdateChannel channel = new PushUpdateChannel(apiClient, scheduler, metrics, gson);
+		if (usePush)
+		{
+			channel.start(topic ->
+			{
+				if (topic == PushUpdateChannel.Topic.RECOMMENDATIONS)
+				{
+					fetch.run();
+				}
+			});
+			long deadline = System.currentTimeMillis() + 10_000;
+			while (server.getUpdateConnections() == 0 && System.currentTimeMillis() < deadline)
+			{
+				Thread.sleep(10);
+			}
+			// Let the catch-up fetch on connect finish before changes start
+			Thread.sleep(1000);
+		}
+		else
+		{
+			scheduler.scheduleAtFixedRate("poll", fetch, pollSeconds, pollSeconds, TimeUnit.SECONDS);
+		}
+		long fetchesBefore = run.fetches.sum();
+		Map<String, Long> countsBefore = server.getRequestCounts();
+
+		// Changes arrive at random, a Poisson process at the given rate
+		Random random = new Random(42);
+		long end = System.currentTimeMillis() + seconds * 1000L;
+		while (true)
+		{
+			long gapMs = (long) (-Math.log(1 - random.nextDouble()) * 60_000 / changesPerMinute);
+			if (System.currentTimeMillis() + gapMs >= end)
+			{
+				break;
+			}
+			Thread.sleep(gapMs);
+
+			unseen.add(System.currentTimeMillis());
+			run.changes.increment();
+			if (usePush)
+			{
+				server.pushUpdate("recommendations");
+			}
+		}
+		Thread.sleep(Math.max(0, end - System.currentTimeMillis()));
+
+		run.missed = unseen.size();
+		run.requests = server.getRequestCounts().getOrDefault("GET /flip-finder", 0L)
+			- countsBefore.getOrDefault("GET /flip-finder", 0L);
+		run.pushed = server.getPushedUpdates();
+		run.fetches.add(-fetchesBefore);
+
+		channel.stop();
+		scheduler.stop();
+		server.stop();
+		httpClient.dispatcher().executorService().shutdown();
+		httpClient.connectionPool().evictAll();
+		return run;
+	}
+}
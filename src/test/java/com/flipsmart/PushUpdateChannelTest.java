@@ -0,0 +1,64 @@
+package com.flipsmart;
+
+import com.google.gson.Gson;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PushUpdateChannelTest
+{
+	private final FlipSmartMetrics metrics = new FlipSmartMetrics();
+	// Never started, so nothing connects or is scheduled for the ignored messages
+	private final PushUpdateChannel channel = new PushUpdateChannel(null, new FlipSmartScheduler(), metrics, new Gson());
+
+	@Before
+	public void setUp()
+	{
+		metrics.setEnabled(true);
+	}
+
+	@Test
+	public void testIgnoresMalformedMessages()
+	{
+		String[] messages = {
+			"",
+			"not json",
+			"[1, 2]",
+			"\"recommendations\"",
+			"{}",
+			"{\"type\": null}",
+			"{\"type\": {\"name\": \"recommendations\"}}",
+			"{\"type\": [\"recommendations\"]}",
+			"{\"type\": \"unknown\"}",
+		};
+		for (String message : messages)
+		{
+			channel.onMessage(message);
+		}
+
+		assertEquals(0, metrics.counter("push.messages").getCount());
+	}
+
+	@Test
+	public void testIgnoresMalformedSentAt()
+	{
+		String[] messages = {
+			"{\"type\": \"recommendations\"}",
+			"{\"type\": \"active_flips\", \"sent_at\": null}",
+			"{\"type\": \"active_flips\", \"sent_at\": \"yesterday\"}",
+			"{\"type\": \"completed_flips\", \"sent_at\": {\"ms\": 5}}",
+		};
+		for (String message : messages)
+		{
+			channel.onMessage(message);
+		}
+
+		assertEquals(4, metrics.counter("push.messages").getCount());
+		assertEquals(0, metrics.histogram("push.staleness").getCount());
+
+		channel.onMessage("{\"type\": \"recommendations\", \"sent_at\": " + (System.currentTimeMillis() - 50) + "}");
+		assertEquals(5, metrics.counter("push.messages").getCount());
+		assertEquals(1, metrics.histogram("push.staleness").getCount());
+	}
+}
@@ -0,0 +1,51 @@
+package com.flipsmart;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long {@link RecommendationRanker} takes to re-rank a candidate pool, which has
+ * to stay under a millisecond for 5,000 candidates.
+ *
+ * Run with {@code ./gradlew jmh -Pargs=RecommendationRanker}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecommendationRankerBenchmark
+{
+	@Param({"100", "5000"})
+	public int candidates;
+
+	private final RecommendationRanker ranker = new RecommendationRanker();
+	private final RecommendationRanker.ScoringFunction scorer =
+		RecommendationRanker.forStyle(FlipSmartConfig.FlipStyle.AGGRESSIVE);
+
+	@Setup
+	public void setUp()
+	{
+		ranker.setCandidates(RecommendationRankerTest.createPool(new Random(42), candidates));
+	}
+
+	@Benchmark
+	public List<FlipRecommendation> rank()
+	{
+		return ranker.rank(scorer, 100, 50);
+	}
+}
@@ -0,0 +1,152 @@
+package com.flipsmart;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RecommendationRankerTest
+{
+	@Test
+	public void testEmptyPool()
+	{
+		RecommendationRanker ranker = new RecommendationRanker();
+		assertFalse(ranker.hasCandidates());
+		assertTrue(ranker.rank(RecommendationRanker.forStyle(null), 0, 10).isEmpty());
+
+		ranker.setCandidates(Collections.emptyList());
+		assertFalse(ranker.hasCandidates());
+		assertTrue(ranker.rank(RecommendationRanker.forStyle(null), 0, 10).isEmpty());
+	}
+
+	@Test
+	public void testMatchesFullSort()
+	{
+		Random random = new Random(3);
+		for (int round = 0; round < 100; round++)
+		{
+			List<FlipRecommendation> pool = createPool(random, 1 + random.nextInt(500));
+			RecommendationRanker ranker = new RecommendationRanker();
+			ranker.setCandidates(pool);
+
+			for (FlipSmartConfig.FlipStyle style : FlipSmartConfig.FlipStyle.values())
+			{
+				RecommendationRanker.ScoringFunction scorer = RecommendationRanker.forStyle(style);
+				int minMargin = random.nextInt(3) == 0 ? 0 : random.nextInt(5_000);
+				int limit = 1 + random.nextInt(60);
+
+				assertEquals(style + " round " + round,
+					sortAll(pool, scorer, minMargin, limit), ranker.rank(scorer, minMargin, limit));
+			}
+		}
+	}
+
+	@Test
+	public void testSkipsLowMargins()
+	{
+		List<FlipRecommendation> pool = new ArrayList<>();
+		pool.add(recommendation(1, 50, 0));
+		pool.add(recommendation(2, 150, 0));
+		pool.add(recommendation(3, 100, 0));
+
+		RecommendationRanker ranker = new RecommendationRanker();
+		ranker.setCandidates(pool);
+		List<FlipRecommendation> ranked = ranker.rank((efficiency, liquidity, risk, roi, margin) -> margin, 100, 10);
+
+		assertEquals(2, ranked.size());
+		assertEquals(2, ranked.get(0).getItemId());
+		assertEquals(3, ranked.get(1).getItemId());
+	}
+
+	@Test
+	public void testTiesKeepApiOrder()
+	{
+		List<FlipRecommendation> pool = new ArrayList<>();
+		for (int i = 0; i < 20; i++)
+		{
+			pool.add(recommendation(i, 100, 50));
+		}
+
+		RecommendationRanker ranker = new RecommendationRanker();
+		ranker.setCandidates(pool);
+		List<FlipRecommendation> ranked = ranker.rank(RecommendationRanker.forStyle(null), 0, 5);
+
+		assertEquals(pool.subList(0, 5), ranked);
+	}
+
+	@Test
+	public void testStylesRankDifferently()
+	{
+		List<FlipRecommendation> pool = new ArrayList<>();
+		// Safe and liquid, but a thin margin
+		FlipRecommendation safe = recommendation(1, 20, 90);
+		safe.setLiquidityScore(95);
+		safe.setRiskScore(5);
+		safe.setRoiPercent(1);
+		pool.add(safe);
+		// Big margin and ROI, but risky
+		FlipRecommendation risky = recommendation(2, 500_000, 60);
+		risky.setLiquidityScore(20);
+		risky.setRiskScore(90);
+		risky.setRoiPercent(15);
+		pool.add(risky);
+
+		RecommendationRanker ranker = new RecommendationRanker();
+		ranker.setCandidates(pool);
+
+		assertEquals(1, ranker.rank(RecommendationRanker.forStyle(FlipSmartConfig.FlipStyle.CONSERVATIVE), 0, 1)
+			.get(0).getItemId());
+		assertEquals(2, ranker.rank(RecommendationRanker.forStyle(FlipSmartConfig.FlipStyle.AGGRESSIVE), 0, 1)
+			.get(0).getItemId());
+	}
+
+	/**
+	 * What rank should return, by a plain stable sort of the whole pool
+	 */
+	private static List<FlipRecommendation> sortAll(List<FlipRecommendation> pool,
+													RecommendationRanker.ScoringFunction scorer, int minMargin, int limit)
+	{
+		List<FlipRecommendation> eligible = new ArrayList<>();
+		for (FlipRecommendation rec : pool)
+		{
+			if (rec.getMargin() >= minMargin)
+			{
+				eligible.add(rec);
+			}
+		}
+		eligible.sort(Comparator.comparingDouble((FlipRecommendation rec) -> scorer.score(rec.getEfficiencyScore(),
+			rec.getLiquidityScore(), rec.getRiskScore(), rec.getRoiPercent(), rec.getMargin())).reversed());
+		return eligible.subList(0, Math.min(limit, eligible.size()));
+	}
+
+	static List<FlipRecommendation> createPool(Random random, int size)
+	{
+		List<FlipRecommendation> pool = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+		{
+			FlipRecommendation rec = recommendation(i, random.nextInt(10_000), random.nextInt(100));
+			rec.setLiquidityScore(random.nextInt(100));
+			rec.setRiskScore(random.nextInt(100));
+			rec.setRoiPercent(random.nextInt(200) / 10.0);
+			pool.add(rec);
+		}
+		return pool;
+	}
+
+	private static FlipRecommendation recommendation(int itemId, int margin, double efficiency)
+	{
+		FlipRecommendation rec = new FlipRecommendation();
+		rec.setItemId(itemId);
+		rec.setItemName("Item " + itemId);
+		rec.setMargin(margin);
+		rec.setEfficiencyScore(efficiency);
+		return rec;
+	}
+}
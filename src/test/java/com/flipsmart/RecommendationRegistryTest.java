@@ -0,0 +1,88 @@
+package com.flipsmart;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class RecommendationRegistryTest
+{
+	private static final long MINUTE_MS = 60 * 1000L;
+	private static final long START = 1_700_000_000_000L;
+	private static final FlipSmartConfig.FlipStyle STYLE = FlipSmartConfig.FlipStyle.BALANCED;
+
+	@Test
+	public void testReRankKeepsFirstRecordedTime()
+	{
+		RecommendationRegistry registry = new RecommendationRegistry();
+		// The panel records every shown item again on each refresh
+		for (int minute = 0; minute <= 30; minute += 5)
+		{
+			registry.put(1, 1100, 1000, STYLE, START + minute * MINUTE_MS);
+		}
+
+		RecommendationRegistry.Attribution attribution = registry.get(1, START + 40 * MINUTE_MS);
+		assertNotNull(attribution);
+		assertEquals(START, attribution.recordedAt);
+
+		// So a buy filling 40 minutes after the first recommendation counts all 40
+		Gson gson = new Gson();
+		AccountState account = new AccountState("player", new BuyLimitTracker(null, gson));
+		RecommendationAnalytics analytics = new RecommendationAnalytics(null, gson);
+		analytics.recordFill(account, 1, true, 10, 1000, attribution, START + 40 * MINUTE_MS);
+		assertEquals(40 * MINUTE_MS, analytics.getStats(STYLE).getAverageFillTimeMs());
+	}
+
+	@Test
+	public void testChangedRecommendationResetsTime()
+	{
+		RecommendationRegistry registry = new RecommendationRegistry();
+		registry.put(1, 1100, 1000, STYLE, START);
+		registry.put(1, 1150, 1000, STYLE, START + 5 * MINUTE_MS);
+		assertEquals(START + 5 * MINUTE_MS, registry.get(1, START + 6 * MINUTE_MS).recordedAt);
+
+		registry.put(1, 1150, 1000, FlipSmartConfig.FlipStyle.AGGRESSIVE, START + 10 * MINUTE_MS);
+		RecommendationRegistry.Attribution attribution = registry.get(1, START + 11 * MINUTE_MS);
+		assertEquals(START + 10 * MINUTE_MS, attribution.recordedAt);
+		assertEquals(1150, attribution.recommendedSellPrice);
+		assertEquals(FlipSmartConfig.FlipStyle.AGGRESSIVE, attribution.style);
+	}
+
+	@Test
+	public void testExpiresAfterLastShown()
+	{
+		RecommendationRegistry registry = new RecommendationRegistry();
+		registry.put(1, 1100, 1000, STYLE, START);
+		registry.put(1, 1100, 1000, STYLE, START + 50 * MINUTE_MS);
+
+		// Still shown recently, so kept, with its original time
+		assertEquals(START, registry.get(1, START + 70 * MINUTE_MS).recordedAt);
+
+		long expired = START + 50 * MINUTE_MS + RecommendationRegistry.TTL_MS + 1;
+		assertNull(registry.get(1, expired));
+
+		// Shown again after expiring, it starts over
+		registry.put(1, 1100, 1000, STYLE, expired);
+		assertEquals(expired, registry.get(1, expired).recordedAt);
+	}
+
+	@Test
+	public void testOldestMakesRoomWhenFull()
+	{
+		RecommendationRegistry registry = new RecommendationRegistry();
+		for (int itemId = 0; itemId < 600; itemId++)
+		{
+			registry.put(itemId, 1100, 1000, STYLE, START + itemId);
+		}
+
+		assertEquals(512, registry.size());
+		assertNull(registry.get(0, START + 600));
+		assertNotNull(registry.get(599, START + 600));
+		for (int itemId = 88; itemId < 600; itemId++)
+		{
+			assertNotNull("item " + itemId, registry.get(itemId, START + 600));
+		}
+	}
+}
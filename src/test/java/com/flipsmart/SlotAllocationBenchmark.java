@@ -0,0 +1,63 @@
+package com.flipsmart;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long {@link SlotAllocationOptimizer} takes to fill the GE slots, which has to
+ * stay under 10 ms for 50 candidates.
+ *
+ * Run with {@code ./gradlew jmh -Pargs=SlotAllocation}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlotAllocationBenchmark
+{
+	@Param({"10", "50", "200"})
+	public int candidates;
+
+	@Param({"8"})
+	public int freeSlots;
+
+	private List<FlipRecommendation> recommendations;
+
+	@Setup
+	public void setUp()
+	{
+		Random random = new Random(42);
+		recommendations = new ArrayList<>(candidates);
+		for (int i = 0; i < candidates; i++)
+		{
+			int price = 100 + random.nextInt(5_000_000);
+			FlipRecommendation rec = SlotAllocationOptimizerTest.recommendation(i, price,
+				1 + random.nextInt(price / 20 + 1), 8 + random.nextInt(25_000));
+			rec.setVolumePerHour(random.nextDouble() * 10_000);
+			rec.setRiskScore(random.nextDouble() * 100);
+			recommendations.add(rec);
+		}
+	}
+
+	@Benchmark
+	public List<SlotAllocationOptimizer.Allocation> optimize()
+	{
+		return SlotAllocationOptimizer.optimize(recommendations, 50_000_000L, freeSlots, null);
+	}
+}
@@ -0,0 +1,148 @@
+package com.flipsmart;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SlotAllocationOptimizerTest
+{
+	@Test
+	public void testNothingToAllocate()
+	{
+		List<FlipRecommendation> candidates = Collections.singletonList(recommendation(1, 100, 10, 1000));
+		assertTrue(SlotAllocationOptimizer.optimize(Collections.emptyList(), 1_000_000, 8, null).isEmpty());
+		assertTrue(SlotAllocationOptimizer.optimize(candidates, 0, 8, null).isEmpty());
+		assertTrue(SlotAllocationOptimizer.optimize(candidates, 1_000_000, 0, null).isEmpty());
+	}
+
+	@Test
+	public void testSkipsUnprofitableItems()
+	{
+		List<FlipRecommendation> candidates = new ArrayList<>();
+		candidates.add(recommendation(1, 100, 0, 1000));
+		candidates.add(recommendation(2, 100, -5, 1000));
+
+		assertTrue(SlotAllocationOptimizer.optimize(candidates, 1_000_000, 8, null).isEmpty());
+	}
+
+	@Test
+	public void testOneSlotTakesTheBestItem()
+	{
+		List<FlipRecommendation> candidates = new ArrayList<>();
+		candidates.add(recommendation(1, 1000, 10, 100));
+		FlipRecommendation best = recommendation(2, 1000, 50, 100);
+		candidates.add(best);
+		candidates.add(recommendation(3, 1000, 20, 100));
+
+		List<SlotAllocationOptimizer.Allocation> allocations =
+			SlotAllocationOptimizer.optimize(candidates, 10_000_000, 1, null);
+
+		assertEquals(1, allocations.size());
+		assertSame(best, allocations.get(0).recommendation);
+		assertEquals(100, allocations.get(0).quantity);
+	}
+
+	@Test
+	public void testRespectsSlotsCashAndLimits()
+	{
+		Random random = new Random(7);
+		for (int round = 0; round < 200; round++)
+		{
+			List<FlipRecommendation> candidates = new ArrayList<>();
+			int count = 1 + random.nextInt(50);
+			for (int i = 0; i < count; i++)
+			{
+				int price = 1 + random.nextInt(2_000_000);
+				candidates.add(recommendation(i, price, random.nextInt(price / 10 + 2) - 1, 1 + random.nextInt(25_000)));
+			}
+			long cash = 1 + random.nextInt(Integer.MAX_VALUE);
+			int freeSlots = random.nextInt(10);
+
+			List<SlotAllocationOptimizer.Allocation> allocations =
+				SlotAllocationOptimizer.optimize(candidates, cash, freeSlots, null);
+
+			assertTrue(allocations.size() <= Math.min(freeSlots, SlotAllocationOptimizer.GE_SLOTS));
+			long spent = 0;
+			Set<FlipRecommendation> used = new HashSet<>();
+			double previous = Double.MAX_VALUE;
+			for (SlotAllocationOptimizer.Allocation allocation : allocations)
+			{
+				FlipRecommendation rec = allocation.recommendation;
+				assertTrue("item used twice", used.add(rec));
+				assertTrue(allocation.quantity <= rec.getBuyLimit());
+				assertEquals((long) allocation.quantity * rec.getRecommendedBuyPrice(), allocation.cost);
+				assertTrue("sorted by profit per hour", allocation.profitPerHour <= previous);
+				previous = allocation.profitPerHour;
+				spent += allocation.cost;
+			}
+			assertTrue("spent " + spent + " of " + cash, spent <= cash);
+		}
+	}
+
+	@Test
+	public void testCapsQuantityToRemainingBuyLimit()
+	{
+		BuyLimitTracker buyLimits = new BuyLimitTracker(null, new Gson());
+		buyLimits.recordPurchase(1, 70);
+
+		List<SlotAllocationOptimizer.Allocation> allocations = SlotAllocationOptimizer.optimize(
+			Collections.singletonList(recommendation(1, 1000, 50, 100)), 10_000_000, 8, buyLimits);
+
+		assertEquals(1, allocations.size());
+		assertEquals(30, allocations.get(0).quantity);
+	}
+
+	@Test
+	public void testBeatsGreedyOnMargin()
+	{
+		// Filling the biggest margin first gets 75K/hr from the first item and 125K/hr
+		// from the rest of the cash in the second. Filling the second item's whole
+		// limit first and the first with what's left makes more.
+		List<FlipRecommendation> candidates = new ArrayList<>();
+		candidates.add(recommendation(1, 1_000_000, 30_000, 10));
+		candidates.add(recommendation(2, 1_000, 100, 10_000));
+
+		List<SlotAllocationOptimizer.Allocation> allocations =
+			SlotAllocationOptimizer.optimize(candidates, 15_000_000, 2, null);
+
+		assertEquals(2, allocations.size());
+		assertEquals(2, allocations.get(0).recommendation.getItemId());
+		// Cash is split into 64 units, so the limit is filled to within one unit's worth
+		assertTrue(allocations.get(0).quantity > 10_000 - 15_000_000 / 64 / 1_000);
+
+		double total = 0;
+		for (SlotAllocationOptimizer.Allocation allocation : allocations)
+		{
+			total += allocation.profitPerHour;
+		}
+		assertTrue(total > 200_000);
+	}
+
+	/**
+	 * A recommendation with no risk and enough volume that only the buy limit caps it
+	 */
+	static FlipRecommendation recommendation(int itemId, int buyPrice, int margin, int buyLimit)
+	{
+		FlipRecommendation rec = new FlipRecommendation();
+		rec.setItemId(itemId);
+		rec.setItemName("Item " + itemId);
+		rec.setRecommendedBuyPrice(buyPrice);
+		rec.setRecommendedSellPrice(buyPrice + margin);
+		rec.setMargin(margin);
+		rec.setBuyLimit(buyLimit);
+		rec.setRecommendedQuantity(buyLimit);
+		rec.setVolumePerHour(1_000_000);
+		rec.setRiskScore(0);
+		return rec;
+	}
+}
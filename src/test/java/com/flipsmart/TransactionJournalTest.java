@@ -0,0 +1,90 @@
+package com.flipsmart;
+
+import com.google.gson.Gson;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionJournalTest
+{
+	private FlipSmartScheduler scheduler;
+	private final AtomicInteger saves = new AtomicInteger();
+	private TransactionJournal journal;
+
+	@Before
+	public void setUp()
+	{
+		scheduler = new FlipSmartScheduler();
+		scheduler.start();
+		// No ConfigManager outside the client, so count saves instead
+		journal = new TransactionJournal(null, new Gson(), scheduler)
+		{
+			@Override
+			public void save()
+			{
+				saves.incrementAndGet();
+			}
+		};
+	}
+
+	@After
+	public void tearDown()
+	{
+		scheduler.stop();
+	}
+
+	@Test
+	public void testBurstIsSavedOnceInBackground() throws InterruptedException
+	{
+		for (int i = 0; i < 100; i++)
+		{
+			TransactionJournal.Entry entry = journal.add(i, "Item " + i, true, 10, 1000, 0, null);
+			if (i % 2 == 0)
+			{
+				journal.complete(entry.id);
+			}
+		}
+		assertEquals(50, journal.size());
+		assertEquals(0, saves.get());
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (saves.get() == 0 && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(50);
+		}
+		assertEquals(1, saves.get());
+
+		// A later change schedules another save
+		journal.add(1000, "Item 1000", true, 10, 1000, 0, null);
+		deadline = System.currentTimeMillis() + 10_000;
+		while (saves.get() == 1 && System.currentTimeMillis() < deadline)
+		{
+			Thread.sleep(50);
+		}
+		assertEquals(2, saves.get());
+	}
+
+	@Test
+	public void testUnsentEntries()
+	{
+		TransactionJournal.Entry first = journal.add(1, "Item 1", true, 10, 1000, 0, null);
+		TransactionJournal.Entry second = journal.add(2, "Item 2", false, 5, 2000, 1, null);
+
+		// Both are being sent, so neither is handed out again until released
+		assertTrue(journal.takeUnsent().isEmpty());
+		journal.release(first.id);
+		List<TransactionJournal.Entry> unsent = journal.takeUnsent();
+		assertEquals(1, unsent.size());
+		assertEquals(first.id, unsent.get(0).id);
+
+		journal.reject(first.id, 422);
+		journal.complete(second.id);
+		assertEquals(0, journal.size());
+	}
+}